@@ -7,7 +7,7 @@
 <html>
 <head>
 <title>
-ʷϢ
+调动服务器历史信息
 </title>
 <STYLE type=text/css>
 
@@ -33,11 +33,11 @@ if(managerFactoryUUID == null || managerFactoryUUID.trim().length() == 0){
 %>
 <table border="0">
   <tr>
-  	<td>ͣ</td><td><input type="text" id="baseTaskType" value="<%=baseTaskType==null?"":baseTaskType%>"> </td>
-  	<td></td><td><input type="text" id="ownSign" value="<%=ownSign==null?"":ownSign%>"> </td>
-  	<td>IP</td><td><input type="text" id="ip" value="<%=ip==null?"":ip%>"> </td>
-  	<td></td><td><input type="text" id="orderStr" value="<%=orderStr==null?"":orderStr%>"> </td>
-  	<td><input type="button"  onclick="query()" value="ѯ" style="width:100;"></td>
+  	<td>任务类型：</td><td><input type="text" id="baseTaskType" value="<%=baseTaskType==null?"":baseTaskType%>"> </td>
+  	<td>任务域：</td><td><input type="text" id="ownSign" value="<%=ownSign==null?"":ownSign%>"> </td>
+  	<td>IP：</td><td><input type="text" id="ip" value="<%=ip==null?"":ip%>"> </td>
+  	<td>排序：</td><td><input type="text" id="orderStr" value="<%=orderStr==null?"":orderStr%>"> </td>
+  	<td><input type="button"  onclick="query()" value="查询" style="width:100;"></td>
   </tr>  
 </table>
 <%
@@ -45,20 +45,20 @@ if(managerFactoryUUID == null || managerFactoryUUID.trim().length() == 0){
 %>
    <table id="list" border="1" style=";border-COLLAPSE: collapse;display:block;">
    <tr >
-   <th nowrap></th>
-   <th><BR/>[TASK_TYPE]</th>
-   <th><BR/>[OWN_SIGN]</th>
-   <th>IPַ<BR/>[IP]</th>
-   <th>[HOST_NAME]</th>
-   <th nowrap>߳<BR/>[THREAD_NUM]</th>
-   <th>עʱ<BR/>[REGISTER_TIME]</th>
-   <th>ʱ<BR/>[HEARTBEAT_TIME]</th>
-   <th>ȡʱ<BR/>[LAST_FETCH_DATA_TIME]</th>
-   <th nowrap>汾<BR/>[VERSION]</th>
-   <th nowrap>´οʼ<BR/>[NEXT_RUN_START_TIME]</th>
-   <th nowrap>´ν<BR/>[NEXT_RUN_END_TIME]</th>
-   <th><BR/>[MANAGER_FACTORY]</th>
-   <th></th>   
+   <th nowrap>序号</th>
+   <th>任务类型<BR/>[TASK_TYPE]</th>
+   <th>域<BR/>[OWN_SIGN]</th>
+   <th>IP地址<BR/>[IP]</th>
+   <th>主机名称[HOST_NAME]</th>
+   <th nowrap>线程<BR/>[THREAD_NUM]</th>
+   <th>注册时间<BR/>[REGISTER_TIME]</th>
+   <th>心跳时间<BR/>[HEARTBEAT_TIME]</th>
+   <th>取数时间<BR/>[LAST_FETCH_DATA_TIME]</th>
+   <th nowrap>版本<BR/>[VERSION]</th>
+   <th nowrap>下次开始<BR/>[NEXT_RUN_START_TIME]</th>
+   <th nowrap>下次结束<BR/>[NEXT_RUN_END_TIME]</th>
+   <th>处理器<BR/>[MANAGER_FACTORY]</th>
+   <th>处理详情</th>   
    </tr>
    <%
    List<ScheduleServer> serverList = null;
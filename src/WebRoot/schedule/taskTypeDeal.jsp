@@ -5,7 +5,7 @@
 <html>
 <head>
 <title>
-
+创建调度任务
 </title>
 </head>
 <body bgcolor="#ffffff">
@@ -24,11 +24,31 @@
 			taskType.setHeartBeatRate(request.getParameter("heartBeatRate")==null?0: ((int)Double.parseDouble(request.getParameter("heartBeatRate"))*1000));
 			taskType.setJudgeDeadInterval(request.getParameter("judgeDeadInterval")==null?0: ((int)Double.parseDouble(request.getParameter("judgeDeadInterval"))*1000));
 			taskType.setThreadNumber(request.getParameter("threadNumber")==null?0: Integer.parseInt(request.getParameter("threadNumber")));
+			taskType.setThreadNumberMin(request.getParameter("threadNumberMin")==null?1: Integer.parseInt(request.getParameter("threadNumberMin")));
+			taskType.setThreadNumberMax(request.getParameter("threadNumberMax")==null?0: Integer.parseInt(request.getParameter("threadNumberMax")));
+			taskType.setMaxInFlightNumber(request.getParameter("maxInFlightNumber")==null?0: Integer.parseInt(request.getParameter("maxInFlightNumber")));
+			taskType.setStreamBufferSize(request.getParameter("streamBufferSize")==null?0: Integer.parseInt(request.getParameter("streamBufferSize")));
+			taskType.setMaxRetryNumber(request.getParameter("maxRetryNumber")==null?0: Integer.parseInt(request.getParameter("maxRetryNumber")));
+			taskType.setMaxExecuteRate(request.getParameter("maxExecuteRate")==null?0: Double.parseDouble(request.getParameter("maxExecuteRate")));
+			taskType.setRetryDelay(request.getParameter("retryDelay")==null?0: (int)(Double.parseDouble(request.getParameter("retryDelay"))*1000));
+			taskType.setRetryDelayMax(request.getParameter("retryDelayMax")==null?0: (int)(Double.parseDouble(request.getParameter("retryDelayMax"))*1000));
+			taskType.setDrainTimeout(request.getParameter("drainTimeout")==null?0: (int)(Double.parseDouble(request.getParameter("drainTimeout"))*1000));
 			taskType.setFetchDataNumber(request.getParameter("fetchNumber")==null?0: Integer.parseInt(request.getParameter("fetchNumber")));
 			taskType.setExecuteNumber(request.getParameter("executeNumber")==null?0: Integer.parseInt(request.getParameter("executeNumber")));
+			taskType.setFetchDataNumberMin(request.getParameter("fetchNumberMin")==null?0: Integer.parseInt(request.getParameter("fetchNumberMin")));
+			taskType.setFetchDataNumberMax(request.getParameter("fetchNumberMax")==null?0: Integer.parseInt(request.getParameter("fetchNumberMax")));
 			taskType.setSleepTimeNoData(request.getParameter("sleepTimeNoData")==null?0: (int)(Double.parseDouble(request.getParameter("sleepTimeNoData"))*1000));
+			taskType.setSleepTimeNoDataMax(request.getParameter("sleepTimeNoDataMax")==null?0: (int)(Double.parseDouble(request.getParameter("sleepTimeNoDataMax"))*1000));
 			taskType.setSleepTimeInterval(request.getParameter("sleepTimeInterval")==null?0: ((int)Double.parseDouble(request.getParameter("sleepTimeInterval"))*1000));
 			taskType.setProcessorType(request.getParameter("processType"));
+			taskType.setPipelineLowWatermark(request.getParameter("pipelineLowWatermark")==null?0: Integer.parseInt(request.getParameter("pipelineLowWatermark")));
+			taskType.setPriorityPreemptInterval(request.getParameter("priorityPreemptInterval")==null?0: (int)(Double.parseDouble(request.getParameter("priorityPreemptInterval"))*1000));
+			taskType.setThreadType(request.getParameter("threadType"));
+			taskType.setTaskQueueType(request.getParameter("taskQueueType"));
+			taskType.setQueueWaitStatistics("true".equalsIgnoreCase(request.getParameter("queueWaitStatistics")));
+			taskType.setTaskItemStatInterval(request.getParameter("taskItemStatInterval")==null?0: (int)(Double.parseDouble(request.getParameter("taskItemStatInterval"))*1000));
+			taskType.setSlowExecuteTime(request.getParameter("slowExecuteTime")==null?0: (int)(Double.parseDouble(request.getParameter("slowExecuteTime"))*1000));
+			taskType.setExecuteInterruptTime(request.getParameter("executeInterruptTime")==null?0: (int)(Double.parseDouble(request.getParameter("executeInterruptTime"))*1000));
 			//taskType.setExpireOwnSignInterval(request.getParameter("expireOwnSignInterval")==null?0: Integer.parseInt(request.getParameter("threadNumber")));
 			taskType.setPermitRunStartTime(request.getParameter("permitRunStartTime"));
 			taskType.setPermitRunEndTime(request.getParameter("permitRunEndTime"));
@@ -40,22 +60,22 @@
 			taskType.setSts(request.getParameter("sts"));
 			if(action.equalsIgnoreCase("createTaskType")){
 				ConsoleManager.getScheduleDataManager().createBaseTaskType(taskType);
-				result = "" + baseTaskType + "ɹ";
+				result = "任务" + baseTaskType + "创建成功！！！！";
 			}else{
 				ConsoleManager.getScheduleDataManager().updateBaseTaskType(taskType);
-				result = "" + baseTaskType + "޸ĳɹ";			
+				result = "任务" + baseTaskType + "修改成功！！！！";			
 			}
 			isRefreshParent = true;
 			
 		} else if (action.equalsIgnoreCase("clearTaskType")) {
 			ConsoleManager.getScheduleDataManager().clearTaskType(
 					baseTaskType);
-			result = "" + baseTaskType + "Ϣɹ";
+			result = "任务" + baseTaskType + "运行期信息清理成功！！！！";
 			isRefreshParent = false;
 		} else if (action.equalsIgnoreCase("deleteTaskType")) {
 			ConsoleManager.getScheduleDataManager().deleteTaskType(
 					baseTaskType);
-			result = "" + baseTaskType + "ɾɹ";
+			result = "任务" + baseTaskType + "删除成功！！！！";
 			isRefreshParent = true;
 		} else if (action.equalsIgnoreCase("pauseTaskType")) {
 			ConsoleManager.getScheduleDataManager().pauseAllServer(baseTaskType);
@@ -64,7 +84,7 @@
 			ConsoleManager.getScheduleDataManager().resumeAllServer(baseTaskType);
 			isRefreshParent = true;
 		}else{
-			throw new Exception("ֵ֧Ĳ" + action);
+			throw new Exception("不支持的操作：" + action);
 		}
 	} catch (Throwable e) {
 		e.printStackTrace();
@@ -21,7 +21,7 @@
 		editSts="style=\"background-color: blue\" readonly=\"readonly\"";
 	}else{
 		taskType = new ScheduleTaskType();
-		taskType.setBaseTaskType("µ...");
+		taskType.setBaseTaskType("请输入新的任务类型...");
 		taskType.setDealBeanName("");
 		isNew = true;
 		actionName ="createTaskType";
@@ -45,57 +45,123 @@ TD{font-size:12px;}
 
 <table>
 <tr>
-	<td>:</td><td><input type="text" id="taskType" name="taskType"  <%=editSts%> value="<%=taskType.getBaseTaskType()%>" width="30"></td>
-	<td>SpringBean:</td><td><input type="text" id="dealBean" name="dealBean" value="<%=taskType.getDealBeanName()%>" width="30"></td>
+	<td>任务名称:</td><td><input type="text" id="taskType" name="taskType"  <%=editSts%> value="<%=taskType.getBaseTaskType()%>" width="30"></td>
+	<td>任务处理的SpringBean:</td><td><input type="text" id="dealBean" name="dealBean" value="<%=taskType.getDealBeanName()%>" width="30"></td>
 </tr>
 <tr>
-	<td>Ƶ():</td><td><input type="text" name="heartBeatRate" value="<%=taskType.getHeartBeatRate()/1000.0 %>" width="30"></td>
-	<td>ٶ():</td><td><input type="text" name="judgeDeadInterval" value="<%=taskType.getJudgeDeadInterval()/1000.0 %>" width="30"></td>
+	<td>心跳频率(秒):</td><td><input type="text" name="heartBeatRate" value="<%=taskType.getHeartBeatRate()/1000.0 %>" width="30"></td>
+	<td>假定服务死亡间隔(秒):</td><td><input type="text" name="judgeDeadInterval" value="<%=taskType.getJudgeDeadInterval()/1000.0 %>" width="30"></td>
 </tr>
 <tr>
-	<td>߳</td><td><input type="text" name="threadNumber" value="<%=taskType.getThreadNumber()%>"  width="30"></td>
-	<td>ģʽ</td><td><input type="text" name="processType" value="<%=taskType.getProcessorType()%>" width="30">
-		SLEEP   NOTSLEEP</td>
+	<td>线程数：</td><td><input type="text" name="threadNumber" value="<%=taskType.getThreadNumber()%>"  width="30"></td>
+	<td>处理模式：</td><td><input type="text" name="processType" value="<%=taskType.getProcessorType()%>" width="30">
+		SLEEP、NOTSLEEP 和 PIPELINE</td>
 </tr>
 <tr>
-	<td>ÿλȡ</td><td><input type="text" name="fetchNumber" value="<%=taskType.getFetchDataNumber() %>" width="30"></td>
-	<td>ÿִ</td><td><input type="text" name="executeNumber" value="<%=taskType.getExecuteNumber() %>" width="30">
-		ֻbeanʵIScheduleTaskDealMultiЧ</td>
+	<td>弹性线程数下限：</td><td><input type="text" name="threadNumberMin" value="<%=taskType.getThreadNumberMin()%>"  width="30"></td>
+	<td>弹性线程数上限：</td><td><input type="text" name="threadNumberMax" value="<%=taskType.getThreadNumberMax()%>" width="30">
+		大于0时按积压任务、处理耗时和CPU负载自动调整线程数</td>
 </tr>
 <tr>
-	<td>ûʱʱ()</td><td><input type="text" name="sleepTimeNoData" value="<%=taskType.getSleepTimeNoData()/1000.0%>" width="30"></td>
-	<td>ÿδݺʱ()</td><td><input type="text" name="sleepTimeInterval" value="<%= taskType.getSleepTimeInterval()/1000.0%>" width="30"></td>
+	<td>每次获取数据量：</td><td><input type="text" name="fetchNumber" value="<%=taskType.getFetchDataNumber() %>" width="30"></td>
+	<td>每次执行数量：</td><td><input type="text" name="executeNumber" value="<%=taskType.getExecuteNumber() %>" width="30">
+		只在bean实现IScheduleTaskDealMulti才生效</td>
 </tr>
 <tr>
-	<td>ִпʼʱ䣺</td><td><input type="text" name="permitRunStartTime" value="<%=taskType.getPermitRunStartTime()==null?"":taskType.getPermitRunStartTime()%>" width="30"></td>
-	<td>ִнʱ䣺</td><td><input type="text" name="permitRunEndTime" value="<%=taskType.getPermitRunEndTime()==null?"":taskType.getPermitRunEndTime()%>" width="30"></td>
+	<td>异步处理最大并发数：</td><td><input type="text" name="maxInFlightNumber" value="<%=taskType.getMaxInFlightNumber() %>" width="30">
+		只在bean实现IScheduleTaskDealAsync才生效，0表示线程数*10</td>
+	<td>流式取数缓冲数量：</td><td><input type="text" name="streamBufferSize" value="<%=taskType.getStreamBufferSize() %>" width="30">
+		只在bean实现IScheduleTaskDealStream才生效，0表示任务队列容量</td>
 </tr>
 <tr>
-	<td>Զ(ַ):</td><td colspan="3"><input type="text" id="taskParameter" name="taskParameter" value="<%=taskType.getTaskParameter()==null?"":taskType.getTaskParameter()%>" style="width:657"></td>
+	<td>失败任务重试次数：</td><td><input type="text" name="maxRetryNumber" value="<%=taskType.getMaxRetryNumber() %>" width="30"></td>
+	<td></td><td>失败的任务延时后重新放入队列处理，超过次数后不再重试，0表示不重试。异步处理不生效</td>
 </tr>
 <tr>
-	<td>(","ָ):</td><td colspan="3"><TEXTAREA  type="textarea" rows="5" , id="taskItems" name="taskItems" style="width:657"><%=taskItems%> </TEXTAREA></td>
+	<td>集群每秒处理上限：</td><td><input type="text" name="maxExecuteRate" value="<%=taskType.getMaxExecuteRate()%>" width="30"></td>
+	<td></td><td>所有服务器合计每秒最多处理的任务数，按服务器数量平分，0表示不限制</td>
+</tr>
+<tr>
+	<td>第一次重试延时(秒)：</td><td><input type="text" name="retryDelay" value="<%=taskType.getRetryDelay()/1000.0%>" width="30"></td>
+	<td>重试延时上限(秒)：</td><td><input type="text" name="retryDelayMax" value="<%=taskType.getRetryDelayMax()/1000.0%>" width="30">
+		每次重试延时加倍，直到此上限</td>
+</tr>
+<tr>
+	<td>停止和重新分配等待时间(秒)：</td><td><input type="text" name="drainTimeout" value="<%=taskType.getDrainTimeout()/1000.0%>" width="30"></td>
+	<td></td><td>停止、暂停时已取到的任务继续处理的时间，重新分配时等待被申请任务项处理完的时间，0表示停止时直接清除、重新分配时一直等待</td>
+</tr>
+<tr>
+	<td>自适应获取数据量下限：</td><td><input type="text" name="fetchNumberMin" value="<%=taskType.getFetchDataNumberMin() %>" width="30"></td>
+	<td>自适应获取数据量上限：</td><td><input type="text" name="fetchNumberMax" value="<%=taskType.getFetchDataNumberMax() %>" width="30">
+		大于0时按处理耗时自动调整每次获取数据量</td>
+</tr>
+<tr>
+	<td>没有数据时休眠时长(秒)：</td><td><input type="text" name="sleepTimeNoData" value="<%=taskType.getSleepTimeNoData()/1000.0%>" width="30"></td>
+	<td>每次处理完数据后休眠时间(秒)：</td><td><input type="text" name="sleepTimeInterval" value="<%= taskType.getSleepTimeInterval()/1000.0%>" width="30"></td>
+</tr>
+<tr>
+	<td>没有数据时休眠时长上限(秒)：</td><td><input type="text" name="sleepTimeNoDataMax" value="<%=taskType.getSleepTimeNoDataMax()/1000.0%>" width="30"></td>
+	<td></td><td>连续没有数据时休眠时长成倍增加到此上限，0表示不增加</td>
+</tr>
+<tr>
+	<td>PIPELINE取数水位线：</td><td><input type="text" name="pipelineLowWatermark" value="<%=taskType.getPipelineLowWatermark()%>" width="30"></td>
+	<td></td><td>队列低于此数量时后台获取下一批数据，0表示 线程数*每次执行数量*2</td>
+</tr>
+<tr>
+	<td>PIPELINE优先级抢占取数间隔(秒)：</td><td><input type="text" name="priorityPreemptInterval" value="<%=taskType.getPriorityPreemptInterval()/1000.0%>" width="30"></td>
+	<td></td><td>使用优先级队列时，队列中还有任务也按此间隔取数，新的高优先级任务先处理，0表示不抢占</td>
+</tr>
+<tr>
+	<td>执行线程类型：</td><td><input type="text" name="threadType" value="<%=taskType.getThreadType()==null?"":taskType.getThreadType()%>" width="30"></td>
+	<td></td><td>PLATFORM 和 VIRTUAL，VIRTUAL需要JDK支持虚拟线程，否则按PLATFORM执行</td>
+</tr>
+<tr>
+	<td>任务队列类型：</td><td><input type="text" name="taskQueueType" value="<%=taskType.getTaskQueueType()==null?"":taskType.getTaskQueueType()%>" width="30"></td>
+	<td></td><td>RING、STEAL、PRIORITY 和 AFFINITY，STEAL为每个线程一个队列，空闲线程从其它线程窃取任务；PRIORITY按任务优先级处理；AFFINITY把任务项绑定到线程</td>
+</tr>
+<tr>
+	<td>统计队列等待时间：</td><td><input type="text" name="queueWaitStatistics" value="<%=taskType.isQueueWaitStatistics()%>" width="30"></td>
+	<td></td><td>true 或 false，统计任务从放入队列到被取出的时间，默认不统计</td>
+</tr>
+<tr>
+	<td>任务项统计发布间隔(秒)：</td><td><input type="text" name="taskItemStatInterval" value="<%=taskType.getTaskItemStatInterval()/1000.0%>" width="30"></td>
+	<td></td><td>按任务项统计处理情况并写入配置中心，需要处理Bean实现IScheduleTaskItemResolver，0表示不统计</td>
+</tr>
+<tr>
+	<td>处理过慢告警时间(秒)：</td><td><input type="text" name="slowExecuteTime" value="<%=taskType.getSlowExecuteTime()/1000.0%>" width="30"></td>
+	<td>处理超时中断时间(秒)：</td><td><input type="text" name="executeInterruptTime" value="<%=taskType.getExecuteInterruptTime()/1000.0%>" width="30">
+		execute超时时采样堆栈并告警、中断处理线程，0表示不监控、不中断。异步处理不生效</td>
+</tr>
+<tr>
+	<td>执行开始时间：</td><td><input type="text" name="permitRunStartTime" value="<%=taskType.getPermitRunStartTime()==null?"":taskType.getPermitRunStartTime()%>" width="30"></td>
+	<td>执行结束时间：</td><td><input type="text" name="permitRunEndTime" value="<%=taskType.getPermitRunEndTime()==null?"":taskType.getPermitRunEndTime()%>" width="30"></td>
+</tr>
+<tr>
+	<td>自定义参数(字符串):</td><td colspan="3"><input type="text" id="taskParameter" name="taskParameter" value="<%=taskType.getTaskParameter()==null?"":taskType.getTaskParameter()%>" style="width:657"></td>
+</tr>
+<tr>
+	<td>任务项(","分隔):</td><td colspan="3"><TEXTAREA  type="textarea" rows="5" , id="taskItems" name="taskItems" style="width:657"><%=taskItems%> </TEXTAREA></td>
 </tr>
 
 </table>
 <br/>
-<input type="button" value="" onclick="save();" style="width:100px" >
+<input type="button" value="保存" onclick="save();" style="width:100px" >
 
 </form>
-<b>ִпʼʱ˵</b><br/>
-1.ִʱεĿʼʱcrontabʱʽ.'0 * * * * ?'  ʾÿӵ0뿪ʼ<br/>
-2.startrun:ʼʾ.<br/>
-3.ʽμ http://dogstar.javaeye.com/blog/116130<br/><br/>
-<b>ִнʱ˵</b><br/>
-1.ִʱεĽʱcrontabʱʽ,'20 * * * * ?'  ʾÿӵ20ֹ<br/>
-2.ãʾȡݾֹͣ <br/>
-3.ʽμhttp://dogstar.javaeye.com/blog/116130<br/><br/>
-<b>˵</b><br/>
-1һݱݵID10ȡģͽݻֳ012345678910<br/>
-2һĿ¼µļļƵĸ(ִСд) ͻֳABCDEFGHIJKLMNOPQRSTUVWXYZ26<br/>
-3һݱIDϣ1000ȡģΪHASHCODE,ǾͿԽݰ[0,100)[100,200) [200,300)[300,400) [400,500)[500,600)[600,700)[700,800)[800,900) [900,1000)Ϊʮ
-	ȻҲԻΪ1001000<br/>
-4ǽСλһֻһScheduleServerдһServerԴ
+<b>执行开始时间说明：</b><br/>
+1.允许执行时段的开始时间crontab的时间格式.'0 * * * * ?'  表示在每分钟的0秒开始<br/>
+2.以startrun:开始，则表示开机立即启动调度.<br/>
+3.格式参见： http://dogstar.javaeye.com/blog/116130<br/><br/>
+<b>执行结束时间说明：</b><br/>
+1.允许执行时段的结束时间crontab的时间格式,'20 * * * * ?'  表示在每分钟的20秒终止<br/>
+2.如果不设置，表示取不到数据就停止 <br/>
+3.格式参见：http://dogstar.javaeye.com/blog/116130<br/><br/>
+<b>任务项的说明：</b><br/>
+1、将一个数据表中所有数据的ID按10取模，就将数据划分成了0、1、2、3、4、5、6、7、8、9供10个任务项。<br/>
+2、将一个目录下的所有文件按文件名称的首字母(不区分大小写)， 就划分成了A、B、C、D、E、F、G、H、I、J、K、L、M、N、O、P、Q、R、S、T、U、V、W、X、Y、Z供26个任务项。<br/>
+3、将一个数据表的数据ID哈希后按1000取模作为最后的HASHCODE,我们就可以将数据按[0,100)、[100,200) 、[200,300)、[300,400) 、[400,500)、[500,600)、[600,700)、[700,800)、[800,900)、 [900,1000)划分为十个任务项，
+	当然你也可以划分为100个任务项，最多是1000个项。<br/>
+4、任务项是进行任务分配的最小单位。一个任务队列只能由一个ScheduleServer来进行处理。但一个Server可以处理任意数量的任务项。
 </body>
 </html>
 
@@ -104,29 +170,29 @@ function save(){
 	var taskType = document.all("taskType").value;
 	var reg = /.*[\u4e00-\u9fa5]+.*$/; 
 	if(reg.test(taskType)){
-	   alert('Ͳܺ');
+	   alert('任务类型不能含中文');
 	   return;
 	}
 	if(taskType==null||taskType==''||isContainSpace(taskType)){
-		alert('ͲΪջڿո');
+		alert('任务类型不能为空或存在空格');
 		return;
 	}
 	var str = document.all("dealBean").value;
 	if(str == null || str.length==0){
-		alert("봦beanƣ");
+		alert("请输入处理任务的bean名称！！");
 		return;
 	}
 	if(isContainSpace(str)){
-		alert('beanƲܴڿո');
+		alert('处理任务的bean名称不能存在空格');
 		return;
 	}
 	if(reg.test(str)){
-	   alert('beanƲܺ');
+	   alert('bean名称不能含中文');
 	   return;
 	}
     str = document.all("taskItems").value;
 	if(str == null || str.length==0){
-		alert("");
+		alert("请输入任务项！！");
 		return;
 	}
     document.getElementById("taskTypeForm").submit();
@@ -9,7 +9,7 @@
 <html>
 <head>
 <title>
-ϸϢ
+调度任务详细信息
 </title>
 <STYLE type=text/css>
 TH{height:20px;color:#5371BA;font-weight:bold;font-size:12px;text-align:center;border:#8CB2E3 solid;border-width:0 1 1 0;background-color:#E4EFF1;white-space:nowrap;overflow:hidden;}
@@ -26,7 +26,7 @@ String ownSign =  request.getParameter("ownSign");
 List<ScheduleTaskTypeRunningInfo> taskTypeRunningInfoList = ConsoleManager.getScheduleDataManager().getAllTaskTypeRunningInfo(baseTaskType);
 if(taskTypeRunningInfoList.size() ==0){
 %>
- <%=baseTaskType%>ûϢ
+任务 <%=baseTaskType%>：还没有运行期信息
 <%
 	}else{
 %>
@@ -46,20 +46,20 @@ if(taskTypeRunningInfoList.size() ==0){
 <td>
    <table border="1" style="border-COLLAPSE: collapse;display:block;">
    <tr>
-   <th nowrap></th>
-   <th>߳</th>
-   <th></th>
-   <th>IPַ</th>
-   <th></th>
-   <th nowrap>߳</th>
-   <th>עʱ</th>
-   <th>ʱ</th>
-   <th>ȡʱ</th>   
-   <th nowrap>汾</th>
-   <th nowrap>´οʼ</th>
-   <th nowrap>´ν</th>
-   <th></th>
-   <th></th>
+   <th nowrap>序号</th>
+   <th>线程组编号</th>
+   <th>域</th>
+   <th>IP地址</th>
+   <th>主机名称</th>
+   <th nowrap>线程</th>
+   <th>注册时间</th>
+   <th>心跳时间</th>
+   <th>取数时间</th>   
+   <th nowrap>版本</th>
+   <th nowrap>下次开始</th>
+   <th nowrap>下次结束</th>
+   <th>处理详情</th>
+   <th>处理机器</th>
    </tr>
    <%
    	List<ScheduleServer> serverList = ConsoleManager.getScheduleDataManager().selectAllValidScheduleServer(taskTypeRunningInfoList.get(i).getTaskType());
@@ -94,17 +94,18 @@ if(taskTypeRunningInfoList.size() ==0){
    </table> 
 </td>
 </tr>
-<!-- Ϣ -->
+<!-- 队列信息 -->
 <tr>
 <td>
    <table border="1" style="border-COLLAPSE: collapse;display:block;">
    <tr>
-   <th></th>
-   <th>ǰ߳</th>
-   <th>߳</th>
-   <th>״̬</th>
-   <th></th>
-   <th></th>
+   <th>任务项</th>
+   <th>当前线程组</th>
+   <th>请求线程组</th>
+   <th>任务状态</th>
+   <th>任务参数</th>
+   <th>处理描述</th>
+   <th>处理统计</th>
    
    </tr>
    <%
@@ -118,6 +119,7 @@ if(taskTypeRunningInfoList.size() ==0){
 	   <td><%=taskItemList.get(j).getSts()%></td>
 	   <td><%=taskItemList.get(j).getDealParameter()==null?"":taskItemList.get(j).getDealParameter()%></td>
 	   <td><%=taskItemList.get(j).getDealDesc()==null?"":taskItemList.get(j).getDealDesc()%></td>
+	   <td><%=taskItemList.get(j).getDealStat()==null?"":taskItemList.get(j).getDealStat()%></td>
 	   </tr>      
    <%
    }
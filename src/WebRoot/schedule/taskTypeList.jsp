@@ -14,7 +14,7 @@
 <html>
 <head>
 <title>
-Scheduleȹ
+Schedule调度管理
 </title>
 <STYLE type=text/css>
 
@@ -28,30 +28,30 @@ table{border-collapse:collapse}
 <table id="list" border="1" >
 <thead>
      <tr>
-     	<th></th>
+     	<th>序号</th>
      	<%
      		if ("true".equals(isManager)) {
      	%>
-     	<th ></th>
+     	<th >管理</th>
 		<%
 			}
 		%>
-     	<th></th>
-     	<th>Bean</th>
-     	<th>״̬</th>
-     	<th>Ƶ()</th>
-     	<th>()</th>
-     	<th>߳</th>
-     	<th>ÿλȡ</th>
-     	<th>ÿִ</th>
-     	<th>ûʱʱ()</th>
-     	<th>ģʽ</th>
-     	<th>ÿδݺʱ()</th>
-    	<th>Ϣʱ(Сʱ)</th>
-     	<th>ִпʼʱ</th>
-     	<th>ִнʱ</th>
-     	<th>Զ</th>
-     	<th></th>
+     	<th>任务类型</th>
+     	<th>任务处理Bean</th>
+     	<th>任务状态</th>
+     	<th>心跳频率(秒)</th>
+     	<th>死亡间隔(秒)</th>
+     	<th>线程数</th>
+     	<th>每次获取数据量</th>
+     	<th>每次执行数量</th>
+     	<th>没有数据时休眠时长(秒)</th>
+     	<th>处理模式</th>
+     	<th>每次处理完数据后休眠时间(秒)</th>
+    	<th>清除处理域信息时长(小时)</th>
+     	<th>执行开始时间</th>
+     	<th>执行结束时间</th>
+     	<th>自定义参数</th>
+     	<th>任务项</th>
      </tr>
      </thead>
      <tbody>
@@ -60,12 +60,12 @@ table{border-collapse:collapse}
 	String taskItems = "";
 	for (int i = 0; i < taskTypes.size(); i++) {
 		String pauseOrResumeAction = "pauseTaskType";
-		String pauseOrResumeActionName = "ͣ";
-		String stsName = "";
+		String pauseOrResumeActionName = "暂停";
+		String stsName = "正常";
 		if (ScheduleTaskType.STS_PAUSE.equals(taskTypes.get(i).getSts())) {
 			pauseOrResumeAction = "resumeTaskType";
-			pauseOrResumeActionName = "ָ";
-			stsName = "ͣ";
+			pauseOrResumeActionName = "恢复";
+			stsName = "暂停";
 		}
 		taskItems = "";
 		String[] strs = taskTypes.get(i).getTaskItems() ;
@@ -84,9 +84,9 @@ table{border-collapse:collapse}
      		if ("true".equals(isManager)) {
      	%>
      	<td width="120" align="center">
-     		<a target="taskDetail" href="taskTypeEdit.jsp?taskType=<%=taskTypes.get(i).getBaseTaskType()%>"  style="color:#0000CD">༭</a>
-     		<a target="taskDetail" href="taskTypeDeal.jsp?action=clearTaskType&taskType=<%=taskTypes.get(i).getBaseTaskType()%>"  style="color:#0000CD"></a>
-     		<a target="taskDetail" onclick="deleteTaskType('<%=taskTypes.get(i).getBaseTaskType()%>');" href="taskTypeDeal.jsp?action=deleteTaskType&taskType=<%=taskTypes.get(i).getBaseTaskType()%>" style="color:#0000CD">ɾ</a>
+     		<a target="taskDetail" href="taskTypeEdit.jsp?taskType=<%=taskTypes.get(i).getBaseTaskType()%>"  style="color:#0000CD">编辑</a>
+     		<a target="taskDetail" href="taskTypeDeal.jsp?action=clearTaskType&taskType=<%=taskTypes.get(i).getBaseTaskType()%>"  style="color:#0000CD">清理</a>
+     		<a target="taskDetail" onclick="deleteTaskType('<%=taskTypes.get(i).getBaseTaskType()%>');" href="taskTypeDeal.jsp?action=deleteTaskType&taskType=<%=taskTypes.get(i).getBaseTaskType()%>" style="color:#0000CD">删除</a>
      		<a target="taskDetail" href="taskTypeDeal.jsp?action=<%=pauseOrResumeAction%>&taskType=<%=taskTypes.get(i).getBaseTaskType()%>" style="color:#0000CD"><%=pauseOrResumeActionName%></a>
      	</td>
 		<%
@@ -124,11 +124,11 @@ table{border-collapse:collapse}
 <%
 	if ("true".equals(isManager)) {
 %>
-<a target="taskDetail" href="taskTypeEdit.jsp?taskType=-1"  style="color:#0000CD">...</a>
+<a target="taskDetail" href="taskTypeEdit.jsp?taskType=-1"  style="color:#0000CD">创建新任务...</a>
 <%
 	}
 %>
-Ϣ<br/>
+运行期信息：<br/>
 <iframe  name="taskDetail"  height="80%" width="100%"></iframe>
 </body>
 </html>
@@ -148,7 +148,7 @@ if(list.rows.length >1){
 }
 
 function deleteTaskType(baseTaskType){
-	//return window.confirm("ȷеĵѾֹͣᵼµ쳣");
+	//return window.confirm("请确认所有的调度器都已经停止，否则会导致调度器异常！");
 		
 }
 </script>
\ No newline at end of file
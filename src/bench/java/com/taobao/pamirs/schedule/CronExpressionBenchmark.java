@@ -0,0 +1,130 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * cron表达式的解析和计算开销：computerStart对每个任务类型解析permitRunStartTime/permitRunEndTime并计算第一次时间，
+ * 暂停、恢复时计算下一次时间
+ * 1、expression为语料中的名称，覆盖常见的整点、工作日、L、W、#、nL、n-mL、年份等写法
+ * 2、parse为new CronExpression，compile为缓存命中的ScheduleCronExpression.compile；
+ *    nextValidTime、nextInvalidTime、isSatisfiedBy为CronExpression的方法，nextValidTimeCompiled为编译后的计算
+ * 3、起始时间为一年内的RANDOM_TIME_NUMBER个随机时间，isSatisfiedBy使用的时间一半是执行时间、一半是执行时间加1秒
+ * 4、加上 -prof gc 查看分配速率，gc.alloc.rate.norm为每次调用分配的字节数
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="CronExpressionBenchmark -prof gc -p expression=LAST_WORKDAY,NTH_WEEKDAY"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CronExpressionBenchmark {
+	static final int RANDOM_TIME_NUMBER = 1024;
+
+	/**
+	 * 表达式语料：名称，表达式
+	 */
+	static final String[][] CORPUS = {
+		{ "EVERY_5_SECONDS", "0/5 * * * * ?" },
+		{ "DAILY", "0 0 2 * * ?" },
+		{ "WORKDAY_HALF_HOUR", "0 0/30 8-18 ? * MON-FRI" },
+		{ "NIGHT_RANGE", "0 0 22-2 * * ?" },
+		{ "LAST_DAY", "0 0 23 L * ?" },
+		{ "LAST_WORKDAY", "0 0 9 LW * ?" },
+		{ "NEAREST_WEEKDAY", "0 0 9 15W * ?" },
+		{ "BEFORE_LAST_DAY", "0 0 9 3L * ?" },
+		{ "LAST_DAYS_RANGE", "0 0 9 10-3L * ?" },
+		{ "LAST_FRIDAY", "0 0 18 ? * 6L" },
+		{ "NTH_WEEKDAY", "0 0 9 ? * MON#2" },
+		{ "QUARTERLY", "0 0 0 1 1,4,7,10 ?" },
+		{ "YEARS", "0 30 4 ? * SUN 2028-2031" },
+	};
+
+	@Param({ "EVERY_5_SECONDS", "DAILY", "WORKDAY_HALF_HOUR", "NIGHT_RANGE", "LAST_DAY", "LAST_WORKDAY",
+			"NEAREST_WEEKDAY", "BEFORE_LAST_DAY", "LAST_DAYS_RANGE", "LAST_FRIDAY", "NTH_WEEKDAY", "QUARTERLY", "YEARS" })
+	public String expression;
+
+	private String cronString;
+	private CronExpression cronExpression;
+	private ScheduleCronExpression compiled;
+	private Date[] times;
+	private long[] timeMillis;
+	private Date[] satisfiedTimes;
+	private int index;
+
+	@Setup
+	public void setup() throws Exception {
+		for (String[] item : CORPUS) {
+			if (item[0].equals(this.expression)) {
+				this.cronString = item[1];
+			}
+		}
+		if (this.cronString == null) {
+			throw new Exception("表达式语料中没有：" + this.expression);
+		}
+		this.cronExpression = new CronExpression(this.cronString);
+		this.compiled = ScheduleCronExpression.compile(this.cronString);
+		Random random = new Random(20161018L);
+		long begin = 1451606400000L; // 2016-01-01
+		this.times = new Date[RANDOM_TIME_NUMBER];
+		this.timeMillis = new long[RANDOM_TIME_NUMBER];
+		this.satisfiedTimes = new Date[RANDOM_TIME_NUMBER];
+		for (int i = 0; i < RANDOM_TIME_NUMBER; i++) {
+			long time = (begin + (long) (random.nextDouble() * 365 * 24 * 3600 * 1000L)) / 1000 * 1000;
+			this.times[i] = new Date(time);
+			this.timeMillis[i] = time;
+			long fireTime = this.compiled.getNextValidTimeAfter(time);
+			this.satisfiedTimes[i] = new Date(i % 2 == 0 ? fireTime : fireTime + 1000);
+		}
+	}
+
+	private int nextIndex() {
+		this.index = (this.index + 1) & (RANDOM_TIME_NUMBER - 1);
+		return this.index;
+	}
+
+	@Benchmark
+	public CronExpression parse() throws Exception {
+		return new CronExpression(this.cronString);
+	}
+
+	@Benchmark
+	public ScheduleCronExpression compile() throws Exception {
+		return ScheduleCronExpression.compile(this.cronString);
+	}
+
+	@Benchmark
+	public Date nextValidTime() {
+		return this.cronExpression.getNextValidTimeAfter(this.times[this.nextIndex()]);
+	}
+
+	@Benchmark
+	public long nextValidTimeCompiled() {
+		return this.compiled.getNextValidTimeAfter(this.timeMillis[this.nextIndex()]);
+	}
+
+	@Benchmark
+	public Date nextInvalidTime() {
+		return this.cronExpression.getNextInvalidTimeAfter(this.times[this.nextIndex()]);
+	}
+
+	@Benchmark
+	public boolean isSatisfiedBy() {
+		return this.cronExpression.isSatisfiedBy(this.satisfiedTimes[this.nextIndex()]);
+	}
+}
@@ -0,0 +1,248 @@
+package com.taobao.pamirs.schedule;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 处理器的调度吞吐量：用内存中的数据驱动 TBScheduleProcessorSleep、TBScheduleProcessorNotSleep，
+ * 对比队列、锁的修改前后每秒处理的任务数(throughput)和每个任务的平均耗时(taskTime)
+ * 1、selectTasks每次生成fetchDataNumber个新任务，数据没有尽头，处理线程一直处于稳定状态；
+ *    executeNumber为1时使用IScheduleTaskDealSingle，否则使用IScheduleTaskDealMulti
+ * 2、TBScheduleManager和IScheduleDataManager使用桩实现，不需要ZooKeeper和数据库
+ * 3、每次调用等待处理线程再完成TASK_NUMBER个任务；executeCost为每个任务在execute中消耗的CPU，
+ *    0表示只有调度开销，threadNumber=1时taskTime就是单个任务的调度开销
+ * 4、SLEEP模式每批数据处理完后最后一个线程固定休眠100毫秒再取数，吞吐量受fetchDataNumber限制；processorType可以加上PIPELINE
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="ScheduleProcessorBenchmark -p processorType=NOTSLEEP -p threadNumber=16"
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScheduleProcessorBenchmark {
+	static final int TASK_NUMBER = 10000;
+
+	@Param({ "SLEEP", "NOTSLEEP" })
+	public String processorType;
+
+	@Param({ "1", "4", "16" })
+	public int threadNumber;
+
+	@Param({ "500", "5000" })
+	public int fetchDataNumber;
+
+	@Param({ "1", "10" })
+	public int executeNumber;
+
+	@Param({ "0" })
+	public int executeCost;
+
+	private StubScheduleManager manager;
+	/**
+	 * 已经处理完的任务数
+	 */
+	private final AtomicLong executedNumber = new AtomicLong(0);
+	/**
+	 * 当前调用等待的任务数，处理到这个数量时唤醒waiter
+	 */
+	private volatile long target = Long.MAX_VALUE;
+	private volatile Thread waiter;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		ScheduleTaskType taskType = new ScheduleTaskType();
+		taskType.setBaseTaskType("benchmark");
+		taskType.setProcessorType(this.processorType);
+		taskType.setThreadNumber(this.threadNumber);
+		taskType.setFetchDataNumber(this.fetchDataNumber);
+		taskType.setExecuteNumber(this.executeNumber);
+		taskType.setHeartBeatRate(5000);
+		taskType.setJudgeDeadInterval(60000);
+		taskType.setSleepTimeNoData(10);
+		IScheduleTaskDeal<Long> taskDealBean = this.executeNumber == 1 ? new SingleDeal(this) : new MultiDeal(this);
+		this.manager = new StubScheduleManager(new TBScheduleManagerFactory(), stubDataManager(taskType), taskDealBean);
+		this.manager.resume("benchmark");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		this.manager.stopScheduleServer();
+		long deadline = System.currentTimeMillis() + 10000;
+		while (this.manager.getProcessor() != null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@OperationsPerInvocation(TASK_NUMBER)
+	public long throughput() {
+		return this.awaitTasks();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@OperationsPerInvocation(TASK_NUMBER)
+	public long taskTime() {
+		return this.awaitTasks();
+	}
+
+	/**
+	 * 等待处理线程再完成TASK_NUMBER个任务。错过唤醒时最多多等1毫秒
+	 */
+	private long awaitTasks() {
+		this.waiter = Thread.currentThread();
+		long aim = this.executedNumber.get() + TASK_NUMBER;
+		this.target = aim;
+		long current;
+		while ((current = this.executedNumber.get()) < aim) {
+			LockSupport.parkNanos(this, 1000000);
+		}
+		return current;
+	}
+
+	void addExecuted(int num) {
+		if (this.executeCost > 0) {
+			Blackhole.consumeCPU((long) this.executeCost * num);
+		}
+		long current = this.executedNumber.addAndGet(num);
+		long aim = this.target;
+		if (current >= aim && current - num < aim) {
+			LockSupport.unpark(this.waiter);
+		}
+	}
+
+	/**
+	 * 返回任务类型定义，心跳总是成功（否则会清除Manager的任务项），其它方法返回默认值
+	 */
+	static IScheduleDataManager stubDataManager(final ScheduleTaskType taskType) {
+		return (IScheduleDataManager) Proxy.newProxyInstance(ScheduleProcessorBenchmark.class.getClassLoader(),
+				new Class<?>[] { IScheduleDataManager.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if ("loadTaskTypeBaseInfo".equals(method.getName())) {
+							return taskType;
+						} else if ("refreshScheduleServer".equals(method.getName())) {
+							return Boolean.TRUE;
+						}
+						Class<?> returnType = method.getReturnType();
+						if (returnType == boolean.class) {
+							return Boolean.FALSE;
+						} else if (returnType == int.class) {
+							return Integer.valueOf(0);
+						} else if (returnType == long.class) {
+							return Long.valueOf(0);
+						} else if (List.class.isAssignableFrom(returnType)) {
+							return new ArrayList<Object>();
+						}
+						return null;
+					}
+				});
+	}
+
+	/**
+	 * 固定分配一个任务项的Manager
+	 */
+	static class StubScheduleManager extends TBScheduleManager {
+		StubScheduleManager(TBScheduleManagerFactory aFactory, IScheduleDataManager aScheduleCenter,
+				IScheduleTaskDeal<?> aTaskDealBean) throws Exception {
+			super(aFactory, "benchmark", OWN_SIGN_BASE, 0, "", aScheduleCenter, aTaskDealBean);
+			TaskItemDefine taskItem = new TaskItemDefine();
+			taskItem.setTaskItemId("0");
+			this.currentTaskItemList.add(taskItem);
+		}
+
+		public void initial() {
+		}
+
+		public void refreshScheduleServerInfo() {
+		}
+
+		public void assignScheduleTask() {
+		}
+
+		public List<TaskItemDefine> getCurrentScheduleTaskItemList() {
+			return this.currentTaskItemList;
+		}
+
+		public int getTaskItemCount() {
+			return 1;
+		}
+	}
+
+	/**
+	 * 每次生成一批新的任务，任务ID递增，NOTSLEEP判重时不会误判
+	 */
+	static abstract class AbstractDeal implements IScheduleTaskDeal<Long>, Comparator<Long> {
+		private final AtomicLong sequence = new AtomicLong(0);
+		final ScheduleProcessorBenchmark benchmark;
+
+		AbstractDeal(ScheduleProcessorBenchmark aBenchmark) {
+			this.benchmark = aBenchmark;
+		}
+
+		public List<Long> selectTasks(String taskParameter, String ownSign, int taskItemNum,
+				List<TaskItemDefine> taskItemList, int eachFetchDataNum) throws Exception {
+			long start = this.sequence.getAndAdd(eachFetchDataNum);
+			List<Long> result = new ArrayList<Long>(eachFetchDataNum);
+			for (int i = 0; i < eachFetchDataNum; i++) {
+				result.add(Long.valueOf(start + i));
+			}
+			return result;
+		}
+
+		public Comparator<Long> getComparator() {
+			return this;
+		}
+
+		public int compare(Long o1, Long o2) {
+			return o1.compareTo(o2);
+		}
+	}
+
+	static class SingleDeal extends AbstractDeal implements IScheduleTaskDealSingle<Long> {
+		SingleDeal(ScheduleProcessorBenchmark aBenchmark) {
+			super(aBenchmark);
+		}
+
+		public boolean execute(Long task, String ownSign) throws Exception {
+			this.benchmark.addExecuted(1);
+			return true;
+		}
+	}
+
+	static class MultiDeal extends AbstractDeal implements IScheduleTaskDealMulti<Long> {
+		MultiDeal(ScheduleProcessorBenchmark aBenchmark) {
+			super(aBenchmark);
+		}
+
+		public boolean execute(Object[] tasks, String ownSign) throws Exception {
+			this.benchmark.addExecuted(tasks.length);
+			return true;
+		}
+	}
+}
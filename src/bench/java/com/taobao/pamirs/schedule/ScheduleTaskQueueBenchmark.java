@@ -0,0 +1,104 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 处理器任务队列的取任务开销对比：
+ * 原有的 synchronizedList + synchronized remove(0) 与 ScheduleTaskRingQueue
+ * 队列取空后由一个线程重新装入一批数据，模拟处理器的 loadScheduleData
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="ScheduleTaskQueueBenchmark -t 32"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ScheduleTaskQueueBenchmark {
+
+	@Param({ "500", "5000" })
+	public int fetchDataNumber;
+
+	@Param({ "1", "10" })
+	public int executeNumber;
+
+	private List<Long> batch;
+	private List<Long> taskList;
+	private ScheduleTaskRingQueue<Long> ringQueue;
+	private final Object lockLoadData = new Object();
+
+	@Setup
+	public void setup() {
+		this.batch = new ArrayList<Long>(this.fetchDataNumber);
+		for (long i = 0; i < this.fetchDataNumber; i++) {
+			this.batch.add(Long.valueOf(i));
+		}
+		this.taskList = Collections.synchronizedList(new ArrayList<Long>());
+		this.taskList.addAll(this.batch);
+		this.ringQueue = new ScheduleTaskRingQueue<Long>(this.fetchDataNumber * 2);
+		this.ringQueue.offerAll(this.batch);
+	}
+
+	@Benchmark
+	public Object synchronizedList() {
+		Object result = this.executeNumber == 1 ? this.getFromList() : this.getFromListMulti();
+		if (result == null) {
+			synchronized (this.lockLoadData) {
+				if (this.taskList.size() == 0) {
+					this.taskList.addAll(this.batch);
+				}
+			}
+		}
+		return result;
+	}
+
+	@Benchmark
+	public Object ringQueue() {
+		Object result = this.executeNumber == 1 ? this.ringQueue.poll() : this.ringQueue.poll(this.executeNumber);
+		if (result == null) {
+			synchronized (this.lockLoadData) {
+				if (this.ringQueue.isEmpty()) {
+					this.ringQueue.offerAll(this.batch);
+				}
+			}
+		}
+		return result;
+	}
+
+	private synchronized Object getFromList() {
+		if (this.taskList.size() > 0) {
+			return this.taskList.remove(0);
+		}
+		return null;
+	}
+
+	private synchronized Object[] getFromListMulti() {
+		if (this.taskList.size() == 0) {
+			return null;
+		}
+		int size = this.taskList.size() > this.executeNumber ? this.executeNumber : this.taskList.size();
+		Object[] result = new Object[size];
+		for (int i = 0; i < size; i++) {
+			result[i] = this.taskList.remove(0);
+		}
+		return result;
+	}
+}
@@ -22,7 +22,7 @@ public abstract class AbstractDynamicMBean implements DynamicMBean {
 			throws AttributeNotFoundException, MBeanException,
 			ReflectionException {
 		if (attrName == null) {
-			throw new AttributeNotFoundException("ƲΪ");
+			throw new AttributeNotFoundException("属性名称不能为空");
 		}
 		try {
 			return PropertyUtils.getNestedProperty(this, attrName);
@@ -35,7 +35,7 @@ public abstract class AbstractDynamicMBean implements DynamicMBean {
 			throws AttributeNotFoundException, InvalidAttributeValueException,
 			MBeanException, ReflectionException {
 		if (attribute == null) {
-			throw new AttributeNotFoundException("ϢΪ");
+			throw new AttributeNotFoundException("属性名称信息不能为空");
 		}
 		try {
 			PropertyUtils.setNestedProperty(this, attribute.getName(),
@@ -48,7 +48,7 @@ public abstract class AbstractDynamicMBean implements DynamicMBean {
 
 	public AttributeList getAttributes(String[] stringArray) {
 		if (stringArray == null) {
-			throw new RuntimeException("ϢΪ");
+			throw new RuntimeException("属性名称信息不能为空");
 		}
 		AttributeList resultList = new AttributeList();
 
@@ -88,8 +88,8 @@ public abstract class AbstractDynamicMBean implements DynamicMBean {
 	public Object invoke(String operationName, Object[] parameterArray,
 			String[] signature) throws MBeanException, ReflectionException {
 		if (operationName == null) {
-			throw new MBeanException(new IllegalArgumentException("Ϊ"),
-					"Ϊ");
+			throw new MBeanException(new IllegalArgumentException("方法不能为空"),
+					"方法不能为空");
 		}
 		try {
 			return MethodUtils
@@ -1,28 +1,29 @@
 package com.taobao.pamirs.schedule;
 
 import java.util.List;
+import java.util.Set;
 
 /**
- * Ŀͻ˽ӿڣлݿʵ֣лConfigServerʵ
+ * 调度配置中心客户端接口，可以有基于数据库的实现，可以有基于ConfigServer的实现
  * 
  * @author xuannan
  * 
  */
 public interface IScheduleDataManager{
 	/**
-	 * װصǰserverҪݶУ
+	 * 重新装载当前server需要处理的数据队列，
 	 * 
 	 * @param taskType
-	 *            
+	 *            任务类型
 	 * @param uuid
-	 *            ǰserverUUID
+	 *            当前server的UUID
 	 * @return
 	 * @throws Exception
 	 */
 	public List<TaskItemDefine> reloadDealTaskItem(String taskType,String uuid) throws Exception;
 
 	/**
-	 * װеϢ
+	 * 装载所有的任务队列信息
 	 * @param taskType
 	 * @return
 	 * @throws Exception
@@ -30,7 +31,7 @@ public interface IScheduleDataManager{
 	public List<ScheduleTaskItem> loadAllTaskItem(String taskType) throws Exception;
 	
 	/**
-	 * ͷԼѳ֣Ķ
+	 * 释放自己把持，别人申请的队列
 	 * 
 	 * @param taskType
 	 * @param uuid
@@ -40,7 +41,18 @@ public interface IScheduleDataManager{
 	public void releaseDealTaskItem(String taskType,String uuid) throws Exception;
 
 	/**
-	 * ȡһ͵Ĵ
+	 * 释放自己把持，别人申请的队列，还有任务在处理中的队列暂不释放
+	 * 
+	 * @param taskType
+	 * @param uuid
+	 * @param dealingTaskItems 还有任务在处理中的队列，为null时全部释放
+	 * @return 别人申请、但因为还有任务在处理中暂不释放的队列
+	 * @throws Exception
+	 */
+	public List<String> releaseDealTaskItem(String taskType,String uuid,Set<String> dealingTaskItems) throws Exception;
+
+	/**
+	 * 获取一共任务类型的处理队列数量
 	 * 
 	 * @param taskType
 	 * @return
@@ -49,7 +61,7 @@ public interface IScheduleDataManager{
 	public int queryTaskItemCount(String taskType) throws Exception;
 
 	/**
-	 * װϢ
+	 * 装载任务类型相关信息
 	 * 
 	 * @param taskType
 	 * @throws Exception
@@ -57,7 +69,7 @@ public interface IScheduleDataManager{
 	public ScheduleTaskType loadTaskTypeBaseInfo(String taskType) throws Exception;
 	
 	/**
-	 * ѾڵĵȷϢ
+	 * 清除已经过期的调度服务器信息
 	 * 
 	 * @param
 	 * @throws Exception
@@ -65,7 +77,7 @@ public interface IScheduleDataManager{
 	public int clearExpireScheduleServer(String taskType,long expireTime) throws Exception;
 
 	/**
-	 * ϢѾڵʱ
+	 * 清除任务信息，服务器已经不存在的时候
 	 * 
 	 * @param
 	 * @throws Exception
@@ -73,7 +85,7 @@ public interface IScheduleDataManager{
 	public int clearTaskItem(String taskType, List<String> serverList) throws Exception;
 
 	/**
-	 * ȡеЧϢ
+	 * 获取所有的有效服务器信息
 	 * 
 	 * @param taskInfo
 	 * @return
@@ -82,7 +94,7 @@ public interface IScheduleDataManager{
 	public List<ScheduleServer> selectAllValidScheduleServer(String taskType) throws Exception;
 	public List<String> loadScheduleServerNames(String taskType)throws Exception;
 	/**
-	 * ·Item
+	 * 重新分配任务Item
 	 * 
 	 * @param taskType
 	 * @param serverList
@@ -91,7 +103,7 @@ public interface IScheduleDataManager{
 	public void assignTaskItem(String taskType,String currentUuid, List<String> serverList) throws Exception;
 
 	/**
-	 * Ϣ
+	 * 发送心跳信息
 	 * 
 	 * @param server
 	 * @throws Exception
@@ -99,7 +111,7 @@ public interface IScheduleDataManager{
 	public boolean refreshScheduleServer(ScheduleServer server) throws Exception;
 
 	/**
-	 * ע
+	 * 注册服务器
 	 * 
 	 * @param server
 	 * @throws Exception
@@ -107,16 +119,16 @@ public interface IScheduleDataManager{
 	public void registerScheduleServer(ScheduleServer server) throws Exception;
 
 	/**
-	 * ע
+	 * 注销服务器
 	 * @param serverUUID
 	 * @throws Exception
 	 */
 	public void unRegisterScheduleServer(String taskType,String serverUUID) throws Exception;
 	/**
-	 * ѾڵOWN_SIGNԶɵ
-	 * @param  
-	 * @param serverUUID 
-	 * @param expireDateInternal ʱ䣬Ϊλ
+	 * 清除已经过期的OWN_SIGN的自动生成的数据
+	 * @param  任务类型
+	 * @param serverUUID 服务器
+	 * @param expireDateInternal 过期时间，以天为单位
 	 * @throws Exception
 	 */
 	public void clearExpireTaskTypeRunningInfo(String baseTaskType,String serverUUID,double expireDateInternal)throws Exception;
@@ -129,13 +141,13 @@ public interface IScheduleDataManager{
 	public List<ScheduleTaskType> getAllTaskTypeBaseInfo()throws Exception ;
 	
 	/**
-	 * һ͵Ϣ
+	 * 清除一个任务类型的运行期信息
 	 * @param baseTaskType
 	 * @throws Exception
 	 */
 	public void clearTaskType(String baseTaskType) throws Exception;
 	/**
-	 *  һµ
+	 *  创建一个新的任务类型
 	 * @param baseTaskType
 	 * @throws Exception
 	 */
@@ -144,14 +156,14 @@ public interface IScheduleDataManager{
     public List<ScheduleTaskTypeRunningInfo> getAllTaskTypeRunningInfo(String baseTaskType) throws Exception;
     
     /**
-     * ɾһ
+     * 删除一个任务类型
      * @param baseTaskType
      * @throws Exception
      */
     public void deleteTaskType(String baseTaskType) throws Exception;
 	
 	/**
-	 * ѯǰȷ
+	 * 根据条件查询当前调度服务
 	 * @param baseTaskType
 	 * @param ownSign
 	 * @param ip
@@ -163,7 +175,7 @@ public interface IScheduleDataManager{
 			throws Exception;
 
 	/**
-	 * ѯȷʷ¼
+	 * 查询调度服务的历史记录
 	 * @param baseTaskType
 	 * @param ownSign
 	 * @param ip
@@ -177,28 +189,36 @@ public interface IScheduleDataManager{
 	public List<ScheduleServer> selectScheduleServerByManagerFactoryUUID(String factoryUUID) throws Exception;
 
 	/**
-	 * עе CurrentSeverRequestServer
+	 * 创建任务项。注意其中的 CurrentSever和RequestServer不会起作用
 	 * @param taskItems
 	 * @throws Exception
 	 */
 	public void createScheduleTaskItem(ScheduleTaskItem[] taskItems) throws Exception;
 	
 	/**
-	 * ״̬ʹϢ
+	 * 更新任务的状态和处理信息
 	 * @param taskType
 	 * @param sts
 	 * @param message
 	 */
 	public void updateScheduleTaskItemStatus(String taskType,String taskItem,ScheduleTaskItem.TaskItemSts sts,String message)throws Exception;
+	/**
+	 * 更新任务项的处理统计，任务项不存在时忽略
+	 * @param taskType
+	 * @param taskItem
+	 * @param statistics
+	 * @throws Exception
+	 */
+	public void updateScheduleTaskItemStatistics(String taskType,String taskItem,String statistics)throws Exception;
 
 	/**
-	 * ɾ
+	 * 删除任务项
 	 * @param taskType
 	 * @param taskItem
 	 */
 	public void deleteScheduleTaskItem(String taskType,String taskItem) throws Exception;
 	/**
-	 * ʼȵϢ;̬Ϣ
+	 * 初始化任务调度的域信息和静态任务信息
 	 * @param baseTaskType
 	 * @param ownSign
 	 * @param serverUUID
@@ -207,7 +227,7 @@ public interface IScheduleDataManager{
 	public void initialRunningInfo4Static(String baseTaskType, String ownSign,String uuid)throws Exception;
 	public void initialRunningInfo4Dynamic(String baseTaskType, String ownSign)throws Exception;
 	/**
-	 * ϢǷʼɹ
+	 * 运行期信息是否初始化成功
 	 * @param baseTaskType
 	 * @param ownSign
 	 * @param serverUUID
@@ -220,5 +240,19 @@ public interface IScheduleDataManager{
 	
 	public long updateReloadTaskItemFlag(String taskType) throws Exception;
 	public long getReloadTaskItemFlag(String taskType) throws Exception;
+	/**
+	 * 发出唤醒信号，处理此任务类型的所有调度服务器在下次心跳时结束没有数据的休眠
+	 * @param taskType
+	 * @return 信号的版本号
+	 * @throws Exception
+	 */
+	public long updateWakeUpSignal(String taskType) throws Exception;
+	/**
+	 * 唤醒信号的版本号，没有发出过信号时返回-1
+	 * @param taskType
+	 * @return
+	 * @throws Exception
+	 */
+	public long getWakeUpSignal(String taskType) throws Exception;
 	 
 }
@@ -1,25 +1,59 @@
 package com.taobao.pamirs.schedule;
 
+import java.util.Set;
+
 public interface IScheduleProcessor {
 	 /**
-	  * ǷѾڴеݣڽжлʱ
-	  * 뱣֤ڴݴ
+	  * 是否已经处理完内存中所有的数据，在进行队列切换的时候，
+	  * 必须保证所有内存的数据处理完毕
 	  * @return
 	  */
 	 public boolean isDealFinishAllData();
 	 /**
-	  * жϽǷ״̬
+	  * 还有任务没有处理完（队列中、处理中和等待重试）的任务项，任务项重新分配时，
+	  * 被申请的任务项在自己的任务处理完后就可以释放，不需要等待其它任务项。
+	  * 有任务没有处理完、又无法确定任务所属的任务项时返回null
+	  * @return
+	  */
+	 public Set<String> getDealingTaskItems();
+	 /**
+	  * 判断进程是否处于休眠状态
 	  * @return
 	  */
 	 public boolean isSleeping();
 	 /**
-	  * ֹͣ
+	  * 停止任务处理器
 	  * @throws Exception
 	  */
 	 public void stopSchedule() throws Exception;
 	 
 	 /**
-	  * Ѿȡڴеݣ߳ʧܵʱãظ
+	  * 清除所有已经取到内存中的数据，在心跳线程失败的时候调用，避免数据重复
 	  */
 	 public void clearAllHasFetchData();
+
+	 /**
+	  * 当前处理线程数量
+	  * @return
+	  */
+	 public int getThreadNumber();
+	 /**
+	  * 运行期调整处理线程数量
+	  * @param threadNumber
+	  */
+	 public void setThreadNumber(int threadNumber);
+	 /**
+	  * 当前的处理线程，用于监控线程状态
+	  * @return
+	  */
+	 public Thread[] getThreads();
+	 /**
+	  * 内存中等待处理的任务数量
+	  * @return
+	  */
+	 public int getTaskQueueSize();
+	 /**
+	  * 结束没有数据时的休眠，立即重新取数
+	  */
+	 public void wakeUp();
 }
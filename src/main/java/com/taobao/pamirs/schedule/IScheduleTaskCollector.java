@@ -0,0 +1,16 @@
+package com.taobao.pamirs.schedule;
+
+/**
+ * 流式获取任务时，接收处理Bean读取到的任务
+ *
+ * @param <T>任务类型
+ */
+public interface IScheduleTaskCollector<T> {
+	/**
+	 * 放入一条读取到的任务，缓冲区满时等待处理线程取走任务
+	 * @param task
+	 * @return 是否可以继续读取，返回false时处理Bean应停止读取并关闭游标，本条任务不会被处理
+	 * @throws InterruptedException
+	 */
+	public boolean collect(T task) throws InterruptedException;
+}
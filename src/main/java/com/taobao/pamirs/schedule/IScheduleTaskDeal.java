@@ -4,27 +4,28 @@ import java.util.Comparator;
 import java.util.List;
 
 /**
- * Ļӿ
+ * 调度器对外的基础接口
  * @author xuannan
  *
- * @param <T> 
+ * @param <T> 任务类型
  */
 public interface IScheduleTaskDeal<T> {
 
 /**
- * ѯǰȷɴ	
- * @param taskParameter Զ
- * @param ownSign ǰ 
- * @param taskItemNum ǰ͵
- * @param taskItemList ǰȷ䵽Ŀɴ
- * @param eachFetchDataNum ÿλȡݵ
+ * 根据条件，查询当前调度服务器可处理的任务	
+ * @param taskParameter 任务的自定义参数
+ * @param ownSign 当前环境名称 
+ * @param taskItemNum 当前任务类型的任务队列数量
+ * @param taskItemList 当前调度服务器，分配到的可处理队列
+ * @param eachFetchDataNum 每次获取数据的数量
  * @return
  * @throws Exception
  */
 public List<T> selectTasks(String taskParameter,String ownSign,int taskItemNum,List<TaskItemDefine> taskItemList,int eachFetchDataNum) throws Exception;
 
 /**
- * ȡıȽ,ҪNotSleepģʽҪõ
+ * 获取任务的比较器,主要在NotSleep模式下需要用到
+ * 如果同时实现了IScheduleTaskKey接口，则按任务主键判重，不再使用比较器
  * @return
  */
 public Comparator<T> getComparator();
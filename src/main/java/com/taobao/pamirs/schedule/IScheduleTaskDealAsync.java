@@ -0,0 +1,11 @@
+package com.taobao.pamirs.schedule;
+
+/**
+ * 异步处理任务的接口，execute只负责发起处理，处理完成后通过回调通知调度器。
+ * 同时处理中的任务由ScheduleTaskType.maxInFlightNumber限制，而不是线程数
+ *
+ * @param <T>任务类型
+ */
+public interface IScheduleTaskDealAsync<T> extends IScheduleTaskDeal<T> {
+
+}
@@ -0,0 +1,17 @@
+package com.taobao.pamirs.schedule;
+
+/**
+ * 异步批处理任务的接口
+ *
+ * @param <T>任务类型
+ */
+public interface IScheduleTaskDealAsyncMulti<T> extends IScheduleTaskDealAsync<T> {
+	/**
+	 * 发起一批任务的处理，处理完成后调用callback。因为泛型不支持new 数组，只能传递OBJECT[]
+	 * @param tasks 任务数组
+	 * @param ownSign 当前环境名称
+	 * @param callback 处理完成的回调
+	 * @throws Exception 发起处理失败，按处理失败计算，不再调用callback
+	 */
+	public void execute(Object[] tasks, String ownSign, IScheduleTaskDealCallback callback) throws Exception;
+}
@@ -0,0 +1,17 @@
+package com.taobao.pamirs.schedule;
+
+/**
+ * 异步处理单个任务的接口
+ *
+ * @param <T>任务类型
+ */
+public interface IScheduleTaskDealAsyncSingle<T> extends IScheduleTaskDealAsync<T> {
+	/**
+	 * 发起单个任务的处理，处理完成后调用callback
+	 * @param task
+	 * @param ownSign 当前环境名称
+	 * @param callback 处理完成的回调
+	 * @throws Exception 发起处理失败，按处理失败计算，不再调用callback
+	 */
+	public void execute(T task, String ownSign, IScheduleTaskDealCallback callback) throws Exception;
+}
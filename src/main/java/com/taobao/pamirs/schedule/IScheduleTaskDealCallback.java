@@ -0,0 +1,19 @@
+package com.taobao.pamirs.schedule;
+
+/**
+ * 异步任务处理完成后的回调，complete和fail只需要调用其中一个，并且只能调用一次
+ *
+ */
+public interface IScheduleTaskDealCallback {
+	/**
+	 * 任务处理完成
+	 * @param isSuccess 是否处理成功
+	 */
+	public void complete(boolean isSuccess);
+
+	/**
+	 * 任务处理出现异常，按处理失败计算
+	 * @param ex
+	 */
+	public void fail(Throwable ex);
+}
@@ -1,17 +1,17 @@
 package com.taobao.pamirs.schedule;
 
 /**
- * ӿ
+ * 可批处理的任务接口
  * @author xuannan
  *
- * @param <T>
+ * @param <T>任务类型
  */
 public interface IScheduleTaskDealMulti<T>  extends IScheduleTaskDeal<T> {
  
 /**
- * 	ִи顣ΪͲ֧new 飬ֻܴOBJECT[]
- * @param tasks 
- * @param ownSign ǰ
+ * 	执行给定的任务数组。因为泛型不支持new 数组，只能传递OBJECT[]
+ * @param tasks 任务数组
+ * @param ownSign 当前环境名称
  * @return
  * @throws Exception
  */
@@ -0,0 +1,21 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.BitSet;
+
+/**
+ * 可批处理并返回每个任务处理结果的接口，不能和IScheduleTaskDealMulti同时实现。
+ * 按每个任务统计成功和失败的数量，只有失败的任务按maxRetryNumber延时后重新放入队列处理，
+ * 而IScheduleTaskDealMulti返回false时整批任务都会重试
+ *
+ * @param <T>任务类型
+ */
+public interface IScheduleTaskDealMultiResult<T> extends IScheduleTaskDeal<T> {
+	/**
+	 * 执行给定的任务数组
+	 * @param tasks 任务数组
+	 * @param ownSign 当前环境名称
+	 * @return 处理成功的任务在数组中的下标对应的位为true，返回null表示全部失败。抛出异常时全部按失败处理
+	 * @throws Exception
+	 */
+	public BitSet execute(Object[] tasks, String ownSign) throws Exception;
+}
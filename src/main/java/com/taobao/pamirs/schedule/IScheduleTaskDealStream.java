@@ -0,0 +1,25 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.List;
+
+/**
+ * 流式获取任务的接口，可以和IScheduleTaskDealSingle、IScheduleTaskDealMulti等处理接口一起实现。
+ * 实现此接口后，调度器不再调用返回List的selectTasks，而是由处理Bean边读取边把任务放入collector，
+ * 处理线程在读取过程中就可以开始处理已经读到的任务，不需要把整批数据先放入List
+ *
+ * @param <T>任务类型
+ */
+public interface IScheduleTaskDealStream<T> extends IScheduleTaskDeal<T> {
+	/**
+	 * 根据条件，流式查询当前调度服务器可处理的任务
+	 * @param taskParameter 任务的自定义参数
+	 * @param ownSign 当前环境名称
+	 * @param taskItemNum 当前任务类型的任务队列数量
+	 * @param taskItemList 当前调度服务器，分配到的可处理队列
+	 * @param eachFetchDataNum 每次获取数据的数量，放入collector的任务达到此数量后collect返回false
+	 * @param collector 每读取到一条任务调用一次collect
+	 * @throws Exception
+	 */
+	public void selectTasks(String taskParameter, String ownSign, int taskItemNum, List<TaskItemDefine> taskItemList,
+			int eachFetchDataNum, IScheduleTaskCollector<T> collector) throws Exception;
+}
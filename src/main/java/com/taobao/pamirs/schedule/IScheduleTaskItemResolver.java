@@ -0,0 +1,16 @@
+package com.taobao.pamirs.schedule;
+
+/**
+ * 可选接口，任务处理Bean实现后，按任务项分区的任务队列（如STEAL、AFFINITY）可以把同一任务项的任务放入同一个线程的队列
+ *
+ * @param <T>任务类型
+ */
+public interface IScheduleTaskItemResolver<T> {
+	/**
+	 * 获取任务所属的任务项，返回值和TaskItemDefine.getTaskItemId()对应，
+	 * 例如按 mod(id, taskItemNum) 分配任务项时返回 String.valueOf(id % taskItemNum)
+	 * @param task
+	 * @return
+	 */
+	public String getTaskItemId(T task);
+}
@@ -0,0 +1,16 @@
+package com.taobao.pamirs.schedule;
+
+/**
+ * 可选接口，任务处理Bean实现后，NOTSLEEP和PIPELINE模式按任务主键做哈希判重，
+ * 不再用getComparator()逐个比较。未实现时仍使用比较器
+ *
+ * @param <T>任务类型
+ */
+public interface IScheduleTaskKey<T> {
+	/**
+	 * 获取任务的唯一标识，需要正确实现hashCode和equals
+	 * @param task
+	 * @return
+	 */
+	public Object getTaskKey(T task);
+}
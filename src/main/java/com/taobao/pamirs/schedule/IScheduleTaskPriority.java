@@ -0,0 +1,16 @@
+package com.taobao.pamirs.schedule;
+
+/**
+ * 可选接口，任务处理Bean实现后，处理器使用优先级队列，优先级高的任务先处理，
+ * 相同优先级的按取到的顺序处理
+ *
+ * @param <T>任务类型
+ */
+public interface IScheduleTaskPriority<T> {
+	/**
+	 * 获取任务的优先级，数值越大越优先
+	 * @param task
+	 * @return
+	 */
+	public int getTaskPriority(T task);
+}
@@ -0,0 +1,49 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.List;
+
+/**
+ * 处理器内部的任务队列，所有方法需要线程安全
+ *
+ * @param <T> 任务类型
+ */
+interface IScheduleTaskQueue<T> {
+	/**
+	 * 放入一个任务，队列满时返回false
+	 */
+	public boolean offer(T task);
+
+	/**
+	 * 按顺序放入一批任务
+	 * @return 实际放入的数量，队列满时剩余的任务不会放入
+	 */
+	public int offerAll(List<T> tasks);
+
+	/**
+	 * 取一个任务，队列为空时返回null
+	 */
+	public T poll();
+
+	/**
+	 * 最多取maxNumber个任务，队列为空时返回null
+	 */
+	public Object[] poll(int maxNumber);
+
+	/**
+	 * 取出所有任务，用于在处理线程以外清除数据，队列为空时返回null
+	 */
+	public Object[] pollAll();
+
+	/**
+	 * 设置当前分配到的任务项，按任务项分区的队列用来决定任务放入哪个线程的队列，放入任务前调用
+	 */
+	public void setTaskItems(List<TaskItemDefine> taskItems);
+
+	public int size();
+
+	public boolean isEmpty();
+
+	public int capacity();
+
+	public void clear();
+}
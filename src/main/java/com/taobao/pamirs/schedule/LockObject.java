@@ -1,26 +1,38 @@
 package com.taobao.pamirs.schedule;
 
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
 class LockObject {
 	private int m_threadCount = 0;
-	private Object m_waitOnObject = new Object();
+	//使用Condition而不是Object.wait，虚拟线程等待时不会占住载体线程
+	private Lock m_waitLock = new ReentrantLock();
+	private Condition m_waitOnObject = m_waitLock.newCondition();
 
 	public LockObject() {
 	}
 
 	public void waitCurrentThread() throws Exception {
-		synchronized (m_waitOnObject) {
+		m_waitLock.lock();
+		try {
 			// System.out.println(Thread.currentThread().getName() + ":" +
-			// "ߵǰ߳");
-			this.m_waitOnObject.wait();
+			// "休眠当前线程");
+			this.m_waitOnObject.await();
+		} finally {
+			m_waitLock.unlock();
 		}
 	}
 
 	public void notifyOtherThread() throws Exception {
-		synchronized (m_waitOnObject) {
+		m_waitLock.lock();
+		try {
 			// System.out.println(Thread.currentThread().getName() + ":" +
-			// "еȴ߳");
-			//бwait߳
-			this.m_waitOnObject.notifyAll();
+			// "唤醒所有等待线程");
+			//解除所有被wait方法阻塞的线程
+			this.m_waitOnObject.signalAll();
+		} finally {
+			m_waitLock.unlock();
 		}
 	}
 
@@ -31,14 +43,14 @@ class LockObject {
 	}
 
 	public void realseThread() {
-		//
+		//对象加锁
 		synchronized (this) {
 			m_threadCount = m_threadCount - 1;
 		}
 	}
 
 	/**
-	 * ߳һ̣߳
+	 * 降低线程数量，如果是最后一个线程，则不能休眠
 	 * 
 	 * @return boolean
 	 */
@@ -46,14 +46,14 @@ public class MBeanManagerFactory {
 					mbeanServer = ManagementFactory.getPlatformMBeanServer();
 				} else {
 					throw new MBeanRegistrationException(null,
-							"JVMлûעMBeanServer of agentId =" + agentId);
+							"在JVM中还没有注册MBeanServer of agentId =" + agentId);
 				}
 			} else if (serverList.size() > 1) {
 				throw new MBeanRegistrationException(
 						null,
-						"JVMдڶMBeanServer of agentId ="
+						"在JVM中存在多个MBeanServer of agentId ="
 								+ agentId
-								+ ",TBScheduleManagerFactorymbeanServerAgentId");
+								+ ",请合理的设置TBScheduleManagerFactory的属性mbeanServerAgentId");
 			}else{
 			    mbeanServer = serverList.get(0);
 			}
@@ -85,7 +85,7 @@ public class MBeanManagerFactory {
 	public static String getManangerUrl() throws ClassNotFoundException,
 			AttributeNotFoundException, InstanceNotFoundException,
 			MBeanException, ReflectionException {
-		String result = "ûҵjmxConnectorServer";
+		String result = "没有找到jmxConnectorServer";
 		if(jmxConnectorServer != null){
 			result = jmxConnectorServer.getAddress().toString();
 		}else{
@@ -101,7 +101,7 @@ public class MBeanManagerFactory {
 				}
 			}
 		} catch (Throwable e) {
-			logger.error("ûҵMBeanjmxConnectorServer");
+			logger.error("没有找到MBean的jmxConnectorServer");
 		}
 		}
 		return result.replaceAll("localhost", ScheduleUtil.getLocalIP());
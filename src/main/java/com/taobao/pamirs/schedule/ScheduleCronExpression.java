@@ -0,0 +1,553 @@
+package com.taobao.pamirs.schedule;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 编译后的cron表达式：由CronExpression解析，各字段转为位图，计算下一次执行时间时不创建任何对象
+ * 1、秒、分、时、日、月、星期使用long位图，年使用有序数组；L、W、#以及nL、n-L、n-mL的含义和CronExpression相同
+ * 2、计算过程逐行对应CronExpression.getTimeAfter，Calendar的宽松换算和夏令时处理改为日期算术加TimeZone.getOffset，
+ *    不存在的本地时间按标准时间解释、重复的本地时间取后一个，和GregorianCalendar一致
+ * 3、CronExpression计算n-mL时会修改自身的日期集合，同一个对象多次计算的结果可能不同；这里每次计算都从解析结果开始，
+ *    等同于每次新建CronExpression计算一次
+ * 4、W的判断中CronExpression使用当前时间的毫秒数，结果和调用时刻有关；这里按0毫秒计算
+ * 5、compile按表达式字符串缓存，时区为编译时的默认时区；对象不可变，可以在多个线程中共享
+ *
+ */
+public class ScheduleCronExpression {
+	/**
+	 * 没有下一次执行时间
+	 */
+	public static final long NO_TIME = Long.MIN_VALUE;
+	/**
+	 * 缓存的表达式数量上限，超过时清空
+	 */
+	static final int MAX_CACHE_SIZE = 1024;
+
+	private static final long SECOND_MILLIS = 1000L;
+	private static final long MINUTE_MILLIS = 60 * SECOND_MILLIS;
+	private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+	private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+	private static final ConcurrentHashMap<String, ScheduleCronExpression> cache = new ConcurrentHashMap<String, ScheduleCronExpression>();
+
+	private final String cronExpression;
+	private final TimeZone timeZone;
+	private final long secondMask;
+	private final long minuteMask;
+	private final long hourMask;
+	private final long dayOfMonthMask;
+	private final long monthMask;
+	private final long dayOfWeekMask;
+	private final int[] years;
+	private final boolean dayOfMonthSpec;
+	private final boolean dayOfWeekSpec;
+	private final boolean lastdayOfWeek;
+	private final int nthdayOfWeek;
+	private final boolean lastdayOfMonth;
+	private final boolean nearestWeekday;
+	private final boolean monLday;
+	private final int monLdayValue;
+	private final int monLdayEx;
+
+	/**
+	 * 取缓存中编译好的表达式，没有时解析并放入缓存
+	 * @param cronExpression cron表达式
+	 * @throws ParseException 表达式错误
+	 */
+	public static ScheduleCronExpression compile(String cronExpression) throws ParseException {
+		ScheduleCronExpression result = cache.get(cronExpression);
+		if (result == null) {
+			result = new ScheduleCronExpression(new CronExpression(cronExpression));
+			if (cache.size() >= MAX_CACHE_SIZE) {
+				cache.clear();
+			}
+			cache.put(cronExpression, result);
+		}
+		return result;
+	}
+
+	/**
+	 * 由解析好的CronExpression编译，时区使用CronExpression的时区
+	 */
+	public ScheduleCronExpression(CronExpression expression) {
+		this.cronExpression = expression.getCronExpression();
+		this.timeZone = expression.getTimeZone();
+		this.secondMask = toMask(expression.seconds);
+		this.minuteMask = toMask(expression.minutes);
+		this.hourMask = toMask(expression.hours);
+		this.dayOfMonthMask = toMask(expression.daysOfMonth);
+		this.monthMask = toMask(expression.months);
+		this.dayOfWeekMask = toMask(expression.daysOfWeek);
+		this.years = new int[expression.years.size()];
+		int index = 0;
+		for (Iterator<?> it = expression.years.iterator(); it.hasNext();) {
+			this.years[index++] = ((Integer) it.next()).intValue();
+		}
+		this.dayOfMonthSpec = !expression.daysOfMonth.contains(CronExpression.NO_SPEC);
+		this.dayOfWeekSpec = !expression.daysOfWeek.contains(CronExpression.NO_SPEC);
+		this.lastdayOfWeek = expression.lastdayOfWeek;
+		this.nthdayOfWeek = expression.nthdayOfWeek;
+		this.lastdayOfMonth = expression.lastdayOfMonth;
+		this.nearestWeekday = expression.nearestWeekday;
+		this.monLday = expression.monLdaySet != null && expression.monLdaySet.isLast;
+		this.monLdayValue = this.monLday ? expression.monLdaySet.value : 0;
+		this.monLdayEx = this.monLday ? expression.monLdaySet.ex : 0;
+	}
+
+	public String getCronExpression() {
+		return this.cronExpression;
+	}
+
+	public TimeZone getTimeZone() {
+		return this.timeZone;
+	}
+
+	/**
+	 * 返回给定时间之后的下一次执行时间
+	 * @return 没有时返回null
+	 */
+	public Date getNextValidTimeAfter(Date date) {
+		long result = this.getNextValidTimeAfter(date.getTime());
+		return result == NO_TIME ? null : new Date(result);
+	}
+
+	/**
+	 * 返回给定时间之后的下一次执行时间，对应CronExpression.getTimeAfter
+	 * @param afterTime 毫秒
+	 * @return 毫秒，没有时返回NO_TIME
+	 */
+	public long getNextValidTimeAfter(long afterTime) {
+		TimeZone tz = this.timeZone;
+		afterTime = afterTime + 1000;
+		//本地时间，去掉毫秒后按日历字段换算一次
+		long wall = toWall(tz, afterTime);
+		wall = this.complete(wall - floorMod(wall, SECOND_MILLIS));
+		long domMask = this.dayOfMonthMask;
+		boolean endDaysFlag = false;
+		while (true) {
+			int date = toCivil(wall);
+			int year = date >> 9;
+			if (year > 2999) {
+				return NO_TIME;
+			}
+			int mon = (date >> 5) & 15;
+			int day = date & 31;
+			int timeOfDay = (int) floorMod(wall, DAY_MILLIS);
+			int hr = (int) (timeOfDay / HOUR_MILLIS);
+			int min = (int) (timeOfDay / MINUTE_MILLIS % 60);
+			int sec = (int) (timeOfDay / SECOND_MILLIS % 60);
+			int t;
+
+			// 秒
+			int next = nextBit(this.secondMask, sec);
+			if (next >= 0) {
+				sec = next;
+			} else {
+				sec = firstBit(this.secondMask);
+				min++;
+			}
+			wall = this.complete(toLocalMillis(year, mon, day, hr, min, sec));
+			date = toCivil(wall);
+			year = date >> 9;
+			mon = (date >> 5) & 15;
+			day = date & 31;
+			timeOfDay = (int) floorMod(wall, DAY_MILLIS);
+			hr = (int) (timeOfDay / HOUR_MILLIS);
+			min = (int) (timeOfDay / MINUTE_MILLIS % 60);
+
+			// 分
+			t = -1;
+			next = nextBit(this.minuteMask, min);
+			if (next >= 0) {
+				t = min;
+				min = next;
+			} else {
+				min = firstBit(this.minuteMask);
+				hr++;
+			}
+			if (min != t) {
+				wall = this.setCalendarHour(year, mon, day, hr, min);
+				continue;
+			}
+
+			// 时
+			t = -1;
+			next = nextBit(this.hourMask, hr);
+			if (next >= 0) {
+				t = hr;
+				hr = next;
+			} else {
+				hr = firstBit(this.hourMask);
+				day++;
+			}
+			if (hr != t) {
+				wall = this.setCalendarHour(year, mon, day, hr, 0);
+				continue;
+			}
+
+			// 日
+			t = -1;
+			int tmon = mon;
+			if (this.dayOfMonthSpec && !this.dayOfWeekSpec) {
+				int endDays = 0;
+				if (this.monLday && !endDaysFlag) {
+					int end = getLastDayOfMonth(mon, year) - this.monLdayEx + 1;
+					if (this.monLdayValue == 0) {
+						endDays = end;
+					} else {
+						if (this.monLdayValue > end) {
+							throw new IllegalArgumentException("Start day must be less than end day");
+						}
+						if (this.monLdayValue < 1 || end > 31) {
+							//CronExpression.addToSet校验失败，返回当前时间
+							break;
+						}
+						domMask = domMask | rangeMask(this.monLdayValue, end);
+					}
+				}
+				next = nextBit(domMask, day);
+				if (this.lastdayOfMonth && !endDaysFlag) {
+					if (!this.nearestWeekday) {
+						if (this.monLday) {
+							if (endDays < 1) {
+								break;
+							}
+							domMask = 1L << endDays;
+							endDaysFlag = true;
+							continue;
+						} else {
+							t = day;
+							day = getLastDayOfMonth(mon, year);
+						}
+					} else {
+						t = day;
+						day = getLastDayOfMonth(mon, year);
+						day = nearestWeekday(year, mon, day);
+						if (this.resolve(toLocalMillis(year, mon, day, hr, min, sec)) < afterTime) {
+							day = 1;
+							mon++;
+						}
+					}
+				} else if (this.nearestWeekday) {
+					t = day;
+					day = firstBit(domMask);
+					day = nearestWeekday(year, mon, day);
+					if (this.resolve(toLocalMillis(year, mon, day, hr, min, sec)) < afterTime) {
+						day = firstBit(domMask);
+						mon++;
+					}
+				} else if (next >= 0) {
+					t = day;
+					day = next;
+					// 跳过短月份中不存在的日期
+					if (day > getLastDayOfMonth(mon, year)) {
+						day = firstBit(domMask);
+						mon++;
+					}
+				} else {
+					day = firstBit(domMask);
+					mon++;
+					endDaysFlag = false;
+				}
+
+				if (day != t || mon != tmon) {
+					wall = this.complete(toLocalMillis(year, mon, day, 0, 0, 0));
+					continue;
+				}
+			} else if (this.dayOfWeekSpec && !this.dayOfMonthSpec) {
+				int cDow = dayOfWeek(toEpochDay(wall));
+				if (this.lastdayOfWeek) {
+					// 本月最后一个星期X
+					int dow = firstBit(this.dayOfWeekMask);
+					int daysToAdd = 0;
+					if (cDow < dow) {
+						daysToAdd = dow - cDow;
+					}
+					if (cDow > dow) {
+						daysToAdd = dow + (7 - cDow);
+					}
+					int lDay = getLastDayOfMonth(mon, year);
+					if (day + daysToAdd > lDay) {
+						wall = this.complete(toLocalMillis(year, mon + 1, 1, 0, 0, 0));
+						continue;
+					}
+					while ((day + daysToAdd + 7) <= lDay) {
+						daysToAdd += 7;
+					}
+					day += daysToAdd;
+					if (daysToAdd > 0) {
+						wall = this.complete(toLocalMillis(year, mon, day, 0, 0, 0));
+						continue;
+					}
+				} else if (this.nthdayOfWeek != 0) {
+					// 本月第N个星期X
+					int dow = firstBit(this.dayOfWeekMask);
+					int daysToAdd = 0;
+					if (cDow < dow) {
+						daysToAdd = dow - cDow;
+					} else if (cDow > dow) {
+						daysToAdd = dow + (7 - cDow);
+					}
+					boolean dayShifted = daysToAdd > 0;
+					day += daysToAdd;
+					int weekOfMonth = day / 7;
+					if (day % 7 > 0) {
+						weekOfMonth++;
+					}
+					daysToAdd = (this.nthdayOfWeek - weekOfMonth) * 7;
+					day += daysToAdd;
+					if (daysToAdd < 0 || day > getLastDayOfMonth(mon, year)) {
+						wall = this.complete(toLocalMillis(year, mon + 1, 1, 0, 0, 0));
+						continue;
+					} else if (daysToAdd > 0 || dayShifted) {
+						wall = this.complete(toLocalMillis(year, mon, day, 0, 0, 0));
+						continue;
+					}
+				} else {
+					int dow = firstBit(this.dayOfWeekMask);
+					next = nextBit(this.dayOfWeekMask, cDow);
+					if (next >= 0) {
+						dow = next;
+					}
+					int daysToAdd = 0;
+					if (cDow < dow) {
+						daysToAdd = dow - cDow;
+					}
+					if (cDow > dow) {
+						daysToAdd = dow + (7 - cDow);
+					}
+					int lDay = getLastDayOfMonth(mon, year);
+					if (day + daysToAdd > lDay) {
+						wall = this.complete(toLocalMillis(year, mon + 1, 1, 0, 0, 0));
+						continue;
+					} else if (daysToAdd > 0) {
+						wall = this.complete(toLocalMillis(year, mon, day + daysToAdd, 0, 0, 0));
+						continue;
+					}
+				}
+			} else {
+				throw new UnsupportedOperationException(
+						"Support for specifying both a day-of-week AND a day-of-month parameter is not implemented.");
+			}
+
+			// 超出可调度的年份
+			if (year > CronExpression.CronTrigger_YEAR_TO_GIVEUP_SCHEDULING_AT) {
+				return NO_TIME;
+			}
+
+			// 月
+			t = -1;
+			next = nextBit(this.monthMask, mon);
+			if (next >= 0) {
+				t = mon;
+				mon = next;
+			} else {
+				mon = firstBit(this.monthMask);
+				year++;
+			}
+			if (mon != t) {
+				wall = this.complete(toLocalMillis(year, mon, 1, 0, 0, 0));
+				continue;
+			}
+
+			// 年
+			int index = Arrays.binarySearch(this.years, year);
+			if (index < 0) {
+				index = -index - 1;
+				if (index >= this.years.length) {
+					return NO_TIME;
+				}
+				wall = this.complete(toLocalMillis(this.years[index], 1, 1, 0, 0, 0));
+				continue;
+			}
+			break;
+		}
+		return this.resolve(wall);
+	}
+
+	/**
+	 * 对应CronExpression.setCalendarHour：设置的小时因夏令时不存在时设为下一个小时
+	 */
+	private long setCalendarHour(int year, int mon, int day, int hour, int min) {
+		long wall = this.complete(toLocalMillis(year, mon, day, hour, min, 0));
+		int timeOfDay = (int) floorMod(wall, DAY_MILLIS);
+		if (timeOfDay / HOUR_MILLIS != hour && hour != 24) {
+			int date = toCivil(wall);
+			wall = this.complete(toLocalMillis(date >> 9, (date >> 5) & 15, date & 31, hour + 1,
+					(int) (timeOfDay / MINUTE_MILLIS % 60), (int) (timeOfDay / SECOND_MILLIS % 60)));
+		}
+		return wall;
+	}
+
+	/**
+	 * W：离指定日期最近的工作日，不跨月
+	 */
+	private static int nearestWeekday(int year, int mon, int day) {
+		int ldom = getLastDayOfMonth(mon, year);
+		int dow = dayOfWeek(toEpochDay(toLocalMillis(year, mon, day, 0, 0, 0)));
+		if (dow == 7 && day == 1) {
+			day += 2;
+		} else if (dow == 7) {
+			day -= 1;
+		} else if (dow == 1 && day == ldom) {
+			day -= 2;
+		} else if (dow == 1) {
+			day += 1;
+		}
+		return day;
+	}
+
+	/**
+	 * 按日历字段设置本地时间后读取字段：换算成时间再换算回本地时间
+	 */
+	private long complete(long localMillis) {
+		return toWall(this.timeZone, this.resolve(localMillis));
+	}
+
+	/**
+	 * 本地时间换算成UTC时间，和GregorianCalendar相同：
+	 * 夏令时开始时不存在的本地时间按切换前的偏移计算，结束时重复的本地时间按切换后的偏移计算
+	 */
+	private long resolve(long localMillis) {
+		TimeZone tz = this.timeZone;
+		long guess = localMillis - tz.getRawOffset();
+		int offsetBefore = tz.getOffset(guess - DAY_MILLIS / 2);
+		int offsetAfter = tz.getOffset(guess + DAY_MILLIS / 2);
+		if (offsetBefore == offsetAfter || tz.getOffset(localMillis - offsetAfter) == offsetAfter) {
+			return localMillis - offsetAfter;
+		}
+		return localMillis - offsetBefore;
+	}
+
+	private static long toWall(TimeZone tz, long time) {
+		return time + tz.getOffset(time);
+	}
+
+	/**
+	 * 宽松的日历字段换算成本地时间的毫秒数，month从1开始，各字段可以越界
+	 */
+	static long toLocalMillis(int year, int month, int day, int hour, int minute, int second) {
+		int m = month - 1;
+		year = year + (int) floorDiv(m, 12);
+		m = (int) floorMod(m, 12) + 1;
+		long days = daysFromCivil(year, m, 1) + day - 1;
+		return days * DAY_MILLIS + hour * HOUR_MILLIS + minute * MINUTE_MILLIS + second * SECOND_MILLIS;
+	}
+
+	private static long toEpochDay(long localMillis) {
+		return floorDiv(localMillis, DAY_MILLIS);
+	}
+
+	/**
+	 * 本地时间的日期：年 << 9 | 月 << 5 | 日
+	 */
+	static int toCivil(long localMillis) {
+		long z = toEpochDay(localMillis) + 719468;
+		long era = floorDiv(z, 146097);
+		int doe = (int) (z - era * 146097);
+		int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		int mp = (5 * doy + 2) / 153;
+		int day = doy - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		int year = (int) (yoe + era * 400) + (month <= 2 ? 1 : 0);
+		return (year << 9) | (month << 5) | day;
+	}
+
+	private static long daysFromCivil(int year, int month, int day) {
+		year -= month <= 2 ? 1 : 0;
+		long era = floorDiv(year, 400);
+		int yoe = (int) (year - era * 400);
+		int doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097 + doe - 719468;
+	}
+
+	/**
+	 * 星期，1为星期日，和Calendar.DAY_OF_WEEK相同
+	 */
+	private static int dayOfWeek(long epochDay) {
+		return (int) floorMod(epochDay + 4, 7) + 1;
+	}
+
+	private static int getLastDayOfMonth(int monthNum, int year) {
+		switch (monthNum) {
+		case 2:
+			return ((year % 4 == 0 && year % 100 != 0) || (year % 400 == 0)) ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		case 1:
+		case 3:
+		case 5:
+		case 7:
+		case 8:
+		case 10:
+		case 12:
+			return 31;
+		default:
+			throw new IllegalArgumentException("Illegal month number: " + monthNum);
+		}
+	}
+
+	private static long floorDiv(long x, long y) {
+		long r = x / y;
+		if ((x % y != 0) && ((x ^ y) < 0)) {
+			r--;
+		}
+		return r;
+	}
+
+	private static long floorMod(long x, long y) {
+		return x - floorDiv(x, y) * y;
+	}
+
+	/**
+	 * 不小于from的第一个值，没有时返回-1
+	 */
+	private static int nextBit(long mask, int from) {
+		if (from >= 64) {
+			return -1;
+		}
+		long m = mask & (-1L << Math.max(from, 0));
+		return m == 0 ? -1 : Long.numberOfTrailingZeros(m);
+	}
+
+	private static int firstBit(long mask) {
+		if (mask == 0) {
+			throw new NoSuchElementException();
+		}
+		return Long.numberOfTrailingZeros(mask);
+	}
+
+	private static long rangeMask(int start, int end) {
+		return (-1L << start) & (-1L >>> (63 - end));
+	}
+
+	/**
+	 * 集合中的值转为位图，'*'、'?'的标记值不在位图中
+	 */
+	private static long toMask(TreeSet<?> set) {
+		long mask = 0;
+		for (Iterator<?> it = set.iterator(); it.hasNext();) {
+			int value = ((Integer) it.next()).intValue();
+			if (value >= 0 && value < 64) {
+				mask = mask | (1L << value);
+			}
+		}
+		return mask;
+	}
+
+	public String toString() {
+		return this.cronExpression;
+	}
+}
@@ -0,0 +1,233 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 处理过慢、卡住的监控：记录每个处理线程正在执行的execute，超过slowExecuteTime时采样线程堆栈并记录日志，
+ * 通过MBean和/metrics查看；超过executeInterruptTime时中断处理线程
+ * 1、每个处理线程复用一个记录对象，开始和结束只修改记录的字段，不产生新对象
+ * 2、检查由JVM内共享的定时服务执行，间隔为slowExecuteTime和executeInterruptTime中较小值的一半，在100毫秒到1秒之间；
+ *    每次检查重新采样堆栈。两个时间可以单独配置，只配置executeInterruptTime时只中断，不按处理过慢统计
+ * 3、中断和结束在同一个记录对象上同步，中断不会落到下一次execute或者线程的等待中，结束时清除线程的中断标志。
+ *    被中断的execute通常抛出异常，按失败统计并重试；Bean忽略了中断并返回成功时仍然按成功处理
+ * 4、异步处理的Bean execute立即返回，不在监控范围内
+ *
+ */
+class ScheduleExecuteWatchdog implements Runnable {
+	private static transient Log log = LogFactory.getLog(ScheduleExecuteWatchdog.class);
+	/**
+	 * 日志和描述中最多输出的堆栈层数
+	 */
+	static final int MAX_STACK_DEPTH = 32;
+
+	private final String taskType;
+	private final ScheduleTaskType taskTypeInfo;
+	private final StatisticsInfo statisticsInfo;
+	private final ThreadLocal<ExecuteRecord> recordLocal = new ThreadLocal<ExecuteRecord>();
+	/**
+	 * 所有处理线程的记录，线程退出后在检查时移除
+	 */
+	private final List<ExecuteRecord> recordList = new CopyOnWriteArrayList<ExecuteRecord>();
+	/**
+	 * 最近一次检查时超过slowExecuteTime的execute数量
+	 */
+	private volatile int slowExecuteNumber = 0;
+	private ScheduleTimerService.ScheduleTimeout timeout;
+
+	public ScheduleExecuteWatchdog(String aTaskType, ScheduleTaskType aTaskTypeInfo, StatisticsInfo aStatisticsInfo) {
+		this.taskType = aTaskType;
+		this.taskTypeInfo = aTaskTypeInfo;
+		this.statisticsInfo = aStatisticsInfo;
+	}
+
+	/**
+	 * 开始定时检查
+	 * @param name 定时任务的名称
+	 */
+	public synchronized void start(String name) {
+		if (this.timeout != null) {
+			return;
+		}
+		long period = Math.min(1000, Math.max(100, getCheckTime(this.taskTypeInfo.getSlowExecuteTime(),
+				this.taskTypeInfo.getExecuteInterruptTime()) / 2));
+		this.timeout = ScheduleTimerService.getInstance().scheduleWithFixedDelay(name, this, period, period);
+	}
+
+	public synchronized void stop() {
+		if (this.timeout != null) {
+			this.timeout.cancel();
+			this.timeout = null;
+		}
+		this.slowExecuteNumber = 0;
+	}
+
+	/**
+	 * 处理线程调用execute之前调用
+	 * @param executeTask 单个任务，或者批处理时的任务数组
+	 * @param taskNum 任务数量
+	 * @return 当前线程的记录，execute结束后传给end
+	 */
+	public ExecuteRecord begin(Object executeTask, int taskNum) {
+		ExecuteRecord record = this.recordLocal.get();
+		if (record == null) {
+			record = new ExecuteRecord(Thread.currentThread());
+			this.recordLocal.set(record);
+			this.recordList.add(record);
+		}
+		record.task = executeTask;
+		record.taskNum = taskNum;
+		record.startTime = ScheduleUtil.getCurrentTimeMillis();
+		return record;
+	}
+
+	/**
+	 * execute结束后调用，包括抛出异常的情况
+	 */
+	public void end(ExecuteRecord record) {
+		synchronized (record) {
+			if (record.isSlow == true) {
+				log.warn(this.taskType + " 处理过慢的execute已经结束，耗时" + (ScheduleUtil.getCurrentTimeMillis() - record.startTime)
+						+ "毫秒，线程：" + record.thread.getName() + (record.isInterrupted ? "，已被中断" : ""));
+			}
+			if (record.isInterrupted == true) {
+				//清除中断标志，避免影响后续的等待和处理
+				Thread.interrupted();
+			}
+			record.startTime = 0;
+			record.task = null;
+			record.isSlow = false;
+			record.isInterrupted = false;
+			record.stackTrace = null;
+			record.sampleNumber = 0;
+		}
+	}
+
+	public void run() {
+		try {
+			this.check();
+		} catch (Throwable e) {
+			log.error(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * slowExecuteTime和executeInterruptTime中大于0的较小值，都不大于0时返回0
+	 */
+	static long getCheckTime(long slowExecuteTime, long executeInterruptTime) {
+		if (slowExecuteTime <= 0) {
+			return Math.max(executeInterruptTime, 0);
+		}
+		if (executeInterruptTime <= 0) {
+			return slowExecuteTime;
+		}
+		return Math.min(slowExecuteTime, executeInterruptTime);
+	}
+
+	void check() {
+		long slowExecuteTime = this.taskTypeInfo.getSlowExecuteTime();
+		long executeInterruptTime = this.taskTypeInfo.getExecuteInterruptTime();
+		long checkTime = getCheckTime(slowExecuteTime, executeInterruptTime);
+		int slowNumber = 0;
+		for (ExecuteRecord record : this.recordList) {
+			if (record.thread.isAlive() == false) {
+				this.recordList.remove(record);
+				continue;
+			}
+			long startTime = record.startTime;
+			if (startTime == 0 || checkTime <= 0
+					|| ScheduleUtil.getCurrentTimeMillis() - startTime < checkTime) {
+				continue;
+			}
+			if (slowExecuteTime > 0 && ScheduleUtil.getCurrentTimeMillis() - startTime >= slowExecuteTime) {
+				slowNumber = slowNumber + 1;
+			}
+			//在锁外采样，不阻塞处理线程结束
+			StackTraceElement[] stackTrace = record.thread.getStackTrace();
+			synchronized (record) {
+				if (record.startTime != startTime) {
+					continue;
+				}
+				long spendTime = ScheduleUtil.getCurrentTimeMillis() - startTime;
+				record.stackTrace = stackTrace;
+				record.sampleNumber = record.sampleNumber + 1;
+				if (slowExecuteTime > 0 && spendTime >= slowExecuteTime && record.isSlow == false) {
+					record.isSlow = true;
+					this.statisticsInfo.addSlowExecuteCount(1);
+					log.warn(this.taskType + " execute超过" + slowExecuteTime + "毫秒没有结束：" + record.getDescription(spendTime));
+				}
+				if (executeInterruptTime > 0 && spendTime >= executeInterruptTime && record.isInterrupted == false) {
+					record.isInterrupted = true;
+					record.thread.interrupt();
+					this.statisticsInfo.addExecuteInterruptCount(1);
+					log.warn(this.taskType + " execute超过" + executeInterruptTime + "毫秒没有结束，中断处理线程："
+							+ record.thread.getName());
+				}
+			}
+		}
+		this.slowExecuteNumber = slowNumber;
+	}
+
+	public int getSlowExecuteNumber() {
+		return this.slowExecuteNumber;
+	}
+
+	/**
+	 * 当前超过slowExecuteTime的execute：线程、耗时、任务和最近一次采样的堆栈
+	 */
+	public List<String> getSlowExecuteList() {
+		List<String> result = new ArrayList<String>();
+		for (ExecuteRecord record : this.recordList) {
+			synchronized (record) {
+				if (record.isSlow == true) {
+					result.add(record.getDescription(ScheduleUtil.getCurrentTimeMillis() - record.startTime));
+				}
+			}
+		}
+		return result;
+	}
+
+	static class ExecuteRecord {
+		final Thread thread;
+		/**
+		 * execute的开始时间，0表示没有在处理
+		 */
+		volatile long startTime;
+		Object task;
+		int taskNum;
+		boolean isSlow;
+		boolean isInterrupted;
+		StackTraceElement[] stackTrace;
+		int sampleNumber;
+
+		ExecuteRecord(Thread aThread) {
+			this.thread = aThread;
+		}
+
+		String getDescription(long spendTime) {
+			StringBuilder buffer = new StringBuilder();
+			buffer.append("thread=").append(this.thread.getName())
+					.append(",spendTime=").append(spendTime)
+					.append(",taskNum=").append(this.taskNum)
+					.append(",interrupted=").append(this.isInterrupted)
+					.append(",sampleNumber=").append(this.sampleNumber)
+					.append(",task=");
+			Object firstTask = this.task instanceof Object[] && ((Object[]) this.task).length > 0 ? ((Object[]) this.task)[0] : this.task;
+			String taskDesc = String.valueOf(firstTask);
+			buffer.append(taskDesc.length() > 200 ? taskDesc.substring(0, 200) + "..." : taskDesc);
+			if (this.stackTrace != null) {
+				for (int i = 0; i < this.stackTrace.length && i < MAX_STACK_DEPTH; i++) {
+					buffer.append("\n\tat ").append(this.stackTrace[i]);
+				}
+				if (this.stackTrace.length > MAX_STACK_DEPTH) {
+					buffer.append("\n\t...");
+				}
+			}
+			return buffer.toString();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package com.taobao.pamirs.schedule;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 每次获取数据量的自适应调整。fetchDataNumberMax大于0时开启，否则固定使用fetchDataNumber
+ * 1、按 一批数据的处理时长 ≈ 取数耗时 * FETCH_SPEND_RATIO 计算目标值：目标值 = 比例 * 取数耗时 * 线程数 / 单条任务处理耗时
+ * 2、取满一批数据后仍有超过一半的线程在等待数据，说明数据量偏小，至少增大一倍。SLEEP模式下等待线程数为0，只按耗时调整
+ * 3、没有取满时说明数据已经取完，不再增大
+ * 4、每次向目标值调整一半，结果限制在[fetchDataNumberMin,fetchDataNumberMax]之间
+ * 线程数使用调度管理器当前的处理线程数，而不是配置的threadNumber
+ */
+class ScheduleFetchNumberTuner {
+	private static transient Log logger = LogFactory.getLog(ScheduleFetchNumberTuner.class);
+	/**
+	 * 一批数据的处理时长和取数耗时的目标比例
+	 */
+	static final int FETCH_SPEND_RATIO = 10;
+	/**
+	 * 耗时的平滑系数
+	 */
+	static final double SMOOTH_FACTOR = 0.3;
+
+	private ScheduleTaskType taskTypeInfo;
+	private StatisticsInfo statisticsInfo;
+	private volatile int fetchDataNumber;
+	/**
+	 * 平滑后的取数耗时和单条任务处理耗时，单位毫秒，小于0表示还没有数据
+	 */
+	private double fetchSpendTime = -1;
+	private double dealSpendTimePerTask = -1;
+	private long lastDealDataNum = 0;
+	private long lastDealSpendTime = 0;
+
+	public ScheduleFetchNumberTuner(ScheduleTaskType aTaskTypeInfo, StatisticsInfo aStatisticsInfo) {
+		this.taskTypeInfo = aTaskTypeInfo;
+		this.statisticsInfo = aStatisticsInfo;
+		this.fetchDataNumber = this.limit(aTaskTypeInfo.getFetchDataNumber(), aTaskTypeInfo.getThreadNumber());
+		this.statisticsInfo.setFetchDataNumber(this.getFetchDataNumber());
+	}
+
+	public boolean isAdaptive() {
+		return this.taskTypeInfo.getFetchDataNumberMax() > 0;
+	}
+
+	/**
+	 * 当前每次获取数据的数量
+	 * @return
+	 */
+	public int getFetchDataNumber() {
+		if (this.isAdaptive() == false) {
+			return this.taskTypeInfo.getFetchDataNumber();
+		}
+		return this.fetchDataNumber;
+	}
+
+	private int getMin(int threadNumber) {
+		int min = this.taskTypeInfo.getFetchDataNumberMin();
+		if (min <= 0) {
+			min = threadNumber * this.taskTypeInfo.getExecuteNumber();
+		}
+		return min > 0 ? min : 1;
+	}
+
+	private int limit(long value, int threadNumber) {
+		if (this.isAdaptive() == false) {
+			return (int) value;
+		}
+		int min = this.getMin(threadNumber);
+		int max = Math.max(min, this.taskTypeInfo.getFetchDataNumberMax());
+		return (int) Math.max(min, Math.min(max, value));
+	}
+
+	/**
+	 * 记录一次取数的结果，并计算下一次的取数量
+	 * @param requestNumber 本次请求的数量
+	 * @param resultNumber 本次取到的数量
+	 * @param spendTime 本次selectTasks耗时
+	 * @param idleThreadNumber 取数时因为没有数据而等待的线程数
+	 * @param threadNumber 当前的处理线程数
+	 */
+	public synchronized void addFetchResult(int requestNumber, int resultNumber, long spendTime, int idleThreadNumber,
+			int threadNumber) {
+		this.statisticsInfo.addSelectTime(spendTime);
+		if (this.isAdaptive() == false) {
+			this.statisticsInfo.setFetchDataNumber(this.getFetchDataNumber());
+			return;
+		}
+		this.fetchSpendTime = smooth(this.fetchSpendTime, spendTime);
+		long dealDataNum = this.statisticsInfo.getDealDataNum();
+		long dealSpendTime = this.statisticsInfo.getDealSpendTime();
+		if (dealDataNum > this.lastDealDataNum) {
+			this.dealSpendTimePerTask = smooth(this.dealSpendTimePerTask,
+					(double) (dealSpendTime - this.lastDealSpendTime) / (dealDataNum - this.lastDealDataNum));
+		}
+		this.lastDealDataNum = dealDataNum;
+		this.lastDealSpendTime = dealSpendTime;
+		if (this.dealSpendTimePerTask < 0) {
+			//还没有处理过数据，保持初始值
+			return;
+		}
+		int current = this.fetchDataNumber;
+		//处理耗时小于0.01毫秒时按0.01毫秒计算，避免目标值过大
+		double target = FETCH_SPEND_RATIO * Math.max(this.fetchSpendTime, 1) * threadNumber
+				/ Math.max(this.dealSpendTimePerTask, 0.01);
+		if (resultNumber >= requestNumber) {
+			if (idleThreadNumber * 2 > threadNumber) {
+				target = Math.max(target, current * 2.0);
+			}
+		} else {
+			target = Math.min(target, current);
+		}
+		int next = this.limit(Math.round((current + target) / 2), threadNumber);
+		if (next != current) {
+			if (logger.isDebugEnabled()) {
+				logger.debug(this.taskTypeInfo.getBaseTaskType() + " 每次获取数据量调整：" + current + " -> " + next
+						+ "，取数耗时=" + this.fetchSpendTime + "，单条处理耗时=" + this.dealSpendTimePerTask
+						+ "，等待线程数=" + idleThreadNumber);
+			}
+			this.fetchDataNumber = next;
+		}
+		this.statisticsInfo.setFetchDataNumber(next);
+	}
+
+	private static double smooth(double last, double value) {
+		if (last < 0) {
+			return value;
+		}
+		return last + SMOOTH_FACTOR * (value - last);
+	}
+}
@@ -0,0 +1,224 @@
+package com.taobao.pamirs.schedule;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * JDK Flight Recorder事件：取数、处理、心跳、任务项分配和移交、处理器休眠、等待任务处理完
+ * 1、通过jdk.jfr.EventFactory用反射创建事件类型，编译和运行都不依赖高版本JDK，不支持JFR的JDK上不产生任何事件
+ * 2、第一次开始录制时才注册事件类型，录制开始、结束时刷新每类事件是否启用；没有启用时begin只读一次volatile变量
+ * 3、使用方式：begin返回null时不需要记录；否则在操作结束后调用commit，参数按事件字段的顺序给出
+ *    Object event = ScheduleFlightRecorder.begin(ScheduleFlightRecorder.EXECUTE);
+ *    ......
+ *    if (event != null) {
+ *        ScheduleFlightRecorder.commit(event, taskType, batchSize, isSuccess);
+ *    }
+ * 4、事件的名称为com.taobao.pamirs.schedule.XXX，可以在.jfc文件中按名称设置enabled和threshold
+ *
+ */
+class ScheduleFlightRecorder {
+	private static transient Log logger = LogFactory.getLog(ScheduleFlightRecorder.class);
+
+	public static final int SELECT_TASKS = 0;
+	public static final int EXECUTE = 1;
+	public static final int HEART_BEAT = 2;
+	public static final int ASSIGN_TASK_ITEM = 3;
+	public static final int RELOAD_TASK_ITEM = 4;
+	public static final int TASK_ITEM_HANDOFF = 5;
+	public static final int PROCESSOR_SLEEP = 6;
+	public static final int DRAIN_WAIT = 7;
+
+	/**
+	 * 事件定义：名称，标签，说明，默认阈值（空表示没有），字段（名称:类型）
+	 */
+	private static final String[][] EVENT_DEFINES = {
+		{"SelectTasks", "Select Tasks", "Call of IScheduleTaskDeal.selectTasks", "",
+			"taskType:String", "taskItemNumber:int", "fetchNumber:int", "rows:int"},
+		{"Execute", "Execute", "Call of IScheduleTaskDeal.execute", "10 ms",
+			"taskType:String", "batchSize:int", "success:boolean"},
+		{"HeartBeat", "Heart Beat", "Heartbeat of a schedule manager", "",
+			"taskType:String", "success:boolean"},
+		{"AssignTaskItem", "Assign Task Item", "Task item assignment by the leader", "",
+			"taskType:String", "serverNumber:int", "leader:boolean"},
+		{"ReloadTaskItem", "Reload Task Item", "Release and reload of the task items of a schedule manager", "",
+			"taskType:String", "taskItemNumber:int", "holdTaskItemNumber:int"},
+		{"TaskItemHandoff", "Task Item Handoff", "Task item released to another schedule manager", "",
+			"taskType:String", "taskItem:String", "handoffTime:long"},
+		{"ProcessorSleep", "Processor Sleep", "Processor sleeping for lack of data", "",
+			"taskType:String", "sleepTime:long", "wokenUp:boolean"},
+		{"DrainWait", "Drain Wait", "Waiting for fetched tasks to finish before task items are reloaded", "",
+			"taskType:String", "timeout:boolean"}
+	};
+
+	/**
+	 * 启用的事件类型，按位表示
+	 */
+	private static volatile int enabledMask = 0;
+	private static Object[] eventFactories;
+	private static Method newEventMethod;
+	private static Method beginMethod;
+	private static Method endMethod;
+	private static Method commitMethod;
+	private static Method setMethod;
+	private static Method isEnabledMethod;
+
+	static {
+		try {
+			Class<?> flightRecorderClass = Class.forName("jdk.jfr.FlightRecorder");
+			Class<?> listenerClass = Class.forName("jdk.jfr.FlightRecorderListener");
+			Object listener = Proxy.newProxyInstance(ScheduleFlightRecorder.class.getClassLoader(),
+					new Class<?>[] { listenerClass }, new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) {
+							if ("recordingStateChanged".equals(method.getName())) {
+								refresh();
+							} else if ("hashCode".equals(method.getName())) {
+								return System.identityHashCode(proxy);
+							} else if ("equals".equals(method.getName())) {
+								return proxy == args[0];
+							} else if ("toString".equals(method.getName())) {
+								return "ScheduleFlightRecorderListener";
+							}
+							return null;
+						}
+					});
+			flightRecorderClass.getMethod("addListener", listenerClass).invoke(null, listener);
+			if (Boolean.TRUE.equals(flightRecorderClass.getMethod("isInitialized").invoke(null))) {
+				refresh();
+			}
+		} catch (Throwable e) {
+			//不支持JFR
+			enabledMask = 0;
+		}
+	}
+
+	/**
+	 * 开始一个事件
+	 * @param eventType 事件类型
+	 * @return 事件没有启用时返回null
+	 */
+	public static Object begin(int eventType) {
+		if ((enabledMask & (1 << eventType)) == 0) {
+			return null;
+		}
+		try {
+			Object event = newEventMethod.invoke(eventFactories[eventType]);
+			beginMethod.invoke(event);
+			return event;
+		} catch (Throwable e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 结束并提交事件，持续时间小于阈值的事件不会写入
+	 * @param event begin返回的事件
+	 * @param values 字段的值，按事件定义的顺序
+	 */
+	public static void commit(Object event, Object... values) {
+		if (event == null) {
+			return;
+		}
+		try {
+			endMethod.invoke(event);
+			for (int i = 0; i < values.length; i++) {
+				setMethod.invoke(event, i, values[i]);
+			}
+			commitMethod.invoke(event);
+		} catch (Throwable e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("提交JFR事件失败", e);
+			}
+		}
+	}
+
+	/**
+	 * 录制状态变化时调用：第一次时注册事件类型，然后按录制的配置刷新每类事件是否启用
+	 */
+	static synchronized void refresh() {
+		try {
+			if (eventFactories == null) {
+				registerEventTypes();
+			}
+			int mask = 0;
+			for (int i = 0; i < eventFactories.length; i++) {
+				Object event = newEventMethod.invoke(eventFactories[i]);
+				if (Boolean.TRUE.equals(isEnabledMethod.invoke(event))) {
+					mask = mask | (1 << i);
+				}
+			}
+			enabledMask = mask;
+		} catch (Throwable e) {
+			logger.warn("刷新JFR事件状态失败，不再记录调度事件", e);
+			enabledMask = 0;
+		}
+	}
+
+	static boolean isEnabled(int eventType) {
+		return (enabledMask & (1 << eventType)) != 0;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static void registerEventTypes() throws Exception {
+		Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+		Class<?> eventClass = Class.forName("jdk.jfr.Event");
+		Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+		Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+		Class nameClass = Class.forName("jdk.jfr.Name");
+		Class labelClass = Class.forName("jdk.jfr.Label");
+		Class descriptionClass = Class.forName("jdk.jfr.Description");
+		Class categoryClass = Class.forName("jdk.jfr.Category");
+		Class thresholdClass = Class.forName("jdk.jfr.Threshold");
+		java.lang.reflect.Constructor<?> annotationConstructor = annotationElementClass.getConstructor(Class.class, Object.class);
+		java.lang.reflect.Constructor<?> valueConstructor = valueDescriptorClass.getConstructor(Class.class, String.class, List.class);
+		Method createMethod = eventFactoryClass.getMethod("create", List.class, List.class);
+
+		Object[] factories = new Object[EVENT_DEFINES.length];
+		for (int i = 0; i < EVENT_DEFINES.length; i++) {
+			String[] define = EVENT_DEFINES[i];
+			List annotations = new ArrayList();
+			annotations.add(annotationConstructor.newInstance(nameClass, "com.taobao.pamirs.schedule." + define[0]));
+			annotations.add(annotationConstructor.newInstance(labelClass, define[1]));
+			annotations.add(annotationConstructor.newInstance(descriptionClass, define[2]));
+			Object category = Array.newInstance(String.class, 1);
+			Array.set(category, 0, "TBSchedule");
+			annotations.add(annotationConstructor.newInstance(categoryClass, category));
+			if (define[3].length() > 0) {
+				annotations.add(annotationConstructor.newInstance(thresholdClass, define[3]));
+			}
+			List fields = new ArrayList();
+			for (int j = 4; j < define.length; j++) {
+				String fieldName = define[j].substring(0, define[j].indexOf(':'));
+				String fieldType = define[j].substring(define[j].indexOf(':') + 1);
+				List fieldAnnotations = new ArrayList();
+				fieldAnnotations.add(annotationConstructor.newInstance(labelClass, fieldName));
+				fields.add(valueConstructor.newInstance(getFieldClass(fieldType), fieldName, fieldAnnotations));
+			}
+			factories[i] = createMethod.invoke(null, annotations, fields);
+		}
+		newEventMethod = eventFactoryClass.getMethod("newEvent");
+		beginMethod = eventClass.getMethod("begin");
+		endMethod = eventClass.getMethod("end");
+		commitMethod = eventClass.getMethod("commit");
+		setMethod = eventClass.getMethod("set", int.class, Object.class);
+		isEnabledMethod = eventClass.getMethod("isEnabled");
+		eventFactories = factories;
+	}
+
+	private static Class<?> getFieldClass(String type) {
+		if ("int".equals(type)) {
+			return int.class;
+		} else if ("long".equals(type)) {
+			return long.class;
+		} else if ("boolean".equals(type)) {
+			return boolean.class;
+		}
+		return String.class;
+	}
+}
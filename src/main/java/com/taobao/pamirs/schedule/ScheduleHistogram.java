@@ -0,0 +1,172 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的对数分桶直方图，用于统计耗时、批量大小等分布
+ * 1、小于16的值每个值一个桶；更大的值按2的幂分段，每段再等分8个桶，桶宽不超过值的1/8，百分位误差在12.5%以内
+ * 2、按线程分段记录，每段一组桶，减少多个处理线程同时更新同一个桶时的争用
+ * 3、超过MAX_VALUE的值记在最后一个桶中，最大值仍然按实际值记录
+ *
+ */
+class ScheduleHistogram {
+	static final int SUB_BUCKET_BITS = 3;
+	static final int SUB_BUCKET_NUMBER = 1 << SUB_BUCKET_BITS;
+	static final long MAX_VALUE = (1L << 40) - 1;
+	static final int BUCKET_NUMBER = getBucketIndex(MAX_VALUE) + 1;
+	static final int STRIPE_NUMBER = Math.min(4, ScheduleStripedCounter.STRIPE_NUMBER);
+	/**
+	 * 每段的长度：所有的桶、值的总和，再加一个缓存行隔开相邻的段
+	 */
+	private static final int STRIPE_LENGTH = BUCKET_NUMBER + 1 + ScheduleStripedCounter.PADDING;
+
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPE_NUMBER * STRIPE_LENGTH);
+	private final AtomicLong max = new AtomicLong(0);
+
+	static int getBucketIndex(long value) {
+		if (value < 2 * SUB_BUCKET_NUMBER) {
+			return (int) Math.max(0, value);
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(Math.min(value, MAX_VALUE));
+		int sub = (int) ((Math.min(value, MAX_VALUE) >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_NUMBER - 1));
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_NUMBER + sub;
+	}
+
+	/**
+	 * 桶中的最大值
+	 */
+	static long getBucketUpperBound(int index) {
+		if (index < 2 * SUB_BUCKET_NUMBER) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKET_NUMBER + SUB_BUCKET_BITS - 1;
+		int sub = index % SUB_BUCKET_NUMBER;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		return ((long) (SUB_BUCKET_NUMBER + sub)) * width + width - 1;
+	}
+
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		int offset = ScheduleStripedCounter.getStripeIndex(STRIPE_NUMBER) * STRIPE_LENGTH;
+		this.cells.incrementAndGet(offset + getBucketIndex(value));
+		this.cells.addAndGet(offset + BUCKET_NUMBER, value);
+		long current = this.max.get();
+		while (value > current && this.max.compareAndSet(current, value) == false) {
+			current = this.max.get();
+		}
+	}
+
+	private long[] getBucketCounts() {
+		return this.getBucketCounts(new long[BUCKET_NUMBER]);
+	}
+
+	private long[] getBucketCounts(long[] counts) {
+		for (int j = 0; j < BUCKET_NUMBER; j++) {
+			counts[j] = 0;
+		}
+		for (int i = 0; i < STRIPE_NUMBER; i++) {
+			for (int j = 0; j < BUCKET_NUMBER; j++) {
+				counts[j] = counts[j] + this.cells.get(i * STRIPE_LENGTH + j);
+			}
+		}
+		return counts;
+	}
+
+	public long getCount() {
+		long count = 0;
+		long[] counts = this.getBucketCounts();
+		for (int i = 0; i < counts.length; i++) {
+			count = count + counts[i];
+		}
+		return count;
+	}
+
+	public long getSum() {
+		long sum = 0;
+		for (int i = 0; i < STRIPE_NUMBER; i++) {
+			sum = sum + this.cells.get(i * STRIPE_LENGTH + BUCKET_NUMBER);
+		}
+		return sum;
+	}
+
+	public long getMax() {
+		return this.max.get();
+	}
+
+	/**
+	 * 百分位对应的值，返回所在桶的最大值，不超过记录到的最大值
+	 * @param percentile 0到100之间，例如99.9
+	 */
+	public long getPercentile(double percentile) {
+		return this.getPercentile(this.getBucketCounts(), percentile);
+	}
+
+	/**
+	 * 一次计算多个百分位，用于定时采集，不分配内存
+	 * @param percentiles 百分位，从小到大排列
+	 * @param values 返回每个百分位对应的值
+	 * @param counts 调用方提供的缓冲区，长度为BUCKET_NUMBER
+	 * @return 记录的总数
+	 */
+	public long getPercentiles(double[] percentiles, long[] values, long[] counts) {
+		this.getBucketCounts(counts);
+		long total = 0;
+		for (int i = 0; i < counts.length; i++) {
+			total = total + counts[i];
+		}
+		long maxValue = this.max.get();
+		long count = 0;
+		int index = 0;
+		for (int i = 0; i < counts.length && index < percentiles.length; i++) {
+			count = count + counts[i];
+			while (index < percentiles.length && count >= Math.max(1, (long) Math.ceil(total * percentiles[index] / 100))) {
+				values[index] = Math.min(getBucketUpperBound(i), maxValue);
+				index = index + 1;
+			}
+		}
+		for (; index < percentiles.length; index++) {
+			values[index] = total == 0 ? 0 : maxValue;
+		}
+		return total;
+	}
+
+	private long getPercentile(long[] counts, double percentile) {
+		long total = 0;
+		for (int i = 0; i < counts.length; i++) {
+			total = total + counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long count = 0;
+		for (int i = 0; i < counts.length; i++) {
+			count = count + counts[i];
+			if (count >= target) {
+				return Math.min(getBucketUpperBound(i), this.max.get());
+			}
+		}
+		return this.max.get();
+	}
+
+	/**
+	 * 格式：count=,mean=,p50=,p90=,p99=,p999=,max=
+	 */
+	public String getDescription() {
+		long[] counts = this.getBucketCounts();
+		long total = 0;
+		for (int i = 0; i < counts.length; i++) {
+			total = total + counts[i];
+		}
+		return "count=" + total
+				+ ",mean=" + (total == 0 ? 0 : this.getSum() / total)
+				+ ",p50=" + this.getPercentile(counts, 50)
+				+ ",p90=" + this.getPercentile(counts, 90)
+				+ ",p99=" + this.getPercentile(counts, 99)
+				+ ",p999=" + this.getPercentile(counts, 99.9)
+				+ ",max=" + this.max.get();
+	}
+}
@@ -0,0 +1,102 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 没有取到数据时的休眠
+ * 1、连续没有数据时，休眠时间从sleepTimeNoData开始成倍增加，直到sleepTimeNoDataMax
+ * 2、取到数据后恢复为sleepTimeNoData
+ * 3、wakeUp立即结束休眠；休眠前已经收到wakeUp时不再休眠，避免取数过程中插入的数据要等一个周期
+ *
+ */
+class ScheduleIdleWaiter {
+	private ScheduleTaskType taskTypeInfo;
+	private String taskType;
+	//处理线程可能是虚拟线程，用Condition等待，不占住载体线程
+	private Lock lock = new ReentrantLock();
+	private Condition wakeUpCondition = lock.newCondition();
+	/**
+	 * 连续没有取到数据的次数
+	 */
+	private volatile int noDataCount = 0;
+	/**
+	 * 每次wakeUp加1
+	 */
+	private long wakeUpVersion = 0;
+	/**
+	 * 上次休眠结束时的wakeUpVersion
+	 */
+	private long checkedVersion = 0;
+
+	public ScheduleIdleWaiter(ScheduleTaskType aTaskTypeInfo, String aTaskType) {
+		this.taskTypeInfo = aTaskTypeInfo;
+		this.taskType = aTaskType;
+	}
+
+	/**
+	 * 本次没有数据时的休眠时间
+	 */
+	public long getSleepTime() {
+		long sleepTime = this.taskTypeInfo.getSleepTimeNoData();
+		long maxTime = this.taskTypeInfo.getSleepTimeNoDataMax();
+		for (int i = 0; i < this.noDataCount && sleepTime < maxTime; i++) {
+			sleepTime = sleepTime * 2;
+		}
+		return Math.max(this.taskTypeInfo.getSleepTimeNoData(), Math.min(sleepTime, maxTime));
+	}
+
+	/**
+	 * 没有取到数据时休眠，被wakeUp时提前返回
+	 * @return 是否被wakeUp提前结束
+	 * @throws InterruptedException
+	 */
+	public boolean sleepNoData() throws InterruptedException {
+		long sleepTime = this.getSleepTime();
+		this.noDataCount = this.noDataCount + 1;
+		Object traceEvent = ScheduleFlightRecorder.begin(ScheduleFlightRecorder.PROCESSOR_SLEEP);
+		boolean isWokenUp = false;
+		this.lock.lock();
+		try {
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sleepTime);
+			while (this.checkedVersion == this.wakeUpVersion) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					break;
+				}
+				this.wakeUpCondition.awaitNanos(remaining);
+			}
+			isWokenUp = this.checkedVersion != this.wakeUpVersion;
+			this.checkedVersion = this.wakeUpVersion;
+		} finally {
+			this.lock.unlock();
+		}
+		if (traceEvent != null) {
+			ScheduleFlightRecorder.commit(traceEvent, this.taskType, sleepTime, isWokenUp);
+		}
+		return isWokenUp;
+	}
+
+	/**
+	 * 取到数据后调用，恢复初始休眠时间
+	 */
+	public void reset() {
+		this.noDataCount = 0;
+	}
+
+	/**
+	 * 结束休眠，并恢复初始休眠时间
+	 */
+	public void wakeUp() {
+		this.lock.lock();
+		try {
+			this.noDataCount = 0;
+			this.wakeUpVersion = this.wakeUpVersion + 1;
+			this.wakeUpCondition.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+}
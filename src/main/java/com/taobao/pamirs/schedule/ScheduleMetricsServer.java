@@ -0,0 +1,355 @@
+package com.taobao.pamirs.schedule;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 内嵌的监控数据HTTP服务，按Prometheus文本格式输出本机调度服务器的统计，访问路径为/metrics
+ * 1、使用JDK自带的HttpServer，不增加依赖；请求由HttpServer的一个线程依次处理
+ * 2、直接读取处理线程更新的分段计数器和直方图，不增加处理线程的开销；输出时复用缓冲区，标签按调度服务器缓存
+ * 3、调度服务器的标签为task_type和server，按任务类型汇总时在查询中使用sum by (task_type)
+ * 4、直方图按summary输出0.5、0.9、0.99、0.999分位，单位与统计一致
+ * 5、说明文字使用英文，正常情况下输出内容都是ASCII字符，不需要额外的编码转换
+ *
+ */
+class ScheduleMetricsServer implements HttpHandler {
+	private static transient Log logger = LogFactory.getLog(ScheduleMetricsServer.class);
+
+	static final String CONTEXT_PATH = "/metrics";
+	static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private static final double[] QUANTILES = {50, 90, 99, 99.9};
+	private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+	private static final Thread.State[] THREAD_STATES = Thread.State.values();
+
+	/**
+	 * 调度服务器的计数：名称，说明
+	 */
+	private static final String[][] COUNTERS = {
+		{"tbschedule_fetch_count_total", "Number of selectTasks calls"},
+		{"tbschedule_fetch_task_total", "Tasks fetched by selectTasks"},
+		{"tbschedule_deal_success_total", "Tasks executed successfully"},
+		{"tbschedule_deal_fail_total", "Tasks failed"},
+		{"tbschedule_deal_spend_time_ms_total", "Total execute time in milliseconds"},
+		{"tbschedule_steal_total", "Tasks stolen from other thread queues"},
+		{"tbschedule_retry_total", "Retries of failed tasks"},
+		{"tbschedule_quarantine_total", "Tasks dropped after exceeding retry limit"},
+		{"tbschedule_rate_limit_wait_ms_total", "Total rate limit wait time in milliseconds"},
+		{"tbschedule_other_compare_total", "Number of special comparisons"},
+		{"tbschedule_heartbeat_fail_total", "Failed heartbeats"},
+		{"tbschedule_task_item_reload_total", "Task item reloads"},
+		{"tbschedule_slow_execute_total", "Executes running longer than slowExecuteTime"},
+		{"tbschedule_execute_interrupt_total", "Executes interrupted after executeInterruptTime"}
+	};
+	/**
+	 * 调度服务器的当前值：名称，说明
+	 */
+	private static final String[][] GAUGES = {
+		{"tbschedule_fetch_number", "Current fetch size of selectTasks"},
+		{"tbschedule_queue_size", "Tasks waiting in memory"},
+		{"tbschedule_thread_number", "Processing threads"},
+		{"tbschedule_sleeping", "1 if the processor is sleeping for lack of data"},
+		{"tbschedule_paused", "1 if scheduling is paused"},
+		{"tbschedule_task_item_number", "Task items currently assigned"},
+		{"tbschedule_slow_execute_number", "Executes currently running longer than slowExecuteTime"}
+	};
+	/**
+	 * 调度服务器的分布：名称，说明
+	 */
+	private static final String[][] SUMMARIES = {
+		{"tbschedule_execute_time_ms", "Execute time in milliseconds"},
+		{"tbschedule_select_time_ms", "selectTasks time in milliseconds"},
+		{"tbschedule_batch_size", "Tasks per execute"},
+		{"tbschedule_queue_wait_time_ms", "Task queue wait time in milliseconds"},
+		{"tbschedule_heartbeat_time_ms", "Heartbeat time in milliseconds"},
+		{"tbschedule_task_item_handoff_time_ms", "Task item handoff time in milliseconds"}
+	};
+
+	private final TBScheduleManagerFactory factory;
+	private final int port;
+	private HttpServer server;
+
+	/**
+	 * 以下缓冲区只在render中使用，由this同步
+	 */
+	private final StringBuilder buffer = new StringBuilder(16 * 1024);
+	private byte[] bytes = new byte[16 * 1024];
+	private final long[] quantileValues = new long[QUANTILES.length];
+	private final long[] bucketCounts = new long[ScheduleHistogram.BUCKET_NUMBER];
+	private final int[] threadStateCounts = new int[THREAD_STATES.length];
+	private TBScheduleManager[] managers = new TBScheduleManager[0];
+	private String[] managerLabels = new String[0];
+	private int managerNumber = 0;
+	/**
+	 * managerMap中的key -> 标签
+	 */
+	private final Map<String, String> labelMap = new HashMap<String, String>();
+
+	public ScheduleMetricsServer(TBScheduleManagerFactory aFactory, int aPort) {
+		this.factory = aFactory;
+		this.port = aPort;
+	}
+
+	public void start() throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress(this.port), 0);
+		this.server.createContext(CONTEXT_PATH, this);
+		this.server.setExecutor(null);
+		this.server.start();
+		logger.info("监控数据服务启动：http://" + ScheduleUtil.getLocalIP() + ":" + this.port + CONTEXT_PATH);
+	}
+
+	public void stop() {
+		if (this.server != null) {
+			this.server.stop(0);
+			this.server = null;
+		}
+	}
+
+	public void handle(HttpExchange exchange) throws IOException {
+		try {
+			if ("GET".equalsIgnoreCase(exchange.getRequestMethod()) == false) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			synchronized (this) {
+				int length;
+				try {
+					length = this.render();
+				} catch (Throwable e) {
+					logger.error("生成监控数据失败", e);
+					exchange.sendResponseHeaders(500, -1);
+					return;
+				}
+				exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+				exchange.sendResponseHeaders(200, length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(this.bytes, 0, length);
+				out.flush();
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * 生成所有监控数据并编码到bytes中
+	 * @return 字节数
+	 */
+	synchronized int render() throws IOException {
+		this.buffer.setLength(0);
+		this.loadManagers();
+		for (int i = 0; i < COUNTERS.length; i++) {
+			this.writeHead(COUNTERS[i][0], COUNTERS[i][1], "counter");
+			for (int j = 0; j < this.managerNumber; j++) {
+				this.writeValue(COUNTERS[i][0], this.managerLabels[j], null, this.getCounter(this.managers[j].getStatisticsInfo(), i));
+			}
+		}
+		for (int i = 0; i < GAUGES.length; i++) {
+			this.writeHead(GAUGES[i][0], GAUGES[i][1], "gauge");
+			for (int j = 0; j < this.managerNumber; j++) {
+				this.writeValue(GAUGES[i][0], this.managerLabels[j], null, this.getGauge(this.managers[j], i));
+			}
+		}
+		this.writeHead("tbschedule_threads", "Processing threads by state", "gauge");
+		for (int j = 0; j < this.managerNumber; j++) {
+			this.writeThreadStates(this.managers[j], this.managerLabels[j]);
+		}
+		for (int i = 0; i < SUMMARIES.length; i++) {
+			this.writeHead(SUMMARIES[i][0], SUMMARIES[i][1], "summary");
+			for (int j = 0; j < this.managerNumber; j++) {
+				this.writeSummary(SUMMARIES[i][0], this.managerLabels[j], this.getHistogram(this.managers[j].getStatisticsInfo(), i));
+			}
+		}
+		this.writeHead("tbschedule_factory_manager_number", "Schedule managers in this factory", "gauge");
+		this.writeValue("tbschedule_factory_manager_number", null, null, this.managerNumber);
+		this.writeHead("tbschedule_factory_zookeeper_connected", "1 if connected to Zookeeper", "gauge");
+		this.writeValue("tbschedule_factory_zookeeper_connected", null, null, this.isZookeeperConnected() ? 1 : 0);
+		this.writeHead("tbschedule_factory_refresh_fail_total", "Failed factory refreshes", "counter");
+		this.writeValue("tbschedule_factory_refresh_fail_total", null, null, this.factory.refreshFailCount.get());
+		this.writeHead("tbschedule_factory_refresh_time_ms", "Factory refresh time in milliseconds", "summary");
+		this.writeSummary("tbschedule_factory_refresh_time_ms", null, this.factory.refreshTime);
+		return this.encode();
+	}
+
+	/**
+	 * 读取当前的调度服务器，标签只在调度服务器新增时生成
+	 */
+	private void loadManagers() {
+		Map<String, TBScheduleManager> managerMap = this.factory.getManagerMap();
+		this.labelMap.keySet().retainAll(managerMap.keySet());
+		int count = 0;
+		for (Map.Entry<String, TBScheduleManager> entry : managerMap.entrySet()) {
+			if (count >= this.managers.length) {
+				TBScheduleManager[] newManagers = new TBScheduleManager[count * 2 + 4];
+				System.arraycopy(this.managers, 0, newManagers, 0, count);
+				this.managers = newManagers;
+				String[] newLabels = new String[newManagers.length];
+				System.arraycopy(this.managerLabels, 0, newLabels, 0, count);
+				this.managerLabels = newLabels;
+			}
+			String label = this.labelMap.get(entry.getKey());
+			if (label == null) {
+				ScheduleServer scheduleServer = entry.getValue().getScheduleServer();
+				label = "task_type=\"" + escape(scheduleServer.getTaskType()) + "\",server=\"" + escape(scheduleServer.getUuid()) + "\"";
+				this.labelMap.put(entry.getKey(), label);
+			}
+			this.managers[count] = entry.getValue();
+			this.managerLabels[count] = label;
+			count = count + 1;
+		}
+		for (int i = count; i < this.managerNumber; i++) {
+			this.managers[i] = null;
+		}
+		this.managerNumber = count;
+	}
+
+	private long getCounter(StatisticsInfo info, int index) {
+		switch (index) {
+		case 0: return info.getFetchDataCount();
+		case 1: return info.getFetchDataNum();
+		case 2: return info.getDealDataSucess();
+		case 3: return info.getDealDataFail();
+		case 4: return info.getDealSpendTime();
+		case 5: return info.getStealCount();
+		case 6: return info.getRetryCount();
+		case 7: return info.getQuarantineCount();
+		case 8: return info.getRateLimitWaitTime();
+		case 9: return info.getOtherCompareCount();
+		case 10: return info.getHeartBeatFailCount();
+		case 11: return info.getTaskItemReloadCount();
+		case 12: return info.getSlowExecuteCount();
+		default: return info.getExecuteInterruptCount();
+		}
+	}
+
+	private long getGauge(TBScheduleManager manager, int index) {
+		IScheduleProcessor processor = manager.getProcessor();
+		switch (index) {
+		case 0: return manager.getStatisticsInfo().getFetchDataNumber();
+		case 1: return processor == null ? 0 : processor.getTaskQueueSize();
+		case 2: return processor == null ? 0 : processor.getThreadNumber();
+		case 3: return processor != null && processor.isSleeping() ? 1 : 0;
+		case 4: return manager.isPauseSchedule() ? 1 : 0;
+		case 5: return manager.getCurrentTaskItemNumber();
+		default: return manager.getExecuteWatchdog() == null ? 0 : manager.getExecuteWatchdog().getSlowExecuteNumber();
+		}
+	}
+
+	private ScheduleHistogram getHistogram(StatisticsInfo info, int index) {
+		switch (index) {
+		case 0: return info.getExecuteTime();
+		case 1: return info.getSelectTime();
+		case 2: return info.getBatchSize();
+		case 3: return info.getQueueWaitTime();
+		case 4: return info.getHeartBeatTime();
+		default: return info.getTaskItemHandoffTime();
+		}
+	}
+
+	private boolean isZookeeperConnected() {
+		try {
+			return this.factory.zkManager != null && this.factory.zkManager.checkZookeeperState();
+		} catch (Throwable e) {
+			return false;
+		}
+	}
+
+	private void writeHead(String name, String help, String type) {
+		this.buffer.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		this.buffer.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	/**
+	 * @param labels 调度服务器的标签，可以为null
+	 * @param extraLabel 附加的标签，例如quantile="0.99"，可以为null
+	 */
+	private void writeValue(String name, String labels, String extraLabel, long value) {
+		this.buffer.append(name);
+		if (labels != null || extraLabel != null) {
+			this.buffer.append('{');
+			if (labels != null) {
+				this.buffer.append(labels);
+			}
+			if (extraLabel != null) {
+				if (labels != null) {
+					this.buffer.append(',');
+				}
+				this.buffer.append(extraLabel);
+			}
+			this.buffer.append('}');
+		}
+		this.buffer.append(' ').append(value).append('\n');
+	}
+
+	private void writeSummary(String name, String labels, ScheduleHistogram histogram) {
+		long count = histogram.getPercentiles(QUANTILES, this.quantileValues, this.bucketCounts);
+		for (int i = 0; i < QUANTILES.length; i++) {
+			this.buffer.append(name).append('{');
+			if (labels != null) {
+				this.buffer.append(labels).append(',');
+			}
+			this.buffer.append("quantile=\"").append(QUANTILE_LABELS[i]).append("\"} ").append(this.quantileValues[i]).append('\n');
+		}
+		this.buffer.append(name).append("_sum");
+		this.writeValue("", labels, null, histogram.getSum());
+		this.buffer.append(name).append("_count");
+		this.writeValue("", labels, null, count);
+	}
+
+	private void writeThreadStates(TBScheduleManager manager, String labels) {
+		for (int i = 0; i < this.threadStateCounts.length; i++) {
+			this.threadStateCounts[i] = 0;
+		}
+		IScheduleProcessor processor = manager.getProcessor();
+		if (processor != null) {
+			Thread[] threads = processor.getThreads();
+			for (int i = 0; i < threads.length; i++) {
+				this.threadStateCounts[threads[i].getState().ordinal()]++;
+			}
+		}
+		for (int i = 0; i < THREAD_STATES.length; i++) {
+			this.buffer.append("tbschedule_threads{").append(labels).append(",state=\"")
+					.append(THREAD_STATES[i].name()).append("\"} ").append(this.threadStateCounts[i]).append('\n');
+		}
+	}
+
+	/**
+	 * 编码为UTF-8，只有ASCII字符时直接复制到复用的字节数组
+	 */
+	private int encode() throws IOException {
+		int length = this.buffer.length();
+		if (this.bytes.length < length) {
+			this.bytes = new byte[Math.max(length, this.bytes.length * 2)];
+		}
+		for (int i = 0; i < length; i++) {
+			char c = this.buffer.charAt(i);
+			if (c >= 0x80) {
+				byte[] utf8 = this.buffer.toString().getBytes("UTF-8");
+				if (this.bytes.length < utf8.length) {
+					this.bytes = new byte[utf8.length];
+				}
+				System.arraycopy(utf8, 0, this.bytes, 0, utf8.length);
+				return utf8.length;
+			}
+			this.bytes[i] = (byte) c;
+		}
+		return length;
+	}
+
+	static String escape(String value) {
+		if (value == null) {
+			return "";
+		}
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -0,0 +1,103 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 令牌桶限流，控制当前Manager每秒处理的任务数
+ * 1、令牌按rate每秒匀速生成，最多积累一秒的量，允许短时间的突发
+ * 2、一次取多个令牌（批处理）时允许透支，由后面的请求等待补齐，保证批处理数量大于rate时也能执行
+ * 3、rate小于等于0时不限流
+ *
+ */
+class ScheduleRateLimiter {
+	private double rate = 0;
+	/**
+	 * 当前可用的令牌数，小于0表示透支
+	 */
+	private double storedPermits = 0;
+	private long lastRefillTime = System.nanoTime();
+	private Lock lock = new ReentrantLock();
+	private Condition cancelCondition = lock.newCondition();
+	private long cancelVersion = 0;
+
+	/**
+	 * 设置每秒允许的数量
+	 */
+	public void setRate(double aRate) {
+		lock.lock();
+		try {
+			this.refill(System.nanoTime());
+			if (aRate > 0 && this.rate <= 0) {
+				//从不限流切换到限流时，从一秒的量开始
+				this.storedPermits = aRate;
+			}
+			this.rate = aRate;
+			if (this.rate > 0 && this.storedPermits > this.rate) {
+				this.storedPermits = this.rate;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public double getRate() {
+		return this.rate;
+	}
+
+	public boolean isLimited() {
+		return this.rate > 0;
+	}
+
+	/**
+	 * 获取令牌，不够时等待
+	 * @return 等待的毫秒数
+	 * @throws InterruptedException
+	 */
+	public long acquire(int permits) throws InterruptedException {
+		lock.lock();
+		try {
+			if (this.rate <= 0) {
+				return 0;
+			}
+			long now = System.nanoTime();
+			this.refill(now);
+			this.storedPermits = this.storedPermits - permits;
+			if (this.storedPermits >= 0) {
+				return 0;
+			}
+			long waitNanos = (long) (-this.storedPermits / this.rate * TimeUnit.SECONDS.toNanos(1));
+			long version = this.cancelVersion;
+			long remain = waitNanos;
+			while (remain > 0 && version == this.cancelVersion) {
+				remain = this.cancelCondition.awaitNanos(remain);
+			}
+			return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - now);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 结束所有等待，停止调度时调用
+	 */
+	public void cancelWait() {
+		lock.lock();
+		try {
+			this.cancelVersion = this.cancelVersion + 1;
+			this.cancelCondition.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void refill(long now) {
+		if (this.rate > 0) {
+			this.storedPermits = Math.min(this.rate,
+					this.storedPermits + (now - this.lastRefillTime) * this.rate / TimeUnit.SECONDS.toNanos(1));
+		}
+		this.lastRefillTime = now;
+	}
+}
@@ -0,0 +1,90 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 正在处理中的任务集合，代替synchronizedList：
+ * 1、按对象标识（==）区分任务，不依赖任务的equals和hashCode；批处理时元素为任务数组
+ * 2、加入和移除都是O(1)，不持有全局锁
+ * 3、同一个任务对象可以同时存在多次（失败重试后在finally移除前又被取到），按次数计数，移除到0次时才删除
+ *
+ */
+class ScheduleRunningTaskSet {
+	private final ConcurrentHashMap<RunningKey, RunningKey> map = new ConcurrentHashMap<RunningKey, RunningKey>();
+
+	public void add(Object task) {
+		RunningKey key = new RunningKey(task, 1);
+		while (true) {
+			RunningKey exist = this.map.putIfAbsent(key, key);
+			if (exist == null) {
+				return;
+			}
+			int count = exist.get();
+			if (count > 0) {
+				if (exist.compareAndSet(count, count + 1)) {
+					return;
+				}
+			} else {
+				//计数已经为0，正在被移除
+				this.map.remove(exist, exist);
+			}
+		}
+	}
+
+	public void remove(Object task) {
+		RunningKey exist = this.map.get(new RunningKey(task, 0));
+		if (exist == null) {
+			return;
+		}
+		while (true) {
+			int count = exist.get();
+			if (count <= 0) {
+				return;
+			}
+			if (exist.compareAndSet(count, count - 1)) {
+				if (count == 1) {
+					this.map.remove(exist, exist);
+				}
+				return;
+			}
+		}
+	}
+
+	public int size() {
+		return this.map.size();
+	}
+
+	/**
+	 * 当前处理中的任务，同一个任务只返回一次
+	 */
+	public Object[] toArray() {
+		List<Object> result = new ArrayList<Object>(this.map.size());
+		for (RunningKey key : this.map.keySet()) {
+			if (key.get() > 0) {
+				result.add(key.task);
+			}
+		}
+		return result.toArray();
+	}
+
+	@SuppressWarnings("serial")
+	static class RunningKey extends AtomicInteger {
+		final Object task;
+
+		RunningKey(Object aTask, int count) {
+			super(count);
+			this.task = aTask;
+		}
+
+		public int hashCode() {
+			return System.identityHashCode(this.task);
+		}
+
+		public boolean equals(Object obj) {
+			return obj instanceof RunningKey && ((RunningKey) obj).task == this.task;
+		}
+	}
+}
@@ -62,6 +62,7 @@ public class ScheduleServer {
 	/**
 	 * 处理描述信息，例如读取的任务数量，处理成功的任务数量，处理失败的数量，处理耗时
 	 * FetchDataCount=4430,FetcheDataNum=438570,DealDataSucess=438570,DealDataFail=0,DealSpendTime=651066
+	 * 后面附带最近1分钟、5分钟的处理速率和耗时的99分位，例如 dealRate1m=1520.3,...,executeTimeP99=12
 	 */
 	private String dealInfoDesc;
 
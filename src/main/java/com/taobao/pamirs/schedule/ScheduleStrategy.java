@@ -4,7 +4,7 @@ import org.apache.commons.lang.builder.ToStringBuilder;
 
 public class ScheduleStrategy {
 	/**
-	 * 
+	 * 任务类型
 	 */
 	private String taskType;
 
@@ -12,7 +12,7 @@ public class ScheduleStrategy {
 
 	private int numOfSingleServer;
 	/**
-	 * ָҪִеȵĻ
+	 * 指定需要执行调度的机器数量
 	 */
 	private int assignNum;
 	
@@ -3,17 +3,17 @@ package com.taobao.pamirs.schedule;
 public class ScheduleStrategyRunntime {
 	
 	/**
-	 * 
+	 * 任务类型
 	 */
 	String taskType;
 	String uuid;
 	String ip;
 	/**
-	 * Ҫ
+	 * 需要的任务数量
 	 */
 	int	requestNum;
 	/**
-	 * ǰ
+	 * 当前的任务数量
 	 */
 	int currentNum;
 	 
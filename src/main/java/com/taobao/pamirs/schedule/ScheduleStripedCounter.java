@@ -0,0 +1,54 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段计数器，替代多个处理线程同时更新的AtomicLong
+ * 1、每个线程按线程ID更新其中一段，每段独占一个缓存行，减少线程间的缓存行争用
+ * 2、读取时把所有段相加，读取期间的更新可能只计入一部分
+ *
+ */
+class ScheduleStripedCounter {
+	/**
+	 * 每段占用的long个数，8个long为64字节，等于一个缓存行
+	 */
+	static final int PADDING = 8;
+	static final int STRIPE_NUMBER = getStripeNumber();
+
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPE_NUMBER * PADDING);
+
+	/**
+	 * 不小于CPU数量的2的幂，最多16段
+	 */
+	private static int getStripeNumber() {
+		int number = 1;
+		while (number < Runtime.getRuntime().availableProcessors() && number < 16) {
+			number = number << 1;
+		}
+		return number;
+	}
+
+	/**
+	 * 当前线程对应的段，线程ID打散后取低位
+	 */
+	static int getStripeIndex(int stripeNumber) {
+		long id = Thread.currentThread().getId();
+		return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & (stripeNumber - 1);
+	}
+
+	public void add(long value) {
+		this.cells.addAndGet(getStripeIndex(STRIPE_NUMBER) * PADDING, value);
+	}
+
+	public long get() {
+		long sum = 0;
+		for (int i = 0; i < STRIPE_NUMBER; i++) {
+			sum = sum + this.cells.get(i * PADDING);
+		}
+		return sum;
+	}
+
+	public String toString() {
+		return String.valueOf(this.get());
+	}
+}
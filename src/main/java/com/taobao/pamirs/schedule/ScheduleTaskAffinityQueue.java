@@ -0,0 +1,355 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 任务项绑定线程的任务队列，每个任务项一个队列，同一任务项的任务只由一个线程处理，便于处理Bean按任务项缓存数据
+ * 1、任务项按ID排序后依次分配给处理线程，任务项或者处理线程变化时重新分配，不变时分配结果不变
+ * 2、处理线程第一次取任务时加入，线程结束后在其它线程空闲时移出
+ * 3、不在当前任务项中的任务（例如等待移交的任务项）按哈希分配
+ * 4、不窃取其它线程的任务，自己的任务项没有任务而队列中还有任务时，等待新任务放入或者队列取空，避免处理线程空转
+ * 5、不在当前任务项中的队列取空后删除，任务项变化时队列数量不会一直增加
+ *
+ * @param <T> 任务类型
+ */
+class ScheduleTaskAffinityQueue<T> implements IScheduleTaskQueue<T> {
+	/**
+	 * 自己的任务项没有任务时最多等待的毫秒数
+	 */
+	static final long IDLE_WAIT_TIME = 50;
+
+	private final int capacity;
+	private final AtomicInteger size = new AtomicInteger(0);
+	private final IScheduleTaskItemResolver<T> taskItemResolver;
+	private final ConcurrentHashMap<String, LinkedBlockingQueue<T>> taskItemQueueMap = new ConcurrentHashMap<String, LinkedBlockingQueue<T>>();
+	/**
+	 * 当前任务项按ID排序后的序号
+	 */
+	private volatile Map<String, Integer> taskItemIndexMap = new HashMap<String, Integer>();
+	/**
+	 * 按加入顺序排列的处理线程，修改时复制
+	 */
+	private volatile Thread[] workers = new Thread[0];
+	private final Object lockWorkers = new Object();
+	/**
+	 * 任务项、处理线程或者任务项队列变化时加1，处理线程据此重新计算自己负责的队列
+	 */
+	private final AtomicLong version = new AtomicLong(0);
+	private final ThreadLocal<Worker> currentWorker = new ThreadLocal<Worker>();
+	private final AtomicInteger waitingNumber = new AtomicInteger(0);
+	private final Lock lockWait = new ReentrantLock();
+	private final Condition dataCondition = lockWait.newCondition();
+
+	public ScheduleTaskAffinityQueue(int aCapacity, IScheduleTaskItemResolver<T> aTaskItemResolver) {
+		this.capacity = aCapacity;
+		this.taskItemResolver = aTaskItemResolver;
+	}
+
+	public void setTaskItems(List<TaskItemDefine> taskItems) {
+		List<String> itemIds = new ArrayList<String>();
+		for (TaskItemDefine item : taskItems) {
+			itemIds.add(item.getTaskItemId());
+		}
+		Collections.sort(itemIds);
+		Map<String, Integer> indexMap = new HashMap<String, Integer>();
+		for (int i = 0; i < itemIds.size(); i++) {
+			indexMap.put(itemIds.get(i), i);
+		}
+		boolean isChanged = false;
+		if (indexMap.equals(this.taskItemIndexMap) == false) {
+			this.taskItemIndexMap = indexMap;
+			isChanged = true;
+		}
+		for (Map.Entry<String, LinkedBlockingQueue<T>> entry : this.taskItemQueueMap.entrySet()) {
+			if (indexMap.containsKey(entry.getKey()) == false && entry.getValue().isEmpty() == true
+					&& this.taskItemQueueMap.remove(entry.getKey(), entry.getValue()) == true) {
+				isChanged = true;
+			}
+		}
+		if (isChanged == true) {
+			this.version.incrementAndGet();
+		}
+	}
+
+	private boolean acquire() {
+		while (true) {
+			int current = this.size.get();
+			if (current >= this.capacity) {
+				return false;
+			}
+			if (this.size.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	private boolean offerTask(T task) {
+		if (task == null) {
+			throw new NullPointerException("任务不能为空");
+		}
+		if (this.acquire() == false) {
+			return false;
+		}
+		String itemId = this.taskItemResolver.getTaskItemId(task);
+		if (itemId == null) {
+			itemId = "";
+		}
+		while (true) {
+			LinkedBlockingQueue<T> queue = this.taskItemQueueMap.get(itemId);
+			if (queue == null) {
+				queue = new LinkedBlockingQueue<T>();
+				LinkedBlockingQueue<T> old = this.taskItemQueueMap.putIfAbsent(itemId, queue);
+				if (old != null) {
+					queue = old;
+				} else {
+					this.version.incrementAndGet();
+				}
+			}
+			queue.offer(task);
+			//放入时队列被setTaskItems删除，任务还没有被取走时放入新的队列
+			if (this.taskItemQueueMap.get(itemId) == queue || queue.remove(task) == false) {
+				return true;
+			}
+		}
+	}
+
+	public boolean offer(T task) {
+		boolean result = this.offerTask(task);
+		if (result == true) {
+			this.signalData();
+		}
+		return result;
+	}
+
+	public int offerAll(List<T> tasks) {
+		int count = 0;
+		for (T task : tasks) {
+			if (this.offerTask(task) == false) {
+				break;
+			}
+			count = count + 1;
+		}
+		if (count > 0) {
+			this.signalData();
+		}
+		return count;
+	}
+
+	public T poll() {
+		T result = this.currentWorker().poll();
+		if (result == null && this.waitOwnData() == true) {
+			result = this.currentWorker().poll();
+		}
+		if (result != null && this.size.decrementAndGet() == 0) {
+			//队列取空后唤醒等待的线程，由处理器取下一批数据
+			this.signalData();
+		}
+		return result;
+	}
+
+	public Object[] poll(int maxNumber) {
+		List<T> result = this.currentWorker().poll(maxNumber);
+		if (result.size() == 0 && this.waitOwnData() == true) {
+			result = this.currentWorker().poll(maxNumber);
+		}
+		if (result.size() == 0) {
+			return null;
+		}
+		if (this.size.addAndGet(-result.size()) == 0) {
+			this.signalData();
+		}
+		return result.toArray();
+	}
+
+	/**
+	 * 不区分任务项取出所有任务，用于在处理线程以外清除数据
+	 */
+	public Object[] pollAll() {
+		List<T> result = new ArrayList<T>();
+		for (LinkedBlockingQueue<T> queue : this.taskItemQueueMap.values()) {
+			queue.drainTo(result);
+		}
+		if (result.size() == 0) {
+			return null;
+		}
+		this.size.addAndGet(-result.size());
+		return result.toArray();
+	}
+
+	public int size() {
+		return this.size.get();
+	}
+
+	public boolean isEmpty() {
+		return this.size.get() == 0;
+	}
+
+	public int capacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * 当前的任务项队列数量
+	 */
+	int getTaskItemQueueNumber() {
+		return this.taskItemQueueMap.size();
+	}
+
+	public void clear() {
+		for (LinkedBlockingQueue<T> queue : this.taskItemQueueMap.values()) {
+			while (queue.poll() != null) {
+				this.size.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * 当前处理线程第一次取任务时加入
+	 */
+	private Worker currentWorker() {
+		Worker worker = this.currentWorker.get();
+		if (worker == null) {
+			worker = new Worker();
+			this.currentWorker.set(worker);
+			synchronized (this.lockWorkers) {
+				Thread[] newWorkers = new Thread[this.workers.length + 1];
+				System.arraycopy(this.workers, 0, newWorkers, 0, this.workers.length);
+				newWorkers[this.workers.length] = Thread.currentThread();
+				this.workers = newWorkers;
+				this.version.incrementAndGet();
+			}
+		}
+		long currentVersion = this.version.get();
+		if (worker.version != currentVersion) {
+			worker.version = currentVersion;
+			worker.queues = this.getAssignedQueues();
+			worker.cursor = 0;
+		}
+		return worker;
+	}
+
+	/**
+	 * 当前线程负责的任务项队列：任务项序号按处理线程数取模等于线程的位置
+	 */
+	private List<LinkedBlockingQueue<T>> getAssignedQueues() {
+		List<LinkedBlockingQueue<T>> result = new ArrayList<LinkedBlockingQueue<T>>();
+		Thread[] currentWorkers = this.workers;
+		int position = -1;
+		for (int i = 0; i < currentWorkers.length; i++) {
+			if (currentWorkers[i] == Thread.currentThread()) {
+				position = i;
+				break;
+			}
+		}
+		if (position < 0) {
+			return result;
+		}
+		Map<String, Integer> indexMap = this.taskItemIndexMap;
+		for (Map.Entry<String, LinkedBlockingQueue<T>> entry : this.taskItemQueueMap.entrySet()) {
+			Integer index = indexMap.get(entry.getKey());
+			if (index == null) {
+				//不在当前任务项中的数据，按哈希分配
+				index = entry.getKey().hashCode() & Integer.MAX_VALUE;
+			}
+			if (index % currentWorkers.length == position) {
+				result.add(entry.getValue());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 自己的任务项没有任务、队列中还有其它任务时，移出已经结束的处理线程，并等待新的任务放入或者队列取空
+	 * @return 队列中是否还有任务
+	 */
+	private boolean waitOwnData() {
+		if (this.size.get() == 0) {
+			return false;
+		}
+		this.removeDeadWorkers();
+		//先登记等待再检查数量，放入任务或者取空队列的线程不会漏掉通知
+		this.waitingNumber.incrementAndGet();
+		this.lockWait.lock();
+		try {
+			if (this.size.get() > 0) {
+				this.dataCondition.await(IDLE_WAIT_TIME, TimeUnit.MILLISECONDS);
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} finally {
+			this.lockWait.unlock();
+			this.waitingNumber.decrementAndGet();
+		}
+		return true;
+	}
+
+	private void removeDeadWorkers() {
+		synchronized (this.lockWorkers) {
+			List<Thread> aliveWorkers = new ArrayList<Thread>(this.workers.length);
+			for (int i = 0; i < this.workers.length; i++) {
+				if (this.workers[i].isAlive() == true) {
+					aliveWorkers.add(this.workers[i]);
+				}
+			}
+			if (aliveWorkers.size() != this.workers.length) {
+				this.workers = aliveWorkers.toArray(new Thread[aliveWorkers.size()]);
+				this.version.incrementAndGet();
+			}
+		}
+	}
+
+	private void signalData() {
+		if (this.waitingNumber.get() > 0) {
+			this.lockWait.lock();
+			try {
+				this.dataCondition.signalAll();
+			} finally {
+				this.lockWait.unlock();
+			}
+		}
+	}
+
+	/**
+	 * 处理线程负责的任务项队列，只由所属线程访问。连续从同一个任务项取任务，取完再换下一个
+	 */
+	private class Worker {
+		long version = -1;
+		List<LinkedBlockingQueue<T>> queues;
+		int cursor = 0;
+
+		T poll() {
+			for (int i = 0; i < this.queues.size(); i++) {
+				int index = (this.cursor + i) % this.queues.size();
+				T task = this.queues.get(index).poll();
+				if (task != null) {
+					this.cursor = index;
+					return task;
+				}
+			}
+			return null;
+		}
+
+		List<T> poll(int maxNumber) {
+			List<T> result = new ArrayList<T>(Math.min(maxNumber, 64));
+			for (int i = 0; i < this.queues.size() && result.size() == 0; i++) {
+				int index = (this.cursor + i) % this.queues.size();
+				if (this.queues.get(index).drainTo(result, maxNumber) > 0) {
+					this.cursor = index;
+				}
+			}
+			return result;
+		}
+	}
+}
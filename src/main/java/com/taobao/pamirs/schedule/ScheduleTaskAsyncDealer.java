@@ -0,0 +1,132 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 调用IScheduleTaskDealAsync发起任务处理，用许可数限制同时处理中的任务，处理完成时记录统计信息
+ *
+ */
+class ScheduleTaskAsyncDealer {
+	private static transient Log logger = LogFactory.getLog(ScheduleTaskAsyncDealer.class);
+
+	private IScheduleTaskDealAsync<?> taskDealBean;
+	private String taskType;
+	private StatisticsInfo statisticsInfo;
+	private int maxInFlightNumber;
+	private Semaphore permits;
+
+	public ScheduleTaskAsyncDealer(IScheduleTaskDealAsync<?> aTaskDealBean, ScheduleTaskType taskTypeInfo,
+			String aTaskType, StatisticsInfo aStatisticsInfo) {
+		this.taskDealBean = aTaskDealBean;
+		this.taskType = aTaskType;
+		this.statisticsInfo = aStatisticsInfo;
+		this.maxInFlightNumber = taskTypeInfo.getMaxInFlightNumber();
+		if (this.maxInFlightNumber <= 0) {
+			this.maxInFlightNumber = taskTypeInfo.getThreadNumber() * 10;
+		}
+		this.permits = new Semaphore(this.maxInFlightNumber);
+	}
+
+	/**
+	 * 是否是异步处理的任务Bean
+	 */
+	public static boolean isAsync(IScheduleTaskDeal<?> taskDealBean) {
+		return taskDealBean instanceof IScheduleTaskDealAsync<?>;
+	}
+
+	/**
+	 * 是否是处理单个任务的Bean，包括同步和异步
+	 */
+	public static boolean isSingle(IScheduleTaskDeal<?> taskDealBean) {
+		return taskDealBean instanceof IScheduleTaskDealSingle<?>
+				|| taskDealBean instanceof IScheduleTaskDealAsyncSingle<?>;
+	}
+
+	/**
+	 * 发起任务处理，没有许可时等待
+	 * @param executeTask 单个任务，或者批处理时的任务数组
+	 * @param ownSign
+	 * @param finishHandler 处理完成后调用，用来清除处理中的任务，可以为null
+	 * @throws InterruptedException 等待许可时被中断，任务没有发起处理，finishHandler不会被调用
+	 */
+	@SuppressWarnings("unchecked")
+	public void execute(final Object executeTask, String ownSign, final Runnable finishHandler)
+			throws InterruptedException {
+		this.permits.acquire();
+		final long startTime = ScheduleUtil.getCurrentTimeMillis();
+		final int taskNum = (executeTask instanceof Object[]) ? ((Object[]) executeTask).length : 1;
+		//异步处理的事件从发起到回调，在回调线程中提交
+		final Object traceEvent = ScheduleFlightRecorder.begin(ScheduleFlightRecorder.EXECUTE);
+		IScheduleTaskDealCallback callback = new IScheduleTaskDealCallback() {
+			private AtomicBoolean isFinish = new AtomicBoolean(false);
+
+			public void complete(boolean isSuccess) {
+				if (this.isFinish.compareAndSet(false, true) == false) {
+					return;
+				}
+				finish(executeTask, taskNum, isSuccess, startTime, traceEvent, finishHandler);
+			}
+
+			public void fail(Throwable ex) {
+				if (this.isFinish.compareAndSet(false, true) == false) {
+					return;
+				}
+				logger.error("Task :" + executeTask + " 处理失败", ex);
+				finish(executeTask, taskNum, false, startTime, traceEvent, finishHandler);
+			}
+		};
+		try {
+			if (this.taskDealBean instanceof IScheduleTaskDealAsyncSingle<?>) {
+				((IScheduleTaskDealAsyncSingle<Object>) this.taskDealBean).execute(executeTask, ownSign, callback);
+			} else {
+				((IScheduleTaskDealAsyncMulti<Object>) this.taskDealBean).execute((Object[]) executeTask, ownSign, callback);
+			}
+		} catch (Throwable ex) {
+			callback.fail(ex);
+		}
+	}
+
+	private void finish(Object executeTask, int taskNum, boolean isSuccess, long startTime, Object traceEvent,
+			Runnable finishHandler) {
+		try {
+			if (traceEvent != null) {
+				ScheduleFlightRecorder.commit(traceEvent, this.taskType, taskNum, isSuccess);
+			}
+			if (isSuccess == true) {
+				this.statisticsInfo.addDealDataSucess(taskNum);
+			} else {
+				this.statisticsInfo.addDealDataFail(taskNum);
+			}
+			long spendTime = ScheduleUtil.getCurrentTimeMillis() - startTime;
+			this.statisticsInfo.addExecute(taskNum, spendTime);
+			if (this.statisticsInfo.getTaskItemStatistics() != null) {
+				this.statisticsInfo.getTaskItemStatistics().addExecute(executeTask, isSingle(this.taskDealBean) == false,
+						isSuccess, spendTime);
+			}
+			if (finishHandler != null) {
+				finishHandler.run();
+			}
+		} finally {
+			this.permits.release();
+		}
+	}
+
+	/**
+	 * 处理中的任务数量
+	 */
+	public int getInFlightNumber() {
+		return this.maxInFlightNumber - this.permits.availablePermits();
+	}
+
+	/**
+	 * 等待所有处理中的任务完成
+	 */
+	public void waitAllFinish() throws InterruptedException {
+		this.permits.acquire(this.maxInFlightNumber);
+		this.permits.release(this.maxInFlightNumber);
+	}
+}
@@ -1,7 +1,7 @@
 package com.taobao.pamirs.schedule;
 
 /**
- * 
+ * 任务队列类型
  * @author xuannan
  *
  */
@@ -10,30 +10,35 @@ public class ScheduleTaskItem {
 		ACTIVTE, FINISH, HALT
 	}
 	/**
-	 * 
+	 * 处理任务类型
 	 */
 	private String taskType;
 
 	/**
-	 * ԭʼ
+	 * 原始任务类型
 	 */
 	private String baseTaskType;
 
 	/**
-	 * ״̬
+	 * 完成状态
 	 */
 	private TaskItemSts sts = TaskItemSts.ACTIVTE;
 	
 	/**
-	 * ҪĲ
+	 * 任务处理需要的参数
 	 */
 	private String dealParameter="";
 	
 	/**
-	 * ,дһЩϢ
+	 * 任务处理情况,用于任务处理器会写一些信息
 	 */
 	private String dealDesc="";
 	
+	/**
+	 * 任务项的处理统计，由持有任务项的服务器定期写入
+	 */
+	private String dealStat;
+	
 	
 	
   public String getBaseTaskType() {
@@ -45,25 +50,25 @@ public class ScheduleTaskItem {
 	}
 
 /**
-   * еĻʶ
+   * 队列的环境标识
    */
   private String ownSign;
   
   /**
-   * ID
+   * 任务队列ID
    */
   private String taskItem;
   /**
-   * еǰе
+   * 持有当前任务队列的任务处理器
    */
   private String currentScheduleServer;
   /**
-   * е
+   * 正在申请此任务队列的任务处理器
    */
   private String requestScheduleServer;
   
   /**
-   * ݰ汾
+   * 数据版本号
    */
   private long version;
 
@@ -127,6 +132,14 @@ public String getDealDesc() {
 	return dealDesc;
 }
 
+public void setDealStat(String dealStat) {
+	this.dealStat = dealStat;
+}
+
+public String getDealStat() {
+	return dealStat;
+}
+
 public void setSts(TaskItemSts sts) {
 	this.sts = sts;
 }
@@ -0,0 +1,163 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按任务项统计取数、处理、失败的数量和处理耗时，用于发现热点、处理慢或者取不到数据的任务项，作为拆分和重新分配任务项的依据
+ * 1、通过处理Bean实现的IScheduleTaskItemResolver确定任务所属的任务项
+ * 2、批处理的耗时按任务数分摊到每个任务项，最大耗时按整批计算
+ * 3、每次获取统计时返回上次获取以来的增量，然后重新计数
+ *
+ */
+class ScheduleTaskItemStatistics {
+	private final IScheduleTaskItemResolver<Object> taskItemResolver;
+	private final ConcurrentHashMap<String, ItemStatistics> itemStatisticsMap = new ConcurrentHashMap<String, ItemStatistics>();
+	private long lastResetTime = ScheduleUtil.getCurrentTimeMillis();
+
+	@SuppressWarnings("unchecked")
+	public ScheduleTaskItemStatistics(IScheduleTaskItemResolver<?> aTaskItemResolver) {
+		this.taskItemResolver = (IScheduleTaskItemResolver<Object>) aTaskItemResolver;
+	}
+
+	private ItemStatistics getItemStatistics(Object task) {
+		String itemId = this.taskItemResolver.getTaskItemId(task);
+		if (itemId == null) {
+			itemId = "";
+		}
+		ItemStatistics result = this.itemStatisticsMap.get(itemId);
+		if (result == null) {
+			result = new ItemStatistics();
+			ItemStatistics old = this.itemStatisticsMap.putIfAbsent(itemId, result);
+			if (old != null) {
+				result = old;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 记录取到并放入队列的任务
+	 * @param tasks 取到的任务
+	 * @param number 实际放入队列的数量，从头开始计算
+	 */
+	public void addFetch(List<?> tasks, int number) {
+		for (int i = 0; i < number && i < tasks.size(); i++) {
+			this.getItemStatistics(tasks.get(i)).fetchNum.incrementAndGet();
+		}
+	}
+
+	public void addFetch(Object task) {
+		this.getItemStatistics(task).fetchNum.incrementAndGet();
+	}
+
+	/**
+	 * 记录一次execute的结果
+	 * @param executeTask 单个任务，或者批处理时的任务数组
+	 * @param isMulti 是否是批处理
+	 */
+	public void addExecute(Object executeTask, boolean isMulti, boolean isSuccess, long spendTime) {
+		if (isMulti == false) {
+			this.getItemStatistics(executeTask).add(1, isSuccess ? 0 : 1, spendTime, spendTime);
+			return;
+		}
+		Object[] tasks = (Object[]) executeTask;
+		Map<ItemStatistics, int[]> countMap = this.countByItem(tasks, null);
+		for (Map.Entry<ItemStatistics, int[]> entry : countMap.entrySet()) {
+			int num = entry.getValue()[0];
+			entry.getKey().add(num, isSuccess ? 0 : num, spendTime * num / tasks.length, spendTime);
+		}
+	}
+
+	/**
+	 * 记录返回每个任务处理结果的批处理
+	 * @param result 处理成功的任务对应的位为true，为null时全部失败
+	 */
+	public void addExecute(Object[] tasks, BitSet result, long spendTime) {
+		Map<ItemStatistics, int[]> countMap = this.countByItem(tasks, result);
+		for (Map.Entry<ItemStatistics, int[]> entry : countMap.entrySet()) {
+			int num = entry.getValue()[0];
+			entry.getKey().add(num, entry.getValue()[1], spendTime * num / tasks.length, spendTime);
+		}
+	}
+
+	/**
+	 * 按任务项汇总一批任务：任务数，失败数
+	 */
+	private Map<ItemStatistics, int[]> countByItem(Object[] tasks, BitSet result) {
+		Map<ItemStatistics, int[]> countMap = new HashMap<ItemStatistics, int[]>();
+		for (int i = 0; i < tasks.length; i++) {
+			ItemStatistics item = this.getItemStatistics(tasks[i]);
+			int[] count = countMap.get(item);
+			if (count == null) {
+				count = new int[2];
+				countMap.put(item, count);
+			}
+			count[0] = count[0] + 1;
+			if (result == null || result.get(i) == false) {
+				count[1] = count[1] + 1;
+			}
+		}
+		return countMap;
+	}
+
+	/**
+	 * 获取上次获取以来指定任务项的统计，并重新计数。没有任何记录的任务项也会返回，便于发现取不到数据的任务项
+	 * @param taskItemIds 需要的任务项，其它任务项的统计被丢弃
+	 * @return 任务项 -> 统计描述
+	 */
+	public synchronized Map<String, String> getAndReset(List<String> taskItemIds) {
+		long now = ScheduleUtil.getCurrentTimeMillis();
+		long interval = Math.max(1, now - this.lastResetTime);
+		this.lastResetTime = now;
+		Map<String, String> result = new HashMap<String, String>();
+		for (String itemId : taskItemIds) {
+			ItemStatistics item = this.itemStatisticsMap.get(itemId);
+			result.put(itemId, item == null ? new ItemStatistics().getAndReset(interval) : item.getAndReset(interval));
+		}
+		this.itemStatisticsMap.keySet().retainAll(taskItemIds);
+		return result;
+	}
+
+	static class ItemStatistics {
+		final AtomicLong fetchNum = new AtomicLong(0);
+		final AtomicLong dealNum = new AtomicLong(0);
+		final AtomicLong failNum = new AtomicLong(0);
+		final AtomicLong spendTime = new AtomicLong(0);
+		final AtomicLong maxTime = new AtomicLong(0);
+
+		void add(long num, long fail, long time, long executeTime) {
+			this.dealNum.addAndGet(num);
+			if (fail > 0) {
+				this.failNum.addAndGet(fail);
+			}
+			this.spendTime.addAndGet(time);
+			long current = this.maxTime.get();
+			while (executeTime > current && this.maxTime.compareAndSet(current, executeTime) == false) {
+				current = this.maxTime.get();
+			}
+		}
+
+		/**
+		 * 格式：interval=,fetchNum=,dealNum=,failNum=,dealRate=,avgTime=,maxTime=，时间单位毫秒，速率为每秒
+		 */
+		String getAndReset(long interval) {
+			long fetch = this.fetchNum.getAndSet(0);
+			long deal = this.dealNum.getAndSet(0);
+			long fail = this.failNum.getAndSet(0);
+			long time = this.spendTime.getAndSet(0);
+			long max = this.maxTime.getAndSet(0);
+			return "interval=" + interval
+					+ ",fetchNum=" + fetch
+					+ ",dealNum=" + deal
+					+ ",failNum=" + fail
+					+ ",dealRate=" + Math.round(deal * 10000.0 / interval) / 10.0
+					+ ",avgTime=" + (deal == 0 ? 0 : Math.round(time * 100.0 / deal) / 100.0)
+					+ ",maxTime=" + max;
+		}
+	}
+}
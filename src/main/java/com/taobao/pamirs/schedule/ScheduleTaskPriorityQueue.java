@@ -0,0 +1,116 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 有界的优先级任务队列
+ * 1、按IScheduleTaskPriority返回的优先级从高到低取任务，相同优先级按放入的顺序
+ * 2、后取到的高优先级任务排在之前取到的低优先级任务前面
+ *
+ * @param <T> 任务类型
+ */
+class ScheduleTaskPriorityQueue<T> implements IScheduleTaskQueue<T> {
+
+	private final int capacity;
+	private final PriorityBlockingQueue<PriorityTask<T>> queue = new PriorityBlockingQueue<PriorityTask<T>>();
+	private final AtomicInteger size = new AtomicInteger(0);
+	private final AtomicLong sequence = new AtomicLong(0);
+	private final IScheduleTaskPriority<T> taskPriority;
+
+	public ScheduleTaskPriorityQueue(int aCapacity, IScheduleTaskPriority<T> aTaskPriority) {
+		this.capacity = aCapacity;
+		this.taskPriority = aTaskPriority;
+	}
+
+	public boolean offer(T task) {
+		//先占用容量，避免并发放入时超过上限
+		if (this.size.incrementAndGet() > this.capacity) {
+			this.size.decrementAndGet();
+			return false;
+		}
+		int priority = this.taskPriority == null ? 0 : this.taskPriority.getTaskPriority(task);
+		this.queue.offer(new PriorityTask<T>(task, priority, this.sequence.incrementAndGet()));
+		return true;
+	}
+
+	public int offerAll(List<T> tasks) {
+		int count = 0;
+		for (T task : tasks) {
+			if (this.offer(task) == false) {
+				break;
+			}
+			count = count + 1;
+		}
+		return count;
+	}
+
+	public T poll() {
+		PriorityTask<T> item = this.queue.poll();
+		if (item == null) {
+			return null;
+		}
+		this.size.decrementAndGet();
+		return item.task;
+	}
+
+	public Object[] poll(int maxNumber) {
+		List<PriorityTask<T>> items = new ArrayList<PriorityTask<T>>(Math.min(maxNumber, 64));
+		this.queue.drainTo(items, maxNumber);
+		if (items.size() == 0) {
+			return null;
+		}
+		this.size.addAndGet(-items.size());
+		Object[] result = new Object[items.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = items.get(i).task;
+		}
+		return result;
+	}
+
+	public void setTaskItems(List<TaskItemDefine> taskItems) {
+	}
+
+	public Object[] pollAll() {
+		return this.poll(this.capacity);
+	}
+
+	public int size() {
+		return this.size.get();
+	}
+
+	public boolean isEmpty() {
+		return this.size.get() <= 0;
+	}
+
+	public int capacity() {
+		return this.capacity;
+	}
+
+	public void clear() {
+		while (this.poll() != null) {
+		}
+	}
+
+	static class PriorityTask<T> implements Comparable<PriorityTask<T>> {
+		final T task;
+		final int priority;
+		final long sequence;
+
+		PriorityTask(T aTask, int aPriority, long aSequence) {
+			this.task = aTask;
+			this.priority = aPriority;
+			this.sequence = aSequence;
+		}
+
+		public int compareTo(PriorityTask<T> o) {
+			if (this.priority != o.priority) {
+				return this.priority > o.priority ? -1 : 1;
+			}
+			return this.sequence < o.sequence ? -1 : (this.sequence == o.sequence ? 0 : 1);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package com.taobao.pamirs.schedule;
+
+import com.taobao.pamirs.schedule.ScheduleTaskTimedQueue.TimedTask;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 根据任务类型的配置创建处理器的任务队列
+ *
+ */
+class ScheduleTaskQueueFactory {
+	private static transient Log logger = LogFactory.getLog(ScheduleTaskQueueFactory.class);
+
+	public static final String QUEUE_TYPE_RING = "RING";
+	public static final String QUEUE_TYPE_STEAL = "STEAL";
+	public static final String QUEUE_TYPE_PRIORITY = "PRIORITY";
+	public static final String QUEUE_TYPE_AFFINITY = "AFFINITY";
+
+	/**
+	 * 开启queueWaitStatistics时，创建的队列外面包装一层ScheduleTaskTimedQueue，统计任务在队列中的等待时间；
+	 * 不开启时直接返回队列，不增加每个任务的包装和计时
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> IScheduleTaskQueue<T> createTaskQueue(ScheduleTaskType taskTypeInfo,
+			IScheduleTaskDeal<T> taskDealBean, StatisticsInfo statisticsInfo) {
+		//开启每次获取数据量自适应调整时，按上限计算容量
+		int capacity = Math.max(taskTypeInfo.getFetchDataNumber(), taskTypeInfo.getFetchDataNumberMax()) * 2;
+		IScheduleTaskItemResolver<T> taskItemResolver = getTaskItemResolver(taskDealBean);
+		IScheduleTaskPriority<T> taskPriority = null;
+		if (taskDealBean instanceof IScheduleTaskPriority<?>) {
+			taskPriority = (IScheduleTaskPriority<T>) taskDealBean;
+		}
+		if (taskTypeInfo.isQueueWaitStatistics() == false) {
+			return createTaskQueue(taskTypeInfo, capacity, taskItemResolver, taskPriority, statisticsInfo);
+		}
+		IScheduleTaskItemResolver<TimedTask<T>> timedTaskItemResolver = null;
+		if (taskItemResolver != null) {
+			timedTaskItemResolver = new ScheduleTaskTimedQueue.TimedTaskItemResolver<T>(taskItemResolver);
+		}
+		IScheduleTaskPriority<TimedTask<T>> timedTaskPriority = null;
+		if (taskPriority != null) {
+			timedTaskPriority = new ScheduleTaskTimedQueue.TimedTaskPriority<T>(taskPriority);
+		}
+		return new ScheduleTaskTimedQueue<T>(createTaskQueue(taskTypeInfo, capacity, timedTaskItemResolver,
+				timedTaskPriority, statisticsInfo), statisticsInfo);
+	}
+
+	private static <E> IScheduleTaskQueue<E> createTaskQueue(ScheduleTaskType taskTypeInfo, int capacity,
+			IScheduleTaskItemResolver<E> taskItemResolver, IScheduleTaskPriority<E> taskPriority,
+			StatisticsInfo statisticsInfo) {
+		if (QUEUE_TYPE_STEAL.equalsIgnoreCase(taskTypeInfo.getTaskQueueType())) {
+			return new ScheduleTaskStealQueue<E>(capacity, taskItemResolver, statisticsInfo);
+		} else if (QUEUE_TYPE_AFFINITY.equalsIgnoreCase(taskTypeInfo.getTaskQueueType()) && taskItemResolver != null) {
+			return new ScheduleTaskAffinityQueue<E>(capacity, taskItemResolver);
+		} else if (QUEUE_TYPE_AFFINITY.equalsIgnoreCase(taskTypeInfo.getTaskQueueType())) {
+			//不知道任务属于哪个任务项时无法绑定线程
+			logger.warn(taskTypeInfo.getBaseTaskType() + " 的处理Bean没有实现IScheduleTaskItemResolver，不能使用AFFINITY队列，改用RING");
+			return new ScheduleTaskRingQueue<E>(capacity);
+		} else if (QUEUE_TYPE_PRIORITY.equalsIgnoreCase(taskTypeInfo.getTaskQueueType()) || taskPriority != null) {
+			return new ScheduleTaskPriorityQueue<E>(capacity, taskPriority);
+		} else {
+			return new ScheduleTaskRingQueue<E>(capacity);
+		}
+	}
+
+	/**
+	 * 是否是按优先级取任务的队列，包括包装在ScheduleTaskTimedQueue中的
+	 */
+	public static boolean isPriorityQueue(IScheduleTaskQueue<?> taskQueue) {
+		if (taskQueue instanceof ScheduleTaskTimedQueue<?>) {
+			return ((ScheduleTaskTimedQueue<?>) taskQueue).getQueue() instanceof ScheduleTaskPriorityQueue<?>;
+		}
+		return taskQueue instanceof ScheduleTaskPriorityQueue<?>;
+	}
+
+	/**
+	 * 处理Bean实现了IScheduleTaskItemResolver时返回，否则返回null
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> IScheduleTaskItemResolver<T> getTaskItemResolver(IScheduleTaskDeal<T> taskDealBean) {
+		if (taskDealBean instanceof IScheduleTaskItemResolver<?>) {
+			return (IScheduleTaskItemResolver<T>) taskDealBean;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,262 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 处理失败的任务放入JVM内共享定时服务的时间轮，延时后重新放入处理器的任务队列，每个任务最多重试maxRetryNumber次
+ * 1、第n次重试的延时为 retryDelay * 2^(n-1)，不超过retryDelayMax
+ * 2、超过重试次数的任务不再处理（隔离），等待下次从数据库取数
+ * 3、重试的任务在重新处理完成前都记录在retryCountMap中，处理器判重时不会被当成新取到的重复数据
+ *
+ */
+class ScheduleTaskRetryer {
+	private static transient Log logger = LogFactory.getLog(ScheduleTaskRetryer.class);
+
+	private ScheduleTaskType taskTypeInfo;
+	private IScheduleTaskQueue<Object> taskList;
+	private StatisticsInfo statisticsInfo;
+	/**
+	 * 在共享定时服务中的名称，用于统计延迟
+	 */
+	private String retryTimerName;
+	/**
+	 * 任务重新放入队列后的通知，用于唤醒等待数据的线程，可以为null
+	 */
+	private Runnable dataListener;
+	/**
+	 * 正在重试的任务和已经重试的次数，按对象引用区分
+	 */
+	private Map<Object, Integer> retryCountMap = Collections.synchronizedMap(new IdentityHashMap<Object, Integer>());
+	/**
+	 * 在时间轮中等待重试的任务
+	 */
+	private Map<Object, Object> waitingTaskMap = Collections.synchronizedMap(new IdentityHashMap<Object, Object>());
+	/**
+	 * 清除数据时加1，时间轮中之前的任务到期后不再放入队列
+	 */
+	private volatile long version = 0;
+	private Lock lockWaiting = new ReentrantLock();
+	private Condition waitingEmpty = lockWaiting.newCondition();
+
+	@SuppressWarnings("unchecked")
+	public ScheduleTaskRetryer(ScheduleTaskType aTaskTypeInfo, IScheduleTaskQueue<?> aTaskList,
+			StatisticsInfo aStatisticsInfo, String aRetryTimerName, Runnable aDataListener) {
+		this.taskTypeInfo = aTaskTypeInfo;
+		this.taskList = (IScheduleTaskQueue<Object>) aTaskList;
+		this.statisticsInfo = aStatisticsInfo;
+		this.retryTimerName = aRetryTimerName;
+		this.dataListener = aDataListener;
+	}
+
+	/**
+	 * 是否是返回每个任务处理结果的Bean
+	 */
+	public static boolean isMultiResult(IScheduleTaskDeal<?> taskDealBean) {
+		return taskDealBean instanceof IScheduleTaskDealMultiResult<?>;
+	}
+
+	/**
+	 * 失败的任务放入时间轮延时重试
+	 * @return 是否会重试，不重试或者超过重试次数时返回false
+	 */
+	public boolean retry(Object task) {
+		if (this.taskTypeInfo.getMaxRetryNumber() <= 0) {
+			return false;
+		}
+		Integer count = this.retryCountMap.get(task);
+		if (count == null) {
+			count = 0;
+		}
+		if (count >= this.taskTypeInfo.getMaxRetryNumber()) {
+			this.retryCountMap.remove(task);
+			this.statisticsInfo.addQuarantineCount(1);
+			logger.warn("Task :" + task + " 重试" + count + "次后仍然失败，不再重试");
+			return false;
+		}
+		this.retryCountMap.put(task, count + 1);
+		this.statisticsInfo.addRetryCount(1);
+		synchronized (this.waitingTaskMap) {
+			this.waitingTaskMap.put(task, task);
+			ScheduleTimerService.getInstance().schedule(this.retryTimerName, new RetryTask(task, this.version), this.getRetryDelay(count));
+		}
+		return true;
+	}
+
+	/**
+	 * 一批失败的任务全部延时重试
+	 * @return 会重试的任务对应的位置为true，没有任务重试时返回null
+	 */
+	public boolean[] retryAll(Object[] tasks) {
+		return this.retryFailed(tasks, null);
+	}
+
+	/**
+	 * 第count+1次重试的延时
+	 */
+	long getRetryDelay(int count) {
+		long delay = Math.max(0, this.taskTypeInfo.getRetryDelay());
+		long delayMax = Math.max(delay, this.taskTypeInfo.getRetryDelayMax());
+		for (int i = 0; i < count && delay < delayMax; i++) {
+			delay = delay * 2;
+		}
+		return Math.min(delay, delayMax);
+	}
+
+	/**
+	 * 任务处理成功或者被判重丢弃时，清除重试次数。
+	 * selectTasks可能返回同一个对象，还在时间轮中等待的任务不清除
+	 */
+	public void finish(Object task) {
+		if (this.retryCountMap.size() > 0 && this.waitingTaskMap.containsKey(task) == false) {
+			this.retryCountMap.remove(task);
+		}
+	}
+
+	public void finishAll(Object[] tasks) {
+		if (this.retryCountMap.size() > 0) {
+			for (int i = 0; i < tasks.length; i++) {
+				this.finish(tasks[i]);
+			}
+		}
+	}
+
+	/**
+	 * 按每个任务的处理结果统计成功和失败的数量，失败的任务延时重试
+	 * @param tasks 任务数组
+	 * @param result 处理成功的任务对应的位为true，为null时全部失败
+	 * @param spendTime 处理耗时
+	 * @return 会重试的任务对应的位置为true，没有任务重试时返回null
+	 */
+	public boolean[] dealMultiResult(Object[] tasks, BitSet result, long spendTime) {
+		int successNum = result == null ? 0 : result.get(0, tasks.length).cardinality();
+		this.statisticsInfo.addDealDataSucess(successNum);
+		this.statisticsInfo.addDealDataFail(tasks.length - successNum);
+		this.statisticsInfo.addExecute(tasks.length, spendTime);
+		if (this.statisticsInfo.getTaskItemStatistics() != null) {
+			this.statisticsInfo.getTaskItemStatistics().addExecute(tasks, result, spendTime);
+		}
+		return this.retryFailed(tasks, result);
+	}
+
+	private boolean[] retryFailed(Object[] tasks, BitSet result) {
+		boolean[] retried = null;
+		for (int i = 0; i < tasks.length; i++) {
+			if (result != null && result.get(i) == true) {
+				this.finish(tasks[i]);
+			} else if (this.retry(tasks[i]) == true) {
+				if (retried == null) {
+					retried = new boolean[tasks.length];
+				}
+				retried[i] = true;
+			}
+		}
+		return retried;
+	}
+
+	/**
+	 * 所有正在重试的任务，包括时间轮中等待的、已经放回队列的和正在处理的
+	 */
+	public Object[] getRetryingTasks() {
+		if (this.retryCountMap.size() == 0) {
+			return new Object[0];
+		}
+		synchronized (this.retryCountMap) {
+			return this.retryCountMap.keySet().toArray();
+		}
+	}
+
+	/**
+	 * 在时间轮中等待重试的任务数量
+	 */
+	public int getWaitingNumber() {
+		return this.waitingTaskMap.size();
+	}
+
+	/**
+	 * 等待时间轮中的任务全部放回队列
+	 * @return 是否有等待重试的任务
+	 * @throws InterruptedException
+	 */
+	public boolean waitRetrying() throws InterruptedException {
+		if (this.waitingTaskMap.size() == 0) {
+			return false;
+		}
+		lockWaiting.lock();
+		try {
+			while (this.waitingTaskMap.size() > 0) {
+				this.waitingEmpty.await(100, TimeUnit.MILLISECONDS);
+			}
+		} finally {
+			lockWaiting.unlock();
+		}
+		return true;
+	}
+
+	/**
+	 * 清除内存中的数据时调用
+	 * @return 还在时间轮中等待重试的任务
+	 */
+	public Object[] clear() {
+		Object[] waitingTasks;
+		synchronized (this.waitingTaskMap) {
+			this.version = this.version + 1;
+			waitingTasks = this.waitingTaskMap.keySet().toArray();
+			this.waitingTaskMap.clear();
+		}
+		this.retryCountMap.clear();
+		this.signalWaitingEmpty();
+		return waitingTasks;
+	}
+
+	private void signalWaitingEmpty() {
+		lockWaiting.lock();
+		try {
+			this.waitingEmpty.signalAll();
+		} finally {
+			lockWaiting.unlock();
+		}
+	}
+
+	/**
+	 * 到期后把任务放回队列，队列已满时等待下一个重试间隔
+	 */
+	class RetryTask implements Runnable {
+		private Object task;
+		private long taskVersion;
+
+		RetryTask(Object aTask, long aVersion) {
+			this.task = aTask;
+			this.taskVersion = aVersion;
+		}
+
+		public void run() {
+			//和clear互斥，清除后不会再放入队列
+			synchronized (waitingTaskMap) {
+				if (this.taskVersion != version || waitingTaskMap.containsKey(this.task) == false) {
+					return;
+				}
+				if (taskList.offer(this.task) == false) {
+					ScheduleTimerService.getInstance().schedule(retryTimerName, this, Math.max(1, taskTypeInfo.getRetryDelay()));
+					return;
+				}
+				waitingTaskMap.remove(this.task);
+			}
+			if (waitingTaskMap.size() == 0) {
+				signalWaitingEmpty();
+			}
+			if (dataListener != null) {
+				dataListener.run();
+			}
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界的多生产者多消费者环形任务队列，替代处理器中 synchronizedList + remove(0) 的取任务方式
+ * 1、每个槽位有一个序号，生产者和消费者通过序号判断槽位是否可写、可读，不需要全局锁
+ * 2、批量取任务时，通过一次CAS占用连续的多个槽位
+ *
+ * @param <T> 任务类型
+ */
+class ScheduleTaskRingQueue<T> implements IScheduleTaskQueue<T> {
+
+	private final int capacity;
+	private final int mask;
+	private final AtomicReferenceArray<Object> buffer;
+	/**
+	 * 槽位序号：等于入队位置表示可写，等于入队位置+1表示可读
+	 */
+	private final AtomicLongArray sequences;
+	/**
+	 * 下一个出队位置
+	 */
+	private final AtomicLong head = new AtomicLong(0);
+	/**
+	 * 下一个入队位置
+	 */
+	private final AtomicLong tail = new AtomicLong(0);
+
+	public ScheduleTaskRingQueue(int aCapacity) {
+		int size = 2;
+		while (size < aCapacity) {
+			size = size << 1;
+		}
+		this.capacity = size;
+		this.mask = size - 1;
+		this.buffer = new AtomicReferenceArray<Object>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			this.sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * 放入一个任务，队列满时返回false
+	 * @param task
+	 * @return
+	 */
+	public boolean offer(T task) {
+		if (task == null) {
+			throw new NullPointerException("任务不能为空");
+		}
+		while (true) {
+			long pos = this.tail.get();
+			int index = (int) (pos & this.mask);
+			long dif = this.sequences.get(index) - pos;
+			if (dif == 0) {
+				if (this.tail.compareAndSet(pos, pos + 1)) {
+					this.buffer.set(index, task);
+					this.sequences.set(index, pos + 1);
+					return true;
+				}
+			} else if (dif < 0) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * 按顺序放入一批任务
+	 * @param tasks
+	 * @return 实际放入的数量，队列满时剩余的任务不会放入
+	 */
+	public int offerAll(List<T> tasks) {
+		int count = 0;
+		for (T task : tasks) {
+			if (this.offer(task) == false) {
+				break;
+			}
+			count = count + 1;
+		}
+		return count;
+	}
+
+	/**
+	 * 取一个任务，队列为空时返回null
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public T poll() {
+		while (true) {
+			long pos = this.head.get();
+			int index = (int) (pos & this.mask);
+			long dif = this.sequences.get(index) - (pos + 1);
+			if (dif == 0) {
+				if (this.head.compareAndSet(pos, pos + 1)) {
+					Object result = this.buffer.get(index);
+					this.buffer.set(index, null);
+					this.sequences.set(index, pos + this.capacity);
+					return (T) result;
+				}
+			} else if (dif < 0) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * 一次CAS最多取maxNumber个任务，队列为空时返回null
+	 * @param maxNumber
+	 * @return
+	 */
+	public Object[] poll(int maxNumber) {
+		while (true) {
+			long pos = this.head.get();
+			long available = this.tail.get() - pos;
+			if (available <= 0) {
+				return null;
+			}
+			int size = (int) Math.min(maxNumber, available);
+			if (this.head.compareAndSet(pos, pos + size)) {
+				Object[] result = new Object[size];
+				for (int i = 0; i < size; i++) {
+					int index = (int) ((pos + i) & this.mask);
+					//生产者可能已经占用了槽位但还没有写入数据
+					while (this.sequences.get(index) != pos + i + 1) {
+						Thread.yield();
+					}
+					result[i] = this.buffer.get(index);
+					this.buffer.set(index, null);
+					this.sequences.set(index, pos + i + this.capacity);
+				}
+				return result;
+			}
+		}
+	}
+
+	/**
+	 * 环形队列不区分任务项
+	 */
+	public void setTaskItems(List<TaskItemDefine> taskItems) {
+	}
+
+	public Object[] pollAll() {
+		return this.poll(this.capacity);
+	}
+
+	public int size() {
+		long size = this.tail.get() - this.head.get();
+		return size > 0 ? (int) size : 0;
+	}
+
+	public boolean isEmpty() {
+		return this.size() == 0;
+	}
+
+	public int capacity() {
+		return this.capacity;
+	}
+
+	public void clear() {
+		while (this.poll(this.capacity) != null) {
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 工作窃取任务队列，每个处理线程一个双端队列
+ * 1、放入任务时按任务项分区：实现了IScheduleTaskItemResolver的，同一任务项的任务放入同一个队列，否则按顺序分段放入
+ * 2、线程从自己队列的头部取任务，自己的队列为空时从其它线程队列的尾部窃取
+ * 3、处理线程第一次取任务时绑定一个队列：优先接管没有线程或者线程已经结束的队列，没有时新建，队列数量跟随线程数量变化
+ * 4、pollAll在处理线程以外调用，不绑定队列
+ *
+ * @param <T> 任务类型
+ */
+class ScheduleTaskStealQueue<T> implements IScheduleTaskQueue<T> {
+
+	private final int capacity;
+	/**
+	 * 所有线程的队列，只增加不删除，修改时复制。创建时有一个没有线程的队列，处理线程绑定前放入的任务放在这里
+	 */
+	private final CopyOnWriteArrayList<WorkerDeque<T>> deques = new CopyOnWriteArrayList<WorkerDeque<T>>();
+	private final Object lockDeques = new Object();
+	private final ThreadLocal<WorkerDeque<T>> currentDeque = new ThreadLocal<WorkerDeque<T>>();
+	private final AtomicInteger size = new AtomicInteger(0);
+	private final IScheduleTaskItemResolver<T> taskItemResolver;
+	private final StatisticsInfo statisticsInfo;
+	/**
+	 * 当前任务项按ID排序后的序号，放入时按队列数量取模
+	 */
+	private volatile Map<String, Integer> taskItemIndexMap = new HashMap<String, Integer>();
+	private final AtomicInteger nextOfferIndex = new AtomicInteger(0);
+
+	public ScheduleTaskStealQueue(int aCapacity, IScheduleTaskItemResolver<T> aTaskItemResolver,
+			StatisticsInfo aStatisticsInfo) {
+		this.capacity = aCapacity;
+		this.taskItemResolver = aTaskItemResolver;
+		this.statisticsInfo = aStatisticsInfo;
+		this.deques.add(new WorkerDeque<T>(0));
+	}
+
+	/**
+	 * 任务项按ID排序后依次分配到各个队列，任务项和队列数量不变时分配结果不变
+	 */
+	public void setTaskItems(List<TaskItemDefine> taskItems) {
+		if (this.taskItemResolver == null) {
+			return;
+		}
+		List<String> itemIds = new ArrayList<String>();
+		for (TaskItemDefine item : taskItems) {
+			itemIds.add(item.getTaskItemId());
+		}
+		Collections.sort(itemIds);
+		Map<String, Integer> indexMap = new HashMap<String, Integer>();
+		for (int i = 0; i < itemIds.size(); i++) {
+			indexMap.put(itemIds.get(i), i);
+		}
+		this.taskItemIndexMap = indexMap;
+	}
+
+	private boolean acquire() {
+		while (true) {
+			int current = this.size.get();
+			if (current >= this.capacity) {
+				return false;
+			}
+			if (this.size.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	private int partition(T task, int dequeNumber) {
+		String itemId = this.taskItemResolver.getTaskItemId(task);
+		Integer index = itemId == null ? null : this.taskItemIndexMap.get(itemId);
+		if (index == null) {
+			//不在当前任务项中的数据，按哈希分配
+			index = itemId == null ? 0 : itemId.hashCode() & Integer.MAX_VALUE;
+		}
+		return index % dequeNumber;
+	}
+
+	public boolean offer(T task) {
+		if (task == null) {
+			throw new NullPointerException("任务不能为空");
+		}
+		if (this.acquire() == false) {
+			return false;
+		}
+		//队列只增加不删除，取到的数量以内的下标都有效
+		int dequeNumber = this.deques.size();
+		int index;
+		if (this.taskItemResolver != null) {
+			index = this.partition(task, dequeNumber);
+		} else {
+			index = (this.nextOfferIndex.getAndIncrement() & Integer.MAX_VALUE) % dequeNumber;
+		}
+		this.deques.get(index).deque.offerLast(task);
+		return true;
+	}
+
+	public int offerAll(List<T> tasks) {
+		if (this.taskItemResolver != null) {
+			int count = 0;
+			for (T task : tasks) {
+				if (this.offer(task) == false) {
+					break;
+				}
+				count = count + 1;
+			}
+			return count;
+		}
+		//没有任务项信息时，按顺序分段放入各个队列，相邻的任务由同一个线程处理
+		int dequeNumber = this.deques.size();
+		int segment = (tasks.size() + dequeNumber - 1) / dequeNumber;
+		int start = (this.nextOfferIndex.getAndIncrement() & Integer.MAX_VALUE) % dequeNumber;
+		int count = 0;
+		for (T task : tasks) {
+			if (task == null) {
+				throw new NullPointerException("任务不能为空");
+			}
+			if (this.acquire() == false) {
+				break;
+			}
+			this.deques.get((start + count / segment) % dequeNumber).deque.offerLast(task);
+			count = count + 1;
+		}
+		return count;
+	}
+
+	/**
+	 * 当前处理线程的队列，第一次调用时绑定
+	 */
+	private WorkerDeque<T> currentDeque() {
+		WorkerDeque<T> result = this.currentDeque.get();
+		if (result == null) {
+			result = this.bindDeque(Thread.currentThread());
+			this.currentDeque.set(result);
+		}
+		return result;
+	}
+
+	private WorkerDeque<T> bindDeque(Thread thread) {
+		//接管没有线程或者线程已经结束的队列，队列中剩余的任务由新线程处理
+		for (WorkerDeque<T> item : this.deques) {
+			Thread owner = item.owner.get();
+			if ((owner == null || owner.isAlive() == false) && item.owner.compareAndSet(owner, thread)) {
+				return item;
+			}
+		}
+		synchronized (this.lockDeques) {
+			WorkerDeque<T> result = new WorkerDeque<T>(this.deques.size());
+			result.owner.set(thread);
+			this.deques.add(result);
+			return result;
+		}
+	}
+
+	public T poll() {
+		WorkerDeque<T> own = this.currentDeque();
+		T result = own.deque.pollFirst();
+		if (result == null) {
+			int dequeNumber = this.deques.size();
+			for (int i = 1; i < dequeNumber && result == null; i++) {
+				result = this.deques.get((own.index + i) % dequeNumber).deque.pollLast();
+			}
+			if (result != null) {
+				this.statisticsInfo.addStealCount(1);
+			}
+		}
+		if (result != null) {
+			this.size.decrementAndGet();
+		}
+		return result;
+	}
+
+	public Object[] poll(int maxNumber) {
+		WorkerDeque<T> own = this.currentDeque();
+		List<T> result = new ArrayList<T>(maxNumber);
+		own.deque.drainTo(result, maxNumber);
+		if (result.size() == 0) {
+			int dequeNumber = this.deques.size();
+			for (int i = 1; i < dequeNumber && result.size() == 0; i++) {
+				LinkedBlockingDeque<T> victim = this.deques.get((own.index + i) % dequeNumber).deque;
+				T task;
+				while (result.size() < maxNumber && (task = victim.pollLast()) != null) {
+					result.add(task);
+				}
+			}
+			this.statisticsInfo.addStealCount(result.size());
+		}
+		if (result.size() == 0) {
+			return null;
+		}
+		this.size.addAndGet(-result.size());
+		return result.toArray();
+	}
+
+	public Object[] pollAll() {
+		List<T> result = new ArrayList<T>();
+		for (WorkerDeque<T> item : this.deques) {
+			item.deque.drainTo(result);
+		}
+		if (result.size() == 0) {
+			return null;
+		}
+		this.size.addAndGet(-result.size());
+		return result.toArray();
+	}
+
+	public int size() {
+		return this.size.get();
+	}
+
+	public boolean isEmpty() {
+		return this.size.get() == 0;
+	}
+
+	public int capacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * 当前的队列数量，等于同时存活过的处理线程数的最大值
+	 */
+	int getDequeNumber() {
+		return this.deques.size();
+	}
+
+	public void clear() {
+		for (WorkerDeque<T> item : this.deques) {
+			while (item.deque.pollFirst() != null) {
+				this.size.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * 一个处理线程的队列
+	 */
+	static class WorkerDeque<T> {
+		final int index;
+		final LinkedBlockingDeque<T> deque = new LinkedBlockingDeque<T>();
+		final AtomicReference<Thread> owner = new AtomicReference<Thread>();
+
+		WorkerDeque(int aIndex) {
+			this.index = aIndex;
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 流式获取任务时，把处理Bean读取到的任务直接放入处理器的任务队列
+ * 1、队列中的任务达到缓冲上限时，读取线程等待处理线程取走任务
+ * 2、队列由空变为非空时，唤醒等待数据的处理线程
+ * 3、处理器停止或者清除内存数据时，collect返回false，处理Bean停止读取
+ *
+ * @param <T> 任务类型
+ */
+class ScheduleTaskStreamCollector<T> implements IScheduleTaskCollector<T> {
+
+	private IScheduleTaskDealStream<T> taskDealBean;
+	private IScheduleTaskQueue<T> taskList;
+	private StatisticsInfo statisticsInfo;
+	private int bufferSize;
+	/**
+	 * 有新数据时的通知，可以为null
+	 */
+	private Runnable dataListener;
+	private Lock lockData = new ReentrantLock();
+	private Condition dataCondition = lockData.newCondition();
+	private volatile boolean isFetching = false;
+	private volatile boolean isAbort = false;
+	private int maxNumber;
+	private int fetchNumber;
+	private int offerNumber;
+
+	public ScheduleTaskStreamCollector(IScheduleTaskDealStream<T> aTaskDealBean, IScheduleTaskQueue<T> aTaskList,
+			ScheduleTaskType taskTypeInfo, StatisticsInfo aStatisticsInfo, Runnable aDataListener) {
+		this.taskDealBean = aTaskDealBean;
+		this.taskList = aTaskList;
+		this.statisticsInfo = aStatisticsInfo;
+		this.dataListener = aDataListener;
+		this.bufferSize = taskTypeInfo.getStreamBufferSize();
+		if (this.bufferSize <= 0 || this.bufferSize > aTaskList.capacity()) {
+			this.bufferSize = aTaskList.capacity();
+		}
+	}
+
+	/**
+	 * 是否是流式获取任务的Bean
+	 */
+	public static boolean isStream(IScheduleTaskDeal<?> taskDealBean) {
+		return taskDealBean instanceof IScheduleTaskDealStream<?>;
+	}
+
+	/**
+	 * 流式获取一批任务，同一时刻只能有一个线程调用
+	 * @return 处理Bean读取到的任务数量
+	 * @throws Exception
+	 */
+	public int fetch(String taskParameter, String ownSign, int taskItemNum, List<TaskItemDefine> taskItemList,
+			int eachFetchDataNum) throws Exception {
+		this.maxNumber = eachFetchDataNum;
+		this.fetchNumber = 0;
+		this.offerNumber = 0;
+		this.isAbort = false;
+		this.isFetching = true;
+		try {
+			this.taskDealBean.selectTasks(taskParameter, ownSign, taskItemNum, taskItemList, eachFetchDataNum, this);
+		} finally {
+			this.isFetching = false;
+			this.signalData();
+		}
+		return this.fetchNumber;
+	}
+
+	public boolean collect(T task) throws InterruptedException {
+		if (this.isAbort == true || this.fetchNumber >= this.maxNumber) {
+			return false;
+		}
+		this.fetchNumber = this.fetchNumber + 1;
+		if (this.accept(task) == false) {
+			return this.fetchNumber < this.maxNumber;
+		}
+		boolean isEmpty;
+		while (true) {
+			isEmpty = this.taskList.isEmpty();
+			if (this.taskList.size() < this.bufferSize && this.taskList.offer(task) == true) {
+				break;
+			}
+			if (this.isAbort == true) {
+				this.reject(task);
+				return false;
+			}
+			//缓冲区满，等待处理线程取走任务
+			Thread.sleep(1);
+		}
+		this.offerNumber = this.offerNumber + 1;
+		if (this.statisticsInfo.getTaskItemStatistics() != null) {
+			this.statisticsInfo.getTaskItemStatistics().addFetch(task);
+		}
+		if (isEmpty == true) {
+			this.signalData();
+		}
+		return this.fetchNumber < this.maxNumber;
+	}
+
+	/**
+	 * 任务放入队列前调用，返回false时丢弃此任务，用于判重
+	 */
+	protected boolean accept(T task) {
+		return true;
+	}
+
+	/**
+	 * 已经accept的任务因为中止读取没有放入队列时调用
+	 */
+	protected void reject(T task) {
+	}
+
+	private void signalData() {
+		this.lockData.lock();
+		try {
+			this.dataCondition.signalAll();
+		} finally {
+			this.lockData.unlock();
+		}
+		if (this.dataListener != null) {
+			this.dataListener.run();
+		}
+	}
+
+	/**
+	 * 读取过程中队列为空时，等待新的数据或者读取结束
+	 * @param timeout 最长等待的毫秒数
+	 * @throws InterruptedException
+	 */
+	public void waitData(long timeout) throws InterruptedException {
+		this.lockData.lock();
+		try {
+			if (this.isFetching == true && this.taskList.isEmpty()) {
+				this.dataCondition.await(timeout, TimeUnit.MILLISECONDS);
+			}
+		} finally {
+			this.lockData.unlock();
+		}
+	}
+
+	/**
+	 * 中止正在进行的读取，处理器停止或者清除内存数据时调用
+	 */
+	public void abort() {
+		this.isAbort = true;
+	}
+
+	public boolean isFetching() {
+		return this.isFetching;
+	}
+
+	/**
+	 * 本次读取实际放入队列的任务数量
+	 */
+	public int getOfferNumber() {
+		return this.offerNumber;
+	}
+}
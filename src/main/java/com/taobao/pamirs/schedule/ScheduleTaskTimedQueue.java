@@ -0,0 +1,135 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 记录任务在队列中等待时间的任务队列，包装其它类型的队列，ScheduleTaskType.queueWaitStatistics开启时使用
+ * 1、放入时记录时间，一批任务只取一次时间；取出时把等待的毫秒数记入StatisticsInfo
+ * 2、按任务项、优先级分区的队列通过包装后的IScheduleTaskItemResolver、IScheduleTaskPriority取原始任务的信息
+ *
+ * @param <T> 任务类型
+ */
+class ScheduleTaskTimedQueue<T> implements IScheduleTaskQueue<T> {
+	private final IScheduleTaskQueue<TimedTask<T>> queue;
+	private final StatisticsInfo statisticsInfo;
+
+	public ScheduleTaskTimedQueue(IScheduleTaskQueue<TimedTask<T>> aQueue, StatisticsInfo aStatisticsInfo) {
+		this.queue = aQueue;
+		this.statisticsInfo = aStatisticsInfo;
+	}
+
+	public boolean offer(T task) {
+		if (task == null) {
+			throw new NullPointerException("任务不能为空");
+		}
+		return this.queue.offer(new TimedTask<T>(task, System.nanoTime()));
+	}
+
+	public int offerAll(List<T> tasks) {
+		long now = System.nanoTime();
+		List<TimedTask<T>> timedTasks = new ArrayList<TimedTask<T>>(tasks.size());
+		for (T task : tasks) {
+			if (task == null) {
+				throw new NullPointerException("任务不能为空");
+			}
+			timedTasks.add(new TimedTask<T>(task, now));
+		}
+		return this.queue.offerAll(timedTasks);
+	}
+
+	public T poll() {
+		TimedTask<T> timedTask = this.queue.poll();
+		if (timedTask == null) {
+			return null;
+		}
+		this.statisticsInfo.addQueueWaitTime((System.nanoTime() - timedTask.offerTime) / 1000000);
+		return timedTask.task;
+	}
+
+	public Object[] poll(int maxNumber) {
+		return this.unwrap(this.queue.poll(maxNumber));
+	}
+
+	public Object[] pollAll() {
+		return this.unwrap(this.queue.pollAll());
+	}
+
+	/**
+	 * 在原数组中替换为原始任务
+	 */
+	@SuppressWarnings("unchecked")
+	private Object[] unwrap(Object[] timedTasks) {
+		if (timedTasks == null) {
+			return null;
+		}
+		long now = System.nanoTime();
+		for (int i = 0; i < timedTasks.length; i++) {
+			TimedTask<T> timedTask = (TimedTask<T>) timedTasks[i];
+			this.statisticsInfo.addQueueWaitTime((now - timedTask.offerTime) / 1000000);
+			timedTasks[i] = timedTask.task;
+		}
+		return timedTasks;
+	}
+
+	/**
+	 * 被包装的队列
+	 */
+	public IScheduleTaskQueue<TimedTask<T>> getQueue() {
+		return this.queue;
+	}
+
+	public void setTaskItems(List<TaskItemDefine> taskItems) {
+		this.queue.setTaskItems(taskItems);
+	}
+
+	public int size() {
+		return this.queue.size();
+	}
+
+	public boolean isEmpty() {
+		return this.queue.isEmpty();
+	}
+
+	public int capacity() {
+		return this.queue.capacity();
+	}
+
+	public void clear() {
+		this.queue.clear();
+	}
+
+	static class TimedTask<T> {
+		final T task;
+		final long offerTime;
+
+		TimedTask(T aTask, long aOfferTime) {
+			this.task = aTask;
+			this.offerTime = aOfferTime;
+		}
+	}
+
+	static class TimedTaskItemResolver<T> implements IScheduleTaskItemResolver<TimedTask<T>> {
+		private final IScheduleTaskItemResolver<T> taskItemResolver;
+
+		TimedTaskItemResolver(IScheduleTaskItemResolver<T> aTaskItemResolver) {
+			this.taskItemResolver = aTaskItemResolver;
+		}
+
+		public String getTaskItemId(TimedTask<T> task) {
+			return this.taskItemResolver.getTaskItemId(task.task);
+		}
+	}
+
+	static class TimedTaskPriority<T> implements IScheduleTaskPriority<TimedTask<T>> {
+		private final IScheduleTaskPriority<T> taskPriority;
+
+		TimedTaskPriority(IScheduleTaskPriority<T> aTaskPriority) {
+			this.taskPriority = aTaskPriority;
+		}
+
+		public int getTaskPriority(TimedTask<T> task) {
+			return this.taskPriority.getTaskPriority(task.task);
+		}
+	}
+}
@@ -6,7 +6,7 @@ import java.util.List;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
 /**
- * 
+ * 调度任务类型
  * @author xuannan
  *
  */
@@ -17,70 +17,158 @@ public class ScheduleTaskType implements java.io.Serializable {
 	 */
 	private static final long serialVersionUID = 1L;
 	/**
-	 * 
+	 * 任务类型
 	 */
 	private String baseTaskType;
     /**
-     * ĸϢƵ
+     * 向配置中心更新心跳信息的频率
      */
-    private long heartBeatRate = 5*1000;//1
+    private long heartBeatRate = 5*1000;//1分钟
     
     /**
-     * жһڡΪ˰ȫڵ
+     * 判断一个服务器死亡的周期。为了安全，至少是心跳周期的两倍以上
      */
-    private long judgeDeadInterval = 1*60*1000;//2
+    private long judgeDeadInterval = 1*60*1000;//2分钟
     
     /**
-     * ûݵʱߵʱ
+     * 当没有数据的时候，休眠的时间
      * 
      */
     private int sleepTimeNoData = 500;
+    /**
+     * 连续没有数据时，休眠时间从sleepTimeNoData开始成倍增加，直到此上限。小于等于sleepTimeNoData时不增加
+     */
+    private int sleepTimeNoDataMax = 0;
     
     /**
-     * ÿݴߵʱ
+     * 在每次数据处理晚后休眠的时间
      */
     private int sleepTimeInterval = 0;
     
     /**
-     * ÿλȡݵ
+     * 每次获取数据的数量
      */
     private int fetchDataNumber = 500;
+    /**
+     * 每次获取数据量自适应调整的上限，大于0时开启自适应调整，fetchDataNumber作为初始值
+     */
+    private int fetchDataNumberMax = 0;
+    /**
+     * 每次获取数据量自适应调整的下限，小于等于0时取 线程数*每次执行数量
+     */
+    private int fetchDataNumberMin = 0;
     
     /**
-     * ʱÿδ
+     * 在批处理的时候，每次处理的数据量
      */
     private int executeNumber =1;
     
     private int threadNumber = 5;
     
     /**
-     * 
+     * 调度器类型：SLEEP,NOTSLEEP,PIPELINE
      */
     private String processorType="SLEEP" ;
+    
+    /**
+     * PIPELINE模式下，任务队列低于此数量时在后台获取下一批数据，小于等于0时取 线程数*每次执行数量*2
+     */
+    private int pipelineLowWatermark = 0;
+    /**
+     * PIPELINE模式下，队列中还有任务时每隔多少毫秒提前取数，新取到的高优先级任务排在已取到的低优先级任务前面。
+     * 只在使用优先级队列时有意义，小于等于0表示只在低于水位线时取数
+     */
+    private int priorityPreemptInterval = 0;
+    /**
+     * 执行线程类型：PLATFORM,VIRTUAL。VIRTUAL在支持虚拟线程的JDK上用虚拟线程执行任务，适合阻塞在数据库和远程调用上的任务，
+     * 可以配置更大的线程数；不支持时退回普通线程。心跳和取数协调不受影响
+     */
+    private String threadType = ScheduleThreadFactory.THREAD_TYPE_PLATFORM;
+    /**
+     * 弹性调整处理线程数量的上限，大于0时开启，threadNumber作为初始线程数量
+     */
+    private int threadNumberMax = 0;
+    /**
+     * 弹性调整处理线程数量的下限，最少1个线程
+     */
+    private int threadNumberMin = 1;
+    /**
+     * 处理Bean实现IScheduleTaskDealAsync时，同时处理中的最大任务数（批处理时为批次数），小于等于0时取 线程数*10
+     */
+    private int maxInFlightNumber = 0;
+    /**
+     * 处理失败的任务延时后重新放入队列的最大次数，0表示不重试，超过次数后不再重试（隔离）。异步处理的Bean不生效
+     */
+    private int maxRetryNumber = 0;
+    /**
+     * 整个集群每秒最多处理的任务数，按注册的服务器数量平分到每个服务器，小于等于0表示不限制
+     */
+    private double maxExecuteRate = 0;
+    /**
+     * 第一次重试的延时毫秒数，之后每次重试延时加倍
+     */
+    private int retryDelay = 1000;
+    /**
+     * 重试延时的上限毫秒数
+     */
+    private int retryDelayMax = 60000;
+    /**
+     * 停止、暂停调度和任务项重新分配时等待已取到的任务处理完的最长毫秒数。
+     * 停止和暂停时，队列中的任务在此时间内继续处理，超时后清除；重新分配时，被申请的任务项超时后不再等待，直接释放。
+     * 小于等于0时保持原来的处理方式：停止时直接清除队列，重新分配时一直等待
+     */
+    private int drainTimeout = 0;
+    /**
+     * 按任务项统计取数、处理、失败数量和耗时，每隔多少毫秒写入任务项下的deal_stat节点。
+     * 需要处理Bean实现IScheduleTaskItemResolver，小于等于0表示不统计
+     */
+    private int taskItemStatInterval = 0;
     /**
-     * ִеĿʼʱ
+     * execute超过多少毫秒没有结束时认为处理过慢，采样处理线程的堆栈并记录日志，小于等于0表示不监控。异步处理的Bean不生效
+     */
+    private int slowExecuteTime = 0;
+    /**
+     * execute超过多少毫秒没有结束时中断处理线程，可以不配置slowExecuteTime单独使用，小于等于0表示不中断
+     */
+    private int executeInterruptTime = 0;
+    /**
+     * 处理Bean实现IScheduleTaskDealStream时，读取过程中内存里最多缓冲的任务数，小于等于0时取任务队列容量
+     */
+    private int streamBufferSize = 0;
+    /**
+     * 任务队列类型：RING,STEAL,PRIORITY,AFFINITY。STEAL为每个线程一个队列，按任务项分区，空闲线程从其它线程的队列窃取任务；
+     * PRIORITY按IScheduleTaskPriority的优先级取任务，Bean实现了IScheduleTaskPriority并且不是STEAL、AFFINITY时自动使用；
+     * AFFINITY把任务项绑定到处理线程，每个线程只处理自己任务项的任务，Bean需要实现IScheduleTaskItemResolver
+     */
+    private String taskQueueType = ScheduleTaskQueueFactory.QUEUE_TYPE_RING;
+    /**
+     * 是否统计任务在队列中的等待时间。开启后每个任务放入队列时多一次包装，默认不统计
+     */
+    private boolean queueWaitStatistics = false;
+    /**
+     * 允许执行的开始时间
      */
     private String permitRunStartTime;
     /**
-     * ִеĿʼʱ
+     * 允许执行的开始时间
      */
     private String permitRunEndTime;
     
     /**
-     * ڻϢʱ,Ϊλ
+     * 清除过期环境信息的时间间隔,以天为单位
      */
     private double expireOwnSignInterval = 1;
     
     /**
-     * BeanName
+     * 处理任务的BeanName
      */
     private String dealBeanName;
     /**
-     * beanĲûԶʽַ
+     * 任务bean的参数，由用户自定义格式的字符串
      */
     private String taskParameter;
     
-    //̬ͣstatic,̬dynamic
+    //任务类型：静态static,动态dynamic
     private String taskKind = TASKKIND_STATIC;
     
     public static String TASKKIND_STATIC="static";
@@ -88,16 +176,16 @@ public class ScheduleTaskType implements java.io.Serializable {
  
     
     /**
-     * 
+     * 任务项数组
      */
     private String[] taskItems;
     /**
-     * 汾
+     * 版本号
      */
     private long version;
     
     /**
-     * ״̬: pause,resume
+     * 服务状态: pause,resume
      */
     private String sts = STS_RESUME;
 	
@@ -119,7 +207,7 @@ public class ScheduleTaskType implements java.io.Serializable {
     					break;
     				}
     			}
-    			index = index + 1; //
+    			index = index + 1; //跳过逗号
     			start = index;
     		}else if(str.charAt(index)==','){
     			list.add(str.substring(start,index).trim());
@@ -130,7 +218,7 @@ public class ScheduleTaskType implements java.io.Serializable {
     					break;
     				}
     			}
-    			index = index + 1; //
+    			index = index + 1; //跳过逗号
     			start = index;
     		}else{
     			index = index + 1;
@@ -178,6 +266,22 @@ public class ScheduleTaskType implements java.io.Serializable {
 		this.fetchDataNumber = fetchDataNumber;
 	}
 
+	public int getFetchDataNumberMax() {
+		return fetchDataNumberMax;
+	}
+
+	public void setFetchDataNumberMax(int fetchDataNumberMax) {
+		this.fetchDataNumberMax = fetchDataNumberMax;
+	}
+
+	public int getFetchDataNumberMin() {
+		return fetchDataNumberMin;
+	}
+
+	public void setFetchDataNumberMin(int fetchDataNumberMin) {
+		this.fetchDataNumberMin = fetchDataNumberMin;
+	}
+
 	public int getExecuteNumber() {
 		return executeNumber;
 	}
@@ -194,6 +298,14 @@ public class ScheduleTaskType implements java.io.Serializable {
 		this.sleepTimeNoData = sleepTimeNoData;
 	}
 
+	public int getSleepTimeNoDataMax() {
+		return sleepTimeNoDataMax;
+	}
+
+	public void setSleepTimeNoDataMax(int sleepTimeNoDataMax) {
+		this.sleepTimeNoDataMax = sleepTimeNoDataMax;
+	}
+
 	public int getSleepTimeInterval() {
 		return sleepTimeInterval;
 	}
@@ -222,6 +334,142 @@ public class ScheduleTaskType implements java.io.Serializable {
 		this.processorType = processorType;
 	}
 
+	public int getPipelineLowWatermark() {
+		return pipelineLowWatermark;
+	}
+
+	public void setPipelineLowWatermark(int pipelineLowWatermark) {
+		this.pipelineLowWatermark = pipelineLowWatermark;
+	}
+
+	public int getPriorityPreemptInterval() {
+		return priorityPreemptInterval;
+	}
+
+	public void setPriorityPreemptInterval(int priorityPreemptInterval) {
+		this.priorityPreemptInterval = priorityPreemptInterval;
+	}
+
+	public int getThreadNumberMax() {
+		return threadNumberMax;
+	}
+
+	public void setThreadNumberMax(int threadNumberMax) {
+		this.threadNumberMax = threadNumberMax;
+	}
+
+	public int getThreadNumberMin() {
+		return threadNumberMin;
+	}
+
+	public void setThreadNumberMin(int threadNumberMin) {
+		this.threadNumberMin = threadNumberMin;
+	}
+
+	public int getMaxInFlightNumber() {
+		return maxInFlightNumber;
+	}
+
+	public void setMaxInFlightNumber(int maxInFlightNumber) {
+		this.maxInFlightNumber = maxInFlightNumber;
+	}
+
+	public int getMaxRetryNumber() {
+		return maxRetryNumber;
+	}
+
+	public void setMaxRetryNumber(int maxRetryNumber) {
+		this.maxRetryNumber = maxRetryNumber;
+	}
+
+	public double getMaxExecuteRate() {
+		return maxExecuteRate;
+	}
+
+	public void setMaxExecuteRate(double maxExecuteRate) {
+		this.maxExecuteRate = maxExecuteRate;
+	}
+
+	public int getRetryDelay() {
+		return retryDelay;
+	}
+
+	public void setRetryDelay(int retryDelay) {
+		this.retryDelay = retryDelay;
+	}
+
+	public int getRetryDelayMax() {
+		return retryDelayMax;
+	}
+
+	public void setRetryDelayMax(int retryDelayMax) {
+		this.retryDelayMax = retryDelayMax;
+	}
+
+	public int getDrainTimeout() {
+		return drainTimeout;
+	}
+
+	public void setDrainTimeout(int drainTimeout) {
+		this.drainTimeout = drainTimeout;
+	}
+
+	public int getStreamBufferSize() {
+		return streamBufferSize;
+	}
+
+	public void setStreamBufferSize(int streamBufferSize) {
+		this.streamBufferSize = streamBufferSize;
+	}
+
+	public int getTaskItemStatInterval() {
+		return taskItemStatInterval;
+	}
+
+	public void setTaskItemStatInterval(int taskItemStatInterval) {
+		this.taskItemStatInterval = taskItemStatInterval;
+	}
+
+	public int getSlowExecuteTime() {
+		return slowExecuteTime;
+	}
+
+	public void setSlowExecuteTime(int slowExecuteTime) {
+		this.slowExecuteTime = slowExecuteTime;
+	}
+
+	public int getExecuteInterruptTime() {
+		return executeInterruptTime;
+	}
+
+	public void setExecuteInterruptTime(int executeInterruptTime) {
+		this.executeInterruptTime = executeInterruptTime;
+	}
+
+	public String getThreadType() {
+		return threadType;
+	}
+
+	public void setThreadType(String threadType) {
+		this.threadType = threadType;
+	}
+
+	public String getTaskQueueType() {
+		return taskQueueType;
+	}
+
+	public void setTaskQueueType(String taskQueueType) {
+		this.taskQueueType = taskQueueType;
+	}
+
+	public boolean isQueueWaitStatistics() {
+		return queueWaitStatistics;
+	}
+
+	public void setQueueWaitStatistics(boolean queueWaitStatistics) {
+		this.queueWaitStatistics = queueWaitStatistics;
+	}
+
 	public void setPermitRunStartTime(String permitRunStartTime) {
 		this.permitRunStartTime = permitRunStartTime;
 		if(this.permitRunStartTime != null && this.permitRunStartTime.trim().length() ==0){
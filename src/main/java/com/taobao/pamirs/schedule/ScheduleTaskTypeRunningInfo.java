@@ -10,27 +10,27 @@ public class ScheduleTaskTypeRunningInfo {
 	private long id;
     
 	/**
-     * ͣԭʼ+"-"+ownSign
+     * 任务类型：原始任务类型+"-"+ownSign
      */
 	private String taskType;
 	
 	/**
-	 * ԭʼ
+	 * 原始任务类型
 	 */
 	private String baseTaskType;
 	
 	/**
-	 * 
+	 * 环境
 	 */
 	private String ownSign;
 	
 	/**
-	 * һʱ
+	 * 最后一次任务分配的时间
 	 */
 	private Timestamp lastAssignTime;
 	
 	/**
-	 * һִķ
+	 * 最后一次执行任务分配的服务器
 	 */
 	private String lastAssignUUID;
 	
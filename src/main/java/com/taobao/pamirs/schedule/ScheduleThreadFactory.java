@@ -0,0 +1,71 @@
+package com.taobao.pamirs.schedule;
+
+import java.lang.reflect.Method;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 创建任务处理线程。线程类型为VIRTUAL并且运行在支持虚拟线程的JDK上时，创建虚拟线程，否则创建普通线程
+ * 虚拟线程通过反射创建，编译和运行都不依赖高版本JDK。
+ * 注意：虚拟线程都是守护线程，进程的存活依赖心跳定时器等普通线程
+ *
+ */
+public class ScheduleThreadFactory {
+	private static transient Log logger = LogFactory.getLog(ScheduleThreadFactory.class);
+
+	public static final String THREAD_TYPE_PLATFORM = "PLATFORM";
+	public static final String THREAD_TYPE_VIRTUAL = "VIRTUAL";
+
+	private static Method ofVirtualMethod;
+	private static Method nameMethod;
+	private static Method unstartedMethod;
+	private static boolean isWarnNotSupport = false;
+
+	static {
+		try {
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			nameMethod = builderClass.getMethod("name", String.class);
+			unstartedMethod = builderClass.getMethod("unstarted", Runnable.class);
+			ofVirtualMethod = ofVirtual;
+		} catch (Throwable e) {
+			ofVirtualMethod = null;
+		}
+	}
+
+	/**
+	 * 当前JDK是否支持虚拟线程
+	 * @return
+	 */
+	public static boolean isSupportVirtualThread() {
+		return ofVirtualMethod != null;
+	}
+
+	/**
+	 * 创建一个未启动的线程
+	 * @param runnable
+	 * @param threadName
+	 * @param threadType PLATFORM 或 VIRTUAL，为空时按PLATFORM处理
+	 * @return
+	 */
+	public static Thread newThread(Runnable runnable, String threadName, String threadType) {
+		if (THREAD_TYPE_VIRTUAL.equalsIgnoreCase(threadType) == true) {
+			if (isSupportVirtualThread() == true) {
+				try {
+					Object builder = ofVirtualMethod.invoke(null);
+					builder = nameMethod.invoke(builder, threadName);
+					return (Thread) unstartedMethod.invoke(builder, runnable);
+				} catch (Throwable e) {
+					logger.error("创建虚拟线程失败，使用普通线程：" + threadName, e);
+				}
+			} else if (isWarnNotSupport == false) {
+				isWarnNotSupport = true;
+				logger.warn("当前JDK不支持虚拟线程，使用普通线程：" + System.getProperty("java.version"));
+			}
+		}
+		Thread thread = new Thread(runnable);
+		thread.setName(threadName);
+		return thread;
+	}
+}
@@ -0,0 +1,116 @@
+package com.taobao.pamirs.schedule;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 处理线程数量的弹性调整，threadNumberMax大于0时开启，每次心跳时计算一次
+ * 1、内存中积压的任务超过一轮的处理量，CPU不忙，并且单条任务处理耗时没有明显变长时，增加线程
+ * 2、系统负载过高，或者增加线程后单条任务处理耗时成倍增长，或者没有积压并且处理的任务数少于线程数时，减少线程
+ * 3、每次调整当前线程数的四分之一，至少一个，结果限制在[threadNumberMin,threadNumberMax]之间
+ */
+class ScheduleThreadNumberTuner {
+	private static transient Log logger = LogFactory.getLog(ScheduleThreadNumberTuner.class);
+	/**
+	 * 每个CPU的平均负载超过此值时不再增加线程
+	 */
+	static final double CPU_BUSY_LOAD = 0.8;
+	/**
+	 * 每个CPU的平均负载超过此值时减少线程
+	 */
+	static final double CPU_OVERLOAD = 1.5;
+	/**
+	 * 单条任务处理耗时增长超过此倍数时，认为增加线程已经没有效果
+	 */
+	static final double DEAL_SPEND_TIME_RATIO = 1.5;
+
+	private ScheduleTaskType taskTypeInfo;
+	private StatisticsInfo statisticsInfo;
+	private OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+	private long lastDealDataNum = 0;
+	private long lastDealSpendTime = 0;
+	/**
+	 * 上次调整时的单条任务处理耗时，小于0表示还没有数据
+	 */
+	private double lastDealSpendTimePerTask = -1;
+	/**
+	 * 上次调整的方向：大于0增加，小于0减少
+	 */
+	private int lastChange = 0;
+
+	public ScheduleThreadNumberTuner(ScheduleTaskType aTaskTypeInfo, StatisticsInfo aStatisticsInfo) {
+		this.taskTypeInfo = aTaskTypeInfo;
+		this.statisticsInfo = aStatisticsInfo;
+	}
+
+	public boolean isElastic() {
+		return this.taskTypeInfo.getThreadNumberMax() > 0;
+	}
+
+	public int getMin() {
+		return Math.max(1, this.taskTypeInfo.getThreadNumberMin());
+	}
+
+	public int getMax() {
+		return Math.max(this.getMin(), this.taskTypeInfo.getThreadNumberMax());
+	}
+
+	/**
+	 * 每个CPU的平均负载，不支持时返回-1
+	 */
+	double getCpuLoad() {
+		double load = this.osBean.getSystemLoadAverage();
+		if (load < 0) {
+			return -1;
+		}
+		return load / this.osBean.getAvailableProcessors();
+	}
+
+	/**
+	 * 计算新的线程数量
+	 * @param threadNumber 当前线程数量
+	 * @param taskQueueSize 内存中等待处理的任务数量
+	 * @return 新的线程数量，不需要调整时返回当前线程数量
+	 */
+	public synchronized int computeThreadNumber(int threadNumber, int taskQueueSize) {
+		long dealDataNum = this.statisticsInfo.getDealDataNum();
+		long dealSpendTime = this.statisticsInfo.getDealSpendTime();
+		long dealDataDelta = dealDataNum - this.lastDealDataNum;
+		double dealSpendTimePerTask = -1;
+		if (dealDataDelta > 0) {
+			dealSpendTimePerTask = (double) (dealSpendTime - this.lastDealSpendTime) / dealDataDelta;
+		}
+		this.lastDealDataNum = dealDataNum;
+		this.lastDealSpendTime = dealSpendTime;
+		if (this.isElastic() == false || threadNumber <= 0) {
+			return threadNumber;
+		}
+		double cpuLoad = this.getCpuLoad();
+		int step = Math.max(1, threadNumber / 4);
+		//只有上次增加了线程，处理耗时变长才认为是线程过多造成的
+		boolean isSlower = this.lastChange > 0 && dealSpendTimePerTask > 0 && this.lastDealSpendTimePerTask > 0
+				&& dealSpendTimePerTask > this.lastDealSpendTimePerTask * DEAL_SPEND_TIME_RATIO;
+		int result = threadNumber;
+		if (cpuLoad > CPU_OVERLOAD || isSlower == true) {
+			result = threadNumber - step;
+		} else if (taskQueueSize > threadNumber * this.taskTypeInfo.getExecuteNumber()
+				&& (cpuLoad < 0 || cpuLoad < CPU_BUSY_LOAD)) {
+			result = threadNumber + step;
+		} else if (taskQueueSize == 0 && dealDataDelta < threadNumber) {
+			result = threadNumber - step;
+		}
+		result = Math.max(this.getMin(), Math.min(this.getMax(), result));
+		if (dealSpendTimePerTask > 0) {
+			this.lastDealSpendTimePerTask = dealSpendTimePerTask;
+		}
+		this.lastChange = result - threadNumber;
+		if (result != threadNumber && logger.isDebugEnabled()) {
+			logger.debug(this.taskTypeInfo.getBaseTaskType() + " 处理线程数量调整：" + threadNumber + " -> " + result
+					+ "，积压任务数=" + taskQueueSize + "，单条处理耗时=" + dealSpendTimePerTask + "，CPU负载=" + cpuLoad);
+		}
+		return result;
+	}
+}
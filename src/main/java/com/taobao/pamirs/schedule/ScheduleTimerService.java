@@ -0,0 +1,300 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * JVM内共享的定时服务，替代每个Manager和Factory各自的java.util.Timer
+ * 1、分层时间轮：第一层每格TICK_DURATION毫秒，每层WHEEL_SIZE格，上一层的一格等于下一层的一圈，
+ *    到达上层某一格时把其中的任务降到下层，超过最上层范围的任务放在最上层的最后一格，到期时重新计算
+ * 2、时间轮由一个线程推进，到期的任务交给少量工作线程执行，一个任务执行慢（例如心跳时ZK响应慢）不会推迟其他任务
+ * 3、按任务名称统计实际执行时间比计划时间的延迟，用于观察调度抖动
+ *
+ */
+class ScheduleTimerService {
+	private static transient Log logger = LogFactory.getLog(ScheduleTimerService.class);
+
+	static final long TICK_DURATION = 10;
+	static final int WHEEL_SIZE = 64;
+	static final int LEVEL_NUMBER = 5;
+
+	private static ScheduleTimerService instance;
+
+	/**
+	 * 每层时间轮一格的毫秒数
+	 */
+	private final long[] tickDurations = new long[LEVEL_NUMBER];
+	private final List<TimerBucket[]> wheels = new ArrayList<TimerBucket[]>();
+	/**
+	 * 时间轮已经推进到的时间，按TICK_DURATION取整，由lockWheel保护
+	 */
+	private long currentTime;
+	private final Object lockWheel = new Object();
+	private final ExecutorService workerPool;
+	private final ConcurrentHashMap<String, TimerLateness> latenessMap = new ConcurrentHashMap<String, TimerLateness>();
+
+	public static synchronized ScheduleTimerService getInstance() {
+		if (instance == null) {
+			instance = new ScheduleTimerService(Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())));
+		}
+		return instance;
+	}
+
+	ScheduleTimerService(int workerNumber) {
+		long tick = TICK_DURATION;
+		for (int i = 0; i < LEVEL_NUMBER; i++) {
+			this.tickDurations[i] = tick;
+			TimerBucket[] wheel = new TimerBucket[WHEEL_SIZE];
+			for (int j = 0; j < WHEEL_SIZE; j++) {
+				wheel[j] = new TimerBucket();
+			}
+			this.wheels.add(wheel);
+			tick = tick * WHEEL_SIZE;
+		}
+		this.currentTime = System.currentTimeMillis() / TICK_DURATION * TICK_DURATION;
+		final AtomicInteger threadIndex = new AtomicInteger(0);
+		this.workerPool = new ThreadPoolExecutor(workerNumber, workerNumber, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "ScheduleTimerService-Worker-" + threadIndex.incrementAndGet());
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MAX_PRIORITY);
+						return thread;
+					}
+				});
+		Thread tickThread = new Thread(new Runnable() {
+			public void run() {
+				tickLoop();
+			}
+		}, "ScheduleTimerService-Tick");
+		tickThread.setDaemon(true);
+		tickThread.setPriority(Thread.MAX_PRIORITY);
+		tickThread.start();
+	}
+
+	/**
+	 * 延时执行一次
+	 * @param name 任务名称，用于统计延迟
+	 */
+	public ScheduleTimeout schedule(String name, Runnable task, long delay) {
+		ScheduleTimeout timeout = new ScheduleTimeout(name, task, 0);
+		this.add(timeout, System.currentTimeMillis() + Math.max(0, delay));
+		return timeout;
+	}
+
+	/**
+	 * 在指定时间执行一次
+	 */
+	public ScheduleTimeout schedule(String name, Runnable task, Date time) {
+		return this.schedule(name, task, time.getTime() - System.currentTimeMillis());
+	}
+
+	/**
+	 * 固定间隔重复执行，上一次执行完成后再开始计算下一次的时间，同一个任务不会并发执行
+	 */
+	public ScheduleTimeout scheduleWithFixedDelay(String name, Runnable task, long initialDelay, long period) {
+		ScheduleTimeout timeout = new ScheduleTimeout(name, task, Math.max(1, period));
+		this.add(timeout, System.currentTimeMillis() + Math.max(0, initialDelay));
+		return timeout;
+	}
+
+	/**
+	 * 所有任务的延迟统计
+	 */
+	public List<String> getLatenessDescription() {
+		List<String> result = new ArrayList<String>();
+		for (TimerLateness lateness : this.latenessMap.values()) {
+			result.add(lateness.toString());
+		}
+		return result;
+	}
+
+	/**
+	 * 删除一个任务的延迟统计，用于只执行一次的任务在Manager停止时清理
+	 */
+	public void removeLateness(String name) {
+		this.latenessMap.remove(name);
+	}
+
+	private void add(ScheduleTimeout timeout, long deadline) {
+		timeout.deadline = deadline;
+		synchronized (this.lockWheel) {
+			this.addWithLock(timeout);
+		}
+	}
+
+	private void addWithLock(ScheduleTimeout timeout) {
+		if (timeout.isCancelled == true) {
+			return;
+		}
+		//currentTime不会超过当前时间，任务不会提前执行
+		if (timeout.deadline <= this.currentTime) {
+			this.expire(timeout);
+			return;
+		}
+		for (int level = 0; level < LEVEL_NUMBER; level++) {
+			long slot = timeout.deadline / this.tickDurations[level];
+			if (slot - this.currentTime / this.tickDurations[level] < WHEEL_SIZE) {
+				this.wheels.get(level)[(int) (slot % WHEEL_SIZE)].timeouts.add(timeout);
+				return;
+			}
+		}
+		//超过最上层的范围，放在最上层最后一格，到时再重新计算
+		int top = LEVEL_NUMBER - 1;
+		long slot = this.currentTime / this.tickDurations[top] + WHEEL_SIZE - 1;
+		this.wheels.get(top)[(int) (slot % WHEEL_SIZE)].timeouts.add(timeout);
+	}
+
+	private void tickLoop() {
+		while (true) {
+			try {
+				long sleepTime = this.currentTime + TICK_DURATION - System.currentTimeMillis();
+				if (sleepTime > 0) {
+					Thread.sleep(sleepTime);
+					continue;
+				}
+				synchronized (this.lockWheel) {
+					this.currentTime = this.currentTime + TICK_DURATION;
+					//从上往下，先把上层到期的格子降到下层
+					for (int level = LEVEL_NUMBER - 1; level > 0; level--) {
+						if (this.currentTime % this.tickDurations[level] == 0) {
+							this.cascade(this.wheels.get(level)[(int) ((this.currentTime / this.tickDurations[level]) % WHEEL_SIZE)]);
+						}
+					}
+					//第一层处理刚刚结束的一格
+					this.cascade(this.wheels.get(0)[(int) ((this.currentTime / TICK_DURATION - 1) % WHEEL_SIZE)]);
+				}
+			} catch (Throwable ex) {
+				logger.error("定时服务推进时间轮错误", ex);
+			}
+		}
+	}
+
+	private void cascade(TimerBucket bucket) {
+		if (bucket.timeouts.size() == 0) {
+			return;
+		}
+		ScheduleTimeout[] timeouts = bucket.timeouts.toArray(new ScheduleTimeout[bucket.timeouts.size()]);
+		bucket.timeouts.clear();
+		for (int i = 0; i < timeouts.length; i++) {
+			this.addWithLock(timeouts[i]);
+		}
+	}
+
+	private void expire(ScheduleTimeout timeout) {
+		try {
+			this.workerPool.execute(timeout);
+		} catch (Throwable ex) {
+			logger.error("定时任务提交错误：" + timeout.name, ex);
+		}
+	}
+
+	private TimerLateness getLateness(String name) {
+		TimerLateness lateness = this.latenessMap.get(name);
+		if (lateness == null) {
+			lateness = new TimerLateness(name);
+			TimerLateness old = this.latenessMap.putIfAbsent(name, lateness);
+			if (old != null) {
+				lateness = old;
+			}
+		}
+		return lateness;
+	}
+
+	/**
+	 * 定时任务的句柄，用于取消
+	 */
+	class ScheduleTimeout implements Runnable {
+		final String name;
+		final Runnable task;
+		final long period;
+		volatile long deadline;
+		volatile boolean isCancelled = false;
+
+		ScheduleTimeout(String aName, Runnable aTask, long aPeriod) {
+			this.name = aName;
+			this.task = aTask;
+			this.period = aPeriod;
+		}
+
+		/**
+		 * 取消后不再执行，正在执行的不受影响
+		 */
+		public void cancel() {
+			this.isCancelled = true;
+			latenessMap.remove(this.name);
+		}
+
+		public boolean isCancelled() {
+			return this.isCancelled;
+		}
+
+		public void run() {
+			if (this.isCancelled == true) {
+				return;
+			}
+			getLateness(this.name).add(System.currentTimeMillis() - this.deadline);
+			try {
+				this.task.run();
+			} catch (Throwable ex) {
+				logger.error("定时任务执行错误：" + this.name, ex);
+			}
+			if (this.period > 0 && this.isCancelled == false) {
+				add(this, System.currentTimeMillis() + this.period);
+			}
+		}
+	}
+
+	/**
+	 * 时间轮的一格，由lockWheel保护
+	 */
+	static class TimerBucket {
+		final LinkedList<ScheduleTimeout> timeouts = new LinkedList<ScheduleTimeout>();
+	}
+
+	/**
+	 * 一个任务的执行延迟统计，单位毫秒
+	 */
+	static class TimerLateness {
+		private final String name;
+		private final AtomicLong count = new AtomicLong(0);
+		private final AtomicLong totalLateness = new AtomicLong(0);
+		private volatile long maxLateness = 0;
+		private volatile long lastLateness = 0;
+
+		TimerLateness(String aName) {
+			this.name = aName;
+		}
+
+		void add(long lateness) {
+			lateness = Math.max(0, lateness);
+			this.count.incrementAndGet();
+			this.totalLateness.addAndGet(lateness);
+			this.lastLateness = lateness;
+			if (lateness > this.maxLateness) {
+				this.maxLateness = lateness;
+			}
+		}
+
+		public String toString() {
+			long num = this.count.get();
+			return this.name + ":count=" + num
+					+ ",avgLateness=" + (num == 0 ? 0 : this.totalLateness.get() / num)
+					+ ",maxLateness=" + this.maxLateness
+					+ ",lastLateness=" + this.lastLateness;
+		}
+	}
+}
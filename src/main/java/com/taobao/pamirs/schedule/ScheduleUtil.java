@@ -8,7 +8,7 @@ import java.util.Date;
 
 
 /**
- * ȴ
+ * 调度处理工具类
  * @author xuannan
  *
  */
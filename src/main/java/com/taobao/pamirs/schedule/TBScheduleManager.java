@@ -3,8 +3,8 @@ package com.taobao.pamirs.schedule;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Timer;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -63,6 +63,40 @@ public abstract class TBScheduleManager {
 	 */
 	IScheduleProcessor processor;
 	StatisticsInfo statisticsInfo = new StatisticsInfo();
+	/**
+	 * 每次获取数据量的自适应调整
+	 */
+	ScheduleFetchNumberTuner fetchNumberTuner;
+	/**
+	 * 处理线程数量的弹性调整
+	 */
+	ScheduleThreadNumberTuner threadNumberTuner;
+	/**
+	 * 当前的处理线程数量，运行期调整和弹性调整只修改这里，不修改配置的threadNumber，恢复调度时按这个数量创建线程
+	 */
+	volatile int threadNumber;
+	/**
+	 * 失败任务延时重试在共享定时服务中的名称
+	 */
+	String retryTimerName;
+	/**
+	 * execute处理过慢的监控，slowExecuteTime和executeInterruptTime都没有配置时为null
+	 */
+	ScheduleExecuteWatchdog executeWatchdog;
+	/**
+	 * 集群限流时当前服务器分到的令牌桶
+	 */
+	ScheduleRateLimiter rateLimiter = new ScheduleRateLimiter();
+
+	/**
+	 * 最近一次发布任务项统计的时间
+	 */
+	long lastPublishTaskItemStatisticsTime = ScheduleUtil.getCurrentTimeMillis();
+
+	/**
+	 * 最近一次处理过的唤醒信号版本号，小于-1表示还没有读取过
+	 */
+	long lastWakeUpSignal = -2;
 
 	boolean isPauseSchedule = true;
 	String pauseMessage="";
@@ -75,12 +109,21 @@ public abstract class TBScheduleManager {
 	 * 当前实际  - 上此装载时间  > intervalReloadTaskItemList，则向配置中心请求最新的任务分配情况
 	 */
 	protected long lastReloadTaskItemListTime=0;
+	/**
+	 * 每个任务项最近一次移交给其它服务器的耗时，从发现需要重新分配到释放任务项的毫秒数
+	 */
+	protected Map<String,Long> taskItemHandoffTimeMap = new ConcurrentHashMap<String,Long>();
 
 	private String mBeanName;
 	/**
-	 * 向配置中心更新信息的定时器
+	 * 向配置中心更新信息的心跳任务，由JVM内共享的定时服务执行
 	 */
-	private Timer heartBeatTimer;
+	private ScheduleTimerService.ScheduleTimeout heartBeatTimeout;
+	/**
+	 * 按允许执行时间段启动和暂停调度的任务
+	 */
+	private PauseOrResumeScheduleTask resumeTask;
+	private PauseOrResumeScheduleTask pauseTask;
 
 	protected IScheduleDataManager scheduleCenter;
 
@@ -113,16 +156,33 @@ public abstract class TBScheduleManager {
 					+ this.taskTypeInfo.getJudgeDeadInterval()
 					+ ",HeartBeatRate = " + this.taskTypeInfo.getHeartBeatRate());
 		}
+		this.fetchNumberTuner = new ScheduleFetchNumberTuner(this.taskTypeInfo, this.statisticsInfo);
+		this.threadNumberTuner = new ScheduleThreadNumberTuner(this.taskTypeInfo, this.statisticsInfo);
+		this.threadNumber = this.taskTypeInfo.getThreadNumber();
+		if(this.taskTypeInfo.getTaskItemStatInterval() > 0){
+			if(ScheduleTaskQueueFactory.getTaskItemResolver(this.taskDealBean) != null){
+				this.statisticsInfo.setTaskItemStatistics(
+						new ScheduleTaskItemStatistics(ScheduleTaskQueueFactory.getTaskItemResolver(this.taskDealBean)));
+			}else{
+				log.warn(baseTaskType + " 的处理Bean没有实现IScheduleTaskItemResolver，不能按任务项统计");
+			}
+		}
+		this.retryTimerName = baseTaskType + "-" + this.currentSerialNumber + "-Retry";
 		this.currenScheduleServer = ScheduleServer.createScheduleServer(baseTaskType,ownSign,this.taskTypeInfo.getThreadNumber(),managerPort,jxmUrl);
 		this.currenScheduleServer.setManagerFactoryUUID(this.factory.getUuid());
 		//向scheduleCenter注册
 		scheduleCenter.registerScheduleServer(this.currenScheduleServer);
+		this.refreshRateLimit();
 		this.mBeanName = "pamirs:name=" + "schedule.ServerMananger." +this.currenScheduleServer.getUuid();
 		//心跳进程
-		this.heartBeatTimer = new Timer(this.currenScheduleServer.getTaskType() +"-" + this.currentSerialNumber +"-HeartBeat");
-		this.heartBeatTimer.schedule(new HeartBeatTimerTask(this),
-				new java.sql.Date(ScheduleUtil.getCurrentTimeMillis() + 500),
-				this.taskTypeInfo.getHeartBeatRate());
+		this.heartBeatTimeout = ScheduleTimerService.getInstance().scheduleWithFixedDelay(
+				this.currenScheduleServer.getTaskType() +"-" + this.currentSerialNumber +"-HeartBeat",
+				new HeartBeatTimerTask(this), 500, this.taskTypeInfo.getHeartBeatRate());
+		//execute处理过慢和超时中断的监控
+		if(this.taskTypeInfo.getSlowExecuteTime() > 0 || this.taskTypeInfo.getExecuteInterruptTime() > 0){
+			this.executeWatchdog = new ScheduleExecuteWatchdog(this.currenScheduleServer.getTaskType(), this.taskTypeInfo, this.statisticsInfo);
+			this.executeWatchdog.start(this.currenScheduleServer.getTaskType() + "-" + this.currentSerialNumber + "-Watchdog");
+		}
 		initial();
 	}
 	/**
@@ -220,30 +280,28 @@ public abstract class TBScheduleManager {
 				isRunNow = true;
 				tmpStr = tmpStr.substring("startrun:".length());
 			}
-			CronExpression cexpStart = new CronExpression(tmpStr);
+			ScheduleCronExpression cexpStart = ScheduleCronExpression.compile(tmpStr);
 			Date current = new Date( ScheduleUtil.getCurrentTimeMillis());
 			Date firstStartTime = cexpStart.getNextValidTimeAfter(current);
-			this.heartBeatTimer.schedule(
-					new PauseOrResumeScheduleTask(this,this.heartBeatTimer,
-							PauseOrResumeScheduleTask.TYPE_RESUME,tmpStr),
-					firstStartTime);
+			this.resumeTask = new PauseOrResumeScheduleTask(this,
+					PauseOrResumeScheduleTask.TYPE_RESUME,tmpStr);
+			this.resumeTask.schedule(firstStartTime);
 			this.currenScheduleServer.setNextRunStartTime(ScheduleUtil.transferDataToString(firstStartTime));
 			if( this.taskTypeInfo.getPermitRunEndTime() == null
 					|| this.taskTypeInfo.getPermitRunEndTime().equals("-1")){
 				this.currenScheduleServer.setNextRunEndTime("当不能获取到数据的时候pause");
 			}else{
 				String tmpEndStr = this.taskTypeInfo.getPermitRunEndTime();
-				CronExpression cexpEnd = new CronExpression(tmpEndStr);
+				ScheduleCronExpression cexpEnd = ScheduleCronExpression.compile(tmpEndStr);
 				Date firstEndTime = cexpEnd.getNextValidTimeAfter(firstStartTime);
 				Date nowEndTime = cexpEnd.getNextValidTimeAfter(current);
 				if(!nowEndTime.equals(firstEndTime) && current.before(nowEndTime)){
 					isRunNow = true;
 					firstEndTime = nowEndTime;
 				}
-				this.heartBeatTimer.schedule(
-						new PauseOrResumeScheduleTask(this,this.heartBeatTimer,
-								PauseOrResumeScheduleTask.TYPE_PAUSE,tmpEndStr),
-						firstEndTime);
+				this.pauseTask = new PauseOrResumeScheduleTask(this,
+						PauseOrResumeScheduleTask.TYPE_PAUSE,tmpEndStr);
+				this.pauseTask.schedule(firstEndTime);
 				this.currenScheduleServer.setNextRunEndTime(ScheduleUtil.transferDataToString(firstEndTime));
 			}
 		}
@@ -292,6 +350,7 @@ public abstract class TBScheduleManager {
 			if (this.processor != null) {
 				this.processor.stopSchedule();
 			}
+			this.rateLimiter.cancelWait();
 			rewriteScheduleInfo();
 		}
 	}
@@ -306,12 +365,21 @@ public abstract class TBScheduleManager {
 			}
 			this.isPauseSchedule = false;
 			this.pauseMessage = message;
+			if (this.processor != null) {
+				//暂停后还在处理剩余任务的处理器，清除剩余任务，避免和新的处理器重复处理
+				this.processor.clearAllHasFetchData();
+			}
 			if (this.taskDealBean != null) {
 				if (this.taskTypeInfo.getProcessorType() != null &&
 						this.taskTypeInfo.getProcessorType().equalsIgnoreCase("NOTSLEEP")==true){
 					this.taskTypeInfo.setProcessorType("NOTSLEEP");
 					this.processor = new TBScheduleProcessorNotSleep(this,
 							taskDealBean,this.statisticsInfo);
+				}else if (this.taskTypeInfo.getProcessorType() != null &&
+						this.taskTypeInfo.getProcessorType().equalsIgnoreCase("PIPELINE")==true){
+					this.taskTypeInfo.setProcessorType("PIPELINE");
+					this.processor = new TBScheduleProcessorPipeline(this,
+							taskDealBean,this.statisticsInfo);
 				}else{
 					this.processor = new TBScheduleProcessorSleep(this,
 							taskDealBean,this.statisticsInfo);
@@ -332,6 +400,7 @@ public abstract class TBScheduleManager {
 			log.debug("停止服务器 ：" + this.currenScheduleServer.getUuid());
 		}
 		this.isPauseSchedule = false;
+		this.rateLimiter.cancelWait();
 		if (this.processor != null) {
 			this.processor.stopSchedule();
 		} else {
@@ -339,6 +408,22 @@ public abstract class TBScheduleManager {
 		}
 	}
 
+	/**
+	 * 处理器的最后一个线程退出时调用。暂停后又恢复了调度时，已经创建了新的处理器，旧处理器退出时不做任何处理
+	 * @param aProcessor 退出的处理器
+	 * @throws Exception
+	 */
+	protected void unRegisterScheduleServer(IScheduleProcessor aProcessor) throws Exception{
+		registerLock.lock();
+		try {
+			if (this.processor != null && this.processor != aProcessor) {
+				return;
+			}
+			this.unRegisterScheduleServer();
+		} finally {
+			registerLock.unlock();
+		}
+	}
 	/**
 	 * 只应该在Processor中调用，当server被设置为停止以后，processor完成全部手头任务，最后一个processor调用此方法注销ScheduleServer，
 	 * 还有一种是心跳失败时调用的
@@ -358,8 +443,18 @@ public abstract class TBScheduleManager {
 				log.debug("注销服务器 ：" + this.currenScheduleServer.getUuid());
 			}
 			this.isStopSchedule = true;
-			// 取消心跳TIMER
-			this.heartBeatTimer.cancel();
+			// 取消心跳和启停任务
+			this.heartBeatTimeout.cancel();
+			ScheduleTimerService.getInstance().removeLateness(this.retryTimerName);
+			if (this.executeWatchdog != null) {
+				this.executeWatchdog.stop();
+			}
+			if (this.resumeTask != null) {
+				this.resumeTask.cancel();
+			}
+			if (this.pauseTask != null) {
+				this.pauseTask.cancel();
+			}
 			// 从配置中心注销自己
 			this.scheduleCenter.unRegisterScheduleServer(
 					this.currenScheduleServer.getTaskType(),
@@ -378,12 +473,181 @@ public abstract class TBScheduleManager {
 	public StatisticsInfo getStatisticsInfo() {
 		return statisticsInfo;
 	}
+	/**
+	 * 当前的处理器，没有启动调度或者处理器已经退出时为null
+	 */
+	public IScheduleProcessor getProcessor() {
+		return processor;
+	}
+	public boolean isPauseSchedule() {
+		return isPauseSchedule;
+	}
+	/**
+	 * 当前分配到的任务项数量，不等待任务项的重新加载
+	 */
+	public int getCurrentTaskItemNumber() {
+		return this.currentTaskItemList.size();
+	}
+	public ScheduleFetchNumberTuner getFetchNumberTuner() {
+		return fetchNumberTuner;
+	}
+	/**
+	 * execute处理过慢的监控，slowExecuteTime和executeInterruptTime都没有配置时为null
+	 */
+	public ScheduleExecuteWatchdog getExecuteWatchdog() {
+		return executeWatchdog;
+	}
+	public String getRetryTimerName() {
+		return retryTimerName;
+	}
+	/**
+	 * 当前的处理线程数量，启动时等于配置的threadNumber
+	 */
+	public int getThreadNumber() {
+		return threadNumber;
+	}
+	/**
+	 * 运行期调整处理线程数量，同时作为下次恢复调度时的线程数量，配置的threadNumber不变
+	 * @param threadNumber
+	 */
+	public void setThreadNumber(int threadNumber) throws Exception{
+		if(threadNumber <= 0){
+			throw new Exception("线程数量必须大于0：" + threadNumber);
+		}
+		this.threadNumber = threadNumber;
+		this.currenScheduleServer.setThreadNum(threadNumber);
+		IScheduleProcessor tmpProcessor = this.processor;
+		if(tmpProcessor != null && this.isPauseSchedule == false){
+			tmpProcessor.setThreadNumber(threadNumber);
+		}
+	}
+	/**
+	 * 运行期修改弹性调整线程数量的范围，max小于等于0时关闭弹性调整
+	 */
+	public void setThreadNumberRange(int min,int max) throws Exception{
+		if(max > 0 && min > max){
+			throw new Exception("线程数量下限" + min + "不能大于上限" + max);
+		}
+		this.taskTypeInfo.setThreadNumberMin(min);
+		this.taskTypeInfo.setThreadNumberMax(max);
+		if(max > 0 && this.threadNumber > this.threadNumberTuner.getMax()){
+			this.setThreadNumber(this.threadNumberTuner.getMax());
+		}else if(max > 0 && this.threadNumber < this.threadNumberTuner.getMin()){
+			this.setThreadNumber(this.threadNumberTuner.getMin());
+		}
+	}
+	/**
+	 * 根据积压任务、处理耗时和CPU负载调整处理线程数量，由心跳线程调用
+	 */
+	public void adjustThreadNumber() throws Exception{
+		IScheduleProcessor tmpProcessor = this.processor;
+		if(tmpProcessor == null || this.isPauseSchedule == true || this.isStopSchedule == true){
+			return;
+		}
+		int current = tmpProcessor.getThreadNumber();
+		int threadNumber = this.threadNumberTuner.computeThreadNumber(current, tmpProcessor.getTaskQueueSize());
+		if(threadNumber != current){
+			this.setThreadNumber(threadNumber);
+		}
+	}
+	/**
+	 * 结束处理器没有数据时的休眠，立即重新取数
+	 */
+	public void wakeUp(){
+		IScheduleProcessor tmpProcessor = this.processor;
+		if(tmpProcessor != null){
+			tmpProcessor.wakeUp();
+		}
+	}
+	/**
+	 * 检查配置中心的唤醒信号，其它服务器发出信号后唤醒处理器，由心跳线程调用。
+	 * 只在处理器休眠时检查，避免增加配置中心的访问
+	 */
+	public void checkWakeUpSignal() throws Exception{
+		IScheduleProcessor tmpProcessor = this.processor;
+		if(this.lastWakeUpSignal >= -1 && (tmpProcessor == null || tmpProcessor.isSleeping() == false)){
+			return;
+		}
+		long signal = this.scheduleCenter.getWakeUpSignal(this.currenScheduleServer.getTaskType());
+		if(this.lastWakeUpSignal >= -1 && signal != this.lastWakeUpSignal){
+			if(log.isDebugEnabled()){
+				log.debug("收到唤醒信号：" + this.currenScheduleServer.getUuid() + ",version=" + signal);
+			}
+			this.wakeUp();
+		}
+		this.lastWakeUpSignal = signal;
+	}
+	/**
+	 * 按taskItemStatInterval的间隔把每个任务项的统计写入配置中心，由心跳线程调用。
+	 * 只发布当前分配到的任务项，其它任务项由持有它们的服务器发布
+	 */
+	public void publishTaskItemStatistics() throws Exception{
+		ScheduleTaskItemStatistics taskItemStatistics = this.statisticsInfo.getTaskItemStatistics();
+		if(taskItemStatistics == null || this.isStopSchedule == true
+				|| ScheduleUtil.getCurrentTimeMillis() - this.lastPublishTaskItemStatisticsTime < this.taskTypeInfo.getTaskItemStatInterval()){
+			return;
+		}
+		this.lastPublishTaskItemStatisticsTime = ScheduleUtil.getCurrentTimeMillis();
+		List<String> taskItemIds = new ArrayList<String>();
+		//不调用getCurrentScheduleTaskItemList，重新分配时它会等待处理中的任务，不能阻塞心跳
+		for(TaskItemDefine item : new ArrayList<TaskItemDefine>(this.currentTaskItemList)){
+			taskItemIds.add(item.getTaskItemId());
+		}
+		Map<String,String> statistics = taskItemStatistics.getAndReset(taskItemIds);
+		for(Map.Entry<String,String> entry : statistics.entrySet()){
+			this.scheduleCenter.updateScheduleTaskItemStatistics(this.currenScheduleServer.getTaskType(), entry.getKey(),
+					"server=" + this.currenScheduleServer.getUuid() + "," + entry.getValue());
+		}
+	}
+	/**
+	 * 按任务类型下注册的服务器数量平分集群的每秒处理上限，由心跳线程调用，服务器增减时重新分配
+	 */
+	public void refreshRateLimit() throws Exception{
+		if(this.taskTypeInfo.getMaxExecuteRate() <= 0){
+			if(this.rateLimiter.isLimited() == true){
+				this.rateLimiter.setRate(0);
+			}
+			return;
+		}
+		int serverNumber = Math.max(1,
+				this.scheduleCenter.loadScheduleServerNames(this.currenScheduleServer.getTaskType()).size());
+		double rate = this.taskTypeInfo.getMaxExecuteRate() / serverNumber;
+		if(rate != this.rateLimiter.getRate()){
+			if(log.isDebugEnabled()){
+				log.debug("调整限流：" + this.currenScheduleServer.getUuid() + ",服务器数量=" + serverNumber + ",每秒处理数量=" + rate);
+			}
+			this.rateLimiter.setRate(rate);
+		}
+	}
+	/**
+	 * 处理任务前获取限流令牌，超过当前服务器分到的处理速度时等待。只应该在Processor中调用
+	 * @param num 任务数量
+	 */
+	public void acquireExecutePermit(int num) throws InterruptedException{
+		if(this.rateLimiter.isLimited() == false){
+			return;
+		}
+		long waitTime = this.rateLimiter.acquire(num);
+		if(waitTime > 0){
+			this.statisticsInfo.addRateLimitWaitTime(waitTime);
+		}
+	}
 	/**
 	 * 打印给定任务类型的任务分配情况
 	 * @param taskType
 	 */
 	public void printScheduleServerInfo(String taskType){
 
+	}
+	/**
+	 * 每个任务项最近一次移交的耗时，格式为 任务项:毫秒数
+	 */
+	public List<String> getTaskItemHandoffList(){
+		List<String> result = new ArrayList<String>();
+		for(Map.Entry<String,Long> entry : this.taskItemHandoffTimeMap.entrySet()){
+			result.add(entry.getKey() + ":" + entry.getValue());
+		}
+		return result;
 	}
 	public ScheduleServer getScheduleServer(){
 		return this.currenScheduleServer;
@@ -393,7 +657,7 @@ public abstract class TBScheduleManager {
 	}
 }
 
-class HeartBeatTimerTask extends java.util.TimerTask {
+class HeartBeatTimerTask implements Runnable {
 	private static transient Log log = LogFactory
 			.getLog(HeartBeatTimerTask.class);
 	TBScheduleManager manager;
@@ -403,38 +667,72 @@ class HeartBeatTimerTask extends java.util.TimerTask {
 	}
 
 	public void run() {
+		long startTime = ScheduleUtil.getCurrentTimeMillis();
+		Object traceEvent = ScheduleFlightRecorder.begin(ScheduleFlightRecorder.HEART_BEAT);
+		boolean isSuccess = false;
 		try {
-			Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
 			manager.refreshScheduleServerInfo();
+			manager.adjustThreadNumber();
+			manager.checkWakeUpSignal();
+			manager.refreshRateLimit();
+			manager.publishTaskItemStatistics();
+			isSuccess = true;
 		} catch (Exception ex) {
+			manager.getStatisticsInfo().addHeartBeatFailCount(1);
 			log.error(ex.getMessage(), ex);
+		} finally {
+			manager.getStatisticsInfo().addHeartBeatTime(ScheduleUtil.getCurrentTimeMillis() - startTime);
+			if (traceEvent != null) {
+				ScheduleFlightRecorder.commit(traceEvent, manager.getScheduleServer().getTaskType(), isSuccess);
+			}
 		}
 	}
 }
 
 //控制TBScheduleManager的启动和暂停
-class PauseOrResumeScheduleTask extends java.util.TimerTask {
+class PauseOrResumeScheduleTask implements Runnable {
 	private static transient Log log = LogFactory
 			.getLog(HeartBeatTimerTask.class);
 	public static int TYPE_PAUSE  = 1;
 	public static int TYPE_RESUME = 2;
 	TBScheduleManager manager;
-	Timer timer;
 	int type;
 	String cronTabExpress;
-	public PauseOrResumeScheduleTask(TBScheduleManager aManager,Timer aTimer,int aType,String aCronTabExpress) {
+	/**
+	 * 编译后的cron表达式，第一次执行时从缓存中取得
+	 */
+	ScheduleCronExpression cronExpression;
+	volatile ScheduleTimerService.ScheduleTimeout timeout;
+	volatile boolean isCancel = false;
+	public PauseOrResumeScheduleTask(TBScheduleManager aManager,int aType,String aCronTabExpress) {
 		this.manager = aManager;
-		this.timer = aTimer;
 		this.type = aType;
 		this.cronTabExpress = aCronTabExpress;
 	}
+	/**
+	 * 在指定时间执行，执行后按cron表达式计算下一次时间
+	 */
+	public void schedule(Date time){
+		if(this.isCancel == true){
+			return;
+		}
+		String name = this.manager.getScheduleServer().getTaskType() + "-" + this.manager.getCurrentSerialNumber()
+				+ (this.type == TYPE_PAUSE ? "-Pause" : "-Resume");
+		this.timeout = ScheduleTimerService.getInstance().schedule(name, this, time);
+	}
+	public void cancel(){
+		this.isCancel = true;
+		if(this.timeout != null){
+			this.timeout.cancel();
+		}
+	}
 	public void run() {
 		try {
-			Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
-			this.cancel();//取消调度任务
 			Date current = new Date( ScheduleUtil.getCurrentTimeMillis());
-			CronExpression cexp = new CronExpression(this.cronTabExpress);
-			Date nextTime = cexp.getNextValidTimeAfter(current);
+			if (this.cronExpression == null) {
+				this.cronExpression = ScheduleCronExpression.compile(this.cronTabExpress);
+			}
+			Date nextTime = this.cronExpression.getNextValidTimeAfter(current);
 			if(this.type == TYPE_PAUSE){
 				manager.pause("到达终止时间,pause调度");
 				this.manager.getScheduleServer().setNextRunEndTime(ScheduleUtil.transferDataToString(nextTime));
@@ -442,46 +740,254 @@ class PauseOrResumeScheduleTask extends java.util.TimerTask {
 				manager.resume("到达开始时间,resume调度");
 				this.manager.getScheduleServer().setNextRunStartTime(ScheduleUtil.transferDataToString(nextTime));
 			}
-			this.timer.schedule(new PauseOrResumeScheduleTask(this.manager,this.timer,this.type,this.cronTabExpress) , nextTime);
+			this.schedule(nextTime);
 		} catch (Exception ex) {
 			log.error(ex.getMessage(), ex);
 		}
 	}
 }
 
+/**
+ * 处理统计，处理线程每个任务都会更新，计数使用分段计数器，分布使用对数分桶直方图
+ * 1、耗时单位为毫秒，批量大小为每次execute的任务数
+ * 2、最近1分钟、5分钟的速率按计数的快照计算，心跳和读取时最多每SNAPSHOT_INTERVAL毫秒记录一次，不增加处理线程的开销
+ */
 class StatisticsInfo{
-	private AtomicLong fetchDataNum = new AtomicLong(0);//读取次数
-	private AtomicLong fetchDataCount = new AtomicLong(0);//读取的数据量
-	private AtomicLong dealDataSucess = new AtomicLong(0);//处理成功的数据量
-	private AtomicLong dealDataFail = new AtomicLong(0);//处理失败的数据量
-	private AtomicLong dealSpendTime = new AtomicLong(0);//处理总耗时,没有做同步，可能存在一定的误差
-	private AtomicLong otherCompareCount = new AtomicLong(0);//特殊比较的次数
+	static final long SNAPSHOT_INTERVAL = 5000;
+	static final int SNAPSHOT_NUMBER = 64;
+
+	private ScheduleStripedCounter fetchDataNum = new ScheduleStripedCounter();//读取的数据量
+	private ScheduleStripedCounter fetchDataCount = new ScheduleStripedCounter();//读取次数
+	private ScheduleStripedCounter dealDataSucess = new ScheduleStripedCounter();//处理成功的数据量
+	private ScheduleStripedCounter dealDataFail = new ScheduleStripedCounter();//处理失败的数据量
+	private ScheduleStripedCounter dealSpendTime = new ScheduleStripedCounter();//处理总耗时
+	private ScheduleStripedCounter otherCompareCount = new ScheduleStripedCounter();//特殊比较的次数
+	private ScheduleStripedCounter stealCount = new ScheduleStripedCounter();//从其它线程队列窃取的任务数
+	private ScheduleStripedCounter retryCount = new ScheduleStripedCounter();//失败后重试的次数
+	private ScheduleStripedCounter quarantineCount = new ScheduleStripedCounter();//超过重试次数不再处理的数据量
+	private ScheduleStripedCounter rateLimitWaitTime = new ScheduleStripedCounter();//限流等待的总时间
+	private volatile int fetchDataNumber;//当前每次获取数据的数量
+	private ScheduleHistogram executeTime = new ScheduleHistogram();//每次execute的耗时
+	private ScheduleHistogram selectTime = new ScheduleHistogram();//每次selectTasks的耗时
+	private ScheduleHistogram batchSize = new ScheduleHistogram();//每次execute的任务数
+	private ScheduleHistogram queueWaitTime = new ScheduleHistogram();//任务在队列中的等待时间
+	private ScheduleHistogram heartBeatTime = new ScheduleHistogram();//每次心跳的耗时，主要是访问配置中心的时间
+	private ScheduleStripedCounter heartBeatFailCount = new ScheduleStripedCounter();//心跳失败的次数
+	private ScheduleStripedCounter taskItemReloadCount = new ScheduleStripedCounter();//重新加载任务项的次数
+	private ScheduleHistogram taskItemHandoffTime = new ScheduleHistogram();//每个任务项移交给其它服务器的耗时
+	private ScheduleStripedCounter slowExecuteCount = new ScheduleStripedCounter();//超过slowExecuteTime的execute次数
+	private ScheduleStripedCounter executeInterruptCount = new ScheduleStripedCounter();//超过executeInterruptTime被中断的execute次数
+	private volatile ScheduleTaskItemStatistics taskItemStatistics;//按任务项的统计，没有开启时为null
+	/**
+	 * 快照：时间，处理数量，失败数量，读取的数据量
+	 */
+	private long[][] snapshots = new long[SNAPSHOT_NUMBER][];
+	private int snapshotIndex = -1;
 
 	public void addFetchDataNum(long value){
-		this.fetchDataNum.addAndGet(value);
+		this.fetchDataNum.add(value);
 	}
 	public void addFetchDataCount(long value){
-		this.fetchDataCount.addAndGet(value);
+		this.fetchDataCount.add(value);
 	}
 	public void addDealDataSucess(long value){
-		this.dealDataSucess.addAndGet(value);
+		this.dealDataSucess.add(value);
 	}
 	public void addDealDataFail(long value){
-		this.dealDataFail.addAndGet(value);
+		this.dealDataFail.add(value);
+	}
+	/**
+	 * 记录一次execute，成功和失败的数量另外记录
+	 * @param taskNum 本次处理的任务数
+	 * @param spendTime 本次处理耗时
+	 */
+	public void addExecute(long taskNum, long spendTime){
+		this.dealSpendTime.add(spendTime);
+		this.executeTime.record(spendTime);
+		this.batchSize.record(taskNum);
+	}
+	public void addSelectTime(long value){
+		this.selectTime.record(value);
+	}
+	public void addQueueWaitTime(long value){
+		this.queueWaitTime.record(value);
+	}
+	public void addHeartBeatTime(long value){
+		this.heartBeatTime.record(value);
+	}
+	public void addHeartBeatFailCount(long value){
+		this.heartBeatFailCount.add(value);
 	}
-	public void addDealSpendTime(long value){
-		this.dealSpendTime.addAndGet(value);
+	public void addTaskItemReloadCount(long value){
+		this.taskItemReloadCount.add(value);
+	}
+	public void addTaskItemHandoffTime(long value){
+		this.taskItemHandoffTime.record(value);
+	}
+	public void addSlowExecuteCount(long value){
+		this.slowExecuteCount.add(value);
+	}
+	public void addExecuteInterruptCount(long value){
+		this.executeInterruptCount.add(value);
 	}
 	public void addOtherCompareCount(long value){
-		this.otherCompareCount.addAndGet(value);
+		this.otherCompareCount.add(value);
+	}
+	public void addStealCount(long value){
+		this.stealCount.add(value);
+	}
+	public void addRetryCount(long value){
+		this.retryCount.add(value);
 	}
+	public void addQuarantineCount(long value){
+		this.quarantineCount.add(value);
+	}
+	public void addRateLimitWaitTime(long value){
+		this.rateLimitWaitTime.add(value);
+	}
+	public void setFetchDataNumber(int value){
+		this.fetchDataNumber = value;
+	}
+	public long getFetchDataNum(){
+		return this.fetchDataNum.get();
+	}
+	public long getFetchDataCount(){
+		return this.fetchDataCount.get();
+	}
+	public long getDealDataSucess(){
+		return this.dealDataSucess.get();
+	}
+	public long getDealDataFail(){
+		return this.dealDataFail.get();
+	}
+	public long getOtherCompareCount(){
+		return this.otherCompareCount.get();
+	}
+	public long getStealCount(){
+		return this.stealCount.get();
+	}
+	public long getRetryCount(){
+		return this.retryCount.get();
+	}
+	public long getQuarantineCount(){
+		return this.quarantineCount.get();
+	}
+	public long getRateLimitWaitTime(){
+		return this.rateLimitWaitTime.get();
+	}
+	public long getHeartBeatFailCount(){
+		return this.heartBeatFailCount.get();
+	}
+	public long getTaskItemReloadCount(){
+		return this.taskItemReloadCount.get();
+	}
+	public long getSlowExecuteCount(){
+		return this.slowExecuteCount.get();
+	}
+	public long getExecuteInterruptCount(){
+		return this.executeInterruptCount.get();
+	}
+	public int getFetchDataNumber(){
+		return this.fetchDataNumber;
+	}
+	public long getDealDataNum(){
+		return this.dealDataSucess.get() + this.dealDataFail.get();
+	}
+	public long getDealSpendTime(){
+		return this.dealSpendTime.get();
+	}
+	public ScheduleHistogram getExecuteTime(){
+		return this.executeTime;
+	}
+	public ScheduleHistogram getSelectTime(){
+		return this.selectTime;
+	}
+	public ScheduleHistogram getBatchSize(){
+		return this.batchSize;
+	}
+	public ScheduleHistogram getQueueWaitTime(){
+		return this.queueWaitTime;
+	}
+	public ScheduleHistogram getHeartBeatTime(){
+		return this.heartBeatTime;
+	}
+	public ScheduleHistogram getTaskItemHandoffTime(){
+		return this.taskItemHandoffTime;
+	}
+	public ScheduleTaskItemStatistics getTaskItemStatistics(){
+		return this.taskItemStatistics;
+	}
+	public void setTaskItemStatistics(ScheduleTaskItemStatistics value){
+		this.taskItemStatistics = value;
+	}
+
+	private long[] getSnapshot(long now){
+		long dealFail = this.dealDataFail.get();
+		return new long[]{now, this.dealDataSucess.get() + dealFail, dealFail, this.fetchDataNum.get()};
+	}
+
+	/**
+	 * 最近window毫秒内每秒的处理数量、失败数量、读取的数据量。
+	 * 快照不够时按已有的最早快照计算，快照间隔较大时按实际间隔计算
+	 */
+	public synchronized double[] getRates(long window){
+		long now = ScheduleUtil.getCurrentTimeMillis();
+		long[] current = this.getSnapshot(now);
+		if (this.snapshotIndex < 0 || now - this.snapshots[this.snapshotIndex][0] >= SNAPSHOT_INTERVAL) {
+			this.snapshotIndex = (this.snapshotIndex + 1) % SNAPSHOT_NUMBER;
+			this.snapshots[this.snapshotIndex] = current;
+		}
+		long[] base = null;
+		for (int i = 0; i < SNAPSHOT_NUMBER; i++) {
+			long[] snapshot = this.snapshots[(this.snapshotIndex - i + SNAPSHOT_NUMBER) % SNAPSHOT_NUMBER];
+			if (snapshot == null) {
+				break;
+			}
+			base = snapshot;
+			if (snapshot[0] <= now - window) {
+				break;
+			}
+		}
+		double[] result = new double[current.length - 1];
+		long spendTime = now - base[0];
+		if (spendTime > 0) {
+			for (int i = 0; i < result.length; i++) {
+				result[i] = Math.round((current[i + 1] - base[i + 1]) * 10000.0 / spendTime) / 10.0;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 最近1分钟、5分钟每秒的处理数量、失败数量和读取的数据量
+	 */
+	public String getRateDescription(){
+		double[] rate1m = this.getRates(60000);
+		double[] rate5m = this.getRates(300000);
+		return "dealRate1m=" + rate1m[0]
+				+",dealRate5m=" + rate5m[0]
+				+",failRate1m=" + rate1m[1]
+				+",failRate5m=" + rate5m[1]
+				+",fetchRate1m=" + rate1m[2]
+				+",fetchRate5m=" + rate5m[2];
+	}
+
 	public String getDealDescription(){
 		return "FetchDataCount=" + this.fetchDataCount
 				+",FetchDataNum=" + this.fetchDataNum
 				+",DealDataSucess=" + this.dealDataSucess
 				+",DealDataFail=" + this.dealDataFail
 				+",DealSpendTime=" + this.dealSpendTime
-				+",otherCompareCount=" + this.otherCompareCount;
+				+",otherCompareCount=" + this.otherCompareCount
+				+",stealCount=" + this.stealCount
+				+",retryCount=" + this.retryCount
+				+",quarantineCount=" + this.quarantineCount
+				+",rateLimitWaitTime=" + this.rateLimitWaitTime
+				+",fetchDataNumber=" + this.fetchDataNumber
+				+"," + this.getRateDescription()
+				+",executeTimeP99=" + this.executeTime.getPercentile(99)
+				+",selectTimeP99=" + this.selectTime.getPercentile(99)
+				+",queueWaitTimeP99=" + this.queueWaitTime.getPercentile(99);
 	}
 
-}
\ No newline at end of file
+}
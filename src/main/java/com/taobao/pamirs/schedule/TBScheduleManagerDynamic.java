@@ -18,7 +18,7 @@ public class TBScheduleManagerDynamic extends TBScheduleManager {
 	public void initial() throws Exception{
 		if (scheduleCenter.isLeader(this.currenScheduleServer.getUuid(),
 				scheduleCenter.loadScheduleServerNames(this.currenScheduleServer.getTaskType()))) {
-			// ǵһӦzkĿ¼Ƿ
+			// 是第一次启动，检查对应的zk目录是否存在
 			this.scheduleCenter.initialRunningInfo4Dynamic(	this.currenScheduleServer.getBaseTaskType(),
 					this.currenScheduleServer.getOwnSign());
 		}
@@ -26,20 +26,20 @@ public class TBScheduleManagerDynamic extends TBScheduleManager {
     }
 	
 	public void refreshScheduleServerInfo() throws Exception {
-		throw new Exception("ûʵ");
+		throw new Exception("没有实现");
 	}
 
 	public boolean isNeedReLoadTaskItemList() throws Exception {
-		throw new Exception("ûʵ");
+		throw new Exception("没有实现");
 	}
 	public void assignScheduleTask() throws Exception {
-		throw new Exception("ûʵ");
+		throw new Exception("没有实现");
 		
 	}
 	public List<TaskItemDefine> getCurrentScheduleTaskItemList() {
-		throw new RuntimeException("ûʵ");
+		throw new RuntimeException("没有实现");
 	}
 	public int getTaskItemCount() {
-		throw new RuntimeException("ûʵ");
+		throw new RuntimeException("没有实现");
 	}
 }
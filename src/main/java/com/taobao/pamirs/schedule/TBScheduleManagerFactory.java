@@ -3,9 +3,9 @@ package com.taobao.pamirs.schedule;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Timer;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -37,6 +37,16 @@ public class TBScheduleManagerFactory implements ApplicationContextAware {
 	 */
 	boolean start = true;
 	private int timerInterval = 2000;
+	/**
+	 * 监控数据HTTP服务的端口，大于0时在初始化时启动，按Prometheus文本格式输出统计，默认不启动
+	 */
+	private int metricsPort = 0;
+	private ScheduleMetricsServer metricsServer;
+	/**
+	 * 定时刷新的耗时和失败次数，主要是访问配置中心的时间
+	 */
+	ScheduleHistogram refreshTime = new ScheduleHistogram();
+	AtomicLong refreshFailCount = new AtomicLong(0);
 
 	/**
 	 * 调度配置中心客服端
@@ -60,7 +70,10 @@ public class TBScheduleManagerFactory implements ApplicationContextAware {
 	private String ip;
 	private String hostName;
 
-	private Timer timer;
+	/**
+	 * 定时刷新的任务，由JVM内共享的定时服务执行
+	 */
+	private ScheduleTimerService.ScheduleTimeout refreshTimeout;
 	protected Lock  lock = new ReentrantLock();
 
 	volatile String  errorMessage ="No config Zookeeper connect infomation";
@@ -80,7 +93,7 @@ public class TBScheduleManagerFactory implements ApplicationContextAware {
 	}
 
 	public void reInit(Properties p) throws Exception{
-		if(this.start == true || this.timer != null || this.managerMap.size() >0){
+		if(this.start == true || this.refreshTimeout != null || this.managerMap.size() >0){
 			throw new Exception("调度器有任务处理，不能重新初始化");
 		}
 		this.init(p);
@@ -90,6 +103,7 @@ public class TBScheduleManagerFactory implements ApplicationContextAware {
 		if(this.initialThread != null){
 			this.initialThread.stopThread();
 		}
+		this.startMetricsServer();
 		this.lock.lock();
 		try{
 			this.scheduleDataManager = null;
@@ -107,6 +121,32 @@ public class TBScheduleManagerFactory implements ApplicationContextAware {
 		}
 	}
 
+	/**
+	 * 启动监控数据HTTP服务，启动失败不影响调度
+	 */
+	private synchronized void startMetricsServer() {
+		if(this.metricsPort <= 0 || this.metricsServer != null){
+			return;
+		}
+		ScheduleMetricsServer tmpServer = new ScheduleMetricsServer(this, this.metricsPort);
+		try{
+			tmpServer.start();
+			this.metricsServer = tmpServer;
+		}catch(Exception e){
+			logger.error("监控数据服务启动失败，端口：" + this.metricsPort, e);
+		}
+	}
+
+	/**
+	 * 停止监控数据HTTP服务，HttpServer的线程不是守护线程，需要进程退出时调用
+	 */
+	public synchronized void stopMetricsServer() {
+		if(this.metricsServer != null){
+			this.metricsServer.stop();
+			this.metricsServer = null;
+		}
+	}
+
 	/**
 	 * 在Zk状态正常后回调数据初始化
 	 * @throws Exception
@@ -125,9 +165,8 @@ public class TBScheduleManagerFactory implements ApplicationContextAware {
 		if (this.start == true) {
 			// 注册调度管理器
 			this.scheduleStrategyManager.registerManagerFactory(this);
-			timer = new Timer("TBScheduleManagerFactory-Timer");
-			timer.schedule(new ManagerFactoryTimerTask(this), 2000,
-					this.timerInterval);
+			this.refreshTimeout = ScheduleTimerService.getInstance().scheduleWithFixedDelay(
+					"TBScheduleManagerFactory-Timer", new ManagerFactoryTimerTask(this), 2000, this.timerInterval);
 		}
 	}
 
@@ -330,6 +369,30 @@ public class TBScheduleManagerFactory implements ApplicationContextAware {
 		}
 	}
 
+	/**
+	 * 唤醒本机处理此任务类型的调度服务器，结束没有数据时的休眠，立即重新取数
+	 * @param taskType 任务类型，也可以是基础任务类型，为null时唤醒全部
+	 */
+	public void wakeUp(String taskType) {
+		for (TBScheduleManager manager : this.managerMap.values()) {
+			if (taskType == null || manager.getScheduleServer().getTaskType().equals(taskType)
+					|| manager.getScheduleServer().getBaseTaskType().equals(taskType)) {
+				manager.wakeUp();
+			}
+		}
+	}
+
+	/**
+	 * 唤醒本机的调度服务器，同时通过配置中心通知集群中处理此任务类型的调度服务器，在下次心跳时唤醒。
+	 * 生产者写入数据后调用，避免等待没有数据时的休眠时间
+	 * @param taskType 任务类型
+	 * @throws Exception
+	 */
+	public void signalWakeUp(String taskType) throws Exception {
+		this.getScheduleDataManager().updateWakeUpSignal(taskType);
+		this.wakeUp(taskType);
+	}
+
 	/**
 	 * 在控制台临时终止调度服务
 	 * @param taskType
@@ -376,6 +439,13 @@ public class TBScheduleManagerFactory implements ApplicationContextAware {
 	public boolean isZookeeperInitialSucess(){
 		return this.zkManager.checkZookeeperState();
 	}
+	/**
+	 * 共享定时服务中各个任务的执行延迟统计
+	 */
+	public List<String> getTimerLatenessList() {
+		return ScheduleTimerService.getInstance().getLatenessDescription();
+	}
+
 	public String[] getScheduleTaskDealList() {
 		return applicationcontext.getBeanNamesForType(IScheduleTaskDeal.class);
 
@@ -433,6 +503,14 @@ public class TBScheduleManagerFactory implements ApplicationContextAware {
 	public void setTimerInterval(int timerInterval) {
 		this.timerInterval = timerInterval;
 	}
+
+	public void setMetricsPort(int metricsPort) {
+		this.metricsPort = metricsPort;
+	}
+
+	public int getMetricsPort() {
+		return metricsPort;
+	}
 	public void setZkConfig(Map<String,String> zkConfig) {
 		this.zkConfig = zkConfig;
 	}
@@ -442,7 +520,7 @@ public class TBScheduleManagerFactory implements ApplicationContextAware {
 	}
 }
 
-class ManagerFactoryTimerTask extends java.util.TimerTask {
+class ManagerFactoryTimerTask implements Runnable {
 	private static transient Log log = LogFactory.getLog(ManagerFactoryTimerTask.class);
 	TBScheduleManagerFactory factory;
 
@@ -451,11 +529,14 @@ class ManagerFactoryTimerTask extends java.util.TimerTask {
 	}
 
 	public void run() {
+		long startTime = ScheduleUtil.getCurrentTimeMillis();
 		try {
-			Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
 			this.factory.refresh();
 		} catch (Exception ex) {
+			this.factory.refreshFailCount.incrementAndGet();
 			log.error(ex.getMessage(), ex);
+		} finally {
+			this.factory.refreshTime.record(ScheduleUtil.getCurrentTimeMillis() - startTime);
 		}
 	}
 }
@@ -19,7 +19,7 @@ public class TBScheduleManagerFactoryMBean extends AbstractDynamicMBean {
 				tbScheduleManagerFactory.createTBScheduleManager(taskType,
 						dealBeanName, ownSign);
 			}
-			return "ȷ" + num + " ɹTASK_TYPE=" + taskType;
+			return "创建调度服务器" + num + " 组成功：TASK_TYPE=" + taskType;
 		} catch (Exception e) {
 			return e.toString();
 		}
@@ -28,6 +28,10 @@ public class TBScheduleManagerFactoryMBean extends AbstractDynamicMBean {
 	public String[] getScheduleTaskDealList() {
 		return tbScheduleManagerFactory.getScheduleTaskDealList();
 	}
+	public String[] getTimerLatenessList() {
+		List<String> list = tbScheduleManagerFactory.getTimerLatenessList();
+		return list.toArray(new String[list.size()]);
+	}
 	public String createTaskType(String baseTaskType,String dealBeanName,String taskItems) {
 		ScheduleTaskType taskType = new ScheduleTaskType();	
 		taskType.setBaseTaskType(baseTaskType);
@@ -35,7 +39,7 @@ public class TBScheduleManagerFactoryMBean extends AbstractDynamicMBean {
 		taskType.setTaskItems(taskItems.split(","));
 		try {
 			tbScheduleManagerFactory.getScheduleDataManager().createBaseTaskType(taskType);
-			return "ɹ";
+			return "创建成功";
 		} catch (Exception e) {
 			return e.toString();
 		}
@@ -53,25 +57,27 @@ public class TBScheduleManagerFactoryMBean extends AbstractDynamicMBean {
 	protected void buildDynamicMBeanInfo() {
 		MBeanAttributeInfo[] dAttributes = new MBeanAttributeInfo[] {};
 		MBeanOperationInfo[] dOperations = new MBeanOperationInfo[] {
-				new MBeanOperationInfo("getTaskTypeList", "ȡе", new MBeanParameterInfo[] {},
+				new MBeanOperationInfo("getTaskTypeList", "获取所有的任务类型", new MBeanParameterInfo[] {},
+						"String[]", MBeanOperationInfo.ACTION),
+				new MBeanOperationInfo("getScheduleTaskDealList", "获取所有存在的调度任务处理器", new MBeanParameterInfo[] {},
 						"String[]", MBeanOperationInfo.ACTION),
-				new MBeanOperationInfo("getScheduleTaskDealList", "ȡдڵĵ", new MBeanParameterInfo[] {},
+				new MBeanOperationInfo("getTimerLatenessList", "获取心跳等定时任务的执行延迟(毫秒)", new MBeanParameterInfo[] {},
 						"String[]", MBeanOperationInfo.ACTION),
-				new MBeanOperationInfo("createTaskType", "ȷ",
+				new MBeanOperationInfo("createTaskType", "创建调度服务",
 						new MBeanParameterInfo[] {
 								new MBeanParameterInfo("baseTaskType",
-										"java.lang.String", ""),
+										"java.lang.String", "任务类型"),
 								new MBeanParameterInfo("dealBeanName",
-												"java.lang.String", "Bean"),
+												"java.lang.String", "任务处理Bean"),
 								new MBeanParameterInfo("taskItems",
 										"java.lang.String",
-										"ID,Զŷָ")},
+										"任务队列ID,以逗号分隔")},
 						"String", MBeanOperationInfo.ACTION),
-				new MBeanOperationInfo("createScheduleManager", "ȷ", new MBeanParameterInfo[] {
-						new MBeanParameterInfo("taskType", "java.lang.String", ""),
-						new MBeanParameterInfo("dealBeanName", "java.lang.String", "beanʶ"),
-						new MBeanParameterInfo("ownSign", "java.lang.String", ",:BASE,DAILY,PRE..."),
-						new MBeanParameterInfo("num", "int", "")}, "String",
+				new MBeanOperationInfo("createScheduleManager", "创建调度服务", new MBeanParameterInfo[] {
+						new MBeanParameterInfo("taskType", "java.lang.String", "任务类型"),
+						new MBeanParameterInfo("dealBeanName", "java.lang.String", "任务bean标识"),
+						new MBeanParameterInfo("ownSign", "java.lang.String", "环境,例如:BASE,DAILY,PRE..."),
+						new MBeanParameterInfo("num", "int", "数量")}, "String",
 						MBeanOperationInfo.ACTION), };
 		dMBeanInfo = new MBeanInfo(this.getClass().getName(), "TaskItemDefine", dAttributes, null, dOperations, null);
 	}
@@ -7,7 +7,7 @@ import javax.management.MBeanOperationInfo;
 import javax.management.MBeanParameterInfo;
 
 /**
- * ManagerĲBean
+ * Manager的操作类Bean
  */
 public class TBScheduleManagerMBean extends AbstractDynamicMBean {
 	private TBScheduleManager tbScheduleManager;
@@ -25,6 +25,21 @@ public class TBScheduleManagerMBean extends AbstractDynamicMBean {
 	public String getDealInfoDesc() {
 		return tbScheduleManager.getScheduleServer().getDealInfoDesc();
 	}
+	public String getExecuteTimeDistribution() {
+		return tbScheduleManager.getStatisticsInfo().getExecuteTime().getDescription();
+	}
+	public String getSelectTimeDistribution() {
+		return tbScheduleManager.getStatisticsInfo().getSelectTime().getDescription();
+	}
+	public String getBatchSizeDistribution() {
+		return tbScheduleManager.getStatisticsInfo().getBatchSize().getDescription();
+	}
+	public String getQueueWaitTimeDistribution() {
+		return tbScheduleManager.getStatisticsInfo().getQueueWaitTime().getDescription();
+	}
+	public String getDealRate() {
+		return tbScheduleManager.getStatisticsInfo().getRateDescription();
+	}
 	public String getUuid() {
 		return tbScheduleManager.getScheduleServer().getUuid();
 	}
@@ -41,7 +56,10 @@ public class TBScheduleManagerMBean extends AbstractDynamicMBean {
 		return this.tbScheduleManager.getScheduleServer().getHeartBeatTime();
 	}
 	public int getThreadNum() {
-		return this.tbScheduleManager.getTaskTypeInfo().getThreadNumber();
+		return this.tbScheduleManager.getThreadNumber();
+	}
+	public int getFetchDataNumber() {
+		return this.tbScheduleManager.getFetchNumberTuner().getFetchDataNumber();
 	}
 	
 	public int getManagerPort() {
@@ -50,43 +68,93 @@ public class TBScheduleManagerMBean extends AbstractDynamicMBean {
 	
 	public String stopSchedule() throws Exception {
 		this.tbScheduleManager.stopScheduleServer();
-		return "ֹͣɹ";
+		return "停止服务器成功";
 	}
 	public String pauseSchedule() throws Exception {
-		this.tbScheduleManager.pause("Աͨⲿpauseȷ");
-		return "ͣɹ";
+		this.tbScheduleManager.pause("管理员通过外部控制pause调度服务器");
+		return "暂停服务器成功";
 	}	
+	public String setThreadNumber(Integer threadNumber) throws Exception {
+		this.tbScheduleManager.setThreadNumber(threadNumber);
+		return "修改线程数量成功：" + threadNumber;
+	}
+	public String setThreadNumberRange(Integer min, Integer max) throws Exception {
+		this.tbScheduleManager.setThreadNumberRange(min, max);
+		return "修改线程数量范围成功：[" + min + "," + max + "]";
+	}
+	public String wakeUp() throws Exception {
+		this.tbScheduleManager.wakeUp();
+		return "唤醒处理器成功";
+	}
+	public String[] getTaskItemHandoffList() {
+		java.util.List<String> list = this.tbScheduleManager.getTaskItemHandoffList();
+		return list.toArray(new String[list.size()]);
+	}
+	public int getSlowExecuteNumber() {
+		ScheduleExecuteWatchdog watchdog = this.tbScheduleManager.getExecuteWatchdog();
+		return watchdog == null ? 0 : watchdog.getSlowExecuteNumber();
+	}
+	public String[] getSlowExecuteList() {
+		ScheduleExecuteWatchdog watchdog = this.tbScheduleManager.getExecuteWatchdog();
+		if (watchdog == null) {
+			return new String[0];
+		}
+		java.util.List<String> list = watchdog.getSlowExecuteList();
+		return list.toArray(new String[list.size()]);
+	}
 	public String resumeSchedule() throws Exception {
-		this.tbScheduleManager.resume("Աͨⲿresumeȷ");
-		return "ָɹ";
+		this.tbScheduleManager.resume("管理员通过外部控制resume调度服务器");
+		return "恢复服务器成功";
 	}
 	protected void buildDynamicMBeanInfo() {
 		MBeanAttributeInfo[] dAttributes = new MBeanAttributeInfo[] {
-				new MBeanAttributeInfo("uuid", "java.lang.String", "Ψһʶ",
+				new MBeanAttributeInfo("uuid", "java.lang.String", "唯一标识",
 						true, false, false),
-				new MBeanAttributeInfo("name", "java.lang.String", "",
+				new MBeanAttributeInfo("name", "java.lang.String", "调度名称",
 						true, false, false),
-				new MBeanAttributeInfo("taskType", "java.lang.String", "",
+				new MBeanAttributeInfo("taskType", "java.lang.String", "任务类型",
 						true, false, false),
-				new MBeanAttributeInfo("ip", "java.lang.String", "IPַ", true,
+				new MBeanAttributeInfo("ip", "java.lang.String", "IP地址", true,
 						false, false),
-				new MBeanAttributeInfo("hostName", "java.lang.String", "",
+				new MBeanAttributeInfo("hostName", "java.lang.String", "主机名称",
 						true, false, false),
 				new MBeanAttributeInfo("registerTime", "java.util.Date",
-						"ʱ", true, false, false),
+						"服务器启动时间", true, false, false),
 				new MBeanAttributeInfo("heartBeatTime", "java.util.Date",
-						"һʱ", true, false, false),
-				new MBeanAttributeInfo("threadNum", "int", "߳", true,
+						"最近一次心跳时间", true, false, false),
+				new MBeanAttributeInfo("threadNum", "int", "处理线程数量", true,
+						false, false),
+				new MBeanAttributeInfo("fetchDataNumber", "int", "当前每次获取数据量", true,
+						false, false),
+				new MBeanAttributeInfo("managerPort", "int", "管理端口", true,
+						false, false),
+				new MBeanAttributeInfo("dealInfoDesc", "String", "处理信息", true,
+						false, false),
+				new MBeanAttributeInfo("executeTimeDistribution", "String", "每次execute耗时的分布(毫秒)", true,
+						false, false),
+				new MBeanAttributeInfo("selectTimeDistribution", "String", "每次selectTasks耗时的分布(毫秒)", true,
+						false, false),
+				new MBeanAttributeInfo("batchSizeDistribution", "String", "每次execute任务数的分布", true,
+						false, false),
+				new MBeanAttributeInfo("queueWaitTimeDistribution", "String", "任务在队列中等待时间的分布(毫秒)", true,
 						false, false),
-				new MBeanAttributeInfo("managerPort", "int", "˿", true,
+				new MBeanAttributeInfo("dealRate", "String", "最近1分钟、5分钟每秒的处理量", true,
 						false, false),
-				new MBeanAttributeInfo("dealInfoDesc", "String", "Ϣ", true,
+				new MBeanAttributeInfo("slowExecuteNumber", "int", "当前超过slowExecuteTime没有结束的execute数量", true,
 						false, false) };
 
 		MBeanOperationInfo[] dOperations = new MBeanOperationInfo[] { 
-				new MBeanOperationInfo("stopSchedule", "ֹͣȷ", new MBeanParameterInfo[] {},"String", MBeanOperationInfo.ACTION),
-				new MBeanOperationInfo("pauseSchedule", "ͣȷ", new MBeanParameterInfo[] {},"String", MBeanOperationInfo.ACTION),
-				new MBeanOperationInfo("resumeSchedule", "ָȷ", new MBeanParameterInfo[] {},"String", MBeanOperationInfo.ACTION)
+				new MBeanOperationInfo("stopSchedule", "停止调度服务", new MBeanParameterInfo[] {},"String", MBeanOperationInfo.ACTION),
+				new MBeanOperationInfo("pauseSchedule", "暂停调度服务", new MBeanParameterInfo[] {},"String", MBeanOperationInfo.ACTION),
+				new MBeanOperationInfo("resumeSchedule", "恢复调度服务", new MBeanParameterInfo[] {},"String", MBeanOperationInfo.ACTION),
+				new MBeanOperationInfo("wakeUp", "结束没有数据时的休眠，立即重新取数", new MBeanParameterInfo[] {},"String", MBeanOperationInfo.ACTION),
+				new MBeanOperationInfo("getSlowExecuteList", "获取超过slowExecuteTime没有结束的execute：线程、耗时、任务和采样的堆栈", new MBeanParameterInfo[] {},"String[]", MBeanOperationInfo.INFO),
+				new MBeanOperationInfo("getTaskItemHandoffList", "获取每个任务项最近一次移交给其它服务器的耗时(毫秒)", new MBeanParameterInfo[] {},"String[]", MBeanOperationInfo.INFO),
+				new MBeanOperationInfo("setThreadNumber", "修改处理线程数量", new MBeanParameterInfo[] {
+						new MBeanParameterInfo("threadNumber", "java.lang.Integer", "线程数量")},"String", MBeanOperationInfo.ACTION),
+				new MBeanOperationInfo("setThreadNumberRange", "修改弹性调整线程数量的范围，上限小于等于0时关闭", new MBeanParameterInfo[] {
+						new MBeanParameterInfo("min", "java.lang.Integer", "线程数量下限"),
+						new MBeanParameterInfo("max", "java.lang.Integer", "线程数量上限")},"String", MBeanOperationInfo.ACTION)
 				};
 		dMBeanInfo = new MBeanInfo(this.getClass().getName(), "TaskItemDefine",
 				dAttributes, null, dOperations, null);
@@ -1,6 +1,10 @@
 package com.taobao.pamirs.schedule;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -14,6 +18,14 @@ public class TBScheduleManagerStatic extends TBScheduleManager {
 
 	boolean isNeedReloadTaskItem = true;
 	protected long lastFetchVersion = -1;
+	/**
+	 * 别人申请、但还有任务在处理中暂不释放的任务项
+	 */
+	protected Set<String> holdTaskItemSet = new HashSet<String>();
+	/**
+	 * 发现需要重新分配任务项的时间，用于计算移交耗时和等待超时，0表示没有需要移交的任务项
+	 */
+	protected volatile long handoffStartTime = 0;
 
 	TBScheduleManagerStatic(TBScheduleManagerFactory aFactory,
 							String baseTaskType, String ownSign, int managerPort,
@@ -114,6 +126,9 @@ public class TBScheduleManagerStatic extends TBScheduleManager {
 				this.isNeedReloadTaskItem = tmpBoolean;
 				rewriteScheduleInfo();
 			}
+			if(tmpBoolean == true){
+				this.markHandoffStart();
+			}
 			//要么服务已经停止，要么manager所属的所有processor因为取不到任务全部休眠中，只有processor全部完成了任务时，才会取新的任务
 			//并不是一般的生产者消费者。
 			//isSleep实际上就是processor完成了全部任务的标志位
@@ -122,6 +137,9 @@ public class TBScheduleManagerStatic extends TBScheduleManager {
 				//如果服务已经暂停了，则需要重新定时更新 cur_server 和 req_server
 				//如果服务没有暂停，一定不能调用的
 				this.getCurrentScheduleTaskItemListNow();
+			}else if(this.holdTaskItemSet.size() > 0){
+				//暂不释放的任务项处理完后尽快释放，不等下一次取数
+				this.releaseHoldTaskItem();
 			}
 		}catch(Throwable e){
 			//清除内存中所有的已经取得的数据和任务队列,避免心跳线程失败时候导致的数据重复
@@ -156,6 +174,7 @@ public class TBScheduleManagerStatic extends TBScheduleManager {
 	 * @throws Exception
 	 */
 	public void assignScheduleTask() throws Exception {
+		Object traceEvent = ScheduleFlightRecorder.begin(ScheduleFlightRecorder.ASSIGN_TASK_ITEM);
 		scheduleCenter.clearExpireScheduleServer(this.currenScheduleServer.getTaskType(),this.taskTypeInfo.getJudgeDeadInterval());
 		List<String> serverList = scheduleCenter
 				.loadScheduleServerNames(this.currenScheduleServer.getTaskType());
@@ -164,6 +183,9 @@ public class TBScheduleManagerStatic extends TBScheduleManager {
 			if(log.isDebugEnabled()){
 				log.debug(this.currenScheduleServer.getUuid() +":不是负责任务分配的Leader,直接返回");
 			}
+			if(traceEvent != null){
+				ScheduleFlightRecorder.commit(traceEvent, this.currenScheduleServer.getTaskType(), serverList.size(), false);
+			}
 			return;
 		}
 		//设置初始化成功标准，将leader的uuid写在zookeeper中，避免在leader转换的时候，新增的线程组初始化失败，
@@ -172,6 +194,9 @@ public class TBScheduleManagerStatic extends TBScheduleManager {
 		scheduleCenter.clearTaskItem(this.currenScheduleServer.getTaskType(), serverList);
 
 		scheduleCenter.assignTaskItem(this.currenScheduleServer.getTaskType(),this.currenScheduleServer.getUuid(), serverList);
+		if(traceEvent != null){
+			ScheduleFlightRecorder.commit(traceEvent, this.currenScheduleServer.getTaskType(), serverList.size(), true);
+		}
 	}
 	/**
 	 * 重新加载当前服务器的任务队列
@@ -189,13 +214,28 @@ public class TBScheduleManagerStatic extends TBScheduleManager {
 			if (this.isNeedReloadTaskItem == true) {
 				//特别注意：需要判断数据队列是否已经空了，否则可能在队列切换的时候导致数据重复处理
 				//主要是在线程不休眠就加载数据的时候一定需要这个判断
-				if (this.processor != null) {
-					while (this.processor.isDealFinishAllData() == false) {
+				//处理器能区分任务所属的任务项时，只有被申请的任务项需要等待自己的任务处理完，其它任务项继续处理
+				Set<String> dealingTaskItems = new HashSet<String>();
+				IScheduleProcessor tmpProcessor = this.processor;
+				if (tmpProcessor != null) {
+					this.markHandoffStart();
+					Object traceEvent = ScheduleFlightRecorder.begin(ScheduleFlightRecorder.DRAIN_WAIT);
+					boolean isTimeout = false;
+					while ((dealingTaskItems = tmpProcessor.getDealingTaskItems()) == null) {
+						if (this.isDrainTimeout() == true) {
+							log.warn("等待任务处理完超过" + this.taskTypeInfo.getDrainTimeout() + "毫秒，不再等待，释放被申请的任务项："
+									+ this.currenScheduleServer.getUuid());
+							isTimeout = true;
+							break;
+						}
 						Thread.sleep(50);
 					}
+					if (traceEvent != null) {
+						ScheduleFlightRecorder.commit(traceEvent, this.currenScheduleServer.getTaskType(), isTimeout);
+					}
 				}
 				//真正开始处理数据
-				this.getCurrentScheduleTaskItemListNow();
+				this.getCurrentScheduleTaskItemListNow(dealingTaskItems);
 			}
 			this.lastReloadTaskItemListTime = ScheduleUtil.getCurrentTimeMillis();
 			return this.currentTaskItemList;
@@ -203,20 +243,80 @@ public class TBScheduleManagerStatic extends TBScheduleManager {
 			throw new RuntimeException(e);
 		}
 	}
-	//manager初始化时调用一次
-	//非线程安全？
+	//manager初始化时调用一次，心跳线程在暂停或处理器休眠时调用
 	protected List<TaskItemDefine> getCurrentScheduleTaskItemListNow() throws Exception {
+		Set<String> dealingTaskItems = new HashSet<String>();
+		IScheduleProcessor tmpProcessor = this.processor;
+		if (tmpProcessor != null) {
+			dealingTaskItems = tmpProcessor.getDealingTaskItems();
+			if (dealingTaskItems == null && this.isDrainTimeout() == false) {
+				//还有任务没有处理完，又不能区分任务项，处理完后再释放
+				return this.currentTaskItemList;
+			}
+		}
+		return this.getCurrentScheduleTaskItemListNow(dealingTaskItems);
+	}
+	/**
+	 * 心跳线程释放已经处理完的暂不释放的任务项。处理器可能同时在取数，当前任务项都当作处理中，不会被释放
+	 * @throws Exception
+	 */
+	protected void releaseHoldTaskItem() throws Exception {
+		IScheduleProcessor tmpProcessor = this.processor;
+		if (tmpProcessor == null || this.isDrainTimeout() == true) {
+			//超时后由取数线程释放
+			return;
+		}
+		Set<String> dealingTaskItems = tmpProcessor.getDealingTaskItems();
+		if (dealingTaskItems == null) {
+			return;
+		}
+		for (TaskItemDefine item : this.currentTaskItemList.toArray(new TaskItemDefine[0])) {
+			dealingTaskItems.add(item.getTaskItemId());
+		}
+		this.getCurrentScheduleTaskItemListNow(dealingTaskItems);
+	}
+	/**
+	 * 释放别人申请的任务项，并重新加载当前服务器的任务项
+	 * @param dealingTaskItems 还有任务在处理中的任务项，被申请时暂不释放，为null时全部释放
+	 * @return
+	 * @throws Exception
+	 */
+	protected synchronized List<TaskItemDefine> getCurrentScheduleTaskItemListNow(Set<String> dealingTaskItems) throws Exception {
+		Object traceEvent = ScheduleFlightRecorder.begin(ScheduleFlightRecorder.RELOAD_TASK_ITEM);
 		//获取最新的版本号
 		this.lastFetchVersion = this.scheduleCenter.getReloadTaskItemFlag(this.currenScheduleServer.getTaskType());
+		boolean isReleased = false;
 		try{
-			//是否被人申请的队列
-			this.scheduleCenter.releaseDealTaskItem(this.currenScheduleServer.getTaskType(), this.currenScheduleServer.getUuid());
+			if(dealingTaskItems != null && dealingTaskItems.size() > 0 && this.isDrainTimeout() == true){
+				log.warn("等待任务项处理完超过" + this.taskTypeInfo.getDrainTimeout() + "毫秒，不再等待，释放被申请的任务项："
+						+ dealingTaskItems + " of " + this.currenScheduleServer.getUuid());
+				dealingTaskItems = null;
+			}
+			//是否被人申请的队列，还有任务在处理中的暂不释放
+			List<String> holdTaskItems = this.scheduleCenter.releaseDealTaskItem(this.currenScheduleServer.getTaskType(),
+					this.currenScheduleServer.getUuid(), dealingTaskItems);
+			isReleased = true;
 			//重新查询当前服务器能够处理的队列
-			//为了避免在休眠切换的过程中出现队列瞬间的不一致，先清除内存中的队列
-			this.currentTaskItemList.clear();
 			//从调度中心拿回属于此manager的任务，并放在manager的TaskList中交给processor执行
-			this.currentTaskItemList = this.scheduleCenter.reloadDealTaskItem(
+			List<TaskItemDefine> tmpTaskItemList = this.scheduleCenter.reloadDealTaskItem(
 					this.currenScheduleServer.getTaskType(), this.currenScheduleServer.getUuid());
+			//暂不释放的任务项不再取新的数据
+			for(Iterator<TaskItemDefine> it = tmpTaskItemList.iterator(); it.hasNext();){
+				if(holdTaskItems.contains(it.next().getTaskItemId())){
+					it.remove();
+				}
+			}
+			this.recordTaskItemHandoff(tmpTaskItemList, holdTaskItems);
+			this.statisticsInfo.addTaskItemReloadCount(1);
+			if(traceEvent != null){
+				ScheduleFlightRecorder.commit(traceEvent, this.currenScheduleServer.getTaskType(), tmpTaskItemList.size(), holdTaskItems.size());
+			}
+			//处理器可能正在使用原来的队列，不能直接修改
+			this.currentTaskItemList = tmpTaskItemList;
+			if(holdTaskItems.size() > 0){
+				//下次取数时再检查暂不释放的任务项是否已经处理完
+				this.lastFetchVersion = -1;
+			}
 
 			//如果超过10个心跳周期还没有获取到调度队列，则报警
 			if(this.currentTaskItemList.size() ==0 &&
@@ -235,6 +335,10 @@ public class TBScheduleManagerStatic extends TBScheduleManager {
 		}catch(Throwable e){
 			//失败以后，将拉取任务版本号设为-1,下次重新拉任务
 			this.lastFetchVersion = -1; //必须把把版本号设置小，避免任务加载失败
+			if(isReleased == true){
+				//已经释放了任务项，为了避免在切换的过程中出现队列的不一致，先清除内存中的队列
+				this.currentTaskItemList = new ArrayList<TaskItemDefine>();
+			}
 			if(e instanceof Exception ){
 				throw (Exception)e;
 			}else{
@@ -242,6 +346,48 @@ public class TBScheduleManagerStatic extends TBScheduleManager {
 			}
 		}
 	}
+	/**
+	 * 记录移交给其它服务器的任务项的耗时：原来持有（包括暂不释放的），重新加载后不再持有的任务项
+	 */
+	private void recordTaskItemHandoff(List<TaskItemDefine> newTaskItemList, List<String> holdTaskItems) {
+		Set<String> releaseTaskItems = new HashSet<String>(this.holdTaskItemSet);
+		for(TaskItemDefine item : this.currentTaskItemList.toArray(new TaskItemDefine[0])){
+			releaseTaskItems.add(item.getTaskItemId());
+		}
+		for(TaskItemDefine item : newTaskItemList){
+			releaseTaskItems.remove(item.getTaskItemId());
+		}
+		releaseTaskItems.removeAll(holdTaskItems);
+		long handoffTime = this.handoffStartTime > 0 ? ScheduleUtil.getCurrentTimeMillis() - this.handoffStartTime : 0;
+		for(String taskItem : releaseTaskItems){
+			this.taskItemHandoffTimeMap.put(taskItem, handoffTime);
+			this.statisticsInfo.addTaskItemHandoffTime(handoffTime);
+			Object traceEvent = ScheduleFlightRecorder.begin(ScheduleFlightRecorder.TASK_ITEM_HANDOFF);
+			if(traceEvent != null){
+				ScheduleFlightRecorder.commit(traceEvent, this.currenScheduleServer.getTaskType(), taskItem, handoffTime);
+			}
+			log.info("任务项" + taskItem + "移交给其它服务器，耗时" + handoffTime + "毫秒 of " + this.currenScheduleServer.getUuid());
+		}
+		this.holdTaskItemSet = new HashSet<String>(holdTaskItems);
+		if(holdTaskItems.size() == 0){
+			this.handoffStartTime = 0;
+		}
+	}
+	/**
+	 * 发现需要重新分配任务项时记录开始时间
+	 */
+	protected void markHandoffStart() {
+		if(this.handoffStartTime == 0){
+			this.handoffStartTime = ScheduleUtil.getCurrentTimeMillis();
+		}
+	}
+	/**
+	 * 等待被申请的任务项处理完是否已经超过drainTimeout，drainTimeout小于等于0时一直等待
+	 */
+	protected boolean isDrainTimeout() {
+		return this.taskTypeInfo.getDrainTimeout() > 0 && this.handoffStartTime > 0
+				&& ScheduleUtil.getCurrentTimeMillis() - this.handoffStartTime >= this.taskTypeInfo.getDrainTimeout();
+	}
 	public int getTaskItemCount(){
 		return this.taskItemCount;
 	}
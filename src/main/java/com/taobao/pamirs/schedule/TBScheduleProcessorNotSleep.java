@@ -2,22 +2,29 @@ package com.taobao.pamirs.schedule;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 
 /**
- * TBScheduleManagerĹʵֶ߳ݴ
+ * 任务调度器，在TBScheduleManager的管理下实现多线程数据处理
  * @author xuannan
  * @param <T>
- * ޸ļ¼
- * 	  Ϊ˼򻯴߼ȥ汾ʣӿظб   by   20110310
+ * 修改记录：
+ * 	  为了简化处理逻辑，去处版本概率，增加可能重复的数据列表   by  扶苏 20110310
  */
 public class TBScheduleProcessorNotSleep<T> implements IScheduleProcessor, Runnable {
 	
@@ -25,63 +32,109 @@ public class TBScheduleProcessorNotSleep<T> implements IScheduleProcessor, Runna
 	
 	List<Thread> threadList =  Collections.synchronizedList(new ArrayList<Thread>());
 	/**
-	 * 
+	 * 目标线程数量，线程数量可以在运行期调整
+	 */
+	volatile int targetThreadNumber;
+	int nextThreadIndex = 0;
+	/**
+	 * 任务管理器
 	 */
 	protected TBScheduleManager scheduleManager;
 	/**
-	 * 
+	 * 任务类型
 	 */
 	ScheduleTaskType taskTypeInfo;
 	
 	
 	/**
-	 * Ľӿ
+	 * 任务处理的接口类
 	 */
 	protected IScheduleTaskDeal<T> taskDealBean;
 	
 	/**
-	 * Ƚ
+	 * 任务比较器
 	 */
 	Comparator<T> taskComparator;
+	/**
+	 * 任务主键提取器，处理Bean没有实现IScheduleTaskKey时为null
+	 */
+	IScheduleTaskKey<T> taskKeyExtractor;
+	/**
+	 * 任务所属任务项的解析器，处理Bean没有实现IScheduleTaskItemResolver时为null
+	 */
+	IScheduleTaskItemResolver<T> taskItemResolver;
 
-    //̬ò
+    //静态配置参数
 	StatisticsInfo statisticsInfo;
+	/**
+	 * 异步处理任务的Bean使用，否则为null
+	 */
+	ScheduleTaskAsyncDealer asyncDealer;
+	/**
+	 * 流式获取任务的Bean使用，否则为null
+	 */
+	ScheduleTaskStreamCollector<T> streamCollector;
+	/**
+	 * 没有数据时的休眠，可以被wakeUp提前唤醒
+	 */
+	ScheduleIdleWaiter idleWaiter;
+	/**
+	 * 处理Bean实现IScheduleTaskDealMultiResult时为true
+	 */
+	boolean isMultiResult = false;
+	/**
+	 * 失败任务的重试
+	 */
+	ScheduleTaskRetryer taskRetryer;
+	/**
+	 * execute处理过慢的监控，没有配置时为null
+	 */
+	ScheduleExecuteWatchdog executeWatchdog;
 
 
-	protected List<T> taskList =Collections.synchronizedList(new ArrayList<T>());
+	protected IScheduleTaskQueue<T> taskList;
 	/**
-	 * ڴе
+	 * 正在处理中的任务，按对象标识加入和移除
 	 */
-	protected List<Object> runningTaskList = Collections.synchronizedList(new ArrayList<Object>()); 
+	protected ScheduleRunningTaskSet runningTaskList = new ScheduleRunningTaskSet();
 	/**
-	 * ȡݣܻظݡȡǰrunningTaskList
-     * ȡòûִеǿظִݣʵϾĳʱµworkingList
+	 * 在重新取数据，可能会重复的数据。在重新取数据前，从runningTaskList拷贝得来
+     * 取得并没有执行的任务就是可能重复执行数据，实际上就是某个时间点下的workingList
 	 */
 	protected List<T> maybeRepeatTaskList = Collections.synchronizedList(new ArrayList<T>());
+	/**
+	 * 有任务主键时代替maybeRepeatTaskList，存放可能重复的任务主键
+	 */
+	protected Set<Object> maybeRepeatKeySet = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
 
-	//߳ȡȡ
-	//ȡʱ޷ѭҲȡõԵȡʱȡԴ
+	//出队由环形队列保证线程安全，lockFetchID只保护maybeRepeatTaskList的判重处理
 	Lock lockFetchID = new ReentrantLock();
-	Lock lockFetchMutilID = new ReentrantLock();
-	Lock lockLoadData = new ReentrantLock();
+	//取任务的线程持有读锁，拷贝runningTaskList时持有写锁
+	ReadWriteLock lockRunning = new ReentrantReadWriteLock();
+	ReentrantLock lockLoadData = new ReentrantLock();
 	/**
-	 * Ƿ
+	 * 是否可以批处理
 	 */
 	boolean isMutilTask = false;
 	
 	/**
-	 * ǷѾֹź
+	 * 是否已经获得终止调度信号
 	 */
-	boolean isStopSchedule = false;// ûֹͣе
+	volatile boolean isStopSchedule = false;// 用户停止队列调度
 	boolean isSleeping = false;
+	/**
+	 * 停止调度后继续处理队列中任务的截止时间
+	 */
+	volatile long drainDeadline = 0;
 	
 	/**
-	 * һȴ
+	 * 创建一个调度处理器
 	 * @param aManager
 	 * @param aTaskDealBean
 	 * @param aStatisticsInfo
 	 * @throws Exception
 	 */
+	@SuppressWarnings("unchecked")
 	public TBScheduleProcessorNotSleep(TBScheduleManager aManager,
 			IScheduleTaskDeal<T> aTaskDealBean,StatisticsInfo aStatisticsInfo) throws Exception {
 		this.scheduleManager = aManager;
@@ -89,7 +142,11 @@ public class TBScheduleProcessorNotSleep<T> implements IScheduleProcessor, Runna
 		this.taskTypeInfo = this.scheduleManager.getTaskTypeInfo();
 		this.taskDealBean = aTaskDealBean;
 		this.taskComparator = new MYComparator(this.taskDealBean.getComparator());
-		if (this.taskDealBean instanceof IScheduleTaskDealSingle<?>) {
+		if (this.taskDealBean instanceof IScheduleTaskKey<?>) {
+			this.taskKeyExtractor = (IScheduleTaskKey<T>) this.taskDealBean;
+		}
+		this.taskItemResolver = ScheduleTaskQueueFactory.getTaskItemResolver(this.taskDealBean);
+		if (ScheduleTaskAsyncDealer.isSingle(this.taskDealBean)) {
 			if (taskTypeInfo.getExecuteNumber() > 1) {
 				taskTypeInfo.setExecuteNumber(1);
 			}
@@ -97,45 +154,146 @@ public class TBScheduleProcessorNotSleep<T> implements IScheduleProcessor, Runna
 		} else {
 			isMutilTask = true;
 		}
+		if (ScheduleTaskAsyncDealer.isAsync(this.taskDealBean) == true) {
+			this.asyncDealer = new ScheduleTaskAsyncDealer((IScheduleTaskDealAsync<?>) this.taskDealBean,
+					taskTypeInfo, aManager.getScheduleServer().getTaskType(), this.statisticsInfo);
+		}
 		if (taskTypeInfo.getFetchDataNumber() < taskTypeInfo.getThreadNumber() * 10) {
-			logger.warn("òϵͳܲѡÿδݿȡfetchnum >= ߳threadnum *ѭ10 ");
+			logger.warn("参数设置不合理，系统性能不佳。【每次从数据库获取的数量fetchnum】 >= 【线程数量threadnum】 *【最少循环次数10】 ");
 		}
-		for (int i = 0; i < taskTypeInfo.getThreadNumber(); i++) {
-			this.startThread(i);
+		this.idleWaiter = new ScheduleIdleWaiter(taskTypeInfo, aManager.getScheduleServer().getTaskType());
+		this.taskList = ScheduleTaskQueueFactory.createTaskQueue(taskTypeInfo, this.taskDealBean, this.statisticsInfo);
+		this.isMultiResult = ScheduleTaskRetryer.isMultiResult(this.taskDealBean);
+		this.taskRetryer = new ScheduleTaskRetryer(taskTypeInfo, this.taskList, this.statisticsInfo,
+				aManager.getRetryTimerName(), new Runnable() {
+					public void run() {
+						idleWaiter.wakeUp();
+					}
+				});
+		this.executeWatchdog = aManager.getExecuteWatchdog();
+		if (ScheduleTaskStreamCollector.isStream(this.taskDealBean) == true) {
+			this.streamCollector = new ScheduleTaskStreamCollector<T>((IScheduleTaskDealStream<T>) this.taskDealBean,
+					this.taskList, taskTypeInfo, this.statisticsInfo, null);
 		}
+		this.setThreadNumber(aManager.getThreadNumber());
 	}
 
 	/**
-	 * ҪעǣȷעĹ߳˳²
+	 * 需要注意的是，调度服务器从配置中心注销的工作，必须在所有线程退出的情况下才能做
 	 * @throws Exception
 	 */
 	public void stopSchedule() throws Exception {
-		// ֹͣȵı־,̷߳־ִ굱ǰ󣬾˳
+		if (this.taskTypeInfo.getDrainTimeout() > 0) {
+			//已经取到队列中的任务在drainTimeout内继续处理，不再取新数据
+			this.drainDeadline = ScheduleUtil.getCurrentTimeMillis() + this.taskTypeInfo.getDrainTimeout();
+		}
+		// 设置停止调度的标志,调度线程发现这个标志，执行完当前任务后，就退出调度
 		this.isStopSchedule = true;
-		//δ,Ѿ봦еģҪ
+		if (this.streamCollector != null) {
+			this.streamCollector.abort();
+		}
+		if (this.taskTypeInfo.getDrainTimeout() <= 0) {
+			//清除所有未处理任务,但已经进入处理队列的，需要处理完毕
+			this.taskList.clear();
+			this.taskRetryer.clear();
+		}
+		this.idleWaiter.wakeUp();
+	}
+
+	/**
+	 * 停止调度后，队列中的任务处理完或者超过drainTimeout时，清除剩余的任务，线程可以退出
+	 */
+	protected boolean isDrainFinish() {
+		if (this.taskList.size() > 0 && ScheduleUtil.getCurrentTimeMillis() < this.drainDeadline) {
+			return false;
+		}
+		if (this.taskList.size() > 0 && this.drainDeadline > 0) {
+			logger.warn("停止调度超过" + this.taskTypeInfo.getDrainTimeout() + "毫秒，清除队列中剩余的"
+					+ this.taskList.size() + "个任务");
+		}
 		this.taskList.clear();
+		this.taskRetryer.clear();
+		return true;
+	}
+
+	/**
+	 * 结束没有数据时的休眠，立即重新取数
+	 */
+	public void wakeUp() {
+		this.idleWaiter.wakeUp();
+	}
+
+	public int getThreadNumber() {
+		return this.threadList.size();
+	}
+
+	public Thread[] getThreads() {
+		synchronized (this.threadList) {
+			return this.threadList.toArray(new Thread[this.threadList.size()]);
+		}
+	}
+
+	/**
+	 * 调整处理线程数量，增加时立即启动新线程，减少时多余的线程在处理完当前任务后退出
+	 */
+	public void setThreadNumber(int aThreadNumber) {
+		synchronized (this.threadList) {
+			if (this.isStopSchedule == true || aThreadNumber <= 0) {
+				return;
+			}
+			this.targetThreadNumber = aThreadNumber;
+			while (this.threadList.size() < this.targetThreadNumber) {
+				this.startThread(this.nextThreadIndex++);
+			}
+		}
+	}
+
+	public int getTaskQueueSize() {
+		return this.taskList.size();
+	}
+
+	/**
+	 * 线程数量超过目标数量时，当前线程退出
+	 */
+	protected boolean isRetireThread() {
+		if (this.threadList.size() <= this.targetThreadNumber) {
+			return false;
+		}
+		synchronized (this.threadList) {
+			if (this.threadList.size() > this.targetThreadNumber) {
+				this.threadList.remove(Thread.currentThread());
+				return true;
+			}
+		}
+		return false;
 	}
 
 	private void startThread(int index) {
-		Thread thread = new Thread(this);
-		threadList.add(thread);
 		String threadName = this.scheduleManager.getScheduleServer().getTaskType()+"-"
 				+ this.scheduleManager.getCurrentSerialNumber() + "-exe"
 				+ index;
-		thread.setName(threadName);
+		Thread thread = ScheduleThreadFactory.newThread(this, threadName, this.taskTypeInfo.getThreadType());
+		threadList.add(thread);
 		thread.start();
 	}
 	
 	@SuppressWarnings("unchecked")
-	//Ƿڱ
+	//任务是否正在被处理
 	protected boolean isDealing(T aTask) {
+		if (this.taskKeyExtractor != null) {
+			//按主键判重，集合本身线程安全，不需要lockFetchID
+			if (this.maybeRepeatKeySet.size() == 0) {
+				return false;
+			}
+			return this.maybeRepeatKeySet.remove(this.taskKeyExtractor.getTaskKey(aTask));
+		}
 		if (this.maybeRepeatTaskList.size() == 0) {
 			return false;
 		}
 		T[] tmpList = (T[]) this.maybeRepeatTaskList.toArray();
 		for (int i = 0; i < tmpList.length; i++) {
-            //todo ζԱǷܱظִ
-            //򵥵жϸǷѾ̼߳뵽maybeRepeatTaskList
+            //todo 如何对比任务是否可能被重复执行
+            //简单的判断该任务是否已经被其他线程加入到maybeRepeatTaskList中
 			if(this.taskComparator.compare(aTask, tmpList[i]) == 0){
 				this.maybeRepeatTaskList.remove(tmpList[i]);
 				return true;
@@ -145,154 +303,245 @@ public class TBScheduleProcessorNotSleep<T> implements IScheduleProcessor, Runna
 	}
 
 	/**
-	 * ȡעlockǱ룬
-	 * maybeRepeatTaskListݴϻֳͻ
+	 * 获取单个任务，取到的任务在lockRunning读锁内放入runningTaskList，
+	 * 保证putLastRunningTaskList拷贝时不会漏掉已出队但还没有开始执行的任务
 	 * @return
 	 */
 	public T getScheduleTaskId() {
-		lockFetchID.lock();
+		lockRunning.readLock().lock();
 		try {
 			T result = null;
             /**
-             * taskͷʼȡòᱻظִе
+             * 从task队列头开始取得不会被重复执行的任务
              */
 			while (true) {
-				if (this.taskList.size() > 0) {
-					result = this.taskList.remove(0); // 
-				} else {
+				result = this.taskList.poll(); // 按正序处理
+				if (result == null) {
 					return null;
 				}
-				//жϣΪӶǱlockFetchIdģֻһthreadlistв
-				//ҲֻһthreadԽõrunningTask
-				//ȡĳ߳̽һֱռ߳ȫڵȴ
-				if (this.isDealing(result) == false) {
+				if (this.isDealingWithLock(result) == false) {
+					this.runningTaskList.add(result);
 					return result;
 				}
+				this.taskRetryer.finish(result);
 			}
 		} finally {
-			lockFetchID.unlock();
+			lockRunning.readLock().unlock();
 		}
 	}
 	/**
-	 * ȡעlockǱ룬
-	 * maybeRepeatTaskListݴϻֳͻ
+	 * 获取多个任务，同getScheduleTaskId
 	 * @return
 	 */
 	@SuppressWarnings("unchecked")
-    /**
-     * ȡö񲻻ȡظ𣿣
-     * ѭȡҲԱȡظ
-     */
-    //todo
 	public T[] getScheduleTaskIdMulti() {
-		lockFetchMutilID.lock();
+		lockRunning.readLock().lock();
 		try {
-			if (this.taskList.size() == 0) {
-				return null;
-			}
-			int size = taskList.size() > taskTypeInfo.getExecuteNumber() ? taskTypeInfo
-					.getExecuteNumber() : taskList.size();
-
 			List<T> result = new ArrayList<T>();
-			int point = 0;
-			T tmpObject = null;
-			while (point < size && ((tmpObject = this.getScheduleTaskId()) != null)) {
-				result.add(tmpObject);
-				point = point + 1;
-			}
-			if (result.size() == 0) {
-				return null;
-			} else {
-				return (T[]) result.toArray();
+			while (result.size() == 0) {
+				//一次CAS从队列中取出一批任务，再过滤掉可能重复的任务
+				Object[] tasks = this.taskList.poll(taskTypeInfo.getExecuteNumber());
+				if (tasks == null) {
+					return null;
+				}
+				for (int i = 0; i < tasks.length; i++) {
+					if (this.isDealingWithLock((T) tasks[i]) == false) {
+						result.add((T) tasks[i]);
+					} else {
+						this.taskRetryer.finish(tasks[i]);
+					}
+				}
 			}
+			T[] resultTasks = (T[]) result.toArray();
+			this.runningTaskList.add(resultTasks);
+			return resultTasks;
 		} finally {
-			lockFetchMutilID.unlock();
+			lockRunning.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 按主键判重时集合本身线程安全，否则需要lockFetchID保护maybeRepeatTaskList
+	 */
+	private boolean isDealingWithLock(T aTask) {
+		if (this.taskKeyExtractor != null) {
+			return this.isDealing(aTask);
+		}
+		lockFetchID.lock();
+		try {
+			return this.isDealing(aTask);
+		} finally {
+			lockFetchID.unlock();
 		}
 	}
 	
 	public void clearAllHasFetchData(){
+		if (this.streamCollector != null) {
+			this.streamCollector.abort();
+		}
         this.taskList.clear();
+        this.taskRetryer.clear();
 	}
     public boolean isDealFinishAllData(){
-    	return this.taskList.size() == 0 && this.runningTaskList.size() ==0;  
+    	return this.taskList.size() == 0 && this.runningTaskList.size() ==0 && this.taskRetryer.getWaitingNumber() == 0;  
     }
+
+	@SuppressWarnings("unchecked")
+	public Set<String> getDealingTaskItems() {
+		if (this.isDealFinishAllData() == true) {
+			return new HashSet<String>();
+		}
+		//队列中的任务无法逐个判断，只在队列为空（取数前）时按任务项区分
+		if (this.taskItemResolver == null || this.taskList.size() > 0) {
+			return null;
+		}
+		Set<String> result = new HashSet<String>();
+		//持有写锁时没有已出队、但还没有放入runningTaskList的任务
+		lockRunning.writeLock().lock();
+		try {
+			Object[] tmpList = this.runningTaskList.toArray();
+			for (int i = 0; i < tmpList.length; i++) {
+				if (this.isMutilTask == false) {
+					result.add(this.taskItemResolver.getTaskItemId((T) tmpList[i]));
+				} else {
+					T[] aTasks = (T[]) tmpList[i];
+					for (int j = 0; j < aTasks.length; j++) {
+						result.add(this.taskItemResolver.getTaskItemId(aTasks[j]));
+					}
+				}
+			}
+			Object[] retryingTasks = this.taskRetryer.getRetryingTasks();
+			for (int i = 0; i < retryingTasks.length; i++) {
+				result.add(this.taskItemResolver.getTaskItemId((T) retryingTasks[i]));
+			}
+		} finally {
+			lockRunning.writeLock().unlock();
+		}
+		return result;
+	}
     
     public boolean isSleeping(){
     	return this.isSleeping;
     }
     /**
-     * װ
+     * 装载数据
      * @return
      */
-	//װݱʱ˵ManagerѿգisSleep־λΪtrue
+	//当装载数据被调用时，说明Manager的任务队列已空，将isSleep标志位置为true
 	protected int loadScheduleData() {
-		//ʹֻ֤һ߳̿manager
-		lockLoadData.lock();
+		//使用锁，保证只有一个线程可以命令manager加载任务
+		if (this.streamCollector == null) {
+			lockLoadData.lock();
+		} else if (this.lockLoadDataForStream() == false) {
+			return this.taskList.size();
+		}
 		try {
-			if (this.taskList.size() > 0 || this.isStopSchedule == true) { // жǷб߳Ѿװعˡ
+			if (this.taskList.size() > 0 || this.isStopSchedule == true) { // 判断是否有别的线程已经装载过了。
 				return this.taskList.size();
 			}
-			// ȡݵ֮ǰ˯
+			// 在取数据的之前先睡眠
 			try {
 				if (this.taskTypeInfo.getSleepTimeInterval() > 0) {
 					if (logger.isTraceEnabled()) {
-						logger.trace("һݺߣ"
+						logger.trace("处理完一批数据后休眠："
 								+ this.taskTypeInfo.getSleepTimeInterval());
 					}
-					//˷lockLaodDataֻһ߳̿޸sleep־λ
+					//此方法被lockLaodData方法锁定，只有一个线程可以修改sleep标志位
 					this.isSleeping = true;
 					Thread.sleep(taskTypeInfo.getSleepTimeInterval());
 					this.isSleeping = false;
 					
 					if (logger.isTraceEnabled()) {
-						logger.trace("һݺߺָ");
+						logger.trace("处理完一批数据后休眠后恢复");
 					}
 				}
 			} catch (Throwable ex) {
-				logger.error("ʱ", ex);
+				logger.error("休眠时错误", ex);
 			}
 
-			putLastRunningTaskList();// runningеݿظĶ
-			//ĳЩڱ̲߳ȻгѾˣѾ
+			putLastRunningTaskList();// 将running队列的数据拷贝到可能重复的队列中
+			if (this.taskList.size() > 0) {
+				//等待执行许可时被中断的任务已经放回队列，先处理完再取数
+				return this.taskList.size();
+			}
+			//某些任务可能正在被其他线程操作，虽然队列池已经空了，不代表所有任务都已经完成
 			try {
 				List<TaskItemDefine> taskItems = this.scheduleManager
 						.getCurrentScheduleTaskItemList();
-				// ݶϢѯҪȵݣȻӵб
+				//本次放入队列的任务数量
+				int count = 0;
+				// 根据队列信息查询需要调度的数据，然后增加到任务列表中
 				if (taskItems.size() > 0) {
-					List<T> tmpList = this.taskDealBean.selectTasks(
-							taskTypeInfo.getTaskParameter(),
-							scheduleManager.getScheduleServer()
-									.getOwnSign(), this.scheduleManager.getTaskItemCount(), taskItems,
-							taskTypeInfo.getFetchDataNumber());
-					scheduleManager.getScheduleServer().setLastFetchDataTime(new Timestamp(ScheduleUtil.getCurrentTimeMillis()));
-					if (tmpList != null) {
-						this.taskList.addAll(tmpList);
+					this.taskList.setTaskItems(taskItems);
+					int fetchDataNumber = this.scheduleManager.getFetchNumberTuner().getFetchDataNumber();
+					long fetchStartTime = ScheduleUtil.getCurrentTimeMillis();
+					Object traceEvent = ScheduleFlightRecorder.begin(ScheduleFlightRecorder.SELECT_TASKS);
+					if (this.streamCollector != null) {
+						//边读取边放入队列，其他线程同时开始处理
+						int fetchNum = this.streamCollector.fetch(taskTypeInfo.getTaskParameter(),
+								scheduleManager.getScheduleServer().getOwnSign(), this.scheduleManager.getTaskItemCount(),
+								taskItems, fetchDataNumber);
+						if (traceEvent != null) {
+							ScheduleFlightRecorder.commit(traceEvent, scheduleManager.getScheduleServer().getTaskType(), taskItems.size(), fetchDataNumber, fetchNum);
+						}
+						count = this.streamCollector.getOfferNumber();
+						scheduleManager.getScheduleServer().setLastFetchDataTime(new Timestamp(ScheduleUtil.getCurrentTimeMillis()));
+						this.scheduleManager.getFetchNumberTuner().addFetchResult(fetchDataNumber, fetchNum,
+								ScheduleUtil.getCurrentTimeMillis() - fetchStartTime, this.lockLoadData.getQueueLength(),
+								this.scheduleManager.getThreadNumber());
+					} else {
+						List<T> tmpList = this.taskDealBean.selectTasks(
+								taskTypeInfo.getTaskParameter(),
+								scheduleManager.getScheduleServer()
+										.getOwnSign(), this.scheduleManager.getTaskItemCount(), taskItems,
+								fetchDataNumber);
+						if (traceEvent != null) {
+							ScheduleFlightRecorder.commit(traceEvent, scheduleManager.getScheduleServer().getTaskType(), taskItems.size(), fetchDataNumber,
+									tmpList == null ? 0 : tmpList.size());
+						}
+						scheduleManager.getScheduleServer().setLastFetchDataTime(new Timestamp(ScheduleUtil.getCurrentTimeMillis()));
+						this.scheduleManager.getFetchNumberTuner().addFetchResult(fetchDataNumber, tmpList == null ? 0 : tmpList.size(),
+								ScheduleUtil.getCurrentTimeMillis() - fetchStartTime, this.lockLoadData.getQueueLength(),
+								this.scheduleManager.getThreadNumber());
+						if (tmpList != null) {
+							count = this.taskList.offerAll(tmpList);
+							if (this.statisticsInfo.getTaskItemStatistics() != null) {
+								this.statisticsInfo.getTaskItemStatistics().addFetch(tmpList, count);
+							}
+							if (count < tmpList.size()) {
+								logger.warn("取到的数据量" + tmpList.size() + "超过了任务队列容量"
+										+ this.taskList.capacity() + "，多余的数据等待下次获取");
+							}
+						}
 					}
 				} else {
 					if (logger.isDebugEnabled()) {
-						logger.debug("û");
+						logger.debug("没有任务分配");
 					}
 				}
-				addFetchNum(taskList.size(),
+				addFetchNum(count,
 						"TBScheduleProcessor.loadScheduleData");
-				if (taskList.size() <= 0) {
-					// жϵûݵǷǷҪ˳
+				if (count <= 0) {
+					// 判断当没有数据的是否，是否需要退出调度
 					if (this.scheduleManager.isContinueWhenData() == true) {
-						if (taskTypeInfo.getSleepTimeNoData() > 0) {
+						long sleepTime = this.idleWaiter.getSleepTime();
+						if (sleepTime > 0) {
 							if (logger.isDebugEnabled()) {
-								logger.debug("ûжȡҪ,sleep "
-										+ taskTypeInfo.getSleepTimeNoData());
+								logger.debug("没有读取到需要处理的数据,sleep "
+										+ sleepTime);
 							}
-							//ûȡ˯һ
+							//没取到任务再睡一会儿，连续没有数据时休眠时间逐步加长
 							this.isSleeping = true;
-							Thread.sleep(taskTypeInfo.getSleepTimeNoData());
+							this.idleWaiter.sleepNoData();
 							this.isSleeping = false;							
 						}
 					}
+				} else {
+					this.idleWaiter.reset();
 				}
 				return this.taskList.size();
 			} catch (Throwable ex) {
-				logger.error("ȡݴ", ex);
+				logger.error("获取任务数据错误", ex);
 			}
 			return 0;
 		} finally {
@@ -300,111 +549,221 @@ public class TBScheduleProcessorNotSleep<T> implements IScheduleProcessor, Runna
 		}
 	}
 	/**
-	 * runningеݿظĶ
+	 * 流式取数过程中，其他线程不能一直等待lockLoadData，否则缓冲区满后没有线程取走任务，
+	 * 有新数据或者取数结束时返回
+	 * @return 是否获得了lockLoadData
+	 */
+	private boolean lockLoadDataForStream() {
+		try {
+			while (true) {
+				if (this.streamCollector.isFetching() == true) {
+					this.streamCollector.waitData(100);
+					return false;
+				}
+				if (this.lockLoadData.tryLock(100, TimeUnit.MILLISECONDS) == true) {
+					return true;
+				}
+			}
+		} catch (InterruptedException ex) {
+			logger.error("等待数据时被中断", ex);
+			return false;
+		}
+	}
+
+	/**
+	 * 将running队列的数据拷贝到可能重复的队列中
 	 */
 	@SuppressWarnings("unchecked")
 	public void putLastRunningTaskList() {
+		lockRunning.writeLock().lock();
 		lockFetchID.lock();
 		try {
 			this.maybeRepeatTaskList.clear();
+			this.maybeRepeatKeySet.clear();
+			//正在重试的任务还没有处理完，也可能被重复取到
+			Object[] retryingTasks = this.taskRetryer.getRetryingTasks();
+			for (int i = 0; i < retryingTasks.length; i++) {
+				this.addMaybeRepeatTask((T) retryingTasks[i]);
+			}
 			if (this.runningTaskList.size() == 0) {
 				return;
 			}
 			Object[] tmpList = this.runningTaskList.toArray();
 			for (int i = 0; i < tmpList.length; i++) {
-                //
+                //不可以批处理
 				if (this.isMutilTask == false) {
-					this.maybeRepeatTaskList.add((T) tmpList[i]);
+					this.addMaybeRepeatTask((T) tmpList[i]);
 				} else {
 					T[] aTasks = (T[]) tmpList[i];
 					for (int j = 0; j < aTasks.length; j++) {
-						this.maybeRepeatTaskList.add(aTasks[j]);
+						this.addMaybeRepeatTask(aTasks[j]);
 					}
 				}
 			}
 		} finally {
 			lockFetchID.unlock();
+			lockRunning.writeLock().unlock();
 		}
 	}
 	
+	private void addMaybeRepeatTask(T aTask) {
+		if (this.taskKeyExtractor != null) {
+			this.maybeRepeatKeySet.add(this.taskKeyExtractor.getTaskKey(aTask));
+		} else {
+			this.maybeRepeatTaskList.add(aTask);
+		}
+	}
+
 	/**
-	 * к
+	 * 运行函数
 	 */
 	@SuppressWarnings("unchecked")
 	public void run() {
 		long startTime = 0;
 		long sequence = 0;
-		Object executeTask = null;	
-		while (true) {
-			try {
-				if (this.isStopSchedule == true) { // ֹͣе
-					this.threadList.remove(Thread.currentThread());
-					if(this.threadList.size()==0){
-						this.scheduleManager.unRegisterScheduleServer();
+		Object executeTask = null;
+		//已经取出、还没有开始处理的任务，线程异常时按失败统计
+		Object pendingTask = null;
+		try {
+			while (true) {
+				pendingTask = null;
+				try {
+					if (this.isStopSchedule == true && this.isDrainFinish() == true) { // 停止队列调度
+						this.threadList.remove(Thread.currentThread());
+						if(this.threadList.size()==0){
+							if (this.asyncDealer != null) {
+								this.asyncDealer.waitAllFinish();
+							}
+							this.scheduleManager.unRegisterScheduleServer(this);
+						}
+						return;
 					}
-					return;
-				}
-				// ص
-				if (this.isMutilTask == false) {
-					//ȡ̰߳ȫ֤ͨͬʱֻһ߳ȡ
-					executeTask = this.getScheduleTaskId();
-				} else {
-					executeTask = this.getScheduleTaskIdMulti();
-				}
-				if (executeTask == null ) {
-					//managerѾûʱȥdataManagerȡԼ
-					//ֻ֤һ߳ȡloadDataLock
-					this.loadScheduleData();
-					continue;
-				}
-				
-				try { // صĳ
-					//ڴĶУ̰߳ȫ
-					this.runningTaskList.add(executeTask);
-					startTime = ScheduleUtil.getCurrentTimeMillis();
-					sequence = sequence + 1;
+					if (this.isRetireThread() == true) { // 线程数量减少，当前线程退出
+						return;
+					}
+					// 加载调度任务
 					if (this.isMutilTask == false) {
-						if (((IScheduleTaskDealSingle<Object>) this.taskDealBean).execute(executeTask,scheduleManager.getScheduleServer().getOwnSign()) == true) {
-							addSuccessNum(1, ScheduleUtil.getCurrentTimeMillis()
-									- startTime,
-									"com.taobao.pamirs.schedule.TBScheduleProcessorNotSleep.run");
+						//取任务操作线程安全，取到的任务已经放入runningTaskList
+						executeTask = this.getScheduleTaskId();
+					} else {
+						executeTask = this.getScheduleTaskIdMulti();
+					}
+					if (executeTask == null ) {
+						//manager中已经没有任务时，主动去dataManager取得自己的任务
+						//保证只有一个线程在取任务，由loadDataLock保护
+						this.loadScheduleData();
+						continue;
+					}
+					pendingTask = executeTask;
+					//集群限流，批处理时按任务数量获取令牌
+					try {
+						this.scheduleManager.acquireExecutePermit(this.isMutilTask == false ? 1 : ((Object[]) executeTask).length);
+					} catch (InterruptedException ex) {
+						//任务还没有处理，停止调度时丢弃，否则放回队列，回到循环开始
+						this.returnTask(executeTask);
+						continue;
+					}
+				
+					if (this.asyncDealer != null) {
+						//异步处理，处理完成后再从处理中的任务里清除
+						final Object dealingTask = executeTask;
+						try {
+							this.asyncDealer.execute(executeTask, scheduleManager.getScheduleServer().getOwnSign(), new Runnable() {
+								public void run() {
+									runningTaskList.remove(dealingTask);
+								}
+							});
+						} catch (InterruptedException ex) {
+							runningTaskList.remove(executeTask);
+						}
+						pendingTask = null;
+						continue;
+					}
+					pendingTask = null;
+					Object traceEvent = ScheduleFlightRecorder.begin(ScheduleFlightRecorder.EXECUTE);
+					boolean isSuccess = false;
+					ScheduleExecuteWatchdog.ExecuteRecord watchRecord = this.executeWatchdog == null ? null
+							: this.executeWatchdog.begin(executeTask, this.isMutilTask == false ? 1 : ((Object[]) executeTask).length);
+					try { // 运行相关的程序
+						startTime = ScheduleUtil.getCurrentTimeMillis();
+						sequence = sequence + 1;
+						if (this.isMutilTask == false) {
+							if (((IScheduleTaskDealSingle<Object>) this.taskDealBean).execute(executeTask,scheduleManager.getScheduleServer().getOwnSign()) == true) {
+								addSuccessNum(executeTask, ScheduleUtil.getCurrentTimeMillis()
+										- startTime,
+										"com.taobao.pamirs.schedule.TBScheduleProcessorNotSleep.run");
+								isSuccess = true;
+								this.taskRetryer.finish(executeTask);
+							} else {
+								addFailNum(executeTask, ScheduleUtil.getCurrentTimeMillis()
+										- startTime,
+										"com.taobao.pamirs.schedule.TBScheduleProcessorNotSleep.run");
+								this.taskRetryer.retry(executeTask);
+							}
+						} else if (this.isMultiResult == true) {
+							//按每个任务的处理结果统计，失败的任务重新放入队列
+							BitSet result = ((IScheduleTaskDealMultiResult<Object>) this.taskDealBean).execute(
+									(Object[]) executeTask, scheduleManager.getScheduleServer().getOwnSign());
+							isSuccess = result != null && result.cardinality() == ((Object[]) executeTask).length;
+							this.taskRetryer.dealMultiResult((Object[]) executeTask, result,
+									ScheduleUtil.getCurrentTimeMillis() - startTime);
 						} else {
-							addFailNum(1, ScheduleUtil.getCurrentTimeMillis()
-									- startTime,
-									"com.taobao.pamirs.schedule.TBScheduleProcessorNotSleep.run");
+							if (((IScheduleTaskDealMulti<Object>) this.taskDealBean)
+									.execute((Object[]) executeTask,scheduleManager.getScheduleServer().getOwnSign()) == true) {
+								addSuccessNum(executeTask, ScheduleUtil
+										.getCurrentTimeMillis()
+										- startTime,
+										"com.taobao.pamirs.schedule.TBScheduleProcessorNotSleep.run");
+								isSuccess = true;
+								this.taskRetryer.finishAll((Object[]) executeTask);
+							} else {
+								addFailNum(executeTask, ScheduleUtil
+										.getCurrentTimeMillis()
+										- startTime,
+										"com.taobao.pamirs.schedule.TBScheduleProcessorNotSleep.run");
+								this.taskRetryer.retryAll((Object[]) executeTask);
+							}
 						}
-					} else {
-						if (((IScheduleTaskDealMulti<Object>) this.taskDealBean)
-								.execute((Object[]) executeTask,scheduleManager.getScheduleServer().getOwnSign()) == true) {
-							addSuccessNum(((Object[]) executeTask).length, ScheduleUtil
-									.getCurrentTimeMillis()
-									- startTime,
-									"com.taobao.pamirs.schedule.TBScheduleProcessorNotSleep.run");
+					} catch (Throwable ex) {
+						if (this.isMutilTask == false) {
+							addFailNum(executeTask, ScheduleUtil.getCurrentTimeMillis() - startTime,
+									"TBScheduleProcessor.run");
+							this.taskRetryer.retry(executeTask);
+						} else if (this.isMultiResult == true) {
+							this.taskRetryer.dealMultiResult((Object[]) executeTask, null,
+									ScheduleUtil.getCurrentTimeMillis() - startTime);
 						} else {
-							addFailNum(((Object[]) executeTask).length, ScheduleUtil
+							addFailNum(executeTask, ScheduleUtil
 									.getCurrentTimeMillis()
 									- startTime,
-									"com.taobao.pamirs.schedule.TBScheduleProcessorNotSleep.run");
+									"TBScheduleProcessor.run");
+							this.taskRetryer.retryAll((Object[]) executeTask);
+						}
+						logger.error("Task :" + executeTask + " 处理失败", ex);
+					} finally {
+						if (watchRecord != null) {
+							this.executeWatchdog.end(watchRecord);
 						}
+						if (traceEvent != null) {
+							ScheduleFlightRecorder.commit(traceEvent, scheduleManager.getScheduleServer().getTaskType(),
+									this.isMutilTask == false ? 1 : ((Object[]) executeTask).length, isSuccess);
+						}
+						this.runningTaskList.remove(executeTask);
 					}
-				} catch (Throwable ex) {
-					if (this.isMutilTask == false) {
-						addFailNum(1, ScheduleUtil.getCurrentTimeMillis() - startTime,
-								"TBScheduleProcessor.run");
-					} else {
-						addFailNum(((Object[]) executeTask).length, ScheduleUtil
-								.getCurrentTimeMillis()
-								- startTime,
-								"TBScheduleProcessor.run");
+				} catch (Throwable e) {
+					if (pendingTask != null) {
+						addFailNum(pendingTask, 0, "TBScheduleProcessorNotSleep.run");
+						this.runningTaskList.remove(pendingTask);
 					}
-					logger.error("Task :" + executeTask + " ʧ", ex);
-				} finally {
-					this.runningTaskList.remove(executeTask);
+					if (e instanceof InterruptedException && this.isStopSchedule == true) {
+						//停止调度时被中断，回到循环开始按正常流程退出
+						continue;
+					}
+					logger.error("处理线程异常：" + e.getMessage(), e);
 				}
-			} catch (Throwable e) {
-				throw new RuntimeException(e);
-				//log.error(e.getMessage(), e);
 			}
+		} finally {
+			this.threadList.remove(Thread.currentThread());
 		}
 	}
 
@@ -413,14 +772,47 @@ public class TBScheduleProcessorNotSleep<T> implements IScheduleProcessor, Runna
 			this.statisticsInfo.addFetchDataNum(num);
 	}
 
-	public void addSuccessNum(long num, long spendTime, String addr) {
+	public void addSuccessNum(Object executeTask, long spendTime, String addr) {
+			long num = this.isMutilTask == false ? 1 : ((Object[]) executeTask).length;
 			this.statisticsInfo.addDealDataSucess(num);
-			this.statisticsInfo.addDealSpendTime(spendTime);
+			this.statisticsInfo.addExecute(num, spendTime);
+			if (this.statisticsInfo.getTaskItemStatistics() != null) {
+				this.statisticsInfo.getTaskItemStatistics().addExecute(executeTask, this.isMutilTask, true, spendTime);
+			}
 	}
 
-	public void addFailNum(long num, long spendTime, String addr) {
+	/**
+	 * 等待执行许可时被中断的任务还没有处理：停止调度时丢弃，不按失败统计；否则放回队列，放不下的按失败统计。
+	 * 在lockRunning读锁内从runningTaskList移到队列，取数线程复制runningTaskList后会再检查队列
+	 */
+	@SuppressWarnings("unchecked")
+	private void returnTask(Object task) {
+		lockRunning.readLock().lock();
+		try {
+			this.runningTaskList.remove(task);
+			if (this.isStopSchedule == true) {
+				return;
+			}
+			Object[] tasks = this.isMutilTask == false ? new Object[] { task } : (Object[]) task;
+			for (int i = 0; i < tasks.length; i++) {
+				if (this.taskList.offer((T) tasks[i]) == false) {
+					this.statisticsInfo.addDealDataFail(tasks.length - i);
+					logger.warn("任务队列已满，" + (tasks.length - i) + "个等待执行许可时被中断的任务没有放回，等待下次获取");
+					return;
+				}
+			}
+		} finally {
+			lockRunning.readLock().unlock();
+		}
+	}
+
+	public void addFailNum(Object executeTask, long spendTime, String addr) {
+			long num = this.isMutilTask == false ? 1 : ((Object[]) executeTask).length;
 			this.statisticsInfo.addDealDataFail(num);
-			this.statisticsInfo.addDealSpendTime(spendTime);
+			this.statisticsInfo.addExecute(num, spendTime);
+			if (this.statisticsInfo.getTaskItemStatistics() != null) {
+				this.statisticsInfo.getTaskItemStatistics().addExecute(executeTask, this.isMutilTask, false, spendTime);
+			}
 	}
 	
     class MYComparator implements Comparator<T>{
@@ -0,0 +1,865 @@
+package com.taobao.pamirs.schedule;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 流水线调度器：任务队列低于水位线时，由独立的取数线程在后台获取下一批数据，
+ * 避免SLEEP/NOTSLEEP模式下所有处理线程等待selectTasks的空档。
+ *
+ * 防重复的处理：
+ * 取数前对所有已取到但没有处理完的任务（队列中和处理中）做快照，
+ * 新取到的数据如果和快照中的任务相同，则丢弃，保证同一任务不会同时在内存中存在两份。
+ *
+ * @param <T>
+ */
+public class TBScheduleProcessorPipeline<T> implements IScheduleProcessor, Runnable {
+
+	private static transient Log logger = LogFactory.getLog(TBScheduleProcessorPipeline.class);
+
+	List<Thread> threadList = Collections.synchronizedList(new ArrayList<Thread>());
+	/**
+	 * 目标线程数量，线程数量可以在运行期调整
+	 */
+	volatile int targetThreadNumber;
+	int nextThreadIndex = 0;
+	/**
+	 * 任务管理器
+	 */
+	protected TBScheduleManager scheduleManager;
+	/**
+	 * 任务类型
+	 */
+	ScheduleTaskType taskTypeInfo;
+	/**
+	 * 任务处理的接口类
+	 */
+	protected IScheduleTaskDeal<T> taskDealBean;
+	/**
+	 * 任务比较器
+	 */
+	Comparator<T> taskComparator;
+	/**
+	 * 任务主键提取器，处理Bean没有实现IScheduleTaskKey时为null
+	 */
+	IScheduleTaskKey<T> taskKeyExtractor;
+	/**
+	 * 任务所属任务项的解析器，处理Bean没有实现IScheduleTaskItemResolver时为null
+	 */
+	IScheduleTaskItemResolver<T> taskItemResolver;
+
+	StatisticsInfo statisticsInfo;
+	/**
+	 * 异步处理任务的Bean使用，否则为null
+	 */
+	ScheduleTaskAsyncDealer asyncDealer;
+	/**
+	 * 流式获取任务的Bean使用，否则为null
+	 */
+	ScheduleTaskStreamCollector<T> streamCollector;
+	/**
+	 * 没有数据时的休眠，可以被wakeUp提前唤醒
+	 */
+	ScheduleIdleWaiter idleWaiter;
+	/**
+	 * 处理Bean实现IScheduleTaskDealMultiResult时为true
+	 */
+	boolean isMultiResult = false;
+	/**
+	 * 失败任务的重试
+	 */
+	ScheduleTaskRetryer taskRetryer;
+	/**
+	 * execute处理过慢的监控，没有配置时为null
+	 */
+	ScheduleExecuteWatchdog executeWatchdog;
+
+	protected IScheduleTaskQueue<T> taskList;
+	/**
+	 * 已取到内存但没有处理完的任务，包括队列中和处理中的，按对象引用区分
+	 */
+	protected Set<Object> inFlightTaskSet = Collections.synchronizedSet(Collections
+			.newSetFromMap(new IdentityHashMap<Object, Boolean>()));
+	/**
+	 * 有任务主键时，inFlightTaskSet中任务的主键
+	 */
+	protected Set<Object> inFlightKeySet = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+	/**
+	 * 取数前inFlightTaskSet的快照，只在取数线程中使用
+	 */
+	Object[] inFlightTasksSnapshot;
+	/**
+	 * 取数前inFlightKeySet的快照，只在取数线程中使用
+	 */
+	Set<Object> inFlightKeysSnapshot;
+	/**
+	 * 低于此数量时开始获取下一批数据
+	 */
+	int lowWatermark;
+	/**
+	 * 没有任务主键时，内存中的任务超过此数量暂停取数，限制取数线程按比较器逐个判重的次数
+	 */
+	static final int MIN_COMPARE_LIMIT = 1000;
+	/**
+	 * 因内存中的任务过多暂停了取数，任务处理完成后重新请求取数
+	 */
+	volatile boolean isFetchDeferred = false;
+	/**
+	 * 后台取数线程
+	 */
+	Thread fetchThread;
+	final Object lockFetch = new Object();
+	/**
+	 * 使用优先级队列时提前取数的间隔，小于等于0表示不提前取数
+	 */
+	long preemptInterval = 0;
+	/**
+	 * 最近一次取数的时间
+	 */
+	volatile long lastFetchTime = 0;
+	//处理线程可能是虚拟线程，用Condition等待数据，不占住载体线程
+	final Lock lockData = new ReentrantLock();
+	final Condition dataCondition = lockData.newCondition();
+	/**
+	 * 等待数据的处理线程数
+	 */
+	final AtomicInteger waitDataThreadCount = new AtomicInteger(0);
+	boolean isFetchRequested = false;
+	/**
+	 * 是否可以批处理
+	 */
+	boolean isMutilTask = false;
+	/**
+	 * 是否已经获得终止调度信号
+	 */
+	volatile boolean isStopSchedule = false;// 用户停止队列调度
+	volatile boolean isSleeping = false;
+	/**
+	 * 停止调度后继续处理队列中任务的截止时间
+	 */
+	volatile long drainDeadline = 0;
+
+	/**
+	 * 创建一个调度处理器
+	 * @param aManager
+	 * @param aTaskDealBean
+	 * @param aStatisticsInfo
+	 * @throws Exception
+	 */
+	@SuppressWarnings("unchecked")
+	public TBScheduleProcessorPipeline(TBScheduleManager aManager,
+			IScheduleTaskDeal<T> aTaskDealBean, StatisticsInfo aStatisticsInfo) throws Exception {
+		this.scheduleManager = aManager;
+		this.statisticsInfo = aStatisticsInfo;
+		this.taskTypeInfo = this.scheduleManager.getTaskTypeInfo();
+		this.taskDealBean = aTaskDealBean;
+		this.taskComparator = this.taskDealBean.getComparator();
+		if (this.taskDealBean instanceof IScheduleTaskKey<?>) {
+			this.taskKeyExtractor = (IScheduleTaskKey<T>) this.taskDealBean;
+		}
+		this.taskItemResolver = ScheduleTaskQueueFactory.getTaskItemResolver(this.taskDealBean);
+		if (ScheduleTaskAsyncDealer.isSingle(this.taskDealBean)) {
+			if (taskTypeInfo.getExecuteNumber() > 1) {
+				taskTypeInfo.setExecuteNumber(1);
+			}
+			isMutilTask = false;
+		} else {
+			isMutilTask = true;
+		}
+		if (ScheduleTaskAsyncDealer.isAsync(this.taskDealBean) == true) {
+			this.asyncDealer = new ScheduleTaskAsyncDealer((IScheduleTaskDealAsync<?>) this.taskDealBean,
+					taskTypeInfo, aManager.getScheduleServer().getTaskType(), this.statisticsInfo);
+		}
+		if (taskTypeInfo.getFetchDataNumber() < taskTypeInfo.getThreadNumber() * 10) {
+			logger.warn("参数设置不合理，系统性能不佳。【每次从数据库获取的数量fetchnum】 >= 【线程数量threadnum】 *【最少循环次数10】 ");
+		}
+		if (this.taskKeyExtractor == null) {
+			logger.warn("处理Bean没有实现IScheduleTaskKey，按比较器逐个判重，内存中的任务较多时暂停取数");
+		}
+		this.lowWatermark = taskTypeInfo.getPipelineLowWatermark();
+		if (this.lowWatermark <= 0) {
+			this.lowWatermark = taskTypeInfo.getThreadNumber() * taskTypeInfo.getExecuteNumber() * 2;
+		}
+		if (this.lowWatermark > taskTypeInfo.getFetchDataNumber()) {
+			this.lowWatermark = taskTypeInfo.getFetchDataNumber();
+		}
+		if (this.lowWatermark < 1) {
+			this.lowWatermark = 1;
+		}
+		this.idleWaiter = new ScheduleIdleWaiter(taskTypeInfo, aManager.getScheduleServer().getTaskType());
+		this.taskList = ScheduleTaskQueueFactory.createTaskQueue(taskTypeInfo, this.taskDealBean, this.statisticsInfo);
+		this.isMultiResult = ScheduleTaskRetryer.isMultiResult(this.taskDealBean);
+		this.taskRetryer = new ScheduleTaskRetryer(taskTypeInfo, this.taskList, this.statisticsInfo,
+				aManager.getRetryTimerName(), new Runnable() {
+					public void run() {
+						signalData();
+					}
+				});
+		this.executeWatchdog = aManager.getExecuteWatchdog();
+		if (ScheduleTaskStreamCollector.isStream(this.taskDealBean) == true) {
+			this.streamCollector = new ScheduleTaskStreamCollector<T>((IScheduleTaskDealStream<T>) this.taskDealBean,
+					this.taskList, taskTypeInfo, this.statisticsInfo, new Runnable() {
+						public void run() {
+							signalData();
+						}
+					}) {
+				protected boolean accept(T task) {
+					return addInFlight(task);
+				}
+
+				protected void reject(T task) {
+					removeInFlight(task);
+				}
+			};
+		}
+		if (ScheduleTaskQueueFactory.isPriorityQueue(this.taskList)) {
+			this.preemptInterval = taskTypeInfo.getPriorityPreemptInterval();
+		}
+		this.startFetchThread();
+		this.setThreadNumber(aManager.getThreadNumber());
+	}
+
+	/**
+	 * 需要注意的是，调度服务器从配置中心注销的工作，必须在所有线程退出的情况下才能做
+	 * @throws Exception
+	 */
+	public void stopSchedule() throws Exception {
+		if (this.taskTypeInfo.getDrainTimeout() > 0) {
+			//已经取到队列中的任务在drainTimeout内继续处理，不再取新数据
+			this.drainDeadline = ScheduleUtil.getCurrentTimeMillis() + this.taskTypeInfo.getDrainTimeout();
+		}
+		// 设置停止调度的标志,调度线程发现这个标志，执行完当前任务后，就退出调度
+		this.isStopSchedule = true;
+		if (this.taskTypeInfo.getDrainTimeout() <= 0) {
+			//清除所有未处理任务,但已经进入处理队列的，需要处理完毕
+			this.clearAllHasFetchData();
+		} else if (this.streamCollector != null) {
+			this.streamCollector.abort();
+		}
+		this.requestFetch();
+		this.signalData();
+		this.idleWaiter.wakeUp();
+	}
+
+	/**
+	 * 结束没有数据时的休眠，立即重新取数
+	 */
+	public void wakeUp() {
+		this.idleWaiter.wakeUp();
+	}
+
+	public int getThreadNumber() {
+		return this.threadList.size();
+	}
+
+	public Thread[] getThreads() {
+		synchronized (this.threadList) {
+			return this.threadList.toArray(new Thread[this.threadList.size()]);
+		}
+	}
+
+	/**
+	 * 调整处理线程数量，增加时立即启动新线程，减少时多余的线程在处理完当前任务后退出
+	 */
+	public void setThreadNumber(int aThreadNumber) {
+		synchronized (this.threadList) {
+			if (this.isStopSchedule == true || aThreadNumber <= 0) {
+				return;
+			}
+			this.targetThreadNumber = aThreadNumber;
+			while (this.threadList.size() < this.targetThreadNumber) {
+				this.startThread(this.nextThreadIndex++);
+			}
+		}
+	}
+
+	public int getTaskQueueSize() {
+		return this.taskList.size();
+	}
+
+	/**
+	 * 线程数量超过目标数量时，当前线程退出
+	 */
+	protected boolean isRetireThread() {
+		if (this.threadList.size() <= this.targetThreadNumber) {
+			return false;
+		}
+		synchronized (this.threadList) {
+			if (this.threadList.size() > this.targetThreadNumber) {
+				this.threadList.remove(Thread.currentThread());
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void startThread(int index) {
+		String threadName = this.scheduleManager.getScheduleServer().getTaskType() + "-"
+				+ this.scheduleManager.getCurrentSerialNumber() + "-exe"
+				+ index;
+		Thread thread = ScheduleThreadFactory.newThread(this, threadName, this.taskTypeInfo.getThreadType());
+		threadList.add(thread);
+		thread.start();
+	}
+
+	private void startFetchThread() {
+		this.fetchThread = new Thread() {
+			public void run() {
+				fetchLoop();
+			}
+		};
+		this.fetchThread.setName(this.scheduleManager.getScheduleServer().getTaskType() + "-"
+				+ this.scheduleManager.getCurrentSerialNumber() + "-fetch");
+		this.fetchThread.start();
+	}
+
+	public void clearAllHasFetchData() {
+		if (this.streamCollector != null) {
+			this.streamCollector.abort();
+		}
+		Object[] tasks;
+		while ((tasks = this.taskList.pollAll()) != null) {
+			for (int i = 0; i < tasks.length; i++) {
+				this.removeInFlight(tasks[i]);
+			}
+		}
+		//时间轮中等待重试的任务也不再处理
+		Object[] waitingTasks = this.taskRetryer.clear();
+		for (int i = 0; i < waitingTasks.length; i++) {
+			this.removeInFlight(waitingTasks[i]);
+		}
+	}
+
+	public boolean isDealFinishAllData() {
+		return this.inFlightTaskSet.size() == 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public Set<String> getDealingTaskItems() {
+		if (this.taskItemResolver == null) {
+			return this.isDealFinishAllData() == true ? new HashSet<String>() : null;
+		}
+		Set<String> result = new HashSet<String>();
+		Object[] tasks = this.inFlightTaskSet.toArray();
+		for (int i = 0; i < tasks.length; i++) {
+			result.add(this.taskItemResolver.getTaskItemId((T) tasks[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * 停止调度后，队列中的任务处理完或者超过drainTimeout时，清除剩余的任务，线程可以退出
+	 */
+	protected boolean isDrainFinish() {
+		if (this.taskList.size() > 0 && ScheduleUtil.getCurrentTimeMillis() < this.drainDeadline) {
+			return false;
+		}
+		if (this.taskList.size() > 0 && this.drainDeadline > 0) {
+			logger.warn("停止调度超过" + this.taskTypeInfo.getDrainTimeout() + "毫秒，清除队列中剩余的"
+					+ this.taskList.size() + "个任务");
+		}
+		this.clearAllHasFetchData();
+		return true;
+	}
+
+	public boolean isSleeping() {
+		return this.isSleeping;
+	}
+
+	/**
+	 * 通知取数线程获取下一批数据
+	 */
+	protected void requestFetch() {
+		synchronized (this.lockFetch) {
+			if (this.isFetchRequested == false) {
+				this.isFetchRequested = true;
+				this.lockFetch.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * 取数线程：等待处理线程的取数请求，队列低于水位线时获取下一批数据
+	 */
+	protected void fetchLoop() {
+		while (this.isStopSchedule == false) {
+			try {
+				//没有取数请求，但到了抢占取数的时间
+				boolean isPreempt = false;
+				synchronized (this.lockFetch) {
+					while (this.isFetchRequested == false && this.isStopSchedule == false) {
+						if (this.preemptInterval <= 0) {
+							this.lockFetch.wait();
+							continue;
+						}
+						long waitTime = this.lastFetchTime + this.preemptInterval - ScheduleUtil.getCurrentTimeMillis();
+						if (waitTime <= 0) {
+							isPreempt = true;
+							break;
+						}
+						this.lockFetch.wait(waitTime);
+					}
+					this.isFetchRequested = false;
+				}
+				if (this.isStopSchedule == true) {
+					break;
+				}
+				if (isPreempt == true) {
+					//队列已空时由处理线程的取数请求按正常流程取数
+					if (this.taskList.isEmpty() == false && this.taskList.size() < this.taskList.capacity()
+							&& this.isCompareLimitExceeded() == false) {
+						if (this.loadScheduleData() > 0) {
+							this.signalData();
+						}
+					} else {
+						this.lastFetchTime = ScheduleUtil.getCurrentTimeMillis();
+					}
+					continue;
+				}
+				if (this.taskList.size() >= this.lowWatermark) {
+					continue;
+				}
+				if (this.isCompareLimitExceeded() == true) {
+					//内存中的任务处理到限制以下时再取数
+					this.isFetchDeferred = true;
+					if (this.isCompareLimitExceeded() == true) {
+						continue;
+					}
+					this.isFetchDeferred = false;
+				}
+				if (this.taskTypeInfo.getSleepTimeInterval() > 0) {
+					if (logger.isTraceEnabled()) {
+						logger.trace("处理完一批数据后休眠：" + this.taskTypeInfo.getSleepTimeInterval());
+					}
+					Thread.sleep(this.taskTypeInfo.getSleepTimeInterval());
+				}
+				if (this.loadScheduleData() > 0) {
+					this.idleWaiter.reset();
+					this.signalData();
+					continue;
+				}
+				// 没有取到数据，休眠后再取，避免处理线程的取数请求造成对数据库的空轮询
+				if (this.taskList.isEmpty()) {
+					// 判断当没有数据的是否，是否需要退出调度
+					if (this.isStopSchedule == true || this.scheduleManager.isContinueWhenData() == false) {
+						continue;
+					}
+					this.isSleeping = true;
+				}
+				long sleepTime = this.idleWaiter.getSleepTime();
+				if (sleepTime > 0) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("没有读取到需要处理的数据,sleep " + sleepTime);
+					}
+					//连续没有数据时休眠时间逐步加长，wakeUp时提前结束
+					this.idleWaiter.sleepNoData();
+				}
+				this.isSleeping = false;
+				this.requestFetch();
+			} catch (Throwable ex) {
+				this.isSleeping = false;
+				logger.error(ex.getMessage(), ex);
+			}
+		}
+		this.signalData();
+	}
+
+	/**
+	 * 装载数据，并丢弃和已取到内存的任务重复的数据
+	 * @return 新放入队列的数据量
+	 */
+	protected int loadScheduleData() {
+		this.lastFetchTime = ScheduleUtil.getCurrentTimeMillis();
+		try {
+			// 取数前的快照，selectTasks期间处理完成的任务也在快照中，不会漏判
+			if (this.taskKeyExtractor != null) {
+				this.inFlightKeysSnapshot = new HashSet<Object>(this.inFlightKeySet);
+			} else {
+				this.inFlightTasksSnapshot = this.inFlightTaskSet.toArray();
+			}
+			List<TaskItemDefine> taskItems = this.scheduleManager.getCurrentScheduleTaskItemList();
+			int count = 0;
+			if (taskItems.size() > 0) {
+				this.taskList.setTaskItems(taskItems);
+				int fetchDataNumber = this.scheduleManager.getFetchNumberTuner().getFetchDataNumber();
+				long fetchStartTime = ScheduleUtil.getCurrentTimeMillis();
+				Object traceEvent = ScheduleFlightRecorder.begin(ScheduleFlightRecorder.SELECT_TASKS);
+				if (this.streamCollector != null) {
+					//边读取边放入队列，处理线程同时开始处理，判重在accept中处理
+					int fetchNum = this.streamCollector.fetch(taskTypeInfo.getTaskParameter(),
+							scheduleManager.getScheduleServer().getOwnSign(),
+							this.scheduleManager.getTaskItemCount(), taskItems, fetchDataNumber);
+					if (traceEvent != null) {
+						ScheduleFlightRecorder.commit(traceEvent, scheduleManager.getScheduleServer().getTaskType(), taskItems.size(), fetchDataNumber, fetchNum);
+					}
+					count = this.streamCollector.getOfferNumber();
+					scheduleManager.getScheduleServer().setLastFetchDataTime(new Timestamp(ScheduleUtil.getCurrentTimeMillis()));
+					this.scheduleManager.getFetchNumberTuner().addFetchResult(fetchDataNumber, fetchNum,
+							ScheduleUtil.getCurrentTimeMillis() - fetchStartTime, this.waitDataThreadCount.get(),
+							this.scheduleManager.getThreadNumber());
+					addFetchNum(count, "TBScheduleProcessorPipeline.loadScheduleData");
+					return count;
+				}
+				List<T> tmpList = this.taskDealBean.selectTasks(
+						taskTypeInfo.getTaskParameter(),
+						scheduleManager.getScheduleServer().getOwnSign(),
+						this.scheduleManager.getTaskItemCount(), taskItems,
+						fetchDataNumber);
+				if (traceEvent != null) {
+					ScheduleFlightRecorder.commit(traceEvent, scheduleManager.getScheduleServer().getTaskType(), taskItems.size(), fetchDataNumber,
+							tmpList == null ? 0 : tmpList.size());
+				}
+				scheduleManager.getScheduleServer().setLastFetchDataTime(new Timestamp(ScheduleUtil.getCurrentTimeMillis()));
+				this.scheduleManager.getFetchNumberTuner().addFetchResult(fetchDataNumber, tmpList == null ? 0 : tmpList.size(),
+						ScheduleUtil.getCurrentTimeMillis() - fetchStartTime, this.waitDataThreadCount.get(),
+						this.scheduleManager.getThreadNumber());
+				if (tmpList != null) {
+					for (T task : tmpList) {
+						if (this.addInFlight(task) == false) {
+							continue;
+						}
+						if (this.taskList.offer(task) == false) {
+							this.removeInFlight(task);
+							logger.warn("取到的数据量" + tmpList.size() + "超过了任务队列容量"
+									+ this.taskList.capacity() + "，多余的数据等待下次获取");
+							break;
+						}
+						count = count + 1;
+						if (this.statisticsInfo.getTaskItemStatistics() != null) {
+							this.statisticsInfo.getTaskItemStatistics().addFetch(task);
+						}
+					}
+				}
+			} else {
+				if (logger.isDebugEnabled()) {
+					logger.debug("没有任务分配");
+				}
+			}
+			addFetchNum(count, "TBScheduleProcessorPipeline.loadScheduleData");
+			return count;
+		} catch (Throwable ex) {
+			logger.error("获取任务数据错误", ex);
+		}
+		return 0;
+	}
+
+	/**
+	 * 和取数前的快照及已经放入的任务比较，不重复时放入inFlightTaskSet
+	 * @return 重复时返回false
+	 */
+	private boolean addInFlight(T task) {
+		if (this.taskKeyExtractor != null) {
+			Object key = this.taskKeyExtractor.getTaskKey(task);
+			if (this.inFlightKeysSnapshot.contains(key) == true || this.inFlightKeySet.add(key) == false) {
+				return false;
+			}
+		} else if (this.isDealing(task, this.inFlightTasksSnapshot) == true) {
+			return false;
+		}
+		this.inFlightTaskSet.add(task);
+		return true;
+	}
+
+	/**
+	 * 清除一次处理的任务，批处理时逐个清除
+	 */
+	private void removeInFlightTasks(Object executeTask) {
+		if (this.isMutilTask == false) {
+			this.removeInFlight(executeTask);
+			return;
+		}
+		Object[] tasks = (Object[]) executeTask;
+		for (int i = 0; i < tasks.length; i++) {
+			this.removeInFlight(tasks[i]);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void removeInFlight(Object aTask) {
+		if (this.inFlightTaskSet.remove(aTask) == true && this.taskKeyExtractor != null) {
+			this.inFlightKeySet.remove(this.taskKeyExtractor.getTaskKey((T) aTask));
+		}
+		if (this.isFetchDeferred == true && this.isCompareLimitExceeded() == false) {
+			this.isFetchDeferred = false;
+			this.requestFetch();
+		}
+	}
+
+	/**
+	 * 没有任务主键时，内存中的任务是否超过了按比较器判重的数量限制
+	 */
+	protected boolean isCompareLimitExceeded() {
+		if (this.taskKeyExtractor != null) {
+			return false;
+		}
+		int limit = this.lowWatermark + this.scheduleManager.getThreadNumber() * this.taskTypeInfo.getExecuteNumber();
+		return this.inFlightTaskSet.size() > Math.max(limit, MIN_COMPARE_LIMIT);
+	}
+
+	/**
+	 * 任务是否已经在内存中
+	 */
+	@SuppressWarnings("unchecked")
+	protected boolean isDealing(T aTask, Object[] inFlightTasks) {
+		//和NOTSLEEP模式一样统计每一次比较
+		for (int i = 0; i < inFlightTasks.length; i++) {
+			if (this.taskComparator.compare(aTask, (T) inFlightTasks[i]) == 0) {
+				this.statisticsInfo.addOtherCompareCount(i + 1);
+				return true;
+			}
+		}
+		this.statisticsInfo.addOtherCompareCount(inFlightTasks.length);
+		return false;
+	}
+
+	/**
+	 * 等待取数线程装载数据
+	 */
+	protected void waitForData() throws InterruptedException {
+		this.lockData.lock();
+		this.waitDataThreadCount.incrementAndGet();
+		try {
+			if (this.taskList.isEmpty() && this.isStopSchedule == false) {
+				this.dataCondition.await();
+			}
+		} finally {
+			this.waitDataThreadCount.decrementAndGet();
+			this.lockData.unlock();
+		}
+	}
+
+	private void signalData() {
+		this.lockData.lock();
+		try {
+			this.dataCondition.signalAll();
+		} finally {
+			this.lockData.unlock();
+		}
+	}
+
+	/**
+	 * 运行函数
+	 */
+	@SuppressWarnings("unchecked")
+	public void run() {
+		long startTime = 0;
+		Object executeTask = null;
+		//已经取出、还没有开始处理的任务，线程异常时按失败统计
+		Object pendingTask = null;
+		try {
+			while (true) {
+				pendingTask = null;
+				try {
+					if (this.isStopSchedule == true && this.isDrainFinish() == true) { // 停止队列调度
+						this.threadList.remove(Thread.currentThread());
+						if (this.threadList.size() == 0) {
+							if (this.asyncDealer != null) {
+								this.asyncDealer.waitAllFinish();
+							}
+							this.scheduleManager.unRegisterScheduleServer(this);
+						}
+						return;
+					}
+					if (this.isRetireThread() == true) { // 线程数量减少，当前线程退出
+						return;
+					}
+					if (this.isMutilTask == false) {
+						executeTask = this.taskList.poll();
+					} else {
+						executeTask = this.taskList.poll(taskTypeInfo.getExecuteNumber());
+					}
+					if (this.taskList.size() < this.lowWatermark) {
+						this.requestFetch();
+					}
+					if (executeTask == null) {
+						this.waitForData();
+						continue;
+					}
+					pendingTask = executeTask;
+					//集群限流，批处理时按任务数量获取令牌
+					try {
+						this.scheduleManager.acquireExecutePermit(this.isMutilTask == false ? 1 : ((Object[]) executeTask).length);
+					} catch (InterruptedException ex) {
+						//任务还没有处理，停止调度时丢弃，否则放回队列，回到循环开始
+						this.returnTask(executeTask);
+						continue;
+					}
+
+					if (this.asyncDealer != null) {
+						//异步处理，处理完成后再从处理中的任务里清除
+						final Object dealingTask = executeTask;
+						try {
+							this.asyncDealer.execute(executeTask, scheduleManager.getScheduleServer().getOwnSign(), new Runnable() {
+								public void run() {
+									removeInFlightTasks(dealingTask);
+								}
+							});
+						} catch (InterruptedException ex) {
+							removeInFlightTasks(executeTask);
+						}
+						pendingTask = null;
+						continue;
+					}
+					pendingTask = null;
+					//延时重试的任务仍然在inFlightTaskSet中
+					boolean isRetried = false;
+					boolean[] retried = null;
+					Object traceEvent = ScheduleFlightRecorder.begin(ScheduleFlightRecorder.EXECUTE);
+					boolean isSuccess = false;
+					ScheduleExecuteWatchdog.ExecuteRecord watchRecord = this.executeWatchdog == null ? null
+							: this.executeWatchdog.begin(executeTask, this.isMutilTask == false ? 1 : ((Object[]) executeTask).length);
+					try { // 运行相关的程序
+						startTime = ScheduleUtil.getCurrentTimeMillis();
+						if (this.isMutilTask == false) {
+							if (((IScheduleTaskDealSingle<Object>) this.taskDealBean).execute(executeTask, scheduleManager.getScheduleServer().getOwnSign()) == true) {
+								addSuccessNum(executeTask, ScheduleUtil.getCurrentTimeMillis()
+										- startTime,
+										"com.taobao.pamirs.schedule.TBScheduleProcessorPipeline.run");
+								isSuccess = true;
+								this.taskRetryer.finish(executeTask);
+							} else {
+								addFailNum(executeTask, ScheduleUtil.getCurrentTimeMillis()
+										- startTime,
+										"com.taobao.pamirs.schedule.TBScheduleProcessorPipeline.run");
+								isRetried = this.taskRetryer.retry(executeTask);
+							}
+						} else if (this.isMultiResult == true) {
+							//按每个任务的处理结果统计，失败的任务重新放入队列
+							BitSet result = ((IScheduleTaskDealMultiResult<Object>) this.taskDealBean).execute(
+									(Object[]) executeTask, scheduleManager.getScheduleServer().getOwnSign());
+							isSuccess = result != null && result.cardinality() == ((Object[]) executeTask).length;
+							retried = this.taskRetryer.dealMultiResult((Object[]) executeTask, result,
+									ScheduleUtil.getCurrentTimeMillis() - startTime);
+						} else {
+							if (((IScheduleTaskDealMulti<Object>) this.taskDealBean)
+									.execute((Object[]) executeTask, scheduleManager.getScheduleServer().getOwnSign()) == true) {
+								addSuccessNum(executeTask, ScheduleUtil
+										.getCurrentTimeMillis()
+										- startTime,
+										"com.taobao.pamirs.schedule.TBScheduleProcessorPipeline.run");
+								isSuccess = true;
+								this.taskRetryer.finishAll((Object[]) executeTask);
+							} else {
+								addFailNum(executeTask, ScheduleUtil
+										.getCurrentTimeMillis()
+										- startTime,
+										"com.taobao.pamirs.schedule.TBScheduleProcessorPipeline.run");
+								retried = this.taskRetryer.retryAll((Object[]) executeTask);
+							}
+						}
+					} catch (Throwable ex) {
+						if (this.isMutilTask == false) {
+							addFailNum(executeTask, ScheduleUtil.getCurrentTimeMillis() - startTime,
+									"TBScheduleProcessorPipeline.run");
+							isRetried = this.taskRetryer.retry(executeTask);
+						} else if (this.isMultiResult == true) {
+							retried = this.taskRetryer.dealMultiResult((Object[]) executeTask, null,
+									ScheduleUtil.getCurrentTimeMillis() - startTime);
+						} else {
+							addFailNum(executeTask, ScheduleUtil
+									.getCurrentTimeMillis()
+									- startTime,
+									"TBScheduleProcessorPipeline.run");
+							retried = this.taskRetryer.retryAll((Object[]) executeTask);
+						}
+						logger.error("Task :" + executeTask + " 处理失败", ex);
+					} finally {
+						if (watchRecord != null) {
+							this.executeWatchdog.end(watchRecord);
+						}
+						if (traceEvent != null) {
+							ScheduleFlightRecorder.commit(traceEvent, scheduleManager.getScheduleServer().getTaskType(),
+									this.isMutilTask == false ? 1 : ((Object[]) executeTask).length, isSuccess);
+						}
+						if (this.isMutilTask == false) {
+							if (isRetried == false) {
+								this.removeInFlight(executeTask);
+							}
+						} else {
+							Object[] tasks = (Object[]) executeTask;
+							for (int i = 0; i < tasks.length; i++) {
+								if (retried == null || retried[i] == false) {
+									this.removeInFlight(tasks[i]);
+								}
+							}
+						}
+					}
+				} catch (Throwable e) {
+					if (pendingTask != null) {
+						addFailNum(pendingTask, 0, "TBScheduleProcessorPipeline.run");
+						if (this.isMutilTask == false) {
+							this.removeInFlight(pendingTask);
+						} else {
+							Object[] tasks = (Object[]) pendingTask;
+							for (int i = 0; i < tasks.length; i++) {
+								this.removeInFlight(tasks[i]);
+							}
+						}
+					}
+					if (e instanceof InterruptedException && this.isStopSchedule == true) {
+						//停止调度时被中断，回到循环开始按正常流程退出
+						continue;
+					}
+					logger.error("处理线程异常：" + e.getMessage(), e);
+				}
+			}
+		} finally {
+			this.threadList.remove(Thread.currentThread());
+		}
+	}
+
+	public void addFetchNum(long num, String addr) {
+		this.statisticsInfo.addFetchDataCount(1);
+		this.statisticsInfo.addFetchDataNum(num);
+	}
+
+	public void addSuccessNum(Object executeTask, long spendTime, String addr) {
+		long num = this.isMutilTask == false ? 1 : ((Object[]) executeTask).length;
+		this.statisticsInfo.addDealDataSucess(num);
+		this.statisticsInfo.addExecute(num, spendTime);
+		if (this.statisticsInfo.getTaskItemStatistics() != null) {
+			this.statisticsInfo.getTaskItemStatistics().addExecute(executeTask, this.isMutilTask, true, spendTime);
+		}
+	}
+
+	/**
+	 * 等待执行许可时被中断的任务还没有处理：停止调度时丢弃，不按失败统计；否则放回队列，仍然在inFlightTaskSet中，放不下的按失败统计
+	 */
+	@SuppressWarnings("unchecked")
+	private void returnTask(Object task) {
+		Object[] tasks = this.isMutilTask == false ? new Object[] { task } : (Object[]) task;
+		for (int i = 0; i < tasks.length; i++) {
+			if (this.isStopSchedule == true) {
+				this.removeInFlight(tasks[i]);
+			} else if (this.taskList.offer((T) tasks[i]) == false) {
+				this.removeInFlight(tasks[i]);
+				this.statisticsInfo.addDealDataFail(1);
+				logger.warn("任务队列已满，等待执行许可时被中断的任务没有放回，等待下次获取：" + tasks[i]);
+			}
+		}
+	}
+
+	public void addFailNum(Object executeTask, long spendTime, String addr) {
+		long num = this.isMutilTask == false ? 1 : ((Object[]) executeTask).length;
+		this.statisticsInfo.addDealDataFail(num);
+		this.statisticsInfo.addExecute(num, spendTime);
+		if (this.statisticsInfo.getTaskItemStatistics() != null) {
+			this.statisticsInfo.getTaskItemStatistics().addExecute(executeTask, this.isMutilTask, false, spendTime);
+		}
+	}
+}
@@ -2,14 +2,17 @@ package com.taobao.pamirs.schedule;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 /**
- * TBScheduleManagerĹʵֶ߳ݴ
+ * 任务调度器，在TBScheduleManager的管理下实现多线程数据处理
  * @author xuannan
  *
  * @param <T>
@@ -20,55 +23,89 @@ public class TBScheduleProcessorSleep<T> implements IScheduleProcessor,Runnable
 	final  LockObject   m_lockObject = new LockObject();
 	List<Thread> threadList =  Collections.synchronizedList(new ArrayList<Thread>());
 	/**
-	 * 
+	 * 目标线程数量，线程数量可以在运行期调整
+	 */
+	volatile int targetThreadNumber;
+	int nextThreadIndex = 0;
+	/**
+	 * 任务管理器
 	 */
 	protected TBScheduleManager scheduleManager;
 	/**
-	 * 
+	 * 任务类型
 	 */
 	ScheduleTaskType taskTypeInfo;
 	
 	/**
-	 * Ľӿ
+	 * 任务处理的接口类
 	 */
 	protected IScheduleTaskDeal<T> taskDealBean;
 		
 	/**
-	 * ǰеİ汾
+	 * 当前任务队列的版本号
 	 */
 	protected long taskListVersion = 0;
 	final Object lockVersionObject = new Object();
 	final Object lockRunningList = new Object();
 
-	//һprocessorӵһִе
-	protected List<T> taskList = Collections.synchronizedList(new ArrayList<T>());
+	//一个processor拥有一个可执行的任务队列
+	protected IScheduleTaskQueue<T> taskList;
 
 	/**
-	 * Ƿ
+	 * 是否可以批处理
 	 */
 	boolean isMutilTask = false;
 	
 	/**
-	 * ǷѾֹź
+	 * 是否已经获得终止调度信号
 	 */
-	boolean isStopSchedule = false;// ûֹͣе
+	volatile boolean isStopSchedule = false;// 用户停止队列调度
 	boolean isSleeping = false;
+	/**
+	 * 停止调度后继续处理队列中任务的截止时间
+	 */
+	volatile long drainDeadline = 0;
 	
 	StatisticsInfo statisticsInfo;
 	/**
-	 * һȴ 
+	 * 异步处理任务的Bean使用，否则为null
+	 */
+	ScheduleTaskAsyncDealer asyncDealer;
+	/**
+	 * 流式获取任务的Bean使用，否则为null
+	 */
+	ScheduleTaskStreamCollector<T> streamCollector;
+	/**
+	 * 没有数据时的休眠，可以被wakeUp提前唤醒
+	 */
+	ScheduleIdleWaiter idleWaiter;
+	/**
+	 * 处理Bean实现IScheduleTaskDealMultiResult时为true
+	 */
+	boolean isMultiResult = false;
+	/**
+	 * 失败任务的重试
+	 */
+	ScheduleTaskRetryer taskRetryer;
+	/**
+	 * execute处理过慢的监控，没有配置时为null
+	 */
+	ScheduleExecuteWatchdog executeWatchdog;
+	/**
+	 * 创建一个调度处理器 
 	 * @param aManager
 	 * @param aTaskDealBean
 	 * @param aStatisticsInfo
 	 * @throws Exception
 	 */
+	@SuppressWarnings("unchecked")
 	public TBScheduleProcessorSleep(TBScheduleManager aManager,
 			IScheduleTaskDeal<T> aTaskDealBean,	StatisticsInfo aStatisticsInfo) throws Exception {
 		this.scheduleManager = aManager;
 		this.statisticsInfo = aStatisticsInfo;
 		this.taskTypeInfo = this.scheduleManager.getTaskTypeInfo();
 		this.taskDealBean = aTaskDealBean;
-		if (this.taskDealBean instanceof IScheduleTaskDealSingle<?>) {
+		if (ScheduleTaskAsyncDealer.isSingle(this.taskDealBean)) {
 			if (taskTypeInfo.getExecuteNumber() > 1) {
 				taskTypeInfo.setExecuteNumber(1);
 			}
@@ -76,61 +113,161 @@ public class TBScheduleProcessorSleep<T> implements IScheduleProcessor,Runnable
 		} else {
 			isMutilTask = true;
 		}
+		if (ScheduleTaskAsyncDealer.isAsync(this.taskDealBean) == true) {
+			this.asyncDealer = new ScheduleTaskAsyncDealer((IScheduleTaskDealAsync<?>) this.taskDealBean,
+					taskTypeInfo, aManager.getScheduleServer().getTaskType(), this.statisticsInfo);
+		}
 		if (taskTypeInfo.getFetchDataNumber() < taskTypeInfo.getThreadNumber() * 10) {
-			logger.warn("òϵͳܲѡÿδݿȡfetchnum >= ߳threadnum *ѭ10 ");
+			logger.warn("参数设置不合理，系统性能不佳。【每次从数据库获取的数量fetchnum】 >= 【线程数量threadnum】 *【最少循环次数10】 ");
 		}
-		for (int i = 0; i < taskTypeInfo.getThreadNumber(); i++) {
-			this.startThread(i);
+		this.idleWaiter = new ScheduleIdleWaiter(taskTypeInfo, aManager.getScheduleServer().getTaskType());
+		this.taskList = ScheduleTaskQueueFactory.createTaskQueue(taskTypeInfo, this.taskDealBean, this.statisticsInfo);
+		this.isMultiResult = ScheduleTaskRetryer.isMultiResult(this.taskDealBean);
+		this.taskRetryer = new ScheduleTaskRetryer(taskTypeInfo, this.taskList, this.statisticsInfo,
+				aManager.getRetryTimerName(), null);
+		this.executeWatchdog = aManager.getExecuteWatchdog();
+		if (ScheduleTaskStreamCollector.isStream(this.taskDealBean) == true) {
+			//读到数据后马上唤醒休眠的线程开始处理，不等整批数据读取完毕
+			this.streamCollector = new ScheduleTaskStreamCollector<T>((IScheduleTaskDealStream<T>) this.taskDealBean,
+					this.taskList, taskTypeInfo, this.statisticsInfo, new Runnable() {
+						public void run() {
+							try {
+								m_lockObject.notifyOtherThread();
+							} catch (Exception ex) {
+								logger.error(ex.getMessage(), ex);
+							}
+						}
+					});
 		}
+		this.setThreadNumber(aManager.getThreadNumber());
 	}
 
 	/**
-	 * ҪעǣȷעĹ߳˳²
+	 * 需要注意的是，调度服务器从配置中心注销的工作，必须在所有线程退出的情况下才能做
 	 * @throws Exception
 	 */
 	public void stopSchedule() throws Exception {
-		// ֹͣȵı־,̷߳־ִ굱ǰ󣬾˳
+		if (this.taskTypeInfo.getDrainTimeout() > 0) {
+			//已经取到队列中的任务在drainTimeout内继续处理，不再取新数据
+			this.drainDeadline = ScheduleUtil.getCurrentTimeMillis() + this.taskTypeInfo.getDrainTimeout();
+		}
+		// 设置停止调度的标志,调度线程发现这个标志，执行完当前任务后，就退出调度
 		this.isStopSchedule = true;
-		//δ,Ѿ봦еģҪ
+		if (this.streamCollector != null) {
+			this.streamCollector.abort();
+		}
+		if (this.taskTypeInfo.getDrainTimeout() <= 0) {
+			//清除所有未处理任务,但已经进入处理队列的，需要处理完毕
+			this.taskList.clear();
+			this.taskRetryer.clear();
+		}
+		this.idleWaiter.wakeUp();
+	}
+
+	/**
+	 * 停止调度后，队列中的任务处理完或者超过drainTimeout时，清除剩余的任务，线程可以退出
+	 */
+	protected boolean isDrainFinish() {
+		if (this.taskList.size() > 0 && ScheduleUtil.getCurrentTimeMillis() < this.drainDeadline) {
+			return false;
+		}
+		if (this.taskList.size() > 0 && this.drainDeadline > 0) {
+			logger.warn("停止调度超过" + this.taskTypeInfo.getDrainTimeout() + "毫秒，清除队列中剩余的"
+					+ this.taskList.size() + "个任务");
+		}
 		this.taskList.clear();
+		this.taskRetryer.clear();
+		return true;
+	}
+
+	/**
+	 * 结束没有数据时的休眠，立即重新取数
+	 */
+	public void wakeUp() {
+		this.idleWaiter.wakeUp();
+	}
+
+	public int getThreadNumber() {
+		return this.threadList.size();
+	}
+
+	public Thread[] getThreads() {
+		synchronized (this.threadList) {
+			return this.threadList.toArray(new Thread[this.threadList.size()]);
+		}
+	}
+
+	/**
+	 * 调整处理线程数量，增加时立即启动新线程，减少时多余的线程在处理完当前任务后退出
+	 */
+	public void setThreadNumber(int aThreadNumber) {
+		synchronized (this.threadList) {
+			if (this.isStopSchedule == true || aThreadNumber <= 0) {
+				return;
+			}
+			this.targetThreadNumber = aThreadNumber;
+			while (this.threadList.size() < this.targetThreadNumber) {
+				this.startThread(this.nextThreadIndex++);
+			}
+		}
+	}
+
+	public int getTaskQueueSize() {
+		return this.taskList.size();
+	}
+
+	/**
+	 * 线程数量超过目标数量时，当前线程退出
+	 */
+	protected boolean isRetireThread() {
+		if (this.threadList.size() <= this.targetThreadNumber) {
+			return false;
+		}
+		synchronized (this.threadList) {
+			if (this.threadList.size() > this.targetThreadNumber) {
+				this.threadList.remove(Thread.currentThread());
+				return true;
+			}
+		}
+		return false;
 	}
 
 	private void startThread(int index) {
-		Thread thread = new Thread(this);
-		threadList.add(thread);
 		String threadName = this.scheduleManager.getScheduleServer().getTaskType()+"-" 
 				+ this.scheduleManager.getCurrentSerialNumber() + "-exe"
 				+ index;
-		thread.setName(threadName);
+		Thread thread = ScheduleThreadFactory.newThread(this, threadName, this.taskTypeInfo.getThreadType());
+		threadList.add(thread);
 		thread.start();
 	}
 
 
-	   //˳ȡõ߶
-	   public synchronized Object getScheduleTaskId() {
-		     if (this.taskList.size() > 0)
-		    	 return this.taskList.remove(0);  // 
-		     return null;
+	   //按顺序取得单个任务或者多个任务
+	   public Object getScheduleTaskId() {
+		     return this.taskList.poll();  // 按正序处理
 		   }
 
-		   public synchronized Object[] getScheduleTaskIdMulti() {
-		       if (this.taskList.size() == 0){
-		         return null;
-		       }
-		       int size = taskList.size() > taskTypeInfo.getExecuteNumber() ? taskTypeInfo.getExecuteNumber()
-						: taskList.size();
-		       Object[] result = new Object[size];
-		       for(int i=0;i<size;i++){
-		      	 result[i] = this.taskList.remove(0);  // 
-		       }
-		       return result;
+		   public Object[] getScheduleTaskIdMulti() {
+		       return this.taskList.poll(taskTypeInfo.getExecuteNumber());  // 按正序处理
 		   }
 
 	public void clearAllHasFetchData() {
+		if (this.streamCollector != null) {
+			this.streamCollector.abort();
+		}
 		this.taskList.clear();
+		this.taskRetryer.clear();
 	}
 	public boolean isDealFinishAllData() {
-		return this.taskList.size() == 0 ;
+		return this.taskList.size() == 0 && this.taskRetryer.getWaitingNumber() == 0
+				&& (this.asyncDealer == null || this.asyncDealer.getInFlightNumber() == 0);
+	}
+
+	/**
+	 * 最后一个线程处理完所有任务后才重新加载任务项，这时已经没有处理中的任务，不需要按任务项区分
+	 */
+	public Set<String> getDealingTaskItems() {
+		return this.isDealFinishAllData() == true ? new HashSet<String>() : null;
 	}
 	
 	public boolean isSleeping(){
@@ -138,40 +275,73 @@ public class TBScheduleProcessorSleep<T> implements IScheduleProcessor,Runnable
     }
 	protected int loadScheduleData() {
 		try {
-           //ÿݴϺ߹̶ʱ
+           //在每次数据处理完毕后休眠固定的时间
 			if (this.taskTypeInfo.getSleepTimeInterval() > 0) {
 				if(logger.isTraceEnabled()){
-					logger.trace("һݺߣ" + this.taskTypeInfo.getSleepTimeInterval());
+					logger.trace("处理完一批数据后休眠：" + this.taskTypeInfo.getSleepTimeInterval());
 				}
 				this.isSleeping = true;
 			    Thread.sleep(taskTypeInfo.getSleepTimeInterval());
 			    this.isSleeping = false;
 			    
 				if(logger.isTraceEnabled()){
-					logger.trace("һݺߺָ");
+					logger.trace("处理完一批数据后休眠后恢复");
 				}
 			}
 			
 			List<TaskItemDefine> taskItems = this.scheduleManager.getCurrentScheduleTaskItemList();
-			// ݶϢѯҪȵݣȻӵб
+			//本次放入队列的任务数量
+			int count = 0;
+			// 根据队列信息查询需要调度的数据，然后增加到任务列表中
 			if (taskItems.size() > 0) {
-				//beanжĸҪ
-				List<T> tmpList = this.taskDealBean.selectTasks(
-						taskTypeInfo.getTaskParameter(),
-						scheduleManager.getScheduleServer().getOwnSign(),
-						this.scheduleManager.getTaskItemCount(), taskItems,
-						taskTypeInfo.getFetchDataNumber());
-				scheduleManager.getScheduleServer().setLastFetchDataTime(new Timestamp(ScheduleUtil.getCurrentTimeMillis()));
-				if(tmpList != null){
-				   this.taskList.addAll(tmpList);
+				this.taskList.setTaskItems(taskItems);
+				//交给处理类bean判断哪个任务是需要处理的
+				int fetchDataNumber = this.scheduleManager.getFetchNumberTuner().getFetchDataNumber();
+				long fetchStartTime = ScheduleUtil.getCurrentTimeMillis();
+				Object traceEvent = ScheduleFlightRecorder.begin(ScheduleFlightRecorder.SELECT_TASKS);
+				if (this.streamCollector != null) {
+					//边读取边放入队列，被唤醒的线程同时开始处理
+					int fetchNum = this.streamCollector.fetch(taskTypeInfo.getTaskParameter(),
+							scheduleManager.getScheduleServer().getOwnSign(),
+							this.scheduleManager.getTaskItemCount(), taskItems, fetchDataNumber);
+					if (traceEvent != null) {
+						ScheduleFlightRecorder.commit(traceEvent, scheduleManager.getScheduleServer().getTaskType(), taskItems.size(), fetchDataNumber, fetchNum);
+					}
+					count = this.streamCollector.getOfferNumber();
+					scheduleManager.getScheduleServer().setLastFetchDataTime(new Timestamp(ScheduleUtil.getCurrentTimeMillis()));
+					//其它线程都在等待本线程取数，不算没有数据的空闲线程，只按耗时调整取数量
+					this.scheduleManager.getFetchNumberTuner().addFetchResult(fetchDataNumber, fetchNum,
+							ScheduleUtil.getCurrentTimeMillis() - fetchStartTime, 0, this.scheduleManager.getThreadNumber());
+				} else {
+					List<T> tmpList = this.taskDealBean.selectTasks(
+							taskTypeInfo.getTaskParameter(),
+							scheduleManager.getScheduleServer().getOwnSign(),
+							this.scheduleManager.getTaskItemCount(), taskItems,
+							fetchDataNumber);
+					if (traceEvent != null) {
+						ScheduleFlightRecorder.commit(traceEvent, scheduleManager.getScheduleServer().getTaskType(), taskItems.size(), fetchDataNumber,
+								tmpList == null ? 0 : tmpList.size());
+					}
+					scheduleManager.getScheduleServer().setLastFetchDataTime(new Timestamp(ScheduleUtil.getCurrentTimeMillis()));
+					this.scheduleManager.getFetchNumberTuner().addFetchResult(fetchDataNumber, tmpList == null ? 0 : tmpList.size(),
+							ScheduleUtil.getCurrentTimeMillis() - fetchStartTime, 0, this.scheduleManager.getThreadNumber());
+					if(tmpList != null){
+					   count = this.taskList.offerAll(tmpList);
+					   if (this.statisticsInfo.getTaskItemStatistics() != null) {
+						   this.statisticsInfo.getTaskItemStatistics().addFetch(tmpList, count);
+					   }
+					   if(count < tmpList.size()){
+						   logger.warn("取到的数据量" + tmpList.size() + "超过了任务队列容量" + this.taskList.capacity() + "，多余的数据等待下次获取");
+					   }
+					}
 				}
 			} else {
 				if(logger.isTraceEnabled()){
-					   logger.trace("ûлȡҪݶ");
+					   logger.trace("没有获取到需要处理的数据队列");
 				}
 			}
-			addFetchNum(taskList.size(),"TBScheduleProcessor.loadScheduleData");
-			return this.taskList.size();
+			addFetchNum(count,"TBScheduleProcessor.loadScheduleData");
+			return count;
 		} catch (Throwable ex) {
 			logger.error("Get tasks error.", ex);
 		}
@@ -186,122 +356,189 @@ public class TBScheduleProcessorSleep<T> implements IScheduleProcessor,Runnable
 	          this.m_lockObject.addThread();
 	          Object executeTask;
 	          while (true) {
-	            if(this.isStopSchedule == true){//ֹͣе
+	            if(this.isStopSchedule == true && this.isDrainFinish() == true){//停止队列调度
 	              this.m_lockObject.realseThread();
-	              this.m_lockObject.notifyOtherThread();//֪ͨе߳
+	              this.m_lockObject.notifyOtherThread();//通知所有的休眠线程
 				  this.threadList.remove(Thread.currentThread());
 				  if(this.threadList.size()==0){
-						this.scheduleManager.unRegisterScheduleServer();
+						if(this.asyncDealer != null){
+							this.asyncDealer.waitAllFinish();
+						}
+						this.scheduleManager.unRegisterScheduleServer(this);
 				  }
 
 				  return;
 	            }
+	            if(this.isRetireThread() == true){//线程数量减少，当前线程退出
+	              this.m_lockObject.realseThread();
+	              this.m_lockObject.notifyOtherThread();
+	              return;
+	            }
 	            
-	            //ص
+	            //加载调度任务
 	            if(this.isMutilTask == false){
-					//ȡһ
+					//取一个任务
 	              executeTask = this.getScheduleTaskId();
 	            }else{
-					//ȡһ
+					//按照配置取一定数量的任务
 	              executeTask = this.getScheduleTaskIdMulti();
 	            }
 	            if(executeTask == null){
 	              break;
 	            }
+	            //集群限流，批处理时按任务数量获取令牌
+	            try {
+	              this.scheduleManager.acquireExecutePermit(this.isMutilTask == false ? 1 : ((Object[]) executeTask).length);
+	            } catch (InterruptedException ex) {
+	              //任务还没有处理，停止调度时丢弃，否则放回队列，回到循环开始
+	              this.returnTask(executeTask);
+	              continue;
+	            }
+	            if(this.asyncDealer != null){
+	              //异步处理，不等待处理完成
+	              this.asyncDealer.execute(executeTask,scheduleManager.getScheduleServer().getOwnSign(),null);
+	              continue;
+	            }
 	            
+	            Object traceEvent = ScheduleFlightRecorder.begin(ScheduleFlightRecorder.EXECUTE);
+	            boolean isSuccess = false;
+	            ScheduleExecuteWatchdog.ExecuteRecord watchRecord = this.executeWatchdog == null ? null
+	            		: this.executeWatchdog.begin(executeTask, this.isMutilTask == false ? 1 : ((Object[]) executeTask).length);
 	            try {
-	            //صĳ
+	            //运行相关的程序
 	              startTime =ScheduleUtil.getCurrentTimeMillis();
 	              if (this.isMutilTask == false) {
-					  //ִм̳IScheduleTaskDealSingleexcute
-					  //ִзʽΪɹʧ ͨbolean
+					  //执行继承IScheduleTaskDealSingle对象中excute方法
+					  //任务的执行方式为成功失败 通过bolean返回
 						if (((IScheduleTaskDealSingle) this.taskDealBean).execute(executeTask,scheduleManager.getScheduleServer().getOwnSign()) == true) {
-							//ͳʱ䣬ͳɹ
-							addSuccessNum(1, ScheduleUtil.getCurrentTimeMillis()
+							//统计任务运行时间，和成功次数
+							addSuccessNum(executeTask, ScheduleUtil.getCurrentTimeMillis()
 									- startTime,
 									"com.taobao.pamirs.schedule.TBScheduleProcessorSleep.run");
+							isSuccess = true;
+							this.taskRetryer.finish(executeTask);
 						} else {
-							addFailNum(1, ScheduleUtil.getCurrentTimeMillis()
+							addFailNum(executeTask, ScheduleUtil.getCurrentTimeMillis()
 									- startTime,
 									"com.taobao.pamirs.schedule.TBScheduleProcessorSleep.run");
+							this.taskRetryer.retry(executeTask);
 						}
+					} else if (this.isMultiResult == true) {
+						//按每个任务的处理结果统计，失败的任务重新放入队列
+						BitSet result = ((IScheduleTaskDealMultiResult<Object>) this.taskDealBean).execute(
+								(Object[]) executeTask, scheduleManager.getScheduleServer().getOwnSign());
+						isSuccess = result != null && result.cardinality() == ((Object[]) executeTask).length;
+						this.taskRetryer.dealMultiResult((Object[]) executeTask, result,
+								ScheduleUtil.getCurrentTimeMillis() - startTime);
 					} else {
 						if (((IScheduleTaskDealMulti) this.taskDealBean)
 								.execute((Object[]) executeTask,scheduleManager.getScheduleServer().getOwnSign()) == true) {
-							addSuccessNum(((Object[]) executeTask).length, ScheduleUtil
+							addSuccessNum(executeTask, ScheduleUtil
 									.getCurrentTimeMillis()
 									- startTime,
 									"com.taobao.pamirs.schedule.TBScheduleProcessorSleep.run");
+							isSuccess = true;
+							this.taskRetryer.finishAll((Object[]) executeTask);
 						} else {
-							addFailNum(((Object[]) executeTask).length, ScheduleUtil
+							addFailNum(executeTask, ScheduleUtil
 									.getCurrentTimeMillis()
 									- startTime,
 									"com.taobao.pamirs.schedule.TBScheduleProcessorSleep.run");
+							this.taskRetryer.retryAll((Object[]) executeTask);
 						}
 					} 
 	            }catch (Throwable ex) {
 					if (this.isMutilTask == false) {
-						addFailNum(1, ScheduleUtil.getCurrentTimeMillis() - startTime,
+						addFailNum(executeTask, ScheduleUtil.getCurrentTimeMillis() - startTime,
 								"TBScheduleProcessor.run");
+						this.taskRetryer.retry(executeTask);
+					} else if (this.isMultiResult == true) {
+						this.taskRetryer.dealMultiResult((Object[]) executeTask, null,
+								ScheduleUtil.getCurrentTimeMillis() - startTime);
 					} else {
-						addFailNum(((Object[]) executeTask).length, ScheduleUtil
+						addFailNum(executeTask, ScheduleUtil
 								.getCurrentTimeMillis()
 								- startTime,
 								"TBScheduleProcessor.run");
+						this.taskRetryer.retryAll((Object[]) executeTask);
 					}
-					logger.warn("Task :" + executeTask + " ʧ", ex);				
+					logger.warn("Task :" + executeTask + " 处理失败", ex);				
+	            }
+	            if (watchRecord != null) {
+	            	this.executeWatchdog.end(watchRecord);
+	            }
+	            if (traceEvent != null) {
+	            	ScheduleFlightRecorder.commit(traceEvent, scheduleManager.getScheduleServer().getTaskType(),
+	            			this.isMutilTask == false ? 1 : ((Object[]) executeTask).length, isSuccess);
 	            }
 	          }
-	          //ǰеѾˡ
+	          //当前队列中所有的任务都已经完成了。
 	            if(logger.isTraceEnabled()){
-				   logger.trace(Thread.currentThread().getName() +"ǰ߳:" +this.m_lockObject.count());
+				   logger.trace(Thread.currentThread().getName() +"：当前运行线程数量:" +this.m_lockObject.count());
 			    }
-				//Ƿߣһ̲߳ߣ
-				//ʹm_lockObject
+				//是否可以休眠（最后一个线程不能休眠）
+				//使用m_lockObject休眠
 				if (this.m_lockObject.realseThreadButNotLast() == false)
-				//һ߳
+				//我是最后一个线程了
 				{
 					int size = 0;
 					Thread.currentThread().sleep(100);
-					//˯һ
+					//睡一会
 					startTime = ScheduleUtil.getCurrentTimeMillis();
-					// //ÿݴϺ߹̶ʱ䣬¼
-					size = this.loadScheduleData();
+					// //在每次数据处理完毕后休眠固定的时间，并重新加载任务
+					//异步处理时，等待处理中的任务全部完成后再取数，避免重复
+					if(this.asyncDealer != null){
+						this.asyncDealer.waitAllFinish();
+					}
+					//有等待重试的任务时，等它们放回队列后继续处理，不取新数据，避免重复
+					if(this.isStopSchedule == true || this.taskList.size() > 0){
+						//停止调度后不再取数，队列中剩余的任务由其它线程处理；
+						//任务项绑定线程时，队列中还有其它线程的任务，唤醒它们处理完再取数
+						size = this.taskList.size();
+					}else if(this.taskRetryer.waitRetrying() == true){
+						size = this.taskList.size();
+					}else{
+						size = this.loadScheduleData();
+					}
 					if (size > 0) {
-						//ȡ񣬻ọ̈̄߳ʼ
+						this.idleWaiter.reset();
+						//取到任务，唤醒其他全部线程，开始抢任务
 						this.m_lockObject.notifyOtherThread();
 					} else {
-						//ûȡ׼˯
-						//жϵûݵǷǷҪ˳
+						//没有取到任务，准备睡眠
+						//判断当没有数据的是否，是否需要退出调度
 						if (this.isStopSchedule == false && this.scheduleManager.isContinueWhenData()== true ){						 
 							if(logger.isTraceEnabled()){
-								   logger.trace("ûװصݣstart sleep");
+								   logger.trace("没有装载到数据，start sleep");
 							}
 							this.isSleeping = true;
-							//˯
-						    Thread.currentThread().sleep(this.scheduleManager.getTaskTypeInfo().getSleepTimeNoData());
+							//睡眠
+						    //连续没有数据时休眠时间逐步加长，wakeUp时提前结束
+						    this.idleWaiter.sleepNoData();
 						    this.isSleeping = false;
 						    
 						    if(logger.isTraceEnabled()){
 								   logger.trace("Sleep end");
 							}
 						}else{
-							//ûݣ˳ȣг˯̣̱߳߳ѺҲƳ
+							//没有数据，退出调度，唤醒所有沉睡线程，其他线程被唤醒后，也将被推出，
 							this.m_lockObject.notifyOtherThread();
 						}
 					}
 					this.m_lockObject.realseThread();
-				} else {// ǰ̷߳õȴСֱһ߳Լһ̸߳ȡ
+				} else {// 将当前线程放置到等待队列中。直到最后一个线程完成了自己的任务，最后一个线程负责重新取任务
 					if(logger.isTraceEnabled()){
-						   logger.trace("һ̣߳sleep");
+						   logger.trace("不是最后一个线程，sleep");
 					}
-					//ԱthreadͨnotifyAll
+					//可以被其他thread通过notifyAll唤醒
 					this.m_lockObject.waitCurrentThread();
 				}
 	        }
 	      }
 	      catch (Throwable e) {
 	    	  logger.error(e.getMessage(), e);
+	      } finally {
+	    	  this.threadList.remove(Thread.currentThread());
 	      }
 	    }
 
@@ -311,13 +548,39 @@ public class TBScheduleProcessorSleep<T> implements IScheduleProcessor,Runnable
         this.statisticsInfo.addFetchDataNum(num);
 	}
 
-	public void addSuccessNum(long num, long spendTime, String addr) {
+	public void addSuccessNum(Object executeTask, long spendTime, String addr) {
+        long num = this.isMutilTask == false ? 1 : ((Object[]) executeTask).length;
         this.statisticsInfo.addDealDataSucess(num);
-        this.statisticsInfo.addDealSpendTime(spendTime);
+        this.statisticsInfo.addExecute(num, spendTime);
+        if (this.statisticsInfo.getTaskItemStatistics() != null) {
+        	this.statisticsInfo.getTaskItemStatistics().addExecute(executeTask, this.isMutilTask, true, spendTime);
+        }
+	}
+
+	/**
+	 * 等待执行许可时被中断的任务还没有处理：停止调度时丢弃，不按失败统计；否则放回队列，放不下的按失败统计
+	 */
+	@SuppressWarnings("unchecked")
+	private void returnTask(Object task) {
+		if (this.isStopSchedule == true) {
+			return;
+		}
+		Object[] tasks = this.isMutilTask == false ? new Object[] { task } : (Object[]) task;
+		for (int i = 0; i < tasks.length; i++) {
+			if (this.taskList.offer((T) tasks[i]) == false) {
+				this.statisticsInfo.addDealDataFail(tasks.length - i);
+				logger.warn("任务队列已满，" + (tasks.length - i) + "个等待执行许可时被中断的任务没有放回，等待下次获取");
+				return;
+			}
+		}
 	}
 
-	public void addFailNum(long num, long spendTime, String addr) {
+	public void addFailNum(Object executeTask, long spendTime, String addr) {
+      long num = this.isMutilTask == false ? 1 : ((Object[]) executeTask).length;
       this.statisticsInfo.addDealDataFail(num);
-      this.statisticsInfo.addDealSpendTime(spendTime);
+      this.statisticsInfo.addExecute(num, spendTime);
+      if (this.statisticsInfo.getTaskItemStatistics() != null) {
+      	this.statisticsInfo.getTaskItemStatistics().addExecute(executeTask, this.isMutilTask, false, spendTime);
+      }
 	}
 }
@@ -1,17 +1,17 @@
 package com.taobao.pamirs.schedule;
 
 /**
- * 壬ṩؼϢʹ
+ * 任务定义，提供关键信息给使用者
  * @author xuannan
  *
  */
 public class TaskItemDefine {
 	/**
-	 * ID
+	 * 任务项ID
 	 */
 	private String taskItemId;
 	/**
-	 * Զ
+	 * 任务项自定义参数
 	 */
 	private String parameter;
 	
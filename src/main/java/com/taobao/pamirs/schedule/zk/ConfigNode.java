@@ -1,7 +1,7 @@
 package com.taobao.pamirs.schedule.zk;
 
 /**
- * Ϣ
+ * 配置信息
  * 
  * @author gjavac@gmail.com
  * @since 2012-2-12
@@ -61,10 +61,10 @@ public class ConfigNode {
 
 	public String toString() {
 		StringBuffer buffer = new StringBuffer();
-		buffer.append("øĿ¼").append(rootPath).append("\n");
-		buffer.append("ͣ").append(configType).append("\n");
-		buffer.append("ƣ").append(name).append("\n");
-		buffer.append("õֵ").append(value).append("\n");
+		buffer.append("配置根目录：").append(rootPath).append("\n");
+		buffer.append("配置类型：").append(configType).append("\n");
+		buffer.append("任务名称：").append(name).append("\n");
+		buffer.append("配置的值：").append(value).append("\n");
 		return buffer.toString();
 	}
 }
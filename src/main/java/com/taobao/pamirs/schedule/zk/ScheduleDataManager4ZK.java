@@ -9,6 +9,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -16,6 +17,7 @@ import java.util.regex.Pattern;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.ZooKeeper;
 import org.apache.zookeeper.data.Stat;
 
@@ -44,6 +46,7 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 	private String PATH_BaseTaskType;
 	private String PATH_TaskItem = "taskItem";
 	private String PATH_Server = "server";
+	private String PATH_Signal = "signal";
     public ScheduleDataManager4ZK(ZKManager aZkManager) throws Exception {
     	this.zkManager = aZkManager;
     	gson = new GsonBuilder().registerTypeAdapter(Timestamp.class,new TimestampTypeAdapter()).setDateFormat("yyyy-MM-dd HH:mm:ss").create();
@@ -61,21 +64,21 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 
 	public void createBaseTaskType(ScheduleTaskType baseTaskType) throws Exception {
 		if(baseTaskType.getBaseTaskType().indexOf("$") > 0){
-			throw new Exception("" + baseTaskType.getBaseTaskType() +"Ʋַܰ $");
+			throw new Exception("调度任务" + baseTaskType.getBaseTaskType() +"名称不能包括特殊字符 $");
 		}
 		String zkPath =	this.PATH_BaseTaskType + "/"+ baseTaskType.getBaseTaskType();
 		String valueString = this.gson.toJson(baseTaskType);
 		if ( this.getZooKeeper().exists(zkPath, false) == null) {
 			this.getZooKeeper().create(zkPath, valueString.getBytes(), this.zkManager.getAcl(),CreateMode.PERSISTENT);
 		} else {
-			throw new Exception("" + baseTaskType.getBaseTaskType() + "Ѿ,ȷҪؽȵdeleteTaskType(String baseTaskType)ɾ");
+			throw new Exception("调度任务" + baseTaskType.getBaseTaskType() + "已经存在,如果确认需要重建，请先调用deleteTaskType(String baseTaskType)删除");
 		}
 	}
 
 	public void updateBaseTaskType(ScheduleTaskType baseTaskType)
 			throws Exception {
 		if(baseTaskType.getBaseTaskType().indexOf("$") > 0){
-			throw new Exception("" + baseTaskType.getBaseTaskType() +"Ʋַܰ $");
+			throw new Exception("调度任务" + baseTaskType.getBaseTaskType() +"名称不能包括特殊字符 $");
 		}
 		String zkPath =	this.PATH_BaseTaskType + "/"+ baseTaskType.getBaseTaskType();
 		String valueString = this.gson.toJson(baseTaskType);
@@ -90,7 +93,7 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 
 	public void initialRunningInfo4Dynamic(String baseTaskType, String ownSign)throws Exception {
 		 String taskType = TBScheduleManager.getTaskTypeByBaseAndOwnSign(baseTaskType, ownSign);
-		 //еϢֻleaderִд˲
+		 //清除所有的老信息，只有leader能执行此操作
 		 String zkPath = this.PATH_BaseTaskType+"/"+ baseTaskType +"/" + taskType;
 		 if(this.getZooKeeper().exists(zkPath, false) == null){
 			 this.getZooKeeper().create(zkPath,null, this.zkManager.getAcl(),CreateMode.PERSISTENT);
@@ -98,7 +101,7 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 	}
 
 	/**
-	 * һεʱĿ¼µȫɵ
+	 * 第一次调用时，将目录下的内容全部干掉
 	 * @param baseTaskType
 	 * @param ownSign
 	 * @param uuid
@@ -108,14 +111,14 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 			throws Exception {
 		  
 		 String taskType = TBScheduleManager.getTaskTypeByBaseAndOwnSign(baseTaskType, ownSign);
-		 //еϢֻleaderִд˲
+		 //清除所有的老信息，只有leader能执行此操作
 		 String zkPath = this.PATH_BaseTaskType+"/"+ baseTaskType +"/" + taskType+"/" + this.PATH_TaskItem;
 		 ZKTools.deleteTree(this.getZooKeeper(),zkPath);
-		 //Ŀ¼
+		 //创建目录
 		 this.getZooKeeper().create(zkPath,null, this.zkManager.getAcl(),CreateMode.PERSISTENT);
-		 //̬
+		 //创建静态任务
 		 this.createScheduleTaskItem(baseTaskType, ownSign,this.loadTaskTypeBaseInfo(baseTaskType).getTaskItems());
-		 //Ϣʼɹ
+		 //标记信息初始化成功
 		 setInitialRunningInfoSucuss(baseTaskType,taskType,uuid);
 	}
 	
@@ -151,9 +154,33 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 		Stat stat = new Stat();
 		this.getZooKeeper().getData(zkPath, false, stat);
     	return stat.getVersion();
+    }
+    public long updateWakeUpSignal(String taskType) throws Exception{
+    	String baseTaskType = TBScheduleManager.splitBaseTaskTypeFromTaskType(taskType);
+		String zkPath = this.PATH_BaseTaskType + "/" + baseTaskType 
+		        + "/" + taskType + "/" + this.PATH_Signal;
+		if(this.getZooKeeper().exists(zkPath, false) == null){
+			try{
+				ZKTools.createPath(getZooKeeper(),zkPath, CreateMode.PERSISTENT, this.zkManager.getAcl());
+			}catch(KeeperException.NodeExistsException e){
+				//其它服务器同时创建了信号节点
+			}
+		}
+		Stat stat = this.getZooKeeper().setData(zkPath,("wakeUp=" + ScheduleUtil.getLocalIP()).getBytes(),-1);
+		return stat.getVersion();
+    }
+    public long getWakeUpSignal(String taskType) throws Exception{
+    	String baseTaskType = TBScheduleManager.splitBaseTaskTypeFromTaskType(taskType);
+		String zkPath = this.PATH_BaseTaskType + "/" + baseTaskType 
+		        + "/" + taskType + "/" + this.PATH_Signal;
+		Stat stat = this.getZooKeeper().exists(zkPath, false);
+		if(stat == null){
+			return -1;
+		}
+    	return stat.getVersion();
     }
 	/**
-	 * ݻ
+	 * 根据基础配置里面的任务项来创建各个域里面的任务项
 	 * @param baseTaskType
 	 * @param ownSign
 	 * @param baseTaskItems
@@ -180,7 +207,7 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 		createScheduleTaskItem(taskItems);
 	}	
 	/**
-	 * עе CurrentSeverRequestServer
+	 * 创建任务项，注意其中的 CurrentSever和RequestServer不会起作用
 	 * @param taskItems
 	 * @throws Exception
 	 */
@@ -196,7 +223,7 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 		   this.getZooKeeper().create(zkTaskItemPath + "/req_server",null, this.zkManager.getAcl(),CreateMode.PERSISTENT);
 		   this.getZooKeeper().create(zkTaskItemPath + "/sts",taskItem.getSts().toString().getBytes(), this.zkManager.getAcl(),CreateMode.PERSISTENT);
 		   this.getZooKeeper().create(zkTaskItemPath + "/parameter",taskItem.getDealParameter().getBytes(), this.zkManager.getAcl(),CreateMode.PERSISTENT);
-		   this.getZooKeeper().create(zkTaskItemPath + "/deal_desc",taskItem.getDealDesc().getBytes(), this.  .getAcl(),CreateMode.PERSISTENT);
+		   this.getZooKeeper().create(zkTaskItemPath + "/deal_desc",taskItem.getDealDesc().getBytes(), this.zkManager.getAcl(),CreateMode.PERSISTENT);
 		}
 	}
 	
@@ -215,7 +242,24 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 	}
 
 	/**
-	 * ɾ
+	 * 处理统计写入任务项下的deal_stat节点，和deal_desc并列，第一次写入时创建
+	 */
+	public void updateScheduleTaskItemStatistics(String taskType,String taskItem,String statistics) throws Exception{
+		String baseTaskType = TBScheduleManager.splitBaseTaskTypeFromTaskType(taskType);
+		String zkPath = this.PATH_BaseTaskType + "/" + baseTaskType + "/" + taskType +"/" + this.PATH_TaskItem +"/" + taskItem;
+		if(this.getZooKeeper().exists(zkPath +"/deal_stat", false) != null){
+			this.getZooKeeper().setData(zkPath +"/deal_stat",statistics.getBytes(), -1);
+		}else if(this.getZooKeeper().exists(zkPath, false) != null){
+			try{
+				this.getZooKeeper().create(zkPath +"/deal_stat",statistics.getBytes(), this.zkManager.getAcl(),CreateMode.PERSISTENT);
+			}catch(KeeperException.NodeExistsException e){
+				this.getZooKeeper().setData(zkPath +"/deal_stat",statistics.getBytes(), -1);
+			}
+		}
+	}
+
+	/**
+	 * 删除任务项
 	 * @param taskType
 	 * @param taskItem
 	 * @throws Exception 
@@ -225,10 +269,10 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 		String zkPath = this.PATH_BaseTaskType + "/" + baseTaskType + "/" + taskType +"/" + this.PATH_TaskItem +"/" + taskItem;
 		ZKTools.deleteTree(this.getZooKeeper(), zkPath);
 	}
-	//zookeeperеݽԤתScheduleTaskItem
+	//将zookeeper中的数据进行预处理，转换成ScheduleTaskItem队列
 
 	/**
-	 * Ϣʵstringķʽ/Ŀ¼µļ
+	 * 任务信息实际上是以string的方式保存在任务基本类型/任务类型目录下的文件
 	 * @param taskType
 	 * @return
 	 * @throws Exception
@@ -267,6 +311,12 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 			if(dealDescContent != null){
 			    info.setDealDesc(new String(dealDescContent));
 			}
+			if(this.getZooKeeper().exists(zkTaskItemPath+"/deal_stat", false) != null){
+				byte[] dealStatContent = this.getZooKeeper().getData(zkTaskItemPath+"/deal_stat",false,null);
+				if(dealStatContent != null){
+				    info.setDealStat(new String(dealStatContent));
+				}
+			}
 			result.add(info);
 		}
 		return result;
@@ -295,7 +345,7 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 
 	@Override
 	public void clearTaskType(String baseTaskType) throws Exception {
-		//еRuntime TaskType		
+		//清除所有的Runtime TaskType		
 		String zkPath =this.PATH_BaseTaskType+"/" + baseTaskType; 
 		List<String> list = this.getZooKeeper().getChildren(zkPath,false);
 		for (String name : list) {
@@ -366,7 +416,7 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 			}
 		}
 		Collections.sort(result,new ScheduleServerComparator(orderStr));
-		//
+		//排序
 		return result;
 	}
 
@@ -374,12 +424,12 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 	public List<ScheduleServer> selectHistoryScheduleServer(
 			String baseTaskType, String ownSign, String ip, String orderStr)
 			throws Exception {
-		throw new Exception("ûʵֵķ");
+		throw new Exception("没有实现的方法");
 	}
 
 	@Override
 	/**
-	 * managerװ
+	 * 供manager调用重新装载任务
 	 */
 	public List<TaskItemDefine> reloadDealTaskItem(String taskType, String uuid)
 			throws Exception {
@@ -391,10 +441,10 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 		 
 		 List<TaskItemDefine> result = new ArrayList<TaskItemDefine>();
 		 for(String name:taskItems){
-			 //Zk+name Ŀ¼жԸĿ¼Ŀǰmanagerζеmanagerȵ
-			 //ǰĸserver
+			 //Zk+name 就是任务队列名，任务队列名目录下有对个子目录：目前分配的manager，请求次队列的manager等等
+			 //当前任务分配给哪个server了
 			byte[] value = this.getZooKeeper().getData(zkPath + "/" + name + "/cur_server",false,null);
-			 //ǷǰManager
+			 //这个任务是否分配给当前的Manager
 			if(value != null && uuid.equals(new String(value))){
 				TaskItemDefine item = new TaskItemDefine();
 				item.setTaskItemId(name);
@@ -408,7 +458,7 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 		 return result;
 	}
 	/**
-	 * ͷԼѳ֣Ķ
+	 * 释放自己把持，别人申请的队列
 	 *
 	 * @param taskType
 	 * @param uuid
@@ -416,23 +466,35 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 	 * @throws Exception
 	 */
 	@Override
-	//ķͷŶвtaskType͵ServerҪ¼
+	//如果真的发生了释放队列操作，负责taskType类型的所有Server需要重新加载任务
 	public void releaseDealTaskItem(String taskType, String uuid) throws Exception {
+		this.releaseDealTaskItem(taskType, uuid, null);
+	}
+
+	@Override
+	public List<String> releaseDealTaskItem(String taskType, String uuid, Set<String> dealingTaskItems) throws Exception {
 		 String baseTaskType = TBScheduleManager.splitBaseTaskTypeFromTaskType(taskType);
 		 String zkPath = this.PATH_BaseTaskType + "/" + baseTaskType + "/" + taskType + "/" + this.PATH_TaskItem;
 		 boolean isModify = false;
+		 List<String> holdTaskItems = new ArrayList<String>();
 		 for(String name:this.getZooKeeper().getChildren(zkPath, false)){
 			byte[] curServerValue = this.getZooKeeper().getData(zkPath + "/" + name + "/cur_server",false,null);
 			byte[] reqServerValue = this.getZooKeeper().getData(zkPath + "/" + name + "/req_server",false,null);
 			if(reqServerValue != null && curServerValue != null && uuid.equals(new String(curServerValue))==true){
+				if(dealingTaskItems != null && dealingTaskItems.contains(name)){
+					//还有任务在处理中，处理完后再释放
+					holdTaskItems.add(name);
+					continue;
+				}
 				this.getZooKeeper().setData(zkPath + "/" + name + "/cur_server",reqServerValue,-1);
 				this.getZooKeeper().setData(zkPath + "/" + name + "/req_server",null,-1);		
 				isModify = true;
 			}
 		 }
-		 if(isModify == true){ //Ҫеķװ
+		 if(isModify == true){ //设置需要所有的服务器重新装载任务
 			 this.updateReloadTaskItemFlag(taskType);
 		 }
+		 return holdTaskItems;
 	}
 
 	@Override
@@ -450,9 +512,9 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 		}
 	}
 	@Override
-	//ڵzookeeperĿ¼·䡣беserver
-	// serverԼԼĶУָעԼ֪ͨserver
-	//leader¸·
+	//将过期的任务从zookeeper目录中清除，所以任务重新分配。不会继续分配任务给不在列表中的server，
+	// 死掉的server自己清理自己的队列，恢复后重新注册自己，通知新增server
+	//leader在下个心跳周期重新分配任务
 	public int clearExpireScheduleServer(String taskType,long expireTime) throws Exception {
 		 int result =0;
 		 String baseTaskType = TBScheduleManager.splitBaseTaskTypeFromTaskType(taskType);
@@ -467,16 +529,16 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 		 }
 		for (String name : this.getZooKeeper().getChildren(zkPath, false)) {
 			try {
-				//Ƚʱ
+				//比较心跳过期时间
 				Stat stat = this.getZooKeeper().exists(zkPath + "/" + name,false);
-				//server
+				//server死亡
 				if (getSystemTime() - stat.getMtime() > expireTime) {
 					ZKTools.deleteTree(this.getZooKeeper(), zkPath + "/" + name);
 					result++;
 
 				}
 			} catch (Exception e) {
-				// ж̨ʱڲĿܣ쳣
+				// 当有多台服务器时，存在并发清理的可能，忽略异常
 				result++;
 			}
 		}
@@ -511,7 +573,7 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 		 }
 		 return result;
 	}
-	//ҿԴĳ͵server(û)
+	//查找可以处理某种任务类型的server(没考虑心跳)
 	public List<String> loadScheduleServerNames(String taskType)throws Exception{
 		 String baseTaskType = TBScheduleManager.splitBaseTaskTypeFromTaskType(taskType);
 		 String zkPath = this.PATH_BaseTaskType + "/" + baseTaskType + "/" + taskType + "/" + this.PATH_Server;
@@ -587,7 +649,7 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 			});
 		return result;
 	}	
-	//ѡleader server
+	//选举leader server
 	public String getLeader(List<String> serverList){
 		if(serverList == null || serverList.size() ==0){
 			return "";
@@ -596,7 +658,7 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 		long tmpNo = -1;
 		String leader = null;
     	for(String server:serverList){
-			//server ӦXXXXXX$131231231312313,ѡΪleader
+			//server 名称组成应该是XXXXXX$131231231312313,选择数字最大的作为leader
     		tmpNo =Long.parseLong( server.substring(server.lastIndexOf("$")+1));
     		if(no > tmpNo){
     			no = tmpNo;
@@ -613,15 +675,15 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 			List<String> serverList) throws Exception {
 		 if(this.isLeader(currentUuid,serverList)==false){
 			 if(log.isDebugEnabled()){
-			   log.debug(currentUuid +":ǸLeader,ֱӷ");
+			   log.debug(currentUuid +":不是负责任务分配的Leader,直接返回");
 			 }
 			 return;
 		 }
 		 if(log.isDebugEnabled()){
-			   log.debug(currentUuid +":ʼ·......");
+			   log.debug(currentUuid +":开始重新分配任务......");
 		 }		
 		 if(serverList.size()<=0){
-			 //ڷ̬ʱ򣬿ַܳбΪյ
+			 //在服务器动态调整的时候，可能出现服务器列表为空的清空
 			 return;
 		 }
 		 String baseTaskType = TBScheduleManager.splitBaseTaskTypeFromTaskType(taskType);
@@ -637,16 +699,16 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 				this.getZooKeeper().setData(zkPath + "/" + name + "/cur_server",serverList.get(point).getBytes(),-1);
 				this.getZooKeeper().setData(zkPath + "/" + name + "/req_server",null,-1);
 			}else if(new String(curServerValue).equals(serverList.get(point))==true && reqServerValue == null ){
-				//Ҫκ
+				//不需要做任何事情
 				unModifyCount = unModifyCount + 1;
 			}else{
 				this.getZooKeeper().setData(zkPath + "/" + name + "/req_server",serverList.get(point).getBytes(),-1);
 			}
-			 //߼ƽlistеÿserverͷλķ
+			 //分配任务的逻辑，平均分配给list中的每个server从头到位的分配任务
 			point = (point  + 1) % serverList.size();
 		 }	
-		 //йط䣬ȫserver¸ʱȡ
-		 if(unModifyCount < children.size()){ //Ҫеķװ
+		 //有过任务重分配，则全部server在下个心跳时，重新拉取任务
+		 if(unModifyCount < children.size()){ //设置需要所有的服务器重新装载任务
 			 this.updateReloadTaskItemFlag(taskType);
 		 }
 		 if(log.isDebugEnabled()){
@@ -659,7 +721,7 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 	}
 	public void registerScheduleServer(ScheduleServer server) throws Exception {
 		if(server.isRegister() == true){
-			throw new Exception(server.getUuid() + " ظע");
+			throw new Exception(server.getUuid() + " 被重复注册");
 		}
 		String zkPath = this.PATH_BaseTaskType + "/" + server.getBaseTaskType() +"/" + server.getTaskType();
 		if (this.getZooKeeper().exists(zkPath, false) == null) {
@@ -670,7 +732,7 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 			this.getZooKeeper().create(zkPath, null, this.zkManager.getAcl(),CreateMode.PERSISTENT);
 		}
 		String realPath = null;
-		//˴UUIDΪΨһԱ
+		//此处必须增加UUID作为唯一性保障
 		String zkServerPath = zkPath + "/" + server.getTaskType() + "$"+ server.getIp() + "$"
 				+ (UUID.randomUUID().toString().replaceAll("-", "").toUpperCase())+"$";
 		realPath = this.getZooKeeper().create(zkServerPath, null, this.zkManager.getAcl(),CreateMode.PERSISTENT_SEQUENTIAL);
@@ -683,14 +745,14 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
 		this.getZooKeeper().setData(realPath,valueString.getBytes(),-1);
 		server.setRegister(true);
 	}
-	//zookeeperϢ
+	//向zookeeper更新心跳信息
 	public boolean refreshScheduleServer(ScheduleServer server) throws Exception {
 		Timestamp heartBeatTime = new Timestamp(ScheduleUtil
 				.getCurrentTimeMillis());
     	String zkPath = this.PATH_BaseTaskType + "/" + server.getBaseTaskType() + "/" + server.getTaskType() 
     	    + "/" + this.PATH_Server +"/" + server.getUuid();
     	if(this.getZooKeeper().exists(zkPath, false)== null){
-    		//ݿܱڴݺע
+    		//数据可能被清除，先清除内存数据后，重新注册数据
     		server.setRegister(false);
     		return false;
     	}else{
@@ -701,7 +763,7 @@ public class ScheduleDataManager4ZK implements IScheduleDataManager {
     		try{
     			this.getZooKeeper().setData(zkPath,valueString.getBytes(),-1);
     		}catch(Exception e){
-    			//ָϴεʱ
+    			//恢复上次的心跳时间
     			server.setHeartBeatTime(oldHeartBeatTime);
     			server.setVersion(server.getVersion() - 1);
     			throw e;
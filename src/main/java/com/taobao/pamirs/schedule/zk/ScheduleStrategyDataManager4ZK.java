@@ -26,7 +26,7 @@ public class ScheduleStrategyDataManager4ZK{
 	private String PATH_ManagerFactory;
 	private Gson gson ;
 	
-	//Spring󴴽Ϻ󣬴ڲ
+	//在Spring对象创建完毕后，创建内部对象
     public ScheduleStrategyDataManager4ZK(ZKManager aZkManager) throws Exception {
     	this.zkManager = aZkManager;
 		gson = new GsonBuilder().registerTypeAdapter(Timestamp.class,new TimestampTypeAdapter()).setDateFormat("yyyy-MM-dd HH:mm:ss").create();		
@@ -58,7 +58,7 @@ public class ScheduleStrategyDataManager4ZK{
 		if ( this.getZooKeeper().exists(zkPath, false) == null) {
 			this.getZooKeeper().create(zkPath, valueString.getBytes(), this.zkManager.getAcl(),CreateMode.PERSISTENT);
 		} else {
-			throw new Exception("Ȳ" + scheduleStrategy.getTaskType() + "Ѿ,ȷҪؽȵdeleteMachineStrategy(String taskType)ɾ");
+			throw new Exception("调度策略" + scheduleStrategy.getTaskType() + "已经存在,如果确认需要重建，请先调用deleteMachineStrategy(String taskType)删除");
 		}
 	}
 
@@ -79,8 +79,8 @@ public class ScheduleStrategyDataManager4ZK{
 	public void deleteMachineStrategy(String taskType,boolean isForce) throws Exception {
 		String zkPath = this.PATH_Strategy + "/" + taskType;
 		if(isForce == false && this.getZooKeeper().getChildren(zkPath,null).size() >0){
-			throw new Exception("ɾ"+ taskType +"вԣᵼ±ӦòֹͣʧȥƵĵȽ̡" +
-					"IPַеĵֹͣɾȲ");
+			throw new Exception("不能删除"+ taskType +"的运行策略，会导致必须重启整个应用才能停止失去控制的调度进程。" +
+					"可以先清空IP地址，等所有的调度器都停止后再删除调度策略");
 		}
 		ZKTools.deleteTree(this.getZooKeeper(),zkPath);
 	}
@@ -96,9 +96,9 @@ public class ScheduleStrategyDataManager4ZK{
 		return result;
 	}
 	/**
-	 * עManagerFactory
+	 * 注册ManagerFactory
 	 * @param managerFactory
-	 * @return Ҫȫעĵȣ統IPб
+	 * @return 需要全部注销的调度，例如当IP不在列表中
 	 * @throws Exception
 	 */
 	public List<String> registerManagerFactory(TBScheduleManagerFactory managerFactory) throws Exception{
@@ -116,7 +116,7 @@ public class ScheduleStrategyDataManager4ZK{
 			if(scheduleStrategy.getIPList() != null){
 				for(String ip:scheduleStrategy.getIPList()){
 					if(ip.equals("127.0.0.1") || ip.equalsIgnoreCase("localhost") || ip.equals(managerFactory.getIp())|| ip.equalsIgnoreCase(managerFactory.getHostName())){
-						//ӿɹTaskType
+						//添加可管理TaskType
 						String zkPath =	this.PATH_Strategy+"/"+ scheduleStrategy.getTaskType()+ "/"+ managerFactory.getUuid();
 						if(this.getZooKeeper().exists(zkPath, false)==null){
 							zkPath = this.getZooKeeper().create(zkPath, null, this.zkManager.getAcl(), CreateMode.EPHEMERAL);			
@@ -126,7 +126,7 @@ public class ScheduleStrategyDataManager4ZK{
 					}
 				}
 			}
-			if(isFind == false){//ԭעFactory
+			if(isFind == false){//清除原来注册的Factory
 				String zkPath =	this.PATH_Strategy+"/"+ scheduleStrategy.getTaskType()+ "/"+ managerFactory.getUuid();
 				if(this.getZooKeeper().exists(zkPath, false)!=null){
 					ZKTools.deleteTree(this.getZooKeeper(), zkPath);
@@ -137,7 +137,7 @@ public class ScheduleStrategyDataManager4ZK{
 		return result;
 	}
 	/**
-	 * עֹͣ
+	 * 注销服务，停止调度
 	 * @param managerFactory
 	 * @return
 	 * @throws Exception
@@ -170,7 +170,7 @@ public class ScheduleStrategyDataManager4ZK{
 	}
 	
 	/**
-	 * װеĲ״̬
+	 * 装载所有的策略运行状态
 	 * @return
 	 * @throws Exception
 	 */
@@ -205,7 +205,7 @@ public class ScheduleStrategyDataManager4ZK{
 			return result;
 		}
 		List<String> uuidList = this.getZooKeeper().getChildren(zkPath + "/" + taskType, false);
-		//
+		//排序
 		Collections.sort(uuidList,new Comparator<String>(){
 			public int compare(String u1, String u2) {
 				return u1.substring(u1.lastIndexOf("$") + 1).compareTo(
@@ -219,7 +219,7 @@ public class ScheduleStrategyDataManager4ZK{
 		return result;
 	}
 	/**
-	 * 
+	 * 更新请求数量
 	 * @param taskType
 	 * @param manangerFactoryUUID
 	 * @param requestNum
@@ -243,7 +243,7 @@ public class ScheduleStrategyDataManager4ZK{
 		this.getZooKeeper().setData(zkPath,valueString.getBytes(),-1);
 	}
 	/**
-	 * µȹеϢ
+	 * 更新调度过程中的信息
 	 * @param taskType
 	 * @param manangerFactoryUUID
 	 * @param message
@@ -268,7 +268,7 @@ public class ScheduleStrategyDataManager4ZK{
 	public void updateManagerFactoryInfo(String uuid,boolean isStart) throws Exception {
 		String zkPath = this.PATH_ManagerFactory + "/" + uuid;
 		if(this.getZooKeeper().exists(zkPath, false)==null){
-			throw new Exception(":" + uuid);
+			throw new Exception("任务管理器不存在:" + uuid);
 		}
 		this.getZooKeeper().setData(zkPath,Boolean.toString(isStart).getBytes(),-1);
 	}
@@ -276,7 +276,7 @@ public class ScheduleStrategyDataManager4ZK{
 	public ManagerFactoryInfo loadManagerFactoryInfo(String uuid) throws Exception {
 		String zkPath = this.PATH_ManagerFactory + "/" + uuid;
 		if(this.getZooKeeper().exists(zkPath, false)==null){
-			throw new Exception(":" + uuid);
+			throw new Exception("任务管理器不存在:" + uuid);
 		}
 		byte[] value = this.getZooKeeper().getData(zkPath,false,null);
 		ManagerFactoryInfo result = new ManagerFactoryInfo();
@@ -290,7 +290,7 @@ public class ScheduleStrategyDataManager4ZK{
 	}
 	
 	/**
-	 * ϢĿǰ֧baseTaskTypestrategyݡ
+	 * 导入配置信息【目前支持baseTaskType和strategy数据】
 	 * 
 	 * @param config
 	 * @param writer
@@ -306,22 +306,22 @@ public class ScheduleStrategyDataManager4ZK{
 			ZKTools.createPath(getZooKeeper(), path, CreateMode.PERSISTENT, zkManager.getAcl());
 			String y_node = path + "/" + configNode.getName();
 			if (getZooKeeper().exists(y_node, false) == null) {
-				writer.append("<font color=\"red\">ɹϢ\n</font>");
+				writer.append("<font color=\"red\">成功导入新配置信息\n</font>");
 				getZooKeeper().create(y_node, configNode.getValue().getBytes(),
 						zkManager.getAcl(), CreateMode.PERSISTENT);
 			} else if (isUpdate) {
-				writer.append("<font color=\"red\">ϢѾڣǿƸ\n</font>");
+				writer.append("<font color=\"red\">该配置信息已经存在，并且强制更新了\n</font>");
 				getZooKeeper().setData(y_node,
 						configNode.getValue().getBytes(), -1);
 			} else {
-				writer.append("<font color=\"red\">ϢѾڣҪ£ǿƸ\n</font>");
+				writer.append("<font color=\"red\">该配置信息已经存在，如果需要更新，请配置强制更新\n</font>");
 			}
 		}
 		writer.append(configNode.toString());
 	}
 
 	/**
-	 * ϢĿǰbaseTaskTypestrategyݡ
+	 * 输出配置信息【目前备份baseTaskType和strategy数据】
 	 * 
 	 * @param rootPath
 	 * @param writer
@@ -332,9 +332,9 @@ public class ScheduleStrategyDataManager4ZK{
 		StringBuffer buffer = new StringBuffer();
 		for (String type : new String[] { "baseTaskType", "strategy" }) {
 			if (type.equals("baseTaskType")) {
-				writer.write("<h2>б</h2>\n");
+				writer.write("<h2>基本任务配置列表：</h2>\n");
 			} else {
-				writer.write("<h2>б</h2>\n");
+				writer.write("<h2>基本策略配置列表：</h2>\n");
 			}
 			String bTTypePath = rootPath + "/" + type;
 			List<String> fNodeList = getZooKeeper().getChildren(bTTypePath,
@@ -9,7 +9,7 @@ public class ScheduleWatcher implements Watcher {
 	private static transient Log log = LogFactory.getLog(ScheduleWatcher.class);
 	
 	public void process(WatchedEvent event) {
-		log.info("Ѿ" + event.getType() + "¼" + event.getPath());
+		log.info("已经触发了" + event.getType() + "事件！" + event.getPath());
 		try {
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -39,7 +39,7 @@ public class ZKManager{
 		acl.add(new ACL(ZooDefs.Perms.READ, Ids.ANYONE_ID_UNSAFE));
 	}
 	public void close() throws InterruptedException{
-		log.info("رzookeeper");
+		log.info("关闭zookeeper连接");
 		this.zk.close();
 	}
 	public static Properties createProperties(){
@@ -62,14 +62,14 @@ public class ZKManager{
 	}
 
 	public void initial() throws Exception {
-		//zk״̬ܵ
+		//当zk状态正常后才能调用
 		if(zk.exists(this.getRootPath(), false) == null){
 			ZKTools.createPath(zk, this.getRootPath(), CreateMode.PERSISTENT, acl);
 			checkParent(zk,this.getRootPath());
-			//ð汾Ϣ
+			//设置版本信息
 			zk.setData(this.getRootPath(),Version.getVersion().getBytes(),-1);
 		}else{
-			//У鸸׽ڵ㣬ǷѾscheduleĿ¼
+			//先校验父亲节点，本身是否已经是schedule的目录
 			checkParent(zk,this.getRootPath());
 			byte[] value = zk.getData(this.getRootPath(), false, null);
 			if(value == null){
@@ -77,9 +77,9 @@ public class ZKManager{
 			}else{
 				String dataVersion = new String(value);
 				if(Version.isCompatible(dataVersion)==false){
-					throw new Exception("Pamirs-Schedule汾 "+ Version.getVersion() +" Zookeeperеݰ汾 " + dataVersion );
+					throw new Exception("Pamirs-Schedule程序版本 "+ Version.getVersion() +" 不兼容Zookeeper中的数据版本 " + dataVersion );
 				}
-				log.info("ǰĳ汾:" + Version.getVersion() + " ݰ汾: " + dataVersion);
+				log.info("当前的程序版本:" + Version.getVersion() + " 数据版本: " + dataVersion);
 			}
 		}
 	}
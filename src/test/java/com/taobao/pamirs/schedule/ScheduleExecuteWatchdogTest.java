@@ -0,0 +1,111 @@
+package com.taobao.pamirs.schedule;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * execute处理过慢的监控：超过slowExecuteTime时统计，超过executeInterruptTime时中断处理线程，结束时清除中断标志
+ */
+public class ScheduleExecuteWatchdogTest {
+
+	@Test
+	public void testCheckTime() throws Exception {
+		Assert.assertEquals(0, ScheduleExecuteWatchdog.getCheckTime(0, 0));
+		Assert.assertEquals(300, ScheduleExecuteWatchdog.getCheckTime(300, 0));
+		Assert.assertEquals(500, ScheduleExecuteWatchdog.getCheckTime(-1, 500));
+		Assert.assertEquals(300, ScheduleExecuteWatchdog.getCheckTime(300, 500));
+		Assert.assertEquals(200, ScheduleExecuteWatchdog.getCheckTime(300, 200));
+	}
+
+	@Test(timeout = 30000)
+	public void testSlowExecute() throws Exception {
+		ScheduleTaskType taskType = new ScheduleTaskType();
+		taskType.setSlowExecuteTime(100);
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		ScheduleExecuteWatchdog watchdog = new ScheduleExecuteWatchdog("test", taskType, statisticsInfo);
+		ScheduleExecuteWatchdog.ExecuteRecord record = watchdog.begin("a", 1);
+		watchdog.check();
+		Assert.assertEquals(0, watchdog.getSlowExecuteNumber());
+		Thread.sleep(150);
+		watchdog.check();
+		watchdog.check();
+		Assert.assertEquals(1, watchdog.getSlowExecuteNumber());
+		Assert.assertEquals(1, statisticsInfo.getSlowExecuteCount());
+		Assert.assertEquals(1, watchdog.getSlowExecuteList().size());
+		Assert.assertTrue(watchdog.getSlowExecuteList().get(0).indexOf("task=a") > 0);
+		//没有配置executeInterruptTime时不中断
+		Assert.assertFalse(Thread.currentThread().isInterrupted());
+		watchdog.end(record);
+		watchdog.check();
+		Assert.assertEquals(0, watchdog.getSlowExecuteNumber());
+		Assert.assertEquals(0, watchdog.getSlowExecuteList().size());
+	}
+
+	/**
+	 * 只配置executeInterruptTime时也中断，不按处理过慢统计；结束后清除中断标志
+	 */
+	@Test(timeout = 30000)
+	public void testInterruptWithoutSlowExecuteTime() throws Exception {
+		ScheduleTaskType taskType = new ScheduleTaskType();
+		taskType.setExecuteInterruptTime(100);
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		ScheduleExecuteWatchdog watchdog = new ScheduleExecuteWatchdog("test", taskType, statisticsInfo);
+		ScheduleExecuteWatchdog.ExecuteRecord record = watchdog.begin("a", 1);
+		Thread.sleep(150);
+		watchdog.check();
+		Assert.assertTrue(Thread.currentThread().isInterrupted());
+		Assert.assertEquals(1, statisticsInfo.getExecuteInterruptCount());
+		Assert.assertEquals(0, statisticsInfo.getSlowExecuteCount());
+		Assert.assertEquals(0, watchdog.getSlowExecuteNumber());
+		//同一次execute只中断一次
+		watchdog.check();
+		Assert.assertEquals(1, statisticsInfo.getExecuteInterruptCount());
+		watchdog.end(record);
+		Assert.assertFalse(Thread.currentThread().isInterrupted());
+	}
+
+	/**
+	 * 处理线程被中断并等待时抛出InterruptedException，结束后不影响下一次execute
+	 */
+	@Test(timeout = 30000)
+	public void testInterruptWorker() throws Exception {
+		ScheduleTaskType taskType = new ScheduleTaskType();
+		taskType.setSlowExecuteTime(50);
+		taskType.setExecuteInterruptTime(100);
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		final ScheduleExecuteWatchdog watchdog = new ScheduleExecuteWatchdog("test", taskType, statisticsInfo);
+		final boolean[] result = new boolean[3];
+		Thread worker = new Thread(new Runnable() {
+			public void run() {
+				ScheduleExecuteWatchdog.ExecuteRecord record = watchdog.begin("a", 1);
+				try {
+					Thread.sleep(20000);
+				} catch (InterruptedException ex) {
+					result[0] = true;
+				} finally {
+					watchdog.end(record);
+				}
+				result[1] = Thread.currentThread().isInterrupted();
+				record = watchdog.begin("b", 1);
+				try {
+					Thread.sleep(10);
+					result[2] = true;
+				} catch (InterruptedException ex) {
+					result[2] = false;
+				} finally {
+					watchdog.end(record);
+				}
+			}
+		}, "ScheduleExecuteWatchdogTest-worker");
+		worker.start();
+		while (worker.isAlive() == true) {
+			watchdog.check();
+			Thread.sleep(20);
+		}
+		Assert.assertTrue(result[0]);
+		Assert.assertFalse(result[1]);
+		Assert.assertTrue(result[2]);
+		Assert.assertEquals(1, statisticsInfo.getSlowExecuteCount());
+		Assert.assertEquals(1, statisticsInfo.getExecuteInterruptCount());
+	}
+}
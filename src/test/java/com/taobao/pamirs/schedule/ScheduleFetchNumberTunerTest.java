@@ -0,0 +1,81 @@
+package com.taobao.pamirs.schedule;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 每次获取数据量的自适应调整：按耗时收敛到目标值，等待数据的线程过多时增大，线程数使用当前的处理线程数
+ */
+public class ScheduleFetchNumberTunerTest {
+
+	private ScheduleTaskType createTaskType() {
+		ScheduleTaskType taskType = new ScheduleTaskType();
+		taskType.setThreadNumber(4);
+		taskType.setExecuteNumber(1);
+		taskType.setFetchDataNumber(100);
+		taskType.setFetchDataNumberMax(10000);
+		return taskType;
+	}
+
+	/**
+	 * 取数耗时10毫秒，每条任务处理1毫秒，目标值 = 10 * 10 * 线程数
+	 */
+	private int fetch(ScheduleFetchNumberTuner tuner, StatisticsInfo statisticsInfo, int rounds, boolean full,
+			int idleThreadNumber, int threadNumber) {
+		for (int i = 0; i < rounds; i++) {
+			int requestNumber = tuner.getFetchDataNumber();
+			int resultNumber = full ? requestNumber : requestNumber / 2;
+			statisticsInfo.addDealDataSucess(resultNumber);
+			statisticsInfo.addExecute(resultNumber, resultNumber);
+			tuner.addFetchResult(requestNumber, resultNumber, 10, idleThreadNumber, threadNumber);
+		}
+		return tuner.getFetchDataNumber();
+	}
+
+	/**
+	 * SLEEP模式下取数时其它N-1个线程都等在LockObject上，处理器按0个空闲线程上报，取满也不会一直增大
+	 */
+	@Test
+	public void testSleepFullBatch() throws Exception {
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		ScheduleFetchNumberTuner tuner = new ScheduleFetchNumberTuner(this.createTaskType(), statisticsInfo);
+		Assert.assertEquals(400, this.fetch(tuner, statisticsInfo, 50, true, 0, 4));
+		Assert.assertEquals(400, this.fetch(tuner, statisticsInfo, 50, true, 0, 4));
+		Assert.assertEquals(400, statisticsInfo.getFetchDataNumber());
+	}
+
+	/**
+	 * 取满后仍有超过一半的线程没有数据，每次至少增大一倍，直到上限
+	 */
+	@Test
+	public void testIdleThreadGrow() throws Exception {
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		ScheduleFetchNumberTuner tuner = new ScheduleFetchNumberTuner(this.createTaskType(), statisticsInfo);
+		Assert.assertEquals(10000, this.fetch(tuner, statisticsInfo, 50, true, 3, 4));
+		//只有一半的线程空闲时不再增大，每次调整一半，回到目标值附近
+		Assert.assertEquals(400, this.fetch(tuner, statisticsInfo, 50, true, 2, 4), 1);
+	}
+
+	/**
+	 * 没有取满时只减小不增大
+	 */
+	@Test
+	public void testNotFull() throws Exception {
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		ScheduleFetchNumberTuner tuner = new ScheduleFetchNumberTuner(this.createTaskType(), statisticsInfo);
+		Assert.assertEquals(100, this.fetch(tuner, statisticsInfo, 50, false, 4, 4));
+	}
+
+	/**
+	 * 线程数调整后，目标值和下限都按当前的线程数计算
+	 */
+	@Test
+	public void testLiveThreadNumber() throws Exception {
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		ScheduleFetchNumberTuner tuner = new ScheduleFetchNumberTuner(this.createTaskType(), statisticsInfo);
+		Assert.assertEquals(800, this.fetch(tuner, statisticsInfo, 50, true, 0, 8));
+		Assert.assertEquals(200, this.fetch(tuner, statisticsInfo, 50, true, 0, 2), 1);
+		//没有配置下限时下限为 线程数 * executeNumber
+		Assert.assertEquals(1000, this.fetch(tuner, statisticsInfo, 50, false, 0, 1000));
+	}
+}
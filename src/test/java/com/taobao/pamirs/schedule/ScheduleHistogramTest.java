@@ -0,0 +1,98 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 对数分桶直方图：桶宽不超过值的1/8，百分位取所在桶的最大值并且不超过最大值，多线程记录不丢失
+ */
+public class ScheduleHistogramTest {
+
+	@Test
+	public void testBucket() throws Exception {
+		for (long value = 0; value < 16; value++) {
+			Assert.assertEquals(value, ScheduleHistogram.getBucketIndex(value));
+			Assert.assertEquals(value, ScheduleHistogram.getBucketUpperBound((int) value));
+		}
+		int lastIndex = 0;
+		for (long value = 16; value < ScheduleHistogram.MAX_VALUE; value = value + 1 + value / 7) {
+			int index = ScheduleHistogram.getBucketIndex(value);
+			long upperBound = ScheduleHistogram.getBucketUpperBound(index);
+			Assert.assertTrue(index >= lastIndex);
+			Assert.assertTrue(value + " -> " + upperBound, upperBound >= value);
+			Assert.assertTrue(value + " -> " + upperBound, upperBound - value <= value / 8);
+			//上一个桶的最大值小于当前值
+			Assert.assertTrue(ScheduleHistogram.getBucketUpperBound(index - 1) < value);
+			lastIndex = index;
+		}
+		Assert.assertEquals(ScheduleHistogram.BUCKET_NUMBER - 1, ScheduleHistogram.getBucketIndex(ScheduleHistogram.MAX_VALUE));
+		Assert.assertEquals(ScheduleHistogram.BUCKET_NUMBER - 1, ScheduleHistogram.getBucketIndex(Long.MAX_VALUE));
+		Assert.assertEquals(0, ScheduleHistogram.getBucketIndex(-5));
+	}
+
+	@Test
+	public void testPercentile() throws Exception {
+		ScheduleHistogram histogram = new ScheduleHistogram();
+		Assert.assertEquals(0, histogram.getPercentile(99));
+		Assert.assertEquals("count=0,mean=0,p50=0,p90=0,p99=0,p999=0,max=0", histogram.getDescription());
+		for (long value = 1; value <= 1000; value++) {
+			histogram.record(value);
+		}
+		histogram.record(-1);
+		Assert.assertEquals(1001, histogram.getCount());
+		Assert.assertEquals(500500, histogram.getSum());
+		Assert.assertEquals(1000, histogram.getMax());
+		long p50 = histogram.getPercentile(50);
+		Assert.assertTrue(String.valueOf(p50), p50 >= 500 && p50 <= 500 + 500 / 8);
+		long p99 = histogram.getPercentile(99);
+		Assert.assertTrue(String.valueOf(p99), p99 >= 990 && p99 <= 1000);
+		Assert.assertEquals(1000, histogram.getPercentile(100));
+		Assert.assertEquals(0, histogram.getPercentile(0));
+
+		double[] percentiles = { 0, 50, 90, 99, 100 };
+		long[] values = new long[percentiles.length];
+		Assert.assertEquals(1001, histogram.getPercentiles(percentiles, values, new long[ScheduleHistogram.BUCKET_NUMBER]));
+		for (int i = 0; i < percentiles.length; i++) {
+			Assert.assertEquals(histogram.getPercentile(percentiles[i]), values[i]);
+		}
+	}
+
+	/**
+	 * 超过MAX_VALUE的值记在最后一个桶中，最大值按实际值
+	 */
+	@Test
+	public void testOverflow() throws Exception {
+		ScheduleHistogram histogram = new ScheduleHistogram();
+		long value = ScheduleHistogram.MAX_VALUE * 4;
+		histogram.record(value);
+		Assert.assertEquals(value, histogram.getMax());
+		Assert.assertEquals(ScheduleHistogram.MAX_VALUE, histogram.getPercentile(99));
+	}
+
+	@Test(timeout = 60000)
+	public void testConcurrentRecord() throws Exception {
+		final ScheduleHistogram histogram = new ScheduleHistogram();
+		final int recordNumber = 20000;
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 8; i++) {
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					for (int j = 0; j < recordNumber; j++) {
+						histogram.record(j % 100);
+					}
+				}
+			}, "ScheduleHistogramTest-" + i);
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(8 * recordNumber, histogram.getCount());
+		Assert.assertEquals(8L * (recordNumber / 100) * 4950, histogram.getSum());
+		Assert.assertEquals(99, histogram.getMax());
+	}
+}
@@ -0,0 +1,84 @@
+package com.taobao.pamirs.schedule;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 没有数据时的休眠：连续没有数据时成倍增加到上限，取到数据或者wakeUp后恢复，wakeUp立即结束休眠
+ */
+public class ScheduleIdleWaiterTest {
+
+	private ScheduleTaskType createTaskType(int sleepTimeNoData, int sleepTimeNoDataMax) {
+		ScheduleTaskType taskType = new ScheduleTaskType();
+		taskType.setSleepTimeNoData(sleepTimeNoData);
+		taskType.setSleepTimeNoDataMax(sleepTimeNoDataMax);
+		return taskType;
+	}
+
+	@Test(timeout = 30000)
+	public void testBackoff() throws Exception {
+		ScheduleIdleWaiter waiter = new ScheduleIdleWaiter(this.createTaskType(10, 50), "test");
+		Assert.assertEquals(10, waiter.getSleepTime());
+		Assert.assertFalse(waiter.sleepNoData());
+		Assert.assertEquals(20, waiter.getSleepTime());
+		Assert.assertFalse(waiter.sleepNoData());
+		Assert.assertEquals(40, waiter.getSleepTime());
+		Assert.assertFalse(waiter.sleepNoData());
+		Assert.assertEquals(50, waiter.getSleepTime());
+		Assert.assertFalse(waiter.sleepNoData());
+		Assert.assertEquals(50, waiter.getSleepTime());
+		waiter.reset();
+		Assert.assertEquals(10, waiter.getSleepTime());
+	}
+
+	/**
+	 * 没有配置上限，或者上限小于sleepTimeNoData时不增加
+	 */
+	@Test(timeout = 30000)
+	public void testNoBackoff() throws Exception {
+		ScheduleIdleWaiter waiter = new ScheduleIdleWaiter(this.createTaskType(10, 0), "test");
+		Assert.assertFalse(waiter.sleepNoData());
+		Assert.assertEquals(10, waiter.getSleepTime());
+		waiter = new ScheduleIdleWaiter(this.createTaskType(10, 5), "test");
+		Assert.assertFalse(waiter.sleepNoData());
+		Assert.assertEquals(10, waiter.getSleepTime());
+	}
+
+	/**
+	 * 休眠前收到的wakeUp也生效，并恢复初始休眠时间
+	 */
+	@Test(timeout = 30000)
+	public void testWakeUpBeforeSleep() throws Exception {
+		ScheduleIdleWaiter waiter = new ScheduleIdleWaiter(this.createTaskType(10, 20000), "test");
+		Assert.assertFalse(waiter.sleepNoData());
+		Assert.assertFalse(waiter.sleepNoData());
+		Assert.assertEquals(40, waiter.getSleepTime());
+		waiter.wakeUp();
+		Assert.assertEquals(10, waiter.getSleepTime());
+		long startTime = System.currentTimeMillis();
+		Assert.assertTrue(waiter.sleepNoData());
+		Assert.assertTrue(System.currentTimeMillis() - startTime < 1000);
+		//同一个wakeUp只结束一次休眠
+		Assert.assertFalse(waiter.sleepNoData());
+	}
+
+	@Test(timeout = 30000)
+	public void testWakeUpDuringSleep() throws Exception {
+		final ScheduleIdleWaiter waiter = new ScheduleIdleWaiter(this.createTaskType(20000, 20000), "test");
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException ex) {
+					return;
+				}
+				waiter.wakeUp();
+			}
+		}, "ScheduleIdleWaiterTest-wakeUp");
+		thread.start();
+		long startTime = System.currentTimeMillis();
+		Assert.assertTrue(waiter.sleepNoData());
+		Assert.assertTrue(System.currentTimeMillis() - startTime < 10000);
+		thread.join();
+	}
+}
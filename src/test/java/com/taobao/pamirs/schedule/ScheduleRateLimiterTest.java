@@ -0,0 +1,61 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 令牌桶：最多积累一秒的量，批处理超过剩余令牌时透支，由后面的请求等待补齐
+ */
+public class ScheduleRateLimiterTest {
+
+	@Test
+	public void testUnlimited() throws Exception {
+		ScheduleRateLimiter limiter = new ScheduleRateLimiter();
+		Assert.assertFalse(limiter.isLimited());
+		Assert.assertEquals(0, limiter.acquire(1000000));
+	}
+
+	@Test(timeout = 30000)
+	public void testRefillAndOverdraft() throws Exception {
+		ScheduleRateLimiter limiter = new ScheduleRateLimiter();
+		limiter.setRate(100);
+		//从不限流切换到限流时有一秒的量
+		Assert.assertEquals(0, limiter.acquire(100));
+		//透支50个，等待约500毫秒后执行
+		long waitTime = limiter.acquire(50);
+		Assert.assertTrue("透支等待" + waitTime, waitTime >= 300 && waitTime < 3000);
+		//透支的令牌已经在等待中补齐，下一个请求只等自己的量
+		waitTime = limiter.acquire(1);
+		Assert.assertTrue("透支补齐后等待" + waitTime, waitTime < 300);
+		//空闲1.5秒最多积累一秒的量：100个不等待，再取40个需要等待
+		Thread.sleep(1500);
+		Assert.assertEquals(0, limiter.acquire(100));
+		waitTime = limiter.acquire(40);
+		Assert.assertTrue("超过一秒的量" + waitTime, waitTime >= 200);
+	}
+
+	@Test(timeout = 30000)
+	public void testCancelWait() throws Exception {
+		final ScheduleRateLimiter limiter = new ScheduleRateLimiter();
+		limiter.setRate(1);
+		limiter.acquire(1);
+		final AtomicLong waitTime = new AtomicLong(-1);
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					waitTime.set(limiter.acquire(10));
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		thread.start();
+		Thread.sleep(200);
+		limiter.cancelWait();
+		thread.join(5000);
+		Assert.assertFalse(thread.isAlive());
+		Assert.assertTrue("取消等待" + waitTime.get(), waitTime.get() >= 0 && waitTime.get() < 3000);
+	}
+}
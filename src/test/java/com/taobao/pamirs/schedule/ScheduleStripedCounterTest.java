@@ -0,0 +1,49 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 分段计数器：段数为2的幂，多线程累加的结果不丢失
+ */
+public class ScheduleStripedCounterTest {
+
+	@Test
+	public void testStripe() throws Exception {
+		int stripeNumber = ScheduleStripedCounter.STRIPE_NUMBER;
+		Assert.assertTrue(stripeNumber >= 1 && stripeNumber <= 16);
+		Assert.assertEquals(0, stripeNumber & (stripeNumber - 1));
+		int index = ScheduleStripedCounter.getStripeIndex(stripeNumber);
+		Assert.assertTrue(index >= 0 && index < stripeNumber);
+		//同一个线程总是更新同一段
+		Assert.assertEquals(index, ScheduleStripedCounter.getStripeIndex(stripeNumber));
+	}
+
+	@Test(timeout = 60000)
+	public void testConcurrentAdd() throws Exception {
+		final ScheduleStripedCounter counter = new ScheduleStripedCounter();
+		Assert.assertEquals(0, counter.get());
+		final int addNumber = 100000;
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 8; i++) {
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					for (int j = 0; j < addNumber; j++) {
+						counter.add(2);
+					}
+				}
+			}, "ScheduleStripedCounterTest-" + i);
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		counter.add(-6);
+		Assert.assertEquals(8L * addNumber * 2 - 6, counter.get());
+		Assert.assertEquals(String.valueOf(8L * addNumber * 2 - 6), counter.toString());
+	}
+}
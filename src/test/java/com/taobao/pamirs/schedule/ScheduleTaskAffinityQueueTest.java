@@ -0,0 +1,137 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 任务项绑定线程：同一任务项的任务只由一个处理线程取到，线程之间不窃取
+ */
+public class ScheduleTaskAffinityQueueTest {
+
+	/**
+	 * 任务为字符串，"任务项:序号"
+	 */
+	static final IScheduleTaskItemResolver<String> RESOLVER = new IScheduleTaskItemResolver<String>() {
+		public String getTaskItemId(String task) {
+			return task.substring(0, task.indexOf(':'));
+		}
+	};
+
+	@Test(timeout = 60000)
+	public void testTaskItemAffinity() throws Exception {
+		final int itemNumber = 8;
+		final int taskNumber = 4000;
+		final int threadNumber = 3;
+		final ScheduleTaskAffinityQueue<String> queue = new ScheduleTaskAffinityQueue<String>(taskNumber, RESOLVER);
+		List<TaskItemDefine> taskItems = new ArrayList<TaskItemDefine>();
+		for (int i = 0; i < itemNumber; i++) {
+			TaskItemDefine item = new TaskItemDefine();
+			item.setTaskItemId(String.valueOf(i));
+			taskItems.add(item);
+		}
+		queue.setTaskItems(taskItems);
+
+		final ConcurrentHashMap<String, Set<String>> itemThreadMap = new ConcurrentHashMap<String, Set<String>>();
+		final AtomicInteger receivedNumber = new AtomicInteger(0);
+		final CountDownLatch bound = new CountDownLatch(threadNumber);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < threadNumber; i++) {
+			final int batch = i + 1;
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					//队列为空时取一次，先加入处理线程
+					Assert.assertNull(queue.poll());
+					bound.countDown();
+					while (receivedNumber.get() < taskNumber) {
+						Object[] tasks = queue.poll(batch * 5);
+						if (tasks == null) {
+							Thread.yield();
+							continue;
+						}
+						for (int j = 0; j < tasks.length; j++) {
+							String itemId = RESOLVER.getTaskItemId((String) tasks[j]);
+							itemThreadMap.putIfAbsent(itemId, new HashSet<String>());
+							Set<String> threadNames = itemThreadMap.get(itemId);
+							synchronized (threadNames) {
+								threadNames.add(Thread.currentThread().getName());
+							}
+						}
+						receivedNumber.addAndGet(tasks.length);
+					}
+				}
+			}, "worker-" + i);
+			thread.start();
+			threads.add(thread);
+		}
+		bound.await();
+		List<String> tasks = new ArrayList<String>();
+		for (int i = 0; i < taskNumber; i++) {
+			tasks.add((i % itemNumber) + ":" + i);
+		}
+		Assert.assertEquals(taskNumber, queue.offerAll(tasks));
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(taskNumber, receivedNumber.get());
+		Assert.assertEquals(itemNumber, itemThreadMap.size());
+		for (Map.Entry<String, Set<String>> entry : itemThreadMap.entrySet()) {
+			Assert.assertEquals("任务项" + entry.getKey() + "：" + entry.getValue(), 1, entry.getValue().size());
+		}
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+	/**
+	 * 不在当前任务项中的队列取空后删除，还有任务时保留
+	 */
+	@Test
+	public void testRemoveEmptyQueue() throws Exception {
+		ScheduleTaskAffinityQueue<String> queue = new ScheduleTaskAffinityQueue<String>(100, RESOLVER);
+		queue.setTaskItems(this.createTaskItems(0, 4));
+		for (int i = 0; i < 4; i++) {
+			Assert.assertTrue(queue.offer(i + ":a"));
+		}
+		queue.setTaskItems(this.createTaskItems(2, 6));
+		Assert.assertEquals(4, queue.getTaskItemQueueNumber());
+		Assert.assertEquals(4, queue.pollAll().length);
+		queue.setTaskItems(this.createTaskItems(2, 6));
+		Assert.assertEquals(2, queue.getTaskItemQueueNumber());
+		queue.setTaskItems(this.createTaskItems(4, 6));
+		Assert.assertEquals(0, queue.getTaskItemQueueNumber());
+		//删除后再放入时重新创建
+		Assert.assertTrue(queue.offer("1:b"));
+		Assert.assertEquals(1, queue.getTaskItemQueueNumber());
+		Assert.assertEquals("1:b", queue.poll());
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+	private List<TaskItemDefine> createTaskItems(int start, int end) {
+		List<TaskItemDefine> taskItems = new ArrayList<TaskItemDefine>();
+		for (int i = start; i < end; i++) {
+			TaskItemDefine item = new TaskItemDefine();
+			item.setTaskItemId(String.valueOf(i));
+			taskItems.add(item);
+		}
+		return taskItems;
+	}
+
+	@Test
+	public void testPollAll() throws Exception {
+		ScheduleTaskAffinityQueue<String> queue = new ScheduleTaskAffinityQueue<String>(3, RESOLVER);
+		Assert.assertTrue(queue.offer("1:a"));
+		Assert.assertTrue(queue.offer("2:a"));
+		Assert.assertTrue(queue.offer("1:b"));
+		Assert.assertFalse(queue.offer("3:a"));
+		Assert.assertEquals(3, queue.pollAll().length);
+		Assert.assertNull(queue.pollAll());
+		Assert.assertTrue(queue.isEmpty());
+	}
+}
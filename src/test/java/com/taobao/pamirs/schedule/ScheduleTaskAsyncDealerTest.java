@@ -0,0 +1,205 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 异步处理：回调时记录统计并释放许可，回调只生效一次，处理中的任务数不超过maxInFlightNumber
+ */
+public class ScheduleTaskAsyncDealerTest {
+
+	/**
+	 * 只保存回调，由测试决定什么时候处理完成
+	 */
+	static class CallbackTaskDeal implements IScheduleTaskDealAsyncSingle<Long> {
+		final List<IScheduleTaskDealCallback> callbacks = new ArrayList<IScheduleTaskDealCallback>();
+		volatile boolean isThrow = false;
+
+		public List<Long> selectTasks(String taskParameter, String ownSign, int taskItemNum,
+				List<TaskItemDefine> taskItemList, int eachFetchDataNum) throws Exception {
+			return new ArrayList<Long>();
+		}
+
+		public Comparator<Long> getComparator() {
+			return null;
+		}
+
+		public synchronized void execute(Long task, String ownSign, IScheduleTaskDealCallback callback)
+				throws Exception {
+			if (this.isThrow == true) {
+				throw new Exception("发起处理失败:" + task);
+			}
+			this.callbacks.add(callback);
+		}
+
+		synchronized IScheduleTaskDealCallback getCallback(int index) {
+			return this.callbacks.get(index);
+		}
+
+		synchronized int getCallbackNumber() {
+			return this.callbacks.size();
+		}
+	}
+
+	static class CallbackMultiTaskDeal implements IScheduleTaskDealAsyncMulti<Long> {
+		IScheduleTaskDealCallback callback;
+
+		public List<Long> selectTasks(String taskParameter, String ownSign, int taskItemNum,
+				List<TaskItemDefine> taskItemList, int eachFetchDataNum) throws Exception {
+			return new ArrayList<Long>();
+		}
+
+		public Comparator<Long> getComparator() {
+			return null;
+		}
+
+		public void execute(Object[] tasks, String ownSign, IScheduleTaskDealCallback callback) throws Exception {
+			this.callback = callback;
+		}
+	}
+
+	private ScheduleTaskType createTaskType(int maxInFlightNumber) {
+		ScheduleTaskType taskType = new ScheduleTaskType();
+		taskType.setThreadNumber(1);
+		taskType.setMaxInFlightNumber(maxInFlightNumber);
+		return taskType;
+	}
+
+	@Test(timeout = 30000)
+	public void testComplete() throws Exception {
+		CallbackTaskDeal taskDeal = new CallbackTaskDeal();
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		ScheduleTaskAsyncDealer dealer = new ScheduleTaskAsyncDealer(taskDeal, this.createTaskType(0), "test",
+				statisticsInfo);
+		Assert.assertTrue(ScheduleTaskAsyncDealer.isAsync(taskDeal));
+		Assert.assertTrue(ScheduleTaskAsyncDealer.isSingle(taskDeal));
+		final AtomicInteger finishCount = new AtomicInteger(0);
+		Runnable finishHandler = new Runnable() {
+			public void run() {
+				finishCount.incrementAndGet();
+			}
+		};
+		for (long i = 0; i < 3; i++) {
+			dealer.execute(Long.valueOf(i), "BASE", finishHandler);
+		}
+		Assert.assertEquals(3, dealer.getInFlightNumber());
+
+		taskDeal.getCallback(0).complete(true);
+		//重复回调不再计算
+		taskDeal.getCallback(0).complete(false);
+		taskDeal.getCallback(0).fail(new Exception("重复回调"));
+		taskDeal.getCallback(1).complete(false);
+		taskDeal.getCallback(2).fail(new Exception("处理失败"));
+		Assert.assertEquals(0, dealer.getInFlightNumber());
+		Assert.assertEquals(3, finishCount.get());
+		Assert.assertEquals(1, statisticsInfo.getDealDataSucess());
+		Assert.assertEquals(2, statisticsInfo.getDealDataFail());
+		Assert.assertEquals(3, statisticsInfo.getDealDataNum());
+	}
+
+	/**
+	 * 发起处理时抛出异常按失败计算，许可释放
+	 */
+	@Test(timeout = 30000)
+	public void testExecuteException() throws Exception {
+		CallbackTaskDeal taskDeal = new CallbackTaskDeal();
+		taskDeal.isThrow = true;
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		ScheduleTaskAsyncDealer dealer = new ScheduleTaskAsyncDealer(taskDeal, this.createTaskType(1), "test",
+				statisticsInfo);
+		final AtomicInteger finishCount = new AtomicInteger(0);
+		Runnable finishHandler = new Runnable() {
+			public void run() {
+				finishCount.incrementAndGet();
+			}
+		};
+		dealer.execute(Long.valueOf(1), "BASE", finishHandler);
+		dealer.execute(Long.valueOf(2), "BASE", finishHandler);
+		Assert.assertEquals(0, dealer.getInFlightNumber());
+		Assert.assertEquals(2, finishCount.get());
+		Assert.assertEquals(2, statisticsInfo.getDealDataFail());
+	}
+
+	@Test(timeout = 30000)
+	public void testMulti() throws Exception {
+		CallbackMultiTaskDeal taskDeal = new CallbackMultiTaskDeal();
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		ScheduleTaskAsyncDealer dealer = new ScheduleTaskAsyncDealer(taskDeal, this.createTaskType(0), "test",
+				statisticsInfo);
+		Assert.assertFalse(ScheduleTaskAsyncDealer.isSingle(taskDeal));
+		dealer.execute(new Object[] { Long.valueOf(1), Long.valueOf(2), Long.valueOf(3) }, "BASE", null);
+		Assert.assertEquals(1, dealer.getInFlightNumber());
+		taskDeal.callback.complete(true);
+		Assert.assertEquals(3, statisticsInfo.getDealDataSucess());
+		Assert.assertEquals(0, dealer.getInFlightNumber());
+	}
+
+	/**
+	 * 达到maxInFlightNumber后等待回调释放许可，等待被中断时任务没有发起
+	 */
+	@Test(timeout = 30000)
+	public void testInFlightLimit() throws Exception {
+		final CallbackTaskDeal taskDeal = new CallbackTaskDeal();
+		final ScheduleTaskAsyncDealer dealer = new ScheduleTaskAsyncDealer(taskDeal, this.createTaskType(2), "test",
+				new StatisticsInfo());
+		dealer.execute(Long.valueOf(1), "BASE", null);
+		dealer.execute(Long.valueOf(2), "BASE", null);
+		final CountDownLatch executed = new CountDownLatch(1);
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					dealer.execute(Long.valueOf(3), "BASE", null);
+					executed.countDown();
+				} catch (InterruptedException ex) {
+					return;
+				}
+			}
+		}, "ScheduleTaskAsyncDealerTest-execute");
+		thread.start();
+		Assert.assertFalse(executed.await(200, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(2, taskDeal.getCallbackNumber());
+		taskDeal.getCallback(0).complete(true);
+		Assert.assertTrue(executed.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals(3, taskDeal.getCallbackNumber());
+		Assert.assertEquals(2, dealer.getInFlightNumber());
+		thread.join();
+
+		final AtomicInteger finishCount = new AtomicInteger(0);
+		Thread.currentThread().interrupt();
+		try {
+			dealer.execute(Long.valueOf(4), "BASE", new Runnable() {
+				public void run() {
+					finishCount.incrementAndGet();
+				}
+			});
+			Assert.fail("等待许可时被中断");
+		} catch (InterruptedException ex) {
+			Assert.assertEquals(3, taskDeal.getCallbackNumber());
+			Assert.assertEquals(0, finishCount.get());
+		}
+
+		//全部回调后waitAllFinish返回
+		Thread waitThread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException ex) {
+					return;
+				}
+				taskDeal.getCallback(1).complete(true);
+				taskDeal.getCallback(2).complete(true);
+			}
+		}, "ScheduleTaskAsyncDealerTest-complete");
+		waitThread.start();
+		dealer.waitAllFinish();
+		Assert.assertEquals(0, dealer.getInFlightNumber());
+		waitThread.join();
+	}
+}
@@ -0,0 +1,59 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 优先级队列：优先级高的先取，相同优先级按放入顺序，不超过容量
+ */
+public class ScheduleTaskPriorityQueueTest {
+
+	/**
+	 * 任务为字符串，第一个字符是优先级
+	 */
+	static final IScheduleTaskPriority<String> PRIORITY = new IScheduleTaskPriority<String>() {
+		public int getTaskPriority(String task) {
+			return task.charAt(0) - '0';
+		}
+	};
+
+	@Test
+	public void testOrder() throws Exception {
+		ScheduleTaskPriorityQueue<String> queue = new ScheduleTaskPriorityQueue<String>(100, PRIORITY);
+		List<String> tasks = new ArrayList<String>();
+		tasks.add("1a");
+		tasks.add("3a");
+		tasks.add("2a");
+		tasks.add("3b");
+		tasks.add("1b");
+		Assert.assertEquals(5, queue.offerAll(tasks));
+		Assert.assertEquals("3a", queue.poll());
+		//后放入的高优先级任务排在前面
+		Assert.assertTrue(queue.offer("9a"));
+		Assert.assertArrayEquals(new Object[] { "9a", "3b" }, queue.poll(2));
+		Assert.assertArrayEquals(new Object[] { "2a", "1a", "1b" }, queue.pollAll());
+		Assert.assertNull(queue.poll());
+		Assert.assertNull(queue.poll(2));
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testCapacity() throws Exception {
+		ScheduleTaskPriorityQueue<String> queue = new ScheduleTaskPriorityQueue<String>(3, PRIORITY);
+		List<String> tasks = new ArrayList<String>();
+		tasks.add("1a");
+		tasks.add("2a");
+		tasks.add("3a");
+		tasks.add("4a");
+		Assert.assertEquals(3, queue.offerAll(tasks));
+		Assert.assertFalse(queue.offer("9a"));
+		Assert.assertEquals(3, queue.size());
+		Assert.assertEquals("3a", queue.poll());
+		Assert.assertTrue(queue.offer("9a"));
+		queue.clear();
+		Assert.assertEquals(0, queue.size());
+	}
+}
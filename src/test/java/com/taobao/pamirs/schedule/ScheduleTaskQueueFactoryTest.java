@@ -0,0 +1,78 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 按配置创建任务队列：默认不包装，开启queueWaitStatistics后统计等待时间，优先级和任务项信息从原始任务取
+ */
+public class ScheduleTaskQueueFactoryTest {
+
+	/**
+	 * 任务为字符串，"任务项:优先级"
+	 */
+	static class PriorityTaskDeal implements IScheduleTaskDealSingle<String>, IScheduleTaskPriority<String>,
+			IScheduleTaskItemResolver<String> {
+		public List<String> selectTasks(String taskParameter, String ownSign, int taskItemNum,
+				List<TaskItemDefine> taskItemList, int eachFetchDataNum) throws Exception {
+			return null;
+		}
+
+		public Comparator<String> getComparator() {
+			return null;
+		}
+
+		public boolean execute(String task, String ownSign) throws Exception {
+			return true;
+		}
+
+		public int getTaskPriority(String task) {
+			return task.charAt(task.indexOf(':') + 1) - '0';
+		}
+
+		public String getTaskItemId(String task) {
+			return task.substring(0, task.indexOf(':'));
+		}
+	}
+
+	@Test
+	public void testNotWrappedByDefault() throws Exception {
+		ScheduleTaskType taskType = new ScheduleTaskType();
+		Assert.assertFalse(taskType.isQueueWaitStatistics());
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		IScheduleTaskQueue<String> queue = ScheduleTaskQueueFactory.createTaskQueue(taskType,
+				new PriorityTaskDeal(), statisticsInfo);
+		Assert.assertTrue(queue instanceof ScheduleTaskPriorityQueue<?>);
+		Assert.assertTrue(ScheduleTaskQueueFactory.isPriorityQueue(queue));
+
+		taskType.setTaskQueueType(ScheduleTaskQueueFactory.QUEUE_TYPE_AFFINITY);
+		queue = ScheduleTaskQueueFactory.createTaskQueue(taskType, new PriorityTaskDeal(), statisticsInfo);
+		Assert.assertTrue(queue instanceof ScheduleTaskAffinityQueue<?>);
+		Assert.assertTrue(queue.offer("1:1"));
+		Assert.assertEquals("1:1", queue.poll());
+		Assert.assertEquals(0, statisticsInfo.getQueueWaitTime().getCount());
+	}
+
+	@Test
+	public void testQueueWaitStatistics() throws Exception {
+		ScheduleTaskType taskType = new ScheduleTaskType();
+		taskType.setQueueWaitStatistics(true);
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		IScheduleTaskQueue<String> queue = ScheduleTaskQueueFactory.createTaskQueue(taskType,
+				new PriorityTaskDeal(), statisticsInfo);
+		Assert.assertTrue(queue instanceof ScheduleTaskTimedQueue<?>);
+		Assert.assertTrue(ScheduleTaskQueueFactory.isPriorityQueue(queue));
+		List<String> tasks = new ArrayList<String>();
+		tasks.add("1:1");
+		tasks.add("1:3");
+		tasks.add("2:2");
+		Assert.assertEquals(3, queue.offerAll(tasks));
+		Assert.assertEquals("1:3", queue.poll());
+		Assert.assertArrayEquals(new Object[] { "2:2", "1:1" }, queue.poll(5));
+		Assert.assertEquals(3, statisticsInfo.getQueueWaitTime().getCount());
+	}
+}
@@ -0,0 +1,115 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 失败任务的延时重试：按每个任务的结果重试，延时指数增长，超过次数后隔离，清除后不再放回队列
+ */
+public class ScheduleTaskRetryerTest {
+
+	private ScheduleTaskType createTaskType() {
+		ScheduleTaskType taskType = new ScheduleTaskType();
+		taskType.setMaxRetryNumber(2);
+		taskType.setRetryDelay(50);
+		taskType.setRetryDelayMax(150);
+		return taskType;
+	}
+
+	@Test
+	public void testRetryDelay() throws Exception {
+		ScheduleTaskRetryer retryer = new ScheduleTaskRetryer(this.createTaskType(),
+				new ScheduleTaskRingQueue<Object>(16), new StatisticsInfo(), "ScheduleTaskRetryerTest-Retry", null);
+		Assert.assertEquals(50, retryer.getRetryDelay(0));
+		Assert.assertEquals(100, retryer.getRetryDelay(1));
+		Assert.assertEquals(150, retryer.getRetryDelay(2));
+		Assert.assertEquals(150, retryer.getRetryDelay(10));
+	}
+
+	@Test(timeout = 30000)
+	public void testMultiResult() throws Exception {
+		ScheduleTaskRingQueue<Object> queue = new ScheduleTaskRingQueue<Object>(16);
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		final AtomicInteger notifyNumber = new AtomicInteger(0);
+		ScheduleTaskRetryer retryer = new ScheduleTaskRetryer(this.createTaskType(), queue, statisticsInfo,
+				"ScheduleTaskRetryerTest-Retry", new Runnable() {
+					public void run() {
+						notifyNumber.incrementAndGet();
+					}
+				});
+		Object[] tasks = { "a", "b", "c" };
+		BitSet result = new BitSet();
+		result.set(0);
+		result.set(2);
+		long startTime = System.currentTimeMillis();
+		boolean[] retried = retryer.dealMultiResult(tasks, result, 10);
+		Assert.assertTrue(Arrays.equals(new boolean[] { false, true, false }, retried));
+		Assert.assertEquals(2, statisticsInfo.getDealDataSucess());
+		Assert.assertEquals(1, statisticsInfo.getDealDataFail());
+		Assert.assertEquals(1, statisticsInfo.getRetryCount());
+		Assert.assertEquals(1, retryer.getWaitingNumber());
+
+		//只有失败的任务延时后放回队列
+		Assert.assertEquals("b", this.pollRetried(queue));
+		Assert.assertTrue(System.currentTimeMillis() - startTime >= 50);
+		//放回队列后通知等待数据的线程
+		Thread.sleep(50);
+		Assert.assertEquals(0, retryer.getWaitingNumber());
+		Assert.assertEquals(1, notifyNumber.get());
+		Assert.assertNull(queue.poll());
+
+		//第二次失败继续重试，第三次失败后隔离
+		Assert.assertTrue(Arrays.equals(new boolean[] { true }, retryer.dealMultiResult(new Object[] { "b" }, null, 10)));
+		Assert.assertEquals("b", this.pollRetried(queue));
+		Assert.assertNull(retryer.dealMultiResult(new Object[] { "b" }, null, 10));
+		Assert.assertEquals(1, statisticsInfo.getQuarantineCount());
+		Assert.assertEquals(2, statisticsInfo.getRetryCount());
+		Assert.assertEquals(0, retryer.getRetryingTasks().length);
+	}
+
+	/**
+	 * 重试成功后清除次数，再次失败从第一次开始计算
+	 */
+	@Test(timeout = 30000)
+	public void testFinish() throws Exception {
+		ScheduleTaskRingQueue<Object> queue = new ScheduleTaskRingQueue<Object>(16);
+		ScheduleTaskRetryer retryer = new ScheduleTaskRetryer(this.createTaskType(), queue, new StatisticsInfo(),
+				"ScheduleTaskRetryerTest-Retry", null);
+		Assert.assertTrue(retryer.retry("a"));
+		Assert.assertEquals("a", this.pollRetried(queue));
+		Assert.assertTrue(retryer.retry("a"));
+		Assert.assertEquals("a", this.pollRetried(queue));
+		retryer.finish("a");
+		Assert.assertEquals(0, retryer.getRetryingTasks().length);
+		Assert.assertTrue(retryer.retry("a"));
+		Assert.assertEquals("a", this.pollRetried(queue));
+	}
+
+	@Test(timeout = 30000)
+	public void testClear() throws Exception {
+		ScheduleTaskRingQueue<Object> queue = new ScheduleTaskRingQueue<Object>(16);
+		ScheduleTaskRetryer retryer = new ScheduleTaskRetryer(this.createTaskType(), queue, new StatisticsInfo(),
+				"ScheduleTaskRetryerTest-Retry", null);
+		Assert.assertTrue(retryer.retry("a"));
+		Assert.assertArrayEquals(new Object[] { "a" }, retryer.clear());
+		Assert.assertEquals(0, retryer.getWaitingNumber());
+		Thread.sleep(300);
+		Assert.assertNull(queue.poll());
+	}
+
+	private Object pollRetried(ScheduleTaskRingQueue<Object> queue) throws Exception {
+		long endTime = System.currentTimeMillis() + 5000;
+		while (System.currentTimeMillis() < endTime) {
+			Object task = queue.poll();
+			if (task != null) {
+				return task;
+			}
+			Thread.sleep(5);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,112 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 环形队列：容量取2的幂，满时拒绝，多生产者多消费者批量取数时每个任务只取到一次并且不丢失
+ */
+public class ScheduleTaskRingQueueTest {
+
+	@Test
+	public void testCapacity() throws Exception {
+		ScheduleTaskRingQueue<Integer> queue = new ScheduleTaskRingQueue<Integer>(5);
+		Assert.assertEquals(8, queue.capacity());
+		List<Integer> tasks = new ArrayList<Integer>();
+		for (int i = 0; i < 10; i++) {
+			tasks.add(i);
+		}
+		Assert.assertEquals(8, queue.offerAll(tasks));
+		Assert.assertFalse(queue.offer(10));
+		Assert.assertEquals(8, queue.size());
+		Assert.assertEquals(Integer.valueOf(0), queue.poll());
+		Object[] batch = queue.poll(3);
+		Assert.assertArrayEquals(new Object[] { 1, 2, 3 }, batch);
+		Assert.assertTrue(queue.offer(10));
+		Assert.assertArrayEquals(new Object[] { 4, 5, 6, 7, 10 }, queue.pollAll());
+		Assert.assertNull(queue.poll());
+		Assert.assertNull(queue.poll(3));
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+	/**
+	 * 容量小于任务总数，生产者在队列满时重试，消费者随机批量取数，环形缓冲区反复绕圈
+	 */
+	@Test(timeout = 60000)
+	public void testBatchDrainUnderContention() throws Exception {
+		final int producerNumber = 4;
+		final int consumerNumber = 4;
+		final int taskNumber = 200000;
+		final ScheduleTaskRingQueue<Integer> queue = new ScheduleTaskRingQueue<Integer>(256);
+		final AtomicIntegerArray received = new AtomicIntegerArray(producerNumber * taskNumber);
+		final AtomicInteger receivedNumber = new AtomicInteger(0);
+		final AtomicInteger nullNumber = new AtomicInteger(0);
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int p = 0; p < producerNumber; p++) {
+			final int base = p * taskNumber;
+			threads.add(new Thread(new Runnable() {
+				public void run() {
+					await(start);
+					for (int i = 0; i < taskNumber; i++) {
+						while (queue.offer(base + i) == false) {
+							Thread.yield();
+						}
+					}
+				}
+			}));
+		}
+		for (int c = 0; c < consumerNumber; c++) {
+			final int seed = c;
+			threads.add(new Thread(new Runnable() {
+				public void run() {
+					await(start);
+					int batch = 1 + seed;
+					while (receivedNumber.get() < producerNumber * taskNumber) {
+						Object[] tasks = queue.poll(batch);
+						if (tasks == null) {
+							Thread.yield();
+							continue;
+						}
+						for (int i = 0; i < tasks.length; i++) {
+							if (tasks[i] == null) {
+								nullNumber.incrementAndGet();
+								continue;
+							}
+							received.incrementAndGet((Integer) tasks[i]);
+						}
+						receivedNumber.addAndGet(tasks.length);
+						batch = batch % 37 + 1;
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(0, nullNumber.get());
+		Assert.assertEquals(producerNumber * taskNumber, receivedNumber.get());
+		for (int i = 0; i < received.length(); i++) {
+			Assert.assertEquals("任务" + i, 1, received.get(i));
+		}
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+	static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 工作窃取队列：处理线程取任务时绑定队列，线程结束后队列被新线程接管，处理线程以外的pollAll不绑定
+ */
+public class ScheduleTaskStealQueueTest {
+
+	@Test
+	public void testPollAllNotBind() throws Exception {
+		ScheduleTaskStealQueue<Integer> queue = new ScheduleTaskStealQueue<Integer>(100, null, new StatisticsInfo());
+		List<Integer> tasks = new ArrayList<Integer>();
+		for (int i = 0; i < 10; i++) {
+			tasks.add(i);
+		}
+		Assert.assertEquals(10, queue.offerAll(tasks));
+		Assert.assertEquals(10, queue.pollAll().length);
+		Assert.assertNull(queue.pollAll());
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertEquals(1, queue.getDequeNumber());
+	}
+
+	@Test(timeout = 30000)
+	public void testBindOnDemand() throws Exception {
+		ScheduleTaskStealQueue<Integer> queue = new ScheduleTaskStealQueue<Integer>(100, null, new StatisticsInfo());
+		this.runWorkers(queue, 3);
+		Assert.assertEquals(3, queue.getDequeNumber());
+		//之前的线程已经结束，新线程接管它们的队列
+		this.runWorkers(queue, 2);
+		Assert.assertEquals(3, queue.getDequeNumber());
+		this.runWorkers(queue, 5);
+		Assert.assertEquals(5, queue.getDequeNumber());
+	}
+
+	/**
+	 * 同时存活的线程各取一次任务后结束
+	 */
+	private void runWorkers(final ScheduleTaskStealQueue<Integer> queue, int threadNumber) throws Exception {
+		final CountDownLatch bound = new CountDownLatch(threadNumber);
+		final CountDownLatch finish = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < threadNumber; i++) {
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					queue.poll();
+					bound.countDown();
+					ScheduleTaskRingQueueTest.await(finish);
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		bound.await();
+		finish.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+	}
+
+	/**
+	 * 任务先放入，处理线程后绑定并互相窃取，每个任务只取到一次
+	 */
+	@Test(timeout = 60000)
+	public void testStealUnderContention() throws Exception {
+		final int taskNumber = 50000;
+		final int threadNumber = 4;
+		final ScheduleTaskStealQueue<Integer> queue = new ScheduleTaskStealQueue<Integer>(taskNumber, null, new StatisticsInfo());
+		final AtomicIntegerArray received = new AtomicIntegerArray(taskNumber);
+		final AtomicInteger receivedNumber = new AtomicInteger(0);
+		final CountDownLatch bound = new CountDownLatch(threadNumber);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < threadNumber; i++) {
+			final int batch = i + 1;
+			threads.add(new Thread(new Runnable() {
+				public void run() {
+					//队列为空时取一次，先绑定队列
+					Assert.assertNull(queue.poll());
+					bound.countDown();
+					while (receivedNumber.get() < taskNumber) {
+						Object[] tasks;
+						if (batch == 1) {
+							Integer task = queue.poll();
+							tasks = task == null ? null : new Object[] { task };
+						} else {
+							tasks = queue.poll(batch * 7);
+						}
+						if (tasks == null) {
+							Thread.yield();
+							continue;
+						}
+						for (int j = 0; j < tasks.length; j++) {
+							received.incrementAndGet((Integer) tasks[j]);
+						}
+						receivedNumber.addAndGet(tasks.length);
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		bound.await();
+		//边取边放，任务分段放入已经绑定的各个队列
+		for (int i = 0; i < taskNumber; i = i + 1000) {
+			List<Integer> tasks = new ArrayList<Integer>();
+			for (int j = i; j < i + 1000; j++) {
+				tasks.add(j);
+			}
+			Assert.assertEquals(1000, queue.offerAll(tasks));
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(taskNumber, receivedNumber.get());
+		for (int i = 0; i < taskNumber; i++) {
+			Assert.assertEquals("任务" + i, 1, received.get(i));
+		}
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertEquals(threadNumber, queue.getDequeNumber());
+	}
+}
@@ -0,0 +1,176 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 流式获取任务：达到每次获取数量后collect返回false，缓冲区满时等待，abort后停止读取
+ */
+public class ScheduleTaskStreamCollectorTest {
+
+	/**
+	 * 逐条读取rowNumber个任务，collect返回false时停止
+	 */
+	static class StreamTaskDeal implements IScheduleTaskDealStream<Long> {
+		final int rowNumber;
+		volatile int selectNumber;
+		volatile boolean lastCollect;
+
+		StreamTaskDeal(int aRowNumber) {
+			this.rowNumber = aRowNumber;
+		}
+
+		public List<Long> selectTasks(String taskParameter, String ownSign, int taskItemNum,
+				List<TaskItemDefine> taskItemList, int eachFetchDataNum) throws Exception {
+			throw new Exception("流式获取时不调用");
+		}
+
+		public void selectTasks(String taskParameter, String ownSign, int taskItemNum,
+				List<TaskItemDefine> taskItemList, int eachFetchDataNum, IScheduleTaskCollector<Long> collector)
+				throws Exception {
+			this.selectNumber = 0;
+			for (long i = 0; i < this.rowNumber; i++) {
+				this.selectNumber = this.selectNumber + 1;
+				this.lastCollect = collector.collect(Long.valueOf(i));
+				if (this.lastCollect == false) {
+					break;
+				}
+			}
+		}
+
+		public Comparator<Long> getComparator() {
+			return null;
+		}
+	}
+
+	private ScheduleTaskType createTaskType(int streamBufferSize) {
+		ScheduleTaskType taskType = new ScheduleTaskType();
+		taskType.setStreamBufferSize(streamBufferSize);
+		return taskType;
+	}
+
+	private int fetch(ScheduleTaskStreamCollector<Long> collector, int eachFetchDataNum) throws Exception {
+		return collector.fetch("", "BASE", 1, new ArrayList<TaskItemDefine>(), eachFetchDataNum);
+	}
+
+	@Test(timeout = 30000)
+	public void testCollect() throws Exception {
+		StreamTaskDeal taskDeal = new StreamTaskDeal(10);
+		ScheduleTaskRingQueue<Long> queue = new ScheduleTaskRingQueue<Long>(16);
+		final AtomicInteger signalCount = new AtomicInteger(0);
+		ScheduleTaskStreamCollector<Long> collector = new ScheduleTaskStreamCollector<Long>(taskDeal, queue,
+				this.createTaskType(0), new StatisticsInfo(), new Runnable() {
+					public void run() {
+						signalCount.incrementAndGet();
+					}
+				});
+		Assert.assertTrue(ScheduleTaskStreamCollector.isStream(taskDeal));
+		Assert.assertEquals(5, this.fetch(collector, 5));
+		Assert.assertEquals(5, taskDeal.selectNumber);
+		Assert.assertFalse(taskDeal.lastCollect);
+		Assert.assertEquals(5, collector.getOfferNumber());
+		Assert.assertEquals(5, queue.size());
+		Assert.assertFalse(collector.isFetching());
+		//队列由空变为非空时通知一次，读取结束时再通知一次
+		Assert.assertEquals(2, signalCount.get());
+
+		//数据不足时读完为止
+		queue.clear();
+		Assert.assertEquals(10, this.fetch(collector, 100));
+		Assert.assertTrue(taskDeal.lastCollect);
+		Assert.assertEquals(10, queue.size());
+	}
+
+	/**
+	 * accept返回false的任务计入读取数量，不放入队列
+	 */
+	@Test(timeout = 30000)
+	public void testDedupe() throws Exception {
+		StreamTaskDeal taskDeal = new StreamTaskDeal(10);
+		ScheduleTaskRingQueue<Long> queue = new ScheduleTaskRingQueue<Long>(16);
+		ScheduleTaskStreamCollector<Long> collector = new ScheduleTaskStreamCollector<Long>(taskDeal, queue,
+				this.createTaskType(0), new StatisticsInfo(), null) {
+			protected boolean accept(Long task) {
+				return task.longValue() % 2 == 0;
+			}
+		};
+		Assert.assertEquals(10, this.fetch(collector, 10));
+		Assert.assertEquals(5, collector.getOfferNumber());
+		Assert.assertEquals(5, queue.size());
+		for (int i = 0; i < 5; i++) {
+			Assert.assertEquals(0, queue.poll().longValue() % 2);
+		}
+	}
+
+	/**
+	 * 缓冲区满时读取线程等待，取走任务后继续；abort后等待中的任务调用reject，读取结束
+	 */
+	@Test(timeout = 30000)
+	public void testBufferAndAbort() throws Exception {
+		StreamTaskDeal taskDeal = new StreamTaskDeal(100);
+		ScheduleTaskRingQueue<Long> queue = new ScheduleTaskRingQueue<Long>(16);
+		final List<Long> rejectTasks = new ArrayList<Long>();
+		final ScheduleTaskStreamCollector<Long> collector = new ScheduleTaskStreamCollector<Long>(taskDeal, queue,
+				this.createTaskType(4), new StatisticsInfo(), null) {
+			protected void reject(Long task) {
+				synchronized (rejectTasks) {
+					rejectTasks.add(task);
+				}
+			}
+		};
+		final CountDownLatch finished = new CountDownLatch(1);
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					fetch(collector, 100);
+				} catch (Exception ex) {
+					ex.printStackTrace();
+				}
+				finished.countDown();
+			}
+		}, "ScheduleTaskStreamCollectorTest-fetch");
+		thread.start();
+		this.waitQueueSize(queue, 4);
+		Assert.assertTrue(collector.isFetching());
+		Assert.assertEquals(5, taskDeal.selectNumber);
+
+		//读取过程中有数据时waitData立即返回
+		long startTime = System.currentTimeMillis();
+		collector.waitData(10000);
+		Assert.assertTrue(System.currentTimeMillis() - startTime < 5000);
+
+		Assert.assertEquals(0, queue.poll().longValue());
+		Assert.assertEquals(1, queue.poll().longValue());
+		this.waitQueueSize(queue, 4);
+		Assert.assertEquals(7, taskDeal.selectNumber);
+
+		collector.abort();
+		Assert.assertTrue(finished.await(10, TimeUnit.SECONDS));
+		Assert.assertFalse(collector.isFetching());
+		Assert.assertFalse(taskDeal.lastCollect);
+		Assert.assertEquals(6, collector.getOfferNumber());
+		Assert.assertEquals(4, queue.size());
+		synchronized (rejectTasks) {
+			Assert.assertEquals(1, rejectTasks.size());
+			Assert.assertEquals(6, rejectTasks.get(0).longValue());
+		}
+		thread.join();
+	}
+
+	private void waitQueueSize(ScheduleTaskRingQueue<Long> queue, int size) throws InterruptedException {
+		long endTime = System.currentTimeMillis() + 10000;
+		while (queue.size() < size && System.currentTimeMillis() < endTime) {
+			Thread.sleep(5);
+		}
+		Assert.assertEquals(size, queue.size());
+		//等待读取线程进入缓冲区满的等待
+		Thread.sleep(50);
+	}
+}
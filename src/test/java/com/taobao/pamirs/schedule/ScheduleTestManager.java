@@ -0,0 +1,80 @@
+package com.taobao.pamirs.schedule;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 不连接配置中心的调度管理器，处理器的单元测试使用。任务项固定，配置中心的调用都返回默认值
+ */
+public class ScheduleTestManager extends TBScheduleManager {
+
+	List<TaskItemDefine> taskItems = new ArrayList<TaskItemDefine>();
+
+	public ScheduleTestManager(ScheduleTaskType taskType, IScheduleTaskDeal<?> taskDealBean, int taskItemNumber)
+			throws Exception {
+		super(new TBScheduleManagerFactory(), "test", "BASE", 0, "", createDataManager(taskType), taskDealBean);
+		for (int i = 0; i < taskItemNumber; i++) {
+			TaskItemDefine item = new TaskItemDefine();
+			item.setTaskItemId(String.valueOf(i));
+			this.taskItems.add(item);
+		}
+		this.currentTaskItemList = this.taskItems;
+	}
+
+	/**
+	 * 创建测试用的任务类型，心跳间隔满足构造函数的检查
+	 */
+	public static ScheduleTaskType createTaskType(String processorType) {
+		ScheduleTaskType taskType = new ScheduleTaskType();
+		taskType.setProcessorType(processorType);
+		taskType.setHeartBeatRate(1000);
+		taskType.setJudgeDeadInterval(60000);
+		taskType.setSleepTimeNoData(100);
+		return taskType;
+	}
+
+	static IScheduleDataManager createDataManager(final ScheduleTaskType taskType) {
+		return (IScheduleDataManager) Proxy.newProxyInstance(ScheduleTestManager.class.getClassLoader(),
+				new Class<?>[] { IScheduleDataManager.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("loadTaskTypeBaseInfo")) {
+							return taskType;
+						}
+						Class<?> returnType = method.getReturnType();
+						if (returnType == boolean.class) {
+							return method.getName().equals("refreshScheduleServer");
+						}
+						if (returnType == int.class) {
+							return 0;
+						}
+						if (returnType == long.class) {
+							return 0L;
+						}
+						if (List.class.isAssignableFrom(returnType)) {
+							return new ArrayList<Object>();
+						}
+						return null;
+					}
+				});
+	}
+
+	public void initial() throws Exception {
+	}
+
+	public void refreshScheduleServerInfo() throws Exception {
+	}
+
+	public void assignScheduleTask() throws Exception {
+	}
+
+	public List<TaskItemDefine> getCurrentScheduleTaskItemList() {
+		return this.taskItems;
+	}
+
+	public int getTaskItemCount() {
+		return this.taskItems.size();
+	}
+}
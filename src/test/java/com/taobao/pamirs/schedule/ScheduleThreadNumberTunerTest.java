@@ -0,0 +1,134 @@
+package com.taobao.pamirs.schedule;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 处理线程数量的弹性调整：积压时增加，负载过高、耗时变长或者空闲时减少，结果在[threadNumberMin,threadNumberMax]之间
+ */
+public class ScheduleThreadNumberTunerTest {
+
+	/**
+	 * CPU负载固定，不受测试机器影响
+	 */
+	static class FixedLoadTuner extends ScheduleThreadNumberTuner {
+		double cpuLoad = 0.1;
+
+		FixedLoadTuner(ScheduleTaskType aTaskTypeInfo, StatisticsInfo aStatisticsInfo) {
+			super(aTaskTypeInfo, aStatisticsInfo);
+		}
+
+		double getCpuLoad() {
+			return this.cpuLoad;
+		}
+	}
+
+	private ScheduleTaskType createTaskType(int min, int max) {
+		ScheduleTaskType taskType = new ScheduleTaskType();
+		taskType.setExecuteNumber(1);
+		taskType.setThreadNumberMin(min);
+		taskType.setThreadNumberMax(max);
+		return taskType;
+	}
+
+	/**
+	 * 模拟一次心跳间隔内处理的任务
+	 */
+	private void deal(StatisticsInfo statisticsInfo, int taskNum, long spendTimePerTask) {
+		statisticsInfo.addDealDataSucess(taskNum);
+		statisticsInfo.addExecute(taskNum, taskNum * spendTimePerTask);
+	}
+
+	@Test
+	public void testNotElastic() throws Exception {
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		FixedLoadTuner tuner = new FixedLoadTuner(this.createTaskType(0, 0), statisticsInfo);
+		Assert.assertFalse(tuner.isElastic());
+		this.deal(statisticsInfo, 100, 1);
+		Assert.assertEquals(8, tuner.computeThreadNumber(8, 10000));
+	}
+
+	@Test
+	public void testBacklog() throws Exception {
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		FixedLoadTuner tuner = new FixedLoadTuner(this.createTaskType(2, 11), statisticsInfo);
+		this.deal(statisticsInfo, 100, 1);
+		//每次调整四分之一，不超过上限
+		Assert.assertEquals(10, tuner.computeThreadNumber(8, 1000));
+		this.deal(statisticsInfo, 100, 1);
+		Assert.assertEquals(11, tuner.computeThreadNumber(10, 1000));
+		//积压不超过一轮的处理量时不变
+		this.deal(statisticsInfo, 100, 1);
+		Assert.assertEquals(11, tuner.computeThreadNumber(11, 11));
+		//CPU忙时不再增加
+		tuner.cpuLoad = 1.0;
+		this.deal(statisticsInfo, 100, 1);
+		Assert.assertEquals(8, tuner.computeThreadNumber(8, 1000));
+	}
+
+	@Test
+	public void testOverload() throws Exception {
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		FixedLoadTuner tuner = new FixedLoadTuner(this.createTaskType(7, 20), statisticsInfo);
+		tuner.cpuLoad = 2.0;
+		this.deal(statisticsInfo, 100, 1);
+		Assert.assertEquals(7, tuner.computeThreadNumber(8, 1000));
+		this.deal(statisticsInfo, 100, 1);
+		Assert.assertEquals(7, tuner.computeThreadNumber(7, 1000));
+	}
+
+	/**
+	 * 增加线程后单条任务耗时成倍增长时减少
+	 */
+	@Test
+	public void testSlower() throws Exception {
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		FixedLoadTuner tuner = new FixedLoadTuner(this.createTaskType(1, 20), statisticsInfo);
+		this.deal(statisticsInfo, 100, 2);
+		Assert.assertEquals(10, tuner.computeThreadNumber(8, 1000));
+		this.deal(statisticsInfo, 100, 4);
+		Assert.assertEquals(8, tuner.computeThreadNumber(10, 1000));
+		//减少线程后耗时变长不再继续减少
+		this.deal(statisticsInfo, 100, 8);
+		Assert.assertEquals(10, tuner.computeThreadNumber(8, 1000));
+	}
+
+	@Test
+	public void testIdle() throws Exception {
+		StatisticsInfo statisticsInfo = new StatisticsInfo();
+		FixedLoadTuner tuner = new FixedLoadTuner(this.createTaskType(0, 20), statisticsInfo);
+		this.deal(statisticsInfo, 3, 1);
+		Assert.assertEquals(6, tuner.computeThreadNumber(8, 0));
+		//处理的任务数不少于线程数时不减少
+		this.deal(statisticsInfo, 6, 1);
+		Assert.assertEquals(6, tuner.computeThreadNumber(6, 0));
+		//下限至少为1
+		Assert.assertEquals(1, tuner.computeThreadNumber(1, 0));
+	}
+
+	@Test(timeout = 30000)
+	public void testSetThreadNumberRange() throws Exception {
+		ScheduleTaskType taskType = ScheduleTestManager.createTaskType("SLEEP");
+		taskType.setThreadNumber(8);
+		ScheduleTestManager manager = new ScheduleTestManager(taskType,
+				new TBScheduleProcessorNotSleepTest.TableTaskDeal(0), 1);
+		try {
+			try {
+				manager.setThreadNumberRange(5, 4);
+				Assert.fail("下限大于上限");
+			} catch (Exception ex) {
+				Assert.assertEquals(0, taskType.getThreadNumberMax());
+			}
+			manager.setThreadNumberRange(2, 6);
+			Assert.assertEquals(6, manager.getThreadNumber());
+			manager.setThreadNumberRange(10, 12);
+			Assert.assertEquals(10, manager.getThreadNumber());
+			//关闭弹性调整时保持当前线程数
+			manager.setThreadNumberRange(0, 0);
+			Assert.assertEquals(10, manager.getThreadNumber());
+			Assert.assertEquals(0, taskType.getThreadNumberMax());
+		} finally {
+			manager.stopScheduleServer();
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 分层时间轮：按到期时间顺序执行，不会提前执行，取消后不再执行
+ */
+public class ScheduleTimerServiceTest {
+
+	/**
+	 * 乱序加入，间隔大于一格，按到期时间执行；超过第一层范围的任务从上层降下来后执行
+	 */
+	@Test(timeout = 30000)
+	public void testOrder() throws Exception {
+		ScheduleTimerService timerService = new ScheduleTimerService(1);
+		long[] delays = { 900, 100, 700, 300, 1500, 500, 50, 1100 };
+		final List<Long> executed = Collections.synchronizedList(new ArrayList<Long>());
+		final AtomicInteger earlyNumber = new AtomicInteger(0);
+		final CountDownLatch latch = new CountDownLatch(delays.length);
+		final long startTime = System.currentTimeMillis();
+		for (int i = 0; i < delays.length; i++) {
+			final long delay = delays[i];
+			timerService.schedule("order", new Runnable() {
+				public void run() {
+					if (System.currentTimeMillis() - startTime < delay) {
+						earlyNumber.incrementAndGet();
+					}
+					executed.add(delay);
+					latch.countDown();
+				}
+			}, delay);
+		}
+		Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals(0, earlyNumber.get());
+		List<Long> expected = new ArrayList<Long>();
+		for (int i = 0; i < delays.length; i++) {
+			expected.add(delays[i]);
+		}
+		Collections.sort(expected);
+		Assert.assertEquals(expected, executed);
+	}
+
+	@Test(timeout = 30000)
+	public void testCancel() throws Exception {
+		ScheduleTimerService timerService = new ScheduleTimerService(1);
+		final AtomicInteger cancelledNumber = new AtomicInteger(0);
+		final CountDownLatch latch = new CountDownLatch(1);
+		ScheduleTimerService.ScheduleTimeout cancelled = timerService.schedule("cancel", new Runnable() {
+			public void run() {
+				cancelledNumber.incrementAndGet();
+			}
+		}, 200);
+		timerService.schedule("after", new Runnable() {
+			public void run() {
+				latch.countDown();
+			}
+		}, 400);
+		cancelled.cancel();
+		Assert.assertTrue(cancelled.isCancelled());
+		Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals(0, cancelledNumber.get());
+	}
+
+	/**
+	 * 固定间隔重复执行，取消后不再执行
+	 */
+	@Test(timeout = 30000)
+	public void testFixedDelayCancel() throws Exception {
+		ScheduleTimerService timerService = new ScheduleTimerService(2);
+		final AtomicInteger count = new AtomicInteger(0);
+		final CountDownLatch latch = new CountDownLatch(3);
+		ScheduleTimerService.ScheduleTimeout timeout = timerService.scheduleWithFixedDelay("fixed", new Runnable() {
+			public void run() {
+				count.incrementAndGet();
+				latch.countDown();
+			}
+		}, 0, 50);
+		Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+		timeout.cancel();
+		//取消时可能正在执行一次
+		Thread.sleep(100);
+		int cancelCount = count.get();
+		Thread.sleep(300);
+		Assert.assertEquals(cancelCount, count.get());
+	}
+}
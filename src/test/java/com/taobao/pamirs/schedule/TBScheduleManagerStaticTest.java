@@ -0,0 +1,212 @@
+package com.taobao.pamirs.schedule;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 任务项移交：被申请的任务项还有任务在处理中时暂不释放，处理完或者超过drainTimeout后释放
+ */
+public class TBScheduleManagerStaticTest {
+
+	/**
+	 * 内存中的配置中心，任务项的cur_server和req_server，释放逻辑和ScheduleDataManager4ZK相同
+	 */
+	static class TaskItemCenter implements InvocationHandler {
+		final ScheduleTaskType taskType;
+		final Map<String, String[]> taskItems = new TreeMap<String, String[]>();
+		long reloadFlag = 0;
+
+		TaskItemCenter(ScheduleTaskType aTaskType) {
+			this.taskType = aTaskType;
+		}
+
+		public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("loadTaskTypeBaseInfo")) {
+				return this.taskType;
+			}
+			if (name.equals("getReloadTaskItemFlag")) {
+				return this.reloadFlag;
+			}
+			if (name.equals("releaseDealTaskItem") && args.length == 3) {
+				String uuid = (String) args[1];
+				@SuppressWarnings("unchecked")
+				Set<String> dealingTaskItems = (Set<String>) args[2];
+				List<String> holdTaskItems = new ArrayList<String>();
+				for (Map.Entry<String, String[]> entry : this.taskItems.entrySet()) {
+					String[] server = entry.getValue();
+					if (server[1] != null && uuid.equals(server[0])) {
+						if (dealingTaskItems != null && dealingTaskItems.contains(entry.getKey())) {
+							holdTaskItems.add(entry.getKey());
+							continue;
+						}
+						server[0] = server[1];
+						server[1] = null;
+						this.reloadFlag = this.reloadFlag + 1;
+					}
+				}
+				return holdTaskItems;
+			}
+			if (name.equals("reloadDealTaskItem")) {
+				List<TaskItemDefine> result = new ArrayList<TaskItemDefine>();
+				for (Map.Entry<String, String[]> entry : this.taskItems.entrySet()) {
+					if (args[1].equals(entry.getValue()[0])) {
+						TaskItemDefine item = new TaskItemDefine();
+						item.setTaskItemId(entry.getKey());
+						result.add(item);
+					}
+				}
+				return result;
+			}
+			Class<?> returnType = method.getReturnType();
+			if (returnType == boolean.class) {
+				return name.equals("refreshScheduleServer");
+			}
+			if (returnType == int.class) {
+				return 0;
+			}
+			if (returnType == long.class) {
+				return 0L;
+			}
+			if (List.class.isAssignableFrom(returnType)) {
+				return new ArrayList<Object>();
+			}
+			return null;
+		}
+
+		synchronized String getServer(String taskItem) {
+			return this.taskItems.get(taskItem)[0];
+		}
+	}
+
+	/**
+	 * 只返回处理中任务项的处理器
+	 */
+	static class DealingProcessor implements InvocationHandler {
+		volatile Set<String> dealingTaskItems;
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getName().equals("getDealingTaskItems")) {
+				return this.dealingTaskItems == null ? null : new HashSet<String>(this.dealingTaskItems);
+			}
+			Class<?> returnType = method.getReturnType();
+			if (returnType == boolean.class) {
+				return false;
+			}
+			if (returnType == int.class) {
+				return 0;
+			}
+			return null;
+		}
+	}
+
+	private TaskItemCenter center;
+	private DealingProcessor dealingProcessor;
+
+	private TBScheduleManagerStatic createManager(int drainTimeout) throws Exception {
+		ScheduleTaskType taskType = ScheduleTestManager.createTaskType("NOTSLEEP");
+		taskType.setDrainTimeout(drainTimeout);
+		this.center = new TaskItemCenter(taskType);
+		IScheduleDataManager dataManager = (IScheduleDataManager) Proxy.newProxyInstance(
+				TBScheduleManagerStaticTest.class.getClassLoader(), new Class<?>[] { IScheduleDataManager.class },
+				this.center);
+		TBScheduleManagerStatic manager = new TBScheduleManagerStatic(new TBScheduleManagerFactory(), "test", "BASE",
+				0, "", dataManager, new TBScheduleProcessorNotSleepTest.TableTaskDeal(0));
+		String uuid = manager.getScheduleServer().getUuid();
+		//0、3只属于自己，1、2被其它服务器申请
+		this.center.taskItems.put("0", new String[] { uuid, null });
+		this.center.taskItems.put("1", new String[] { uuid, "other" });
+		this.center.taskItems.put("2", new String[] { uuid, "other" });
+		this.center.taskItems.put("3", new String[] { uuid, null });
+		manager.currentTaskItemList = new ArrayList<TaskItemDefine>();
+		for (String taskItem : this.center.taskItems.keySet()) {
+			TaskItemDefine item = new TaskItemDefine();
+			item.setTaskItemId(taskItem);
+			manager.currentTaskItemList.add(item);
+		}
+		this.dealingProcessor = new DealingProcessor();
+		manager.processor = (IScheduleProcessor) Proxy.newProxyInstance(
+				TBScheduleManagerStaticTest.class.getClassLoader(), new Class<?>[] { IScheduleProcessor.class },
+				this.dealingProcessor);
+		return manager;
+	}
+
+	private String getTaskItemIds(List<TaskItemDefine> taskItems) {
+		StringBuilder buffer = new StringBuilder();
+		for (TaskItemDefine item : taskItems) {
+			buffer.append(item.getTaskItemId());
+		}
+		return buffer.toString();
+	}
+
+	@Test(timeout = 30000)
+	public void testHoldDealingTaskItem() throws Exception {
+		TBScheduleManagerStatic manager = this.createManager(0);
+		try {
+			Set<String> dealingTaskItems = new HashSet<String>();
+			dealingTaskItems.add("1");
+			manager.markHandoffStart();
+			Assert.assertEquals("03", this.getTaskItemIds(manager.getCurrentScheduleTaskItemListNow(dealingTaskItems)));
+			//处理中的任务项1暂不释放，也不再取数；没有任务的任务项2立即移交
+			Assert.assertEquals("other", this.center.getServer("2"));
+			Assert.assertEquals(manager.getScheduleServer().getUuid(), this.center.getServer("1"));
+			Assert.assertEquals(1, manager.holdTaskItemSet.size());
+			Assert.assertTrue(manager.holdTaskItemSet.contains("1"));
+			Assert.assertEquals(1, manager.getTaskItemHandoffList().size());
+			Assert.assertTrue(manager.handoffStartTime > 0);
+
+			//处理器不能区分任务项时不释放
+			this.dealingProcessor.dealingTaskItems = null;
+			manager.releaseHoldTaskItem();
+			Assert.assertEquals(manager.getScheduleServer().getUuid(), this.center.getServer("1"));
+
+			//任务项1处理完后由心跳释放，当前任务项当作处理中，不会被释放
+			this.dealingProcessor.dealingTaskItems = new HashSet<String>();
+			manager.releaseHoldTaskItem();
+			Assert.assertEquals("other", this.center.getServer("1"));
+			Assert.assertEquals(0, manager.holdTaskItemSet.size());
+			Assert.assertEquals(0, manager.handoffStartTime);
+			Assert.assertEquals("03", this.getTaskItemIds(manager.currentTaskItemList));
+			Assert.assertEquals(2, manager.getTaskItemHandoffList().size());
+		} finally {
+			manager.processor = null;
+			manager.stopScheduleServer();
+		}
+	}
+
+	/**
+	 * 超过drainTimeout后不再等待，处理中的任务项也释放
+	 */
+	@Test(timeout = 30000)
+	public void testDrainTimeout() throws Exception {
+		TBScheduleManagerStatic manager = this.createManager(100);
+		try {
+			Set<String> dealingTaskItems = new HashSet<String>();
+			dealingTaskItems.add("1");
+			dealingTaskItems.add("2");
+			manager.markHandoffStart();
+			Assert.assertEquals("03", this.getTaskItemIds(manager.getCurrentScheduleTaskItemListNow(dealingTaskItems)));
+			Assert.assertEquals(2, manager.holdTaskItemSet.size());
+			Assert.assertFalse(manager.isDrainTimeout());
+			Thread.sleep(150);
+			Assert.assertTrue(manager.isDrainTimeout());
+			Assert.assertEquals("03", this.getTaskItemIds(manager.getCurrentScheduleTaskItemListNow(dealingTaskItems)));
+			Assert.assertEquals("other", this.center.getServer("1"));
+			Assert.assertEquals("other", this.center.getServer("2"));
+			Assert.assertEquals(0, manager.holdTaskItemSet.size());
+		} finally {
+			manager.processor = null;
+			manager.stopScheduleServer();
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * NOTSLEEP模式：处理中的任务被重新取到时不再处理，实现IScheduleTaskKey时按主键判重，不再逐个比较
+ */
+public class TBScheduleProcessorNotSleepTest {
+
+	/**
+	 * 模拟数据库：处理完的数据才删除，没有处理完的数据每次都会被重新取到
+	 */
+	static class TableTaskDeal implements IScheduleTaskDealSingle<Long> {
+		final Set<Long> pending = new ConcurrentSkipListSet<Long>();
+		final ConcurrentHashMap<Long, AtomicInteger> executeCount = new ConcurrentHashMap<Long, AtomicInteger>();
+
+		TableTaskDeal(int rowNumber) {
+			for (long i = 0; i < rowNumber; i++) {
+				this.pending.add(i);
+			}
+		}
+
+		public List<Long> selectTasks(String taskParameter, String ownSign, int taskItemNum,
+				List<TaskItemDefine> taskItemList, int eachFetchDataNum) throws Exception {
+			List<Long> result = new ArrayList<Long>();
+			for (Long id : this.pending) {
+				if (result.size() >= eachFetchDataNum) {
+					break;
+				}
+				result.add(id);
+			}
+			return result;
+		}
+
+		public Comparator<Long> getComparator() {
+			return new Comparator<Long>() {
+				public int compare(Long o1, Long o2) {
+					return o1.compareTo(o2);
+				}
+			};
+		}
+
+		public boolean execute(Long task, String ownSign) throws Exception {
+			LockSupport.parkNanos(200000L);
+			this.executeCount.putIfAbsent(task, new AtomicInteger(0));
+			this.executeCount.get(task).incrementAndGet();
+			this.pending.remove(task);
+			return true;
+		}
+	}
+
+	static class KeyTableTaskDeal extends TableTaskDeal implements IScheduleTaskKey<Long> {
+		KeyTableTaskDeal(int rowNumber) {
+			super(rowNumber);
+		}
+
+		public Object getTaskKey(Long task) {
+			return task;
+		}
+	}
+
+	/**
+	 * 第一次取数时停住，测试期间不会再拷贝runningTaskList
+	 */
+	static class BlockedTaskDeal extends KeyTableTaskDeal {
+		final CountDownLatch selected = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		BlockedTaskDeal() {
+			super(0);
+		}
+
+		public List<Long> selectTasks(String taskParameter, String ownSign, int taskItemNum,
+				List<TaskItemDefine> taskItemList, int eachFetchDataNum) throws Exception {
+			this.selected.countDown();
+			this.release.await();
+			return new ArrayList<Long>();
+		}
+	}
+
+	/**
+	 * 每个任务处理5毫秒，第一个任务开始处理后通知
+	 */
+	static class SlowTaskDeal extends TableTaskDeal {
+		final CountDownLatch started = new CountDownLatch(1);
+
+		SlowTaskDeal(int rowNumber) {
+			super(rowNumber);
+		}
+
+		public boolean execute(Long task, String ownSign) throws Exception {
+			this.started.countDown();
+			Thread.sleep(5);
+			return super.execute(task, ownSign);
+		}
+	}
+
+	private ScheduleTaskType createTaskType() {
+		ScheduleTaskType taskType = ScheduleTestManager.createTaskType("NOTSLEEP");
+		taskType.setThreadNumber(4);
+		taskType.setFetchDataNumber(100);
+		return taskType;
+	}
+
+	private ScheduleTestManager run(TableTaskDeal taskDeal, int rowNumber) throws Exception {
+		ScheduleTestManager manager = new ScheduleTestManager(this.createTaskType(), taskDeal, 1);
+		manager.resume("test");
+		try {
+			long endTime = System.currentTimeMillis() + 30000;
+			while (taskDeal.pending.isEmpty() == false && System.currentTimeMillis() < endTime) {
+				Thread.sleep(10);
+			}
+		} finally {
+			manager.stopScheduleServer();
+		}
+		Assert.assertEquals(0, taskDeal.pending.size());
+		Assert.assertEquals(rowNumber, taskDeal.executeCount.size());
+		for (AtomicInteger count : taskDeal.executeCount.values()) {
+			Assert.assertEquals(1, count.get());
+		}
+		return manager;
+	}
+
+	@Test(timeout = 60000)
+	public void testComparatorDedupe() throws Exception {
+		this.run(new TableTaskDeal(3000), 3000);
+	}
+
+	@Test(timeout = 60000)
+	public void testKeyDedupe() throws Exception {
+		ScheduleTestManager manager = this.run(new KeyTableTaskDeal(3000), 3000);
+		Assert.assertEquals(0, manager.getStatisticsInfo().getOtherCompareCount());
+	}
+
+	/**
+	 * 取数前拷贝处理中任务的主键，重新取到的每个任务只丢弃一次
+	 */
+	@SuppressWarnings("unchecked")
+	@Test(timeout = 60000)
+	public void testMaybeRepeatKeySet() throws Exception {
+		BlockedTaskDeal taskDeal = new BlockedTaskDeal();
+		ScheduleTestManager manager = new ScheduleTestManager(this.createTaskType(), taskDeal, 1);
+		manager.resume("test");
+		try {
+			Assert.assertTrue(taskDeal.selected.await(10, TimeUnit.SECONDS));
+			TBScheduleProcessorNotSleep<Long> processor = (TBScheduleProcessorNotSleep<Long>) manager.processor;
+			processor.runningTaskList.add(Long.valueOf(1));
+			processor.runningTaskList.add(Long.valueOf(2));
+			processor.putLastRunningTaskList();
+			Assert.assertEquals(2, processor.maybeRepeatKeySet.size());
+			Assert.assertEquals(0, processor.maybeRepeatTaskList.size());
+
+			Assert.assertTrue(processor.isDealing(Long.valueOf(1)));
+			Assert.assertFalse(processor.isDealing(Long.valueOf(1)));
+			Assert.assertFalse(processor.isDealing(Long.valueOf(3)));
+			Assert.assertTrue(processor.isDealing(Long.valueOf(2)));
+			Assert.assertEquals(0, processor.maybeRepeatKeySet.size());
+			Assert.assertEquals(0, manager.getStatisticsInfo().getOtherCompareCount());
+		} finally {
+			taskDeal.release.countDown();
+			manager.stopScheduleServer();
+		}
+	}
+
+	/**
+	 * 配置drainTimeout时，停止调度后继续处理完已经取到队列中的任务；没有配置时清除队列
+	 */
+	@Test(timeout = 60000)
+	public void testDrainAfterStop() throws Exception {
+		Assert.assertEquals(200, this.stopAfterStart(10000));
+		Assert.assertTrue(this.stopAfterStart(0) < 200);
+	}
+
+	/**
+	 * 一次取到全部200个任务，开始处理后停止调度
+	 * @return 处理线程全部退出时处理完的任务数量
+	 */
+	private int stopAfterStart(int drainTimeout) throws Exception {
+		SlowTaskDeal taskDeal = new SlowTaskDeal(200);
+		ScheduleTaskType taskType = this.createTaskType();
+		taskType.setThreadNumber(2);
+		taskType.setFetchDataNumber(200);
+		taskType.setDrainTimeout(drainTimeout);
+		ScheduleTestManager manager = new ScheduleTestManager(taskType, taskDeal, 1);
+		manager.resume("test");
+		Assert.assertTrue(taskDeal.started.await(10, TimeUnit.SECONDS));
+		manager.stopScheduleServer();
+		//最后一个处理线程退出时注销
+		while (manager.processor != null) {
+			Thread.sleep(10);
+		}
+		return taskDeal.executeCount.size();
+	}
+}
@@ -0,0 +1,157 @@
+package com.taobao.pamirs.schedule;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * PIPELINE模式：队列低于水位线时提前取数，和内存中的任务重复的数据不再处理
+ */
+public class TBScheduleProcessorPipelineTest {
+
+	/**
+	 * 模拟数据库：处理完的数据才删除，没有处理完的数据每次都会被重新取到
+	 */
+	static class TableTaskDeal implements IScheduleTaskDealSingle<Long> {
+		final Set<Long> pending = new ConcurrentSkipListSet<Long>();
+		final ConcurrentHashMap<Long, AtomicInteger> executeCount = new ConcurrentHashMap<Long, AtomicInteger>();
+		/**
+		 * 每次取数时队列中的任务数量
+		 */
+		final List<Integer> queueSizes = new ArrayList<Integer>();
+		volatile TBScheduleManager manager;
+
+		TableTaskDeal(int rowNumber) {
+			for (long i = 0; i < rowNumber; i++) {
+				this.pending.add(i);
+			}
+		}
+
+		public List<Long> selectTasks(String taskParameter, String ownSign, int taskItemNum,
+				List<TaskItemDefine> taskItemList, int eachFetchDataNum) throws Exception {
+			synchronized (this.queueSizes) {
+				this.queueSizes.add(this.manager.processor.getTaskQueueSize());
+			}
+			List<Long> result = new ArrayList<Long>();
+			for (Long id : this.pending) {
+				if (result.size() >= eachFetchDataNum) {
+					break;
+				}
+				result.add(id);
+			}
+			return result;
+		}
+
+		public Comparator<Long> getComparator() {
+			return new Comparator<Long>() {
+				public int compare(Long o1, Long o2) {
+					return o1.compareTo(o2);
+				}
+			};
+		}
+
+		public boolean execute(Long task, String ownSign) throws Exception {
+			LockSupport.parkNanos(200000L);
+			this.executeCount.putIfAbsent(task, new AtomicInteger(0));
+			this.executeCount.get(task).incrementAndGet();
+			this.pending.remove(task);
+			return true;
+		}
+	}
+
+	static class KeyTableTaskDeal extends TableTaskDeal implements IScheduleTaskKey<Long> {
+		KeyTableTaskDeal(int rowNumber) {
+			super(rowNumber);
+		}
+
+		public Object getTaskKey(Long task) {
+			return task;
+		}
+	}
+
+	private ScheduleTaskType createTaskType() {
+		ScheduleTaskType taskType = ScheduleTestManager.createTaskType("PIPELINE");
+		taskType.setThreadNumber(4);
+		taskType.setFetchDataNumber(100);
+		taskType.setPipelineLowWatermark(50);
+		return taskType;
+	}
+
+	private void run(TableTaskDeal taskDeal, int rowNumber) throws Exception {
+		ScheduleTestManager manager = new ScheduleTestManager(this.createTaskType(), taskDeal, 1);
+		taskDeal.manager = manager;
+		manager.resume("test");
+		try {
+			long endTime = System.currentTimeMillis() + 30000;
+			while (taskDeal.pending.isEmpty() == false && System.currentTimeMillis() < endTime) {
+				Thread.sleep(10);
+			}
+		} finally {
+			manager.stopScheduleServer();
+		}
+		Assert.assertEquals(0, taskDeal.pending.size());
+		Assert.assertEquals(rowNumber, taskDeal.executeCount.size());
+		for (AtomicInteger count : taskDeal.executeCount.values()) {
+			Assert.assertEquals(1, count.get());
+		}
+		//只在低于水位线时取数，并且处理线程还有任务时就开始取下一批
+		int maxQueueSize = 0;
+		synchronized (taskDeal.queueSizes) {
+			for (Integer size : taskDeal.queueSizes) {
+				Assert.assertTrue("取数时队列中有" + size + "个任务", size < 50);
+				maxQueueSize = Math.max(maxQueueSize, size);
+			}
+		}
+		Assert.assertTrue(maxQueueSize > 0);
+	}
+
+	@Test(timeout = 60000)
+	public void testComparatorDedupe() throws Exception {
+		TableTaskDeal taskDeal = new TableTaskDeal(3000);
+		this.run(taskDeal, 3000);
+	}
+
+	@Test(timeout = 60000)
+	public void testKeyDedupe() throws Exception {
+		TableTaskDeal taskDeal = new KeyTableTaskDeal(3000);
+		this.run(taskDeal, 3000);
+	}
+
+	/**
+	 * 按比较器判重时统计每一次比较，和NOTSLEEP模式一致；内存中的任务过多时暂停取数
+	 */
+	@SuppressWarnings("unchecked")
+	@Test(timeout = 60000)
+	public void testCompareCount() throws Exception {
+		TableTaskDeal taskDeal = new TableTaskDeal(0);
+		ScheduleTestManager manager = new ScheduleTestManager(this.createTaskType(), taskDeal, 1);
+		taskDeal.manager = manager;
+		manager.resume("test");
+		try {
+			TBScheduleProcessorPipeline<Long> processor = (TBScheduleProcessorPipeline<Long>) manager.processor;
+			long compareCount = manager.getStatisticsInfo().getOtherCompareCount();
+			Object[] inFlightTasks = new Object[] { 1L, 2L, 3L, 4L };
+			Assert.assertTrue(processor.isDealing(3L, inFlightTasks));
+			Assert.assertFalse(processor.isDealing(9L, inFlightTasks));
+			Assert.assertEquals(compareCount + 3 + 4, manager.getStatisticsInfo().getOtherCompareCount());
+
+			Assert.assertFalse(processor.isCompareLimitExceeded());
+			for (long i = 0; i <= TBScheduleProcessorPipeline.MIN_COMPARE_LIMIT; i++) {
+				processor.inFlightTaskSet.add(Long.valueOf(i));
+			}
+			Assert.assertTrue(processor.isCompareLimitExceeded());
+			processor.inFlightTaskSet.clear();
+			Assert.assertFalse(processor.isCompareLimitExceeded());
+		} finally {
+			manager.stopScheduleServer();
+		}
+	}
+}
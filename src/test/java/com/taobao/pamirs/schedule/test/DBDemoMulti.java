@@ -17,7 +17,7 @@ import com.taobao.pamirs.schedule.IScheduleTaskDealMulti;
 import com.taobao.pamirs.schedule.TaskItemDefine;
 
 /**
- * ʵ
+ * 批处理实现
  * 
  * @author xuannan
  * 
@@ -71,7 +71,7 @@ public class DBDemoMulti implements	IScheduleTaskDealMulti<Long> {
 						+ condition.toString() + ") and sts ='N' LIMIT "
 						+ fetchNum;
 			} else {
-				throw new Exception("ֵ֧ݿͣ" + dbType);
+				throw new Exception("不支持的数据库类型：" + dbType);
 			}
 			PreparedStatement statement = conn.prepareStatement(sql);
 			ResultSet set = statement.executeQuery();
@@ -96,7 +96,7 @@ public class DBDemoMulti implements	IScheduleTaskDealMulti<Long> {
 			conn = dataSource.getConnection();
 			for (int index = 0; index < tasks.length; index++) {
 				id = ((Long) tasks[index]).longValue();
-				log.debug("" + id + " ɹ");
+				log.debug("处理任务：" + id + " 成功！");
 				String sql = "update SCHEDULE_TEST SET STS ='Y' ,DEAL_COUNT = DEAL_COUNT + 1 WHERE ID = ? and STS ='N' ";
 				PreparedStatement statement = conn.prepareStatement(sql);
 				statement.setLong(1, id);
@@ -105,7 +105,7 @@ public class DBDemoMulti implements	IScheduleTaskDealMulti<Long> {
 			}
 			conn.commit();
 		} catch (Exception e) {
-			log.error("ִ" + id + "ʧܣ" + e.getMessage(), e);
+			log.error("执行任务：" + id + "失败：" + e.getMessage(), e);
 			if (conn != null) {
 				conn.rollback();
 			}
@@ -115,7 +115,7 @@ public class DBDemoMulti implements	IScheduleTaskDealMulti<Long> {
 				conn.close();
 			}
 		}
-		// System.out.println("" + tasks.length);
+		// System.out.println("处理任务：" + tasks.length);
 		return true;
 	}
 
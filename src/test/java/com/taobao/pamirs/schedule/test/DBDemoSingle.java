@@ -17,7 +17,7 @@ import com.taobao.pamirs.schedule.IScheduleTaskDealSingle;
 import com.taobao.pamirs.schedule.TaskItemDefine;
 
 /**
- * ʵ
+ * 单个任务处理实现
  * 
  * @author xuannan
  * 
@@ -71,7 +71,7 @@ public class DBDemoSingle implements	IScheduleTaskDealSingle<Long> {
 						+ condition.toString() + ") and sts ='N' LIMIT "
 						+ fetchNum;
 			} else {
-				throw new Exception("ֵ֧ݿͣ" + dbType);
+				throw new Exception("不支持的数据库类型：" + dbType);
 			}
 			PreparedStatement statement = conn.prepareStatement(sql);
 			ResultSet set = statement.executeQuery();
@@ -99,10 +99,10 @@ public class DBDemoSingle implements	IScheduleTaskDealSingle<Long> {
 			statement.executeUpdate();
 			statement.close();
 			conn.commit();
-			log.debug("" + id + " ɹ");
+			log.debug("处理任务：" + id + " 成功！");
 			return true;
 		} catch (Exception e) {
-			log.error("ִ" + task + "ʧܣ" + e.getMessage(), e);
+			log.error("执行任务：" + task + "失败：" + e.getMessage(), e);
 			if (conn != null) {
 				conn.rollback();
 			}
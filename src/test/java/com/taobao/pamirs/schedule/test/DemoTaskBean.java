@@ -12,7 +12,7 @@ import com.taobao.pamirs.schedule.IScheduleTaskDealSingle;
 import com.taobao.pamirs.schedule.TaskItemDefine;
 
 /**
- * ʵ
+ * 单个任务处理实现
  * 
  * @author xuannan
  * 
@@ -37,7 +37,7 @@ public class DemoTaskBean implements IScheduleTaskDealSingle<Long> {
 		List<Long> result = new ArrayList<Long>();
 		int num = fetchNum / queryCondition.size();
 		Random random = new Random(System.currentTimeMillis());
-		String message = "ȡ...[ownSign=" + ownSign + ",taskParameter=\"" + taskParameter +"\"]:";
+		String message = "获取数据...[ownSign=" + ownSign + ",taskParameter=\"" + taskParameter +"\"]:";
 		boolean isFirst = true;
 		for (TaskItemDefine s : queryCondition) {
 			long taskItem = Integer.parseInt(s.getTaskItemId()) * 10000000L;
@@ -57,7 +57,7 @@ public class DemoTaskBean implements IScheduleTaskDealSingle<Long> {
 
 	public boolean execute(Long task, String ownSign) throws Exception {
 		Thread.sleep(50);
-		//log.info("["+ownSign+"]:" + task);
+		//log.info("处理任务["+ownSign+"]:" + task);
 		return true;
 	}
 }
\ No newline at end of file
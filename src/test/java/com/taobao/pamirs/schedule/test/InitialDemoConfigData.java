@@ -37,22 +37,22 @@ public class InitialDemoConfigData extends UnitilsJUnit4 {
 		} catch (Exception e) {
 
 		}
-		// DemoTaskĻϢ
+		// 创建任务调度DemoTask的基本信息
 		ScheduleTaskType baseTaskType = new ScheduleTaskType();
 		baseTaskType.setBaseTaskType(baseTaskTypeName);
 		baseTaskType.setDealBeanName("demoTaskBean");
 		baseTaskType.setHeartBeatRate(2000);
 		baseTaskType.setJudgeDeadInterval(10000);
-		baseTaskType.setTaskParameter("AREA=,YEAR>30");
+		baseTaskType.setTaskParameter("AREA=杭州,YEAR>30");
 		baseTaskType.setTaskItems(ScheduleTaskType.splitTaskItem(
 				"0:{TYPE=A,KIND=1},1:{TYPE=A,KIND=2},2:{TYPE=A,KIND=3},3:{TYPE=A,KIND=4}," +
 				"4:{TYPE=A,KIND=5},5:{TYPE=A,KIND=6},6:{TYPE=A,KIND=7},7:{TYPE=A,KIND=8}," +
 				"8:{TYPE=A,KIND=9},9:{TYPE=A,KIND=10}"));
 		this.scheduleManagerFactory.getScheduleDataManager()
 				.createBaseTaskType(baseTaskType);
-		log.info("ɹ:" + baseTaskType.toString());
+		log.info("创建调度任务成功:" + baseTaskType.toString());
 
-		// DemoTaskĵȲ
+		// 创建任务DemoTask的调度策略
 		String taskName = baseTaskTypeName;
 		try {
 			this.scheduleManagerFactory.getScheduleStrategyManager()
@@ -67,7 +67,7 @@ public class InitialDemoConfigData extends UnitilsJUnit4 {
 		strategy.setIPList("127.0.0.1".split(","));
 		this.scheduleManagerFactory.getScheduleStrategyManager()
 				.createScheduleStrategy(strategy);
-		log.info("ȲԳɹ:" + strategy.toString());
+		log.info("创建调度策略成功:" + strategy.toString());
 
 	}
 }
@@ -0,0 +1,164 @@
+package com.taobao.pamirs.schedule.test;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.taobao.pamirs.schedule.CronExpression;
+import com.taobao.pamirs.schedule.ScheduleCronExpression;
+
+/**
+ * ScheduleCronExpression和CronExpression的对比测试：相同的表达式、时区和起始时间，下一次执行时间必须相同
+ */
+public class ScheduleCronExpressionTest {
+	static final String[] EXPRESSIONS = {
+		"0 * * * * ?",
+		"* * * * * ?",
+		"0/5 * * * * ?",
+		"10,20,30 */7 * * * ?",
+		"0 0 * * * ?",
+		"0 0 2 * * ?",
+		"0 30 2 * * ?",
+		"30 59 1 * * ?",
+		"0 0 1,2,3 * * ?",
+		"0 15 10 ? * MON-FRI",
+		"0 0 22-2 * * ?",
+		"0 0/30 8-18 ? * 2-6",
+		"0 0 12 1/5 * ?",
+		"0 0 0 31 * ?",
+		"0 0 0 29 2 ?",
+		"0 0 0 30,31 * ?",
+		"0 0 9 L * ?",
+		"0 0 9 LW * ?",
+		"0 0 9 15W * ?",
+		"0 0 9 1W * ?",
+		"0 0 9 31W * ?",
+		"0 0 9 3L * ?",
+		"0 0 9 5-L * ?",
+		"0 0 9 10-3L * ?",
+		"0 0 9 ? * 6L",
+		"0 0 9 ? * FRIL",
+		"0 0 9 ? * L",
+		"0 0 9 ? * 6#3",
+		"0 0 9 ? * MON#1",
+		"0 0 9 ? * 2#5",
+		"0 0 9 ? * SAT,SUN",
+		"0 0 9 ? * FRI-MON",
+		"0 0 0 1 JAN,JUL ?",
+		"0 0 0 1 NOV-FEB ?",
+		"0 0 0 1 */3 ?",
+		"0 0 12 * * ? 2030",
+		"0 0 12 ? * MON 2028-2031",
+		"0 0 12 1 1 ? 2010",
+		"0 5 4 * * ? 2027/2",
+	};
+
+	static final String[] TIME_ZONES = {
+		"UTC",
+		"Asia/Shanghai",
+		"America/New_York",
+		"Europe/London",
+		"Australia/Lord_Howe",
+		"America/Sao_Paulo",
+		"America/Santiago",
+	};
+
+	@Test
+	public void testRandomTime() throws Exception {
+		Random random = new Random(20161018L);
+		long begin = 946684800000L; // 2000-01-01
+		long range = 40L * 365 * 24 * 3600 * 1000;
+		for (String zone : TIME_ZONES) {
+			TimeZone timeZone = TimeZone.getTimeZone(zone);
+			for (String expression : EXPRESSIONS) {
+				for (int i = 0; i < 100; i++) {
+					long time = (begin + (long) (random.nextDouble() * range)) / 1000 * 1000;
+					this.assertSame(expression, timeZone, time, 1);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSequence() throws Exception {
+		long begin = 1451606400000L; // 2016-01-01
+		for (String zone : TIME_ZONES) {
+			TimeZone timeZone = TimeZone.getTimeZone(zone);
+			for (String expression : EXPRESSIONS) {
+				this.assertSame(expression, timeZone, begin, 400);
+			}
+		}
+	}
+
+	/**
+	 * 夏令时切换前后逐分钟比较
+	 */
+	@Test
+	public void testDaylightSaving() throws Exception {
+		String[][] transitions = {
+			{ "America/New_York", "1457852400000" }, // 2016-03-13 07:00 UTC
+			{ "America/New_York", "1478412000000" }, // 2016-11-06 06:00 UTC
+			{ "Europe/London", "1459040400000" }, // 2016-03-27 01:00 UTC
+			{ "Europe/London", "1477789200000" }, // 2016-10-30 01:00 UTC
+			{ "Australia/Lord_Howe", "1459612800000" }, // 2016-04-02 15:00 UTC
+			{ "America/Sao_Paulo", "1476586800000" }, // 2016-10-16 03:00 UTC
+		};
+		for (String[] transition : transitions) {
+			TimeZone timeZone = TimeZone.getTimeZone(transition[0]);
+			long center = Long.parseLong(transition[1]);
+			for (String expression : EXPRESSIONS) {
+				for (long time = center - 3 * 3600000L; time <= center + 3 * 3600000L; time += 60000L) {
+					this.assertSame(expression, timeZone, time, 1);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCompileCache() throws Exception {
+		ScheduleCronExpression expression = ScheduleCronExpression.compile("0 0 2 * * ?");
+		Assert.assertSame(expression, ScheduleCronExpression.compile("0 0 2 * * ?"));
+		Assert.assertEquals("0 0 2 * * ?", expression.getCronExpression());
+		try {
+			ScheduleCronExpression.compile("0 0 25 * * ?");
+			Assert.fail("小时超出范围");
+		} catch (java.text.ParseException e) {
+			// 和CronExpression相同
+		}
+	}
+
+	/**
+	 * 从time开始连续计算count次，每次和新建的CronExpression比较，异常的类型也要相同
+	 */
+	private void assertSame(String expression, TimeZone timeZone, long time, int count) throws Exception {
+		CronExpression source = new CronExpression(expression);
+		source.setTimeZone(timeZone);
+		ScheduleCronExpression compiled = new ScheduleCronExpression(source);
+		for (int i = 0; i < count; i++) {
+			CronExpression fresh = new CronExpression(expression);
+			fresh.setTimeZone(timeZone);
+			Date expected;
+			try {
+				expected = fresh.getNextValidTimeAfter(new Date(time));
+			} catch (RuntimeException e) {
+				try {
+					compiled.getNextValidTimeAfter(time);
+					Assert.fail(expression + " " + timeZone.getID() + " " + time + " 应该抛出" + e);
+				} catch (RuntimeException e2) {
+					Assert.assertEquals(e.getClass(), e2.getClass());
+				}
+				return;
+			}
+			long actual = compiled.getNextValidTimeAfter(time);
+			Assert.assertEquals(expression + " " + timeZone.getID() + " " + new Date(time),
+					expected == null ? ScheduleCronExpression.NO_TIME : expected.getTime(), actual);
+			if (expected == null) {
+				return;
+			}
+			time = expected.getTime();
+		}
+	}
+}
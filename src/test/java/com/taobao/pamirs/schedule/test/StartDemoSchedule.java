@@ -9,7 +9,7 @@ import org.unitils.spring.annotation.SpringBeanByName;
 import com.taobao.pamirs.schedule.TBScheduleManagerFactory;
 
 /**
- * Ȳ
+ * 调度测试
  * @author xuannan
  *
  */